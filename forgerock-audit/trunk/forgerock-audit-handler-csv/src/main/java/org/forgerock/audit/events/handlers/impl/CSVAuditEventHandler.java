@@ -303,10 +303,7 @@ public class CSVAuditEventHandler extends AuditEventHandlerBase<CSVAuditEventHan
             JsonValue value = obj.get(new JsonPointer(key));
             entry.append("\"");
             if (value != null) {
-                String rawStr = value.isString() ? value.asString() : value.toString();
-                // Escape quotes with double quotes
-                final String escapedStr = rawStr.replaceAll("\"", "\"\"");
-                entry.append(escapedStr);
+                appendEscapedString(entry, value.isString() ? value.asString() : value.toString());
             }
             entry.append("\"");
             if (iter.hasNext()) {
@@ -318,6 +315,18 @@ public class CSVAuditEventHandler extends AuditEventHandlerBase<CSVAuditEventHan
         fileWriter.flush();
     }
 
+    /**
+     * Appends the string to the entry, escaping quotes with double quotes, without building an intermediate string.
+     */
+    private static void appendEscapedString(final StringBuilder entry, final String rawStr) {
+        int start = 0;
+        for (int i = rawStr.indexOf('"'); i >= 0; i = rawStr.indexOf('"', start)) {
+            entry.append(rawStr, start, i + 1).append('"');
+            start = i + 1;
+        }
+        entry.append(rawStr, start, rawStr.length());
+    }
+
     private void writeHeaders(final Collection<String> fieldOrder, final FileWriter fileWriter)
             throws IOException {
         final Iterator<String> iter = fieldOrder.iterator();
@@ -33,7 +33,7 @@ import javax.security.auth.message.module.ServerAuthModule;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.security.interfaces.RSAPrivateKey;
+import java.security.Key;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Calendar;
 import java.util.Collection;
@@ -45,17 +45,20 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import javax.crypto.SecretKey;
+
 import org.forgerock.caf.authentication.framework.AuthenticationFramework;
 import org.forgerock.caf.http.Cookie;
 import org.forgerock.json.jose.builders.JwtBuilderFactory;
 import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.exceptions.JweException;
 import org.forgerock.json.jose.jwe.EncryptedJwt;
 import org.forgerock.json.jose.jwe.EncryptionMethod;
 import org.forgerock.json.jose.jwe.JweAlgorithm;
+import org.forgerock.json.jose.jwe.JweAlgorithmType;
 import org.forgerock.json.jose.jwe.JweHeader;
 import org.forgerock.json.jose.jwt.Jwt;
 import org.forgerock.json.jose.jwt.JwtClaimsSet;
-import org.forgerock.json.jose.utils.KeystoreManager;
 
 /**
  * A JASPI Session Module which creates a JWT when securing the response from a successful authentication and sets it
@@ -68,7 +71,20 @@ public class JwtSessionModule implements ServerAuthModule {
 
     private static final String DEFAULT_JWT_SESSION_COOKIE_NAME = "session-jwt";
     private static final String SKIP_SESSION_PARAMETER_NAME = "skipSession";
+    private static final int DEFAULT_SESSION_CACHE_SIZE = 1000;
+    /** The minimum time in seconds after a Jwt is issued before its idle timeout is reset. */
+    private static final int COOL_OFF_PERIOD_SECONDS = 60;
 
+    /**
+     * The JWE algorithm configuration property key, one of RSAES_PKCS1_V1_5 (the default), DIRECT, A128KW or A256KW.
+     * The symmetric algorithms use the secret key with the Key Alias, so require a keystore type such as JCEKS.
+     */
+    public static final String JWE_ALGORITHM_KEY = "jweAlgorithm";
+    /**
+     * The JWE encryption method configuration property key, A128CBC_HS256 (the default) for RSAES_PKCS1_V1_5, or
+     * A128GCM or A256GCM for the symmetric algorithms.
+     */
+    public static final String ENCRYPTION_METHOD_KEY = "encryptionMethod";
     /** The Key Alias configuration property key. */
     public static final String KEY_ALIAS_KEY = "keyAlias";
     /** The Private Key password configuration property key. */
@@ -99,21 +115,33 @@ public class JwtSessionModule implements ServerAuthModule {
     public static final String SECURE_COOKIE_KEY = "isSecure";
     /** The domains the cookie should be set on property key. */
     public static final String COOKIE_DOMAINS_KEY = "cookieDomains";
+    /**
+     * The maximum number of validated session JWTs which are cached, so that they are not decrypted on every request,
+     * property key. Defaults to 1000, and 0 disables the cache.
+     */
+    public static final String SESSION_CACHE_SIZE_KEY = "sessionCacheSize";
+    /**
+     * The fraction of the token idle time, from 0 (the default) up to but excluding 1, which must pass after the JWT
+     * is issued before its idle timeout is reset and the cookie re-issued, property key. The idle timeout is never
+     * reset within one minute of the JWT being issued.
+     */
+    public static final String IDLE_REFRESH_FRACTION_KEY = "idleRefreshFraction";
 
     private final JwtBuilderFactory jwtBuilderFactory;
 
     private CallbackHandler handler;
 
-    private String keyAlias;
-    private String privateKeyPassword;
-    private String keystoreType;
-    private String keystoreFile;
-    private String keystorePassword;
+    private JweAlgorithm jweAlgorithm;
+    private EncryptionMethod encryptionMethod;
+    private KeystoreKeyProvider keyProvider;
+    private SessionJwtCache sessionCache;
     private String sessionCookieName;
     /** Stores the token idle time in seconds. */
     private int tokenIdleTime;
     /** Stores the max token lifetime in seconds. */
     private int maxTokenLife;
+    /** Stores the time in seconds after a Jwt is issued before its idle timeout is reset. */
+    private int idleRefreshTime;
     private boolean browserSessionOnly;
     private boolean isHttpOnly;
     private boolean isSecure;
@@ -148,11 +176,28 @@ public class JwtSessionModule implements ServerAuthModule {
     public void initialize(MessagePolicy requestPolicy, MessagePolicy responsePolicy, CallbackHandler handler,
             Map options) throws AuthException {
         this.handler = handler;
-        this.keyAlias = (String) options.get(KEY_ALIAS_KEY);
-        this.privateKeyPassword = (String) options.get(PRIVATE_KEY_PASSWORD_KEY);
-        this.keystoreType = (String) options.get(KEYSTORE_TYPE_KEY);
-        this.keystoreFile = (String) options.get(KEYSTORE_FILE_KEY);
-        this.keystorePassword = (String) options.get(KEYSTORE_PASSWORD_KEY);
+        final String algorithm = (String) options.get(JWE_ALGORITHM_KEY);
+        final String method = (String) options.get(ENCRYPTION_METHOD_KEY);
+        try {
+            this.jweAlgorithm = isEmpty(algorithm)
+                    ? JweAlgorithm.RSAES_PKCS1_V1_5 : JweAlgorithm.valueOf(algorithm.toUpperCase());
+            this.encryptionMethod = isEmpty(method)
+                    ? EncryptionMethod.A128CBC_HS256 : EncryptionMethod.parseMethod(method);
+        } catch (IllegalArgumentException | JweException e) {
+            throw new AuthException("Unknown " + JWE_ALGORITHM_KEY + " or " + ENCRYPTION_METHOD_KEY + " setting, "
+                    + algorithm + ", " + method + ".");
+        }
+        final boolean supported = isSymmetric()
+                ? encryptionMethod == EncryptionMethod.A128GCM || encryptionMethod == EncryptionMethod.A256GCM
+                : encryptionMethod == EncryptionMethod.A128CBC_HS256;
+        if (!supported) {
+            throw new AuthException("Unsupported combination of " + JWE_ALGORITHM_KEY + ", " + jweAlgorithm
+                    + ", and " + ENCRYPTION_METHOD_KEY + ", " + encryptionMethod + ".");
+        }
+        this.keyProvider = new KeystoreKeyProvider((String) options.get(KEYSTORE_TYPE_KEY),
+                (String) options.get(KEYSTORE_FILE_KEY), (String) options.get(KEYSTORE_PASSWORD_KEY),
+                (String) options.get(KEY_ALIAS_KEY), (String) options.get(PRIVATE_KEY_PASSWORD_KEY),
+                isSymmetric());
         this.sessionCookieName = (String) options.get(SESSION_COOKIE_NAME_KEY);
         if (isEmpty(sessionCookieName)) {
             this.sessionCookieName = DEFAULT_JWT_SESSION_COOKIE_NAME;
@@ -181,6 +226,15 @@ public class JwtSessionModule implements ServerAuthModule {
         } else {
             this.maxTokenLife = 0;
         }
+        final String idleRefreshFraction = (String) options.get(IDLE_REFRESH_FRACTION_KEY);
+        final double refreshFraction = isEmpty(idleRefreshFraction) ? 0 : Double.parseDouble(idleRefreshFraction);
+        if (refreshFraction < 0 || refreshFraction >= 1) {
+            throw new AuthException(IDLE_REFRESH_FRACTION_KEY + " setting must be at least 0 and less than 1.");
+        }
+        this.idleRefreshTime = Math.max(COOL_OFF_PERIOD_SECONDS, (int) (tokenIdleTime * refreshFraction));
+        final String sessionCacheSize = (String) options.get(SESSION_CACHE_SIZE_KEY);
+        this.sessionCache = new SessionJwtCache(isEmpty(sessionCacheSize)
+                ? DEFAULT_SESSION_CACHE_SIZE : Integer.parseInt(sessionCacheSize));
         Boolean sessionOnly = (Boolean) options.get(BROWSER_SESSION_ONLY_KEY);
         this.browserSessionOnly = sessionOnly == null ? false : sessionOnly;
         Boolean httpOnly = (Boolean) options.get(HTTP_ONLY_COOKIE_KEY);
@@ -251,6 +305,15 @@ public class JwtSessionModule implements ServerAuthModule {
         return s == null || "".equals(s);
     }
 
+    /**
+     * Checks if the configured JWE algorithm encrypts with a shared secret key, rather than a key pair.
+     *
+     * @return <code>true</code> if the JWE algorithm is symmetric.
+     */
+    private boolean isSymmetric() {
+        return jweAlgorithm.getAlgorithmType() != JweAlgorithmType.RSA;
+    }
+
     /**
      * Validates if the Jwt Session Cookie is valid and the idle timeout or max life has expired.
      *
@@ -275,12 +338,24 @@ public class JwtSessionModule implements ServerAuthModule {
 
         if (jwtSessionCookie != null && !isEmpty(jwtSessionCookie.getValue())) {
 
+            final String sessionJwt = jwtSessionCookie.getValue();
+            final Key decryptionKey = isSymmetric() ? keyProvider.getSecretKey() : keyProvider.getPrivateKey();
+            SessionJwtCache.Session session = sessionCache.get(sessionJwt, decryptionKey, System.currentTimeMillis());
             final Jwt jwt;
-            try {
-                jwt = verifySessionJwt(jwtSessionCookie.getValue());
-            } catch (JweDecryptionException e) {
-                LOG.debug("Failed to decrypt Jwt", e);
-                return null;
+            if (session != null) {
+                LOG.debug("Session JWT found in cache");
+                jwt = session.newJwt();
+            } else {
+                try {
+                    jwt = verifySessionJwt(sessionJwt, decryptionKey);
+                } catch (JweDecryptionException e) {
+                    LOG.debug("Failed to decrypt Jwt", e);
+                    return null;
+                }
+                if (jwt != null) {
+                    session = sessionCache.put(sessionJwt, decryptionKey, (EncryptedJwt) jwt,
+                            getSessionExpiryTime(jwt));
+                }
             }
             if (jwt != null) {
                 //if all goes well!
@@ -292,12 +367,12 @@ public class JwtSessionModule implements ServerAuthModule {
                     }
                 }
 
-                // If request is made within one minute of the Jwt being issued the idle timeout is not reset.
-                // This helps reduce overheads when the client makes multiple requests for a single operation.
+                // If request is made within the idle refresh time of the Jwt being issued the idle timeout is not
+                // reset. This helps reduce overheads when the client makes multiple requests for a single operation.
                 if (hasCoolOffPeriodExpired(jwt)) {
                     // reset tokenIdleTime
                     HttpServletResponse response = (HttpServletResponse) messageInfo.getResponseMessage();
-                    resetIdleTimeout(jwt, response);
+                    resetIdleTimeout(jwt, session, response);
                 }
 
                 messageInfo.getMap().put(JWT_VALIDATED_KEY, true);
@@ -335,24 +410,15 @@ public class JwtSessionModule implements ServerAuthModule {
      * The method will return null in the case where the JWT is not valid.
      *
      * @param sessionJwt The JWT string.
+     * @param decryptionKey The key to decrypt the JWT with.
      * @return The validated decrypted JWT.
      */
-    private Jwt verifySessionJwt(String sessionJwt) {
-
-        KeystoreManager keystoreManager = new KeystoreManager(keystoreType, keystoreFile, keystorePassword);
-
-        RSAPrivateKey privateKey = (RSAPrivateKey) keystoreManager.getPrivateKey(keyAlias, privateKeyPassword);
+    private Jwt verifySessionJwt(String sessionJwt, Key decryptionKey) {
 
         EncryptedJwt jwt = jwtBuilderFactory.reconstruct(sessionJwt, EncryptedJwt.class);
-        jwt.decrypt(privateKey);
+        jwt.decrypt(decryptionKey);
 
-        Date expirationTime = jwt.getClaimsSet().getExpirationTime();
-        Date tokenIdleTime = new Date(jwt.getClaimsSet().getClaim(TOKEN_IDLE_TIME_IN_SECONDS_CLAIM_KEY, Integer.class)
-                .longValue() * 1000L);
-
-        Date now = new Date(System.currentTimeMillis());
-
-        if ((now.getTime() < expirationTime.getTime()) && (now.getTime() < tokenIdleTime.getTime())) {
+        if (System.currentTimeMillis() < getSessionExpiryTime(jwt)) {
             return jwt;
         }
 
@@ -360,10 +426,24 @@ public class JwtSessionModule implements ServerAuthModule {
     }
 
     /**
-     * Determines if the request was made within one minute of the Jwt being issued.
+     * Gets the time at which the JWT expires or its idle timeout passes, whichever is first.
+     *
+     * @param jwt The decrypted JWT.
+     * @return The time in milliseconds after which the JWT is no longer valid.
+     */
+    private long getSessionExpiryTime(Jwt jwt) {
+        long expirationTime = jwt.getClaimsSet().getExpirationTime().getTime();
+        long tokenIdleTime = jwt.getClaimsSet().getClaim(TOKEN_IDLE_TIME_IN_SECONDS_CLAIM_KEY, Integer.class)
+                .longValue() * 1000L;
+        return Math.min(expirationTime, tokenIdleTime);
+    }
+
+    /**
+     * Determines if the request was made within the idle refresh time of the Jwt being issued, which is at least one
+     * minute.
      *
      * @param jwt The Jwt, which has been decrypted and validated prior to this call.
-     * @return If the request was made one minute after the Jwt was issued.
+     * @return If the request was made the idle refresh time after the Jwt was issued.
      */
     private boolean hasCoolOffPeriodExpired(Jwt jwt) {
 
@@ -372,18 +452,21 @@ public class JwtSessionModule implements ServerAuthModule {
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(new Date());
         calendar.set(Calendar.MILLISECOND, 0);
-        calendar.add(Calendar.MINUTE, -1);
+        calendar.add(Calendar.SECOND, -idleRefreshTime);
 
         return calendar.getTime().compareTo(issuedAtTime) > 0;
     }
 
     /**
-     * Resets the idle timeout value on the Jwt, as well as the issued at time and not before time.
+     * Resets the idle timeout value on the Jwt, as well as the issued at time and not before time. If the idle
+     * timeout of the session has already been reset by another request with the same session cookie, the same
+     * refreshed Jwt is re-issued instead.
      *
      * @param jwt The Jwt, which has been decrypted and validated prior to this call.
+     * @param session The validated session of the Jwt.
      * @param response The HttpServletResponse with the Jwt Session Cookie.
      */
-    private void resetIdleTimeout(Jwt jwt, HttpServletResponse response) {
+    private void resetIdleTimeout(Jwt jwt, SessionJwtCache.Session session, HttpServletResponse response) {
 
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(new Date());
@@ -395,15 +478,22 @@ public class JwtSessionModule implements ServerAuthModule {
         Date tokenIdleTime = calendar.getTime();
         Date exp = jwt.getClaimsSet().getExpirationTime();
 
-        jwt.getClaimsSet().setIssuedAtTime(iat);
-        jwt.getClaimsSet().setNotBeforeTime(nbf);
-        jwt.getClaimsSet().setClaim(TOKEN_IDLE_TIME_IN_SECONDS_CLAIM_KEY, tokenIdleTime.getTime() / 1000L);
-
-        KeystoreManager keystoreManager = new KeystoreManager(keystoreType, keystoreFile, keystorePassword);
-
-        RSAPublicKey publicKey = (RSAPublicKey) keystoreManager.getPublicKey(keyAlias);
-
-        String jwtString = rebuildEncryptedJwt((EncryptedJwt) jwt, publicKey);
+        String jwtString;
+        synchronized (session) {
+            jwtString = session.getRefreshedJwt();
+            if (jwtString == null) {
+                jwt.getClaimsSet().setIssuedAtTime(iat);
+                jwt.getClaimsSet().setNotBeforeTime(nbf);
+                jwt.getClaimsSet().setClaim(TOKEN_IDLE_TIME_IN_SECONDS_CLAIM_KEY, tokenIdleTime.getTime() / 1000L);
+
+                if (isSymmetric()) {
+                    jwtString = rebuildEncryptedJwt((EncryptedJwt) jwt, keyProvider.getSecretKey());
+                } else {
+                    jwtString = rebuildEncryptedJwt((EncryptedJwt) jwt, keyProvider.getPublicKey());
+                }
+                session.setRefreshedJwt(jwtString);
+            }
+        }
 
         addCookies(createCookies(jwtString, getCookieMaxAge(now, exp), "/"), response);
     }
@@ -419,6 +509,17 @@ public class JwtSessionModule implements ServerAuthModule {
         return new EncryptedJwt((JweHeader) jwt.getHeader(), jwt.getClaimsSet(), publicKey).build();
     }
 
+    /**
+     * Recreates the Encrypted Session Jwt, when it is encrypted with a shared secret key.
+     *
+     * @param jwt The orginal Session Jwt.
+     * @param secretKey The secret key.
+     * @return The Session Jwt.
+     */
+    protected String rebuildEncryptedJwt(EncryptedJwt jwt, SecretKey secretKey) {
+        return new EncryptedJwt((JweHeader) jwt.getHeader(), jwt.getClaimsSet(), secretKey).build();
+    }
+
     /**
      * Creates a JWT after a successful authentication and sets it as a Cookie on the response. An expiration time
      * is included in the JWT to limit the life of the JWT.
@@ -472,9 +573,7 @@ public class JwtSessionModule implements ServerAuthModule {
      */
     private Collection<Cookie> createSessionJwtCookies(Map<String, Object> jwtParameters) throws AuthException {
 
-        KeystoreManager keystoreManager = new KeystoreManager(keystoreType, keystoreFile, keystorePassword);
-
-        RSAPublicKey publicKey = (RSAPublicKey) keystoreManager.getPublicKey(keyAlias);
+        Key encryptionKey = isSymmetric() ? keyProvider.getSecretKey() : keyProvider.getPublicKey();
 
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(new Date());
@@ -499,10 +598,10 @@ public class JwtSessionModule implements ServerAuthModule {
                 .build();
 
         String jwtString = jwtBuilderFactory
-                .jwe(publicKey)
+                .jwe(encryptionKey)
                 .headers()
-                .alg(JweAlgorithm.RSAES_PKCS1_V1_5)
-                .enc(EncryptionMethod.A128CBC_HS256)
+                .alg(jweAlgorithm)
+                .enc(encryptionMethod)
                 .done()
                 .claims(claimsSet)
                 .build();
@@ -0,0 +1,164 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.jaspi.modules.session.jwt;
+
+import java.io.File;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+
+import javax.crypto.SecretKey;
+
+import org.forgerock.json.jose.utils.KeystoreManager;
+
+/**
+ * Provides the key pair, or the shared secret key, used to encrypt and decrypt session JWTs from a keystore file. The
+ * keystore is loaded and the key unlocked once, then the keys are reused until the keystore file's modification time
+ * changes, so that a replaced keystore is picked up without restarting.
+ * <p>
+ * The modification time is checked at most once every {@link #DEFAULT_RELOAD_CHECK_INTERVAL} milliseconds, by
+ * default.
+ * <p>
+ * This class is thread-safe.
+ */
+final class KeystoreKeyProvider {
+
+    /** The default minimum time between checks of the keystore file's modification time, in milliseconds. */
+    static final long DEFAULT_RELOAD_CHECK_INTERVAL = 1000L;
+
+    private final String keystoreType;
+    private final String keystoreFile;
+    private final String keystorePassword;
+    private final String keyAlias;
+    private final String privateKeyPassword;
+    private final boolean secretKey;
+    private final long reloadCheckInterval;
+
+    /** The keys last loaded, or {@code null} if they have not been loaded yet. */
+    private volatile Keys keys;
+
+    /**
+     * Creates a provider of the key stored under the given alias.
+     *
+     * @param keystoreType The keystore type, which must support secret keys, such as JCEKS, if {@code secretKey}.
+     * @param keystoreFile The path of the keystore file.
+     * @param keystorePassword The keystore password.
+     * @param keyAlias The alias of the key pair or secret key.
+     * @param privateKeyPassword The password of the private key or secret key.
+     * @param secretKey Whether the alias is a secret key, rather than a key pair.
+     */
+    KeystoreKeyProvider(String keystoreType, String keystoreFile, String keystorePassword, String keyAlias,
+            String privateKeyPassword, boolean secretKey) {
+        this(keystoreType, keystoreFile, keystorePassword, keyAlias, privateKeyPassword, secretKey,
+                DEFAULT_RELOAD_CHECK_INTERVAL);
+    }
+
+    KeystoreKeyProvider(String keystoreType, String keystoreFile, String keystorePassword, String keyAlias,
+            String privateKeyPassword, boolean secretKey, long reloadCheckInterval) {
+        this.keystoreType = keystoreType;
+        this.keystoreFile = keystoreFile;
+        this.keystorePassword = keystorePassword;
+        this.keyAlias = keyAlias;
+        this.privateKeyPassword = privateKeyPassword;
+        this.secretKey = secretKey;
+        this.reloadCheckInterval = reloadCheckInterval;
+    }
+
+    /**
+     * Gets the private key used to decrypt session JWTs.
+     *
+     * @return The private key.
+     */
+    RSAPrivateKey getPrivateKey() {
+        return getKeys().privateKey;
+    }
+
+    /**
+     * Gets the public key used to encrypt session JWTs.
+     *
+     * @return The public key.
+     */
+    RSAPublicKey getPublicKey() {
+        return getKeys().publicKey;
+    }
+
+    /**
+     * Gets the shared secret key used to encrypt and decrypt session JWTs.
+     *
+     * @return The secret key.
+     */
+    SecretKey getSecretKey() {
+        return getKeys().secretKey;
+    }
+
+    private Keys getKeys() {
+        Keys current = keys;
+        final long now = System.currentTimeMillis();
+        if (current != null && now < current.nextCheck) {
+            return current;
+        }
+        synchronized (this) {
+            current = keys;
+            if (current != null && now < current.nextCheck) {
+                return current;
+            }
+            final long lastModified = lastModified();
+            if (current == null || current.lastModified != lastModified) {
+                current = load(lastModified, now);
+            } else {
+                current = new Keys(current.privateKey, current.publicKey, current.secretKey, lastModified,
+                        now + reloadCheckInterval);
+            }
+            keys = current;
+            return current;
+        }
+    }
+
+    private Keys load(long lastModified, long now) {
+        final KeystoreManager keystoreManager = new KeystoreManager(keystoreType, keystoreFile, keystorePassword);
+        if (secretKey) {
+            return new Keys(null, null, keystoreManager.getSecretKey(keyAlias, privateKeyPassword), lastModified,
+                    now + reloadCheckInterval);
+        }
+        return new Keys((RSAPrivateKey) keystoreManager.getPrivateKey(keyAlias, privateKeyPassword),
+                (RSAPublicKey) keystoreManager.getPublicKey(keyAlias), null, lastModified, now + reloadCheckInterval);
+    }
+
+    private long lastModified() {
+        // KeystoreManager reports a missing file name when loading.
+        return keystoreFile == null || keystoreFile.isEmpty() ? 0L : new File(keystoreFile).lastModified();
+    }
+
+    /**
+     * The keys loaded from the keystore, and when the keystore should next be checked for changes.
+     */
+    private static final class Keys {
+        private final RSAPrivateKey privateKey;
+        private final RSAPublicKey publicKey;
+        private final SecretKey secretKey;
+        private final long lastModified;
+        private final long nextCheck;
+
+        private Keys(RSAPrivateKey privateKey, RSAPublicKey publicKey, SecretKey secretKey, long lastModified,
+                long nextCheck) {
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+            this.secretKey = secretKey;
+            this.lastModified = lastModified;
+            this.nextCheck = nextCheck;
+        }
+    }
+}
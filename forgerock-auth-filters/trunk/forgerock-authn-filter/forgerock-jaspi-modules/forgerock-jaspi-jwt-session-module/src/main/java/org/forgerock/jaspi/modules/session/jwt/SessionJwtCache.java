@@ -0,0 +1,145 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.jaspi.modules.session.jwt;
+
+import java.security.Key;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.forgerock.json.jose.jwe.EncryptedJwt;
+import org.forgerock.json.jose.jwe.JweHeader;
+import org.forgerock.json.jose.jwt.Jwt;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.json.jose.utils.Utils;
+
+/**
+ * A bounded cache of the session JWTs which have been decrypted and validated, keyed by the session cookie value, so
+ * that the many requests a browser makes with the same cookie are only decrypted once. The least recently used
+ * sessions are evicted first, and a session is not returned once its expiration time or idle timeout has passed, or
+ * once the key which decrypted it has been replaced.
+ * <p>
+ * Each session also records the JWT which was re-issued when its idle timeout was reset, so that requests which are
+ * still sending the old cookie are given the same refreshed JWT rather than each encrypting a new one.
+ * <p>
+ * This class is thread-safe.
+ */
+final class SessionJwtCache {
+
+    private final int maxEntries;
+    private final Map<String, Session> sessions;
+
+    SessionJwtCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the validated session for the given session cookie value.
+     *
+     * @param sessionJwt The session cookie value.
+     * @param key The key which currently decrypts session JWTs.
+     * @param now The current time in milliseconds.
+     * @return The session, or {@code null} if it is not cached or is no longer valid.
+     */
+    Session get(String sessionJwt, Key key, long now) {
+        synchronized (sessions) {
+            final Session session = sessions.get(sessionJwt);
+            if (session == null) {
+                return null;
+            }
+            if (now >= session.expiryTime || session.key != key) {
+                sessions.remove(sessionJwt);
+                return null;
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Caches a session JWT which has just been decrypted and validated. The JWT's claims are copied, so later changes
+     * to the JWT do not affect the cached session.
+     *
+     * @param sessionJwt The session cookie value.
+     * @param key The key which decrypted the JWT.
+     * @param jwt The decrypted JWT.
+     * @param expiryTime The time in milliseconds at which the JWT expires or becomes idle, whichever is first.
+     * @return The session, which is not cached if the cache is disabled.
+     */
+    Session put(String sessionJwt, Key key, EncryptedJwt jwt, long expiryTime) {
+        final Session session = new Session((JweHeader) jwt.getHeader(), jwt.getClaimsSet().build(), key,
+                expiryTime);
+        if (maxEntries > 0) {
+            synchronized (sessions) {
+                sessions.put(sessionJwt, session);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * A validated session JWT. Callers synchronize on the session while resetting its idle timeout, so that the
+     * refreshed JWT is only encrypted once.
+     */
+    static final class Session {
+        private final JweHeader header;
+        private final String claims;
+        private final Key key;
+        private final long expiryTime;
+        private String refreshedJwt;
+
+        private Session(JweHeader header, String claims, Key key, long expiryTime) {
+            this.header = header;
+            this.claims = claims;
+            this.key = key;
+            this.expiryTime = expiryTime;
+        }
+
+        /**
+         * Gets a new copy of the session JWT, which the caller may modify.
+         *
+         * @return The session JWT.
+         */
+        Jwt newJwt() {
+            return new EncryptedJwt(header, new JwtClaimsSet(Utils.parseJson(claims)), null);
+        }
+
+        /**
+         * Gets the JWT which was re-issued when the idle timeout of this session was reset.
+         *
+         * @return The refreshed JWT, or {@code null} if the idle timeout has not been reset.
+         */
+        String getRefreshedJwt() {
+            return refreshedJwt;
+        }
+
+        /**
+         * Sets the JWT which was re-issued when the idle timeout of this session was reset.
+         *
+         * @param refreshedJwt The refreshed JWT.
+         */
+        void setRefreshedJwt(String refreshedJwt) {
+            this.refreshedJwt = refreshedJwt;
+        }
+    }
+}
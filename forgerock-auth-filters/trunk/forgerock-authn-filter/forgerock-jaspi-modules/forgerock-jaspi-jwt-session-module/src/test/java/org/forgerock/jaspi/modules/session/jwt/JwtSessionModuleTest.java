@@ -43,6 +43,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.forgerock.caf.authentication.framework.AuthenticationFramework;
 import org.forgerock.json.jose.builders.EncryptedJwtBuilder;
@@ -1150,4 +1151,129 @@ public class JwtSessionModuleTest {
         //then
         //should never get here
     }
+
+    @Test
+    public void shouldOnlyDecryptSessionJwtOnceForRepeatedRequests() throws Exception {
+        //Given
+        jwtSessionModule.initialize(null, null, null, getOptionsMap(1, 2, Calendar.MINUTE));
+        EncryptedJwt encryptedJwt = mockSessionJwt(new Date());
+        MessageInfo firstMessageInfo = mockSessionMessageInfo(mock(HttpServletResponse.class));
+        MessageInfo secondMessageInfo = mockSessionMessageInfo(mock(HttpServletResponse.class));
+
+        //When
+        jwtSessionModule.validateJwtSessionCookie(firstMessageInfo);
+        Jwt jwt = jwtSessionModule.validateJwtSessionCookie(secondMessageInfo);
+
+        //Then
+        verify(jwtBuilderFactory, times(1)).reconstruct("SESSION_JWT", EncryptedJwt.class);
+        verify(encryptedJwt, times(1)).decrypt(Matchers.<Key>anyObject());
+        assertThat(jwt.getClaimsSet().getClaim("prn", String.class)).isEqualTo("PRINCIPAL");
+        assertThat(secondMessageInfo.getMap()).containsEntry(JwtSessionModule.JWT_VALIDATED_KEY, true);
+    }
+
+    @Test
+    public void shouldReissueSameRefreshedJwtForRepeatedRequestsAfterCoolOffPeriod() throws Exception {
+        //Given
+        final AtomicInteger rebuilds = new AtomicInteger();
+        JwtSessionModule jwtSessionModule = new JwtSessionModule(jwtBuilderFactory) {
+            @Override
+            protected String rebuildEncryptedJwt(EncryptedJwt jwt, RSAPublicKey publicKey) {
+                return "REBUILT_ENCRYPTED_JWT_" + rebuilds.incrementAndGet();
+            }
+        };
+        jwtSessionModule.initialize(null, null, null, getOptionsMap(1, 2, Calendar.MINUTE));
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, -65);
+        mockSessionJwt(calendar.getTime());
+        HttpServletResponse firstResponse = mock(HttpServletResponse.class);
+        HttpServletResponse secondResponse = mock(HttpServletResponse.class);
+
+        //When
+        jwtSessionModule.validateJwtSessionCookie(mockSessionMessageInfo(firstResponse));
+        jwtSessionModule.validateJwtSessionCookie(mockSessionMessageInfo(secondResponse));
+
+        //Then
+        assertThat(rebuilds.get()).isEqualTo(1);
+        ArgumentCaptor<Cookie> cookieCaptor = ArgumentCaptor.forClass(Cookie.class);
+        verify(firstResponse).addCookie(cookieCaptor.capture());
+        verify(secondResponse).addCookie(cookieCaptor.capture());
+        assertThat(cookieCaptor.getAllValues().get(0).getValue()).isEqualTo("REBUILT_ENCRYPTED_JWT_1");
+        assertThat(cookieCaptor.getAllValues().get(1).getValue()).isEqualTo("REBUILT_ENCRYPTED_JWT_1");
+    }
+
+    @Test
+    public void shouldNotResetIdleTimeoutWithinIdleRefreshFraction() throws Exception {
+        //Given
+        Map<String, Object> options = getOptionsMap(10, 20, Calendar.MINUTE);
+        options.put(JwtSessionModule.IDLE_REFRESH_FRACTION_KEY, "0.5");
+        jwtSessionModule.initialize(null, null, null, options);
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, -65);
+        mockSessionJwt(calendar.getTime());
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        //When
+        Jwt jwt = jwtSessionModule.validateJwtSessionCookie(mockSessionMessageInfo(response));
+
+        //Then
+        assertNotNull(jwt);
+        verifyZeroInteractions(response);
+    }
+
+    @Test(expectedExceptions = AuthException.class)
+    public void shouldThrowAuthExceptionWhenIdleRefreshFractionIsNotLessThanOne() throws Exception {
+        //given
+        Map<String, Object> options = getOptionsMap(1, 1, Calendar.MINUTE);
+        options.put(JwtSessionModule.IDLE_REFRESH_FRACTION_KEY, "1");
+
+        //when
+        new JwtSessionModule().initialize(null, null, null, options);
+
+        //then
+        //should never get here
+    }
+
+    @Test(expectedExceptions = AuthException.class)
+    public void shouldThrowAuthExceptionWhenEncryptionMethodIsUnsupportedByJweAlgorithm() throws Exception {
+        //given
+        MessagePolicy requestMessagePolicy = mock(MessagePolicy.class);
+        MessagePolicy responseMessagePolicy = mock(MessagePolicy.class);
+        CallbackHandler callbackHandler = mock(CallbackHandler.class);
+        Map<String, Object> options = getOptionsMap(1, 1, Calendar.MINUTE);
+        JwtSessionModule jwtSessionModule = new JwtSessionModule();
+
+        options.put(JwtSessionModule.JWE_ALGORITHM_KEY, "DIRECT");
+        options.put(JwtSessionModule.ENCRYPTION_METHOD_KEY, "A128CBC_HS256");
+
+        //when
+        jwtSessionModule.initialize(requestMessagePolicy, responseMessagePolicy, callbackHandler, options);
+
+        //then
+        //should never get here
+    }
+
+    private EncryptedJwt mockSessionJwt(Date issuedAtTime) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.MINUTE, 5);
+        JwtClaimsSet claimsSet = new JwtClaimsSet();
+        claimsSet.setIssuedAtTime(issuedAtTime);
+        claimsSet.setExpirationTime(calendar.getTime());
+        claimsSet.setClaim(JwtSessionModule.TOKEN_IDLE_TIME_IN_SECONDS_CLAIM_KEY,
+                new Long(calendar.getTimeInMillis() / 1_000L).intValue());
+        claimsSet.setClaim("prn", "PRINCIPAL");
+        EncryptedJwt encryptedJwt = mock(EncryptedJwt.class);
+        given(encryptedJwt.getClaimsSet()).willReturn(claimsSet);
+        given(jwtBuilderFactory.reconstruct("SESSION_JWT", EncryptedJwt.class)).willReturn(encryptedJwt);
+        return encryptedJwt;
+    }
+
+    private MessageInfo mockSessionMessageInfo(HttpServletResponse response) {
+        MessageInfo messageInfo = mock(MessageInfo.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        given(messageInfo.getRequestMessage()).willReturn(request);
+        given(messageInfo.getResponseMessage()).willReturn(response);
+        given(messageInfo.getMap()).willReturn(new HashMap<String, Object>());
+        given(request.getCookies()).willReturn(new Cookie[]{new Cookie("session-jwt", "SESSION_JWT")});
+        return messageInfo;
+    }
 }
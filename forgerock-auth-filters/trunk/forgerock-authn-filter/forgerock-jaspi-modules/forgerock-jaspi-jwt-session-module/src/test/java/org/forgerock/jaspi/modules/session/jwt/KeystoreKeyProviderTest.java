@@ -0,0 +1,129 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.jaspi.modules.session.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.interfaces.RSAPrivateKey;
+
+import javax.crypto.SecretKey;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class KeystoreKeyProviderTest {
+
+    private File keystoreFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        keystoreFile = File.createTempFile("keystore", ".jks");
+        Files.copy(new File(URLDecoder.decode(ClassLoader.getSystemResource("keystore.jks").getFile(), "UTF-8"))
+                .toPath(), keystoreFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        keystoreFile.delete();
+    }
+
+    @Test
+    public void shouldLoadKeyPair() {
+
+        //Given
+        KeystoreKeyProvider keyProvider = newKeyProvider(0L);
+
+        //When
+        RSAPrivateKey privateKey = keyProvider.getPrivateKey();
+
+        //Then
+        assertThat(privateKey).isNotNull();
+        assertThat(keyProvider.getPublicKey().getModulus()).isEqualTo(privateKey.getModulus());
+    }
+
+    @Test
+    public void shouldLoadSecretKey() throws Exception {
+
+        //Given
+        String secretKeystoreFile = URLDecoder.decode(ClassLoader.getSystemResource("keystore.jceks").getFile(),
+                "UTF-8");
+        KeystoreKeyProvider keyProvider = new KeystoreKeyProvider("JCEKS", secretKeystoreFile, "password",
+                "jwt-test-secret", "password", true);
+
+        //When
+        SecretKey secretKey = keyProvider.getSecretKey();
+
+        //Then
+        assertThat(secretKey.getAlgorithm()).isEqualTo("AES");
+        assertThat(secretKey.getEncoded()).hasSize(32);
+        assertThat(keyProvider.getPrivateKey()).isNull();
+    }
+
+    @Test
+    public void shouldReuseKeysWhileKeystoreIsUnchanged() {
+
+        //Given
+        KeystoreKeyProvider keyProvider = newKeyProvider(0L);
+        RSAPrivateKey privateKey = keyProvider.getPrivateKey();
+
+        //When
+        RSAPrivateKey secondPrivateKey = keyProvider.getPrivateKey();
+
+        //Then
+        assertThat(secondPrivateKey).isSameAs(privateKey);
+    }
+
+    @Test
+    public void shouldReloadKeysWhenKeystoreIsModified() {
+
+        //Given
+        KeystoreKeyProvider keyProvider = newKeyProvider(0L);
+        RSAPrivateKey privateKey = keyProvider.getPrivateKey();
+        keystoreFile.setLastModified(keystoreFile.lastModified() - 60000L);
+
+        //When
+        RSAPrivateKey reloadedPrivateKey = keyProvider.getPrivateKey();
+
+        //Then
+        assertThat(reloadedPrivateKey).isNotSameAs(privateKey).isEqualTo(privateKey);
+    }
+
+    @Test
+    public void shouldNotCheckKeystoreWithinReloadCheckInterval() {
+
+        //Given
+        KeystoreKeyProvider keyProvider = newKeyProvider(60000L);
+        RSAPrivateKey privateKey = keyProvider.getPrivateKey();
+        keystoreFile.setLastModified(keystoreFile.lastModified() - 60000L);
+
+        //When
+        RSAPrivateKey secondPrivateKey = keyProvider.getPrivateKey();
+
+        //Then
+        assertThat(secondPrivateKey).isSameAs(privateKey);
+    }
+
+    private KeystoreKeyProvider newKeyProvider(long reloadCheckInterval) {
+        return new KeystoreKeyProvider("JKS", keystoreFile.getPath(), "password", "jwt-test-ks", "password", false,
+                reloadCheckInterval);
+    }
+}
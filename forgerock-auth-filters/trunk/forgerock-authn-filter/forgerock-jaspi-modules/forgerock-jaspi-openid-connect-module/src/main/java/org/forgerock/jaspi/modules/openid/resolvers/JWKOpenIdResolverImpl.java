@@ -20,8 +20,14 @@ import static org.forgerock.caf.authentication.framework.AuthenticationFramework
 
 import java.net.URL;
 import java.security.Key;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.forgerock.jaspi.modules.openid.exceptions.FailedToLoadJWKException;
 import org.forgerock.jaspi.modules.openid.exceptions.InvalidSignatureException;
@@ -30,29 +36,46 @@ import org.forgerock.jaspi.modules.openid.helpers.JWKSetParser;
 import org.forgerock.jaspi.modules.openid.helpers.SimpleHTTPClient;
 import org.forgerock.json.jose.jws.SignedJwt;
 import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.util.time.TimeService;
 
 /**
  * This class exists to allow Open Id Providers to supply or promote a JWK exposure point for
  * their public keys. We convert the exposed keys they provide according to the algorithm
  * defined by their JWK and offer their keys in a map key'd on their keyId.
  *
- * The map of keys is loaded on construction, and reloaded each time an Open Id token is
- * passed in to this resolver whose keyId does not exist within the list that we currently have.
+ * The map of keys is loaded on construction, and is never modified: reloading the keys builds a
+ * new map which replaces the current one, so verifying a signature does not take any locks.
  *
- * This means that we will cache the keys for as long as they are valid, and as soon as we
- * receive a request to verify using a key which we don't have we discard our current keys and
- * re-fill our map.
+ * Keys are reloaded when they are older than {@link #KEY_REFRESH_INTERVAL}, by the first request
+ * which notices, while all other requests carry on using the current keys. They are also reloaded
+ * when an Open Id token is passed in whose keyId does not exist within the keys we currently have,
+ * but no more than once every {@link #UNKNOWN_KEY_ID_RELOAD_INTERVAL}, so that tokens with made up
+ * keyIds cannot flood the provider with requests. Concurrent requests which need the keys reloaded
+ * wait for a single reload rather than each making their own.
  */
 public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
 
+    /** How long keys are used for before they are reloaded, in milliseconds. */
+    static final long KEY_REFRESH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /** The minimum time between reloads caused by an unknown keyId, in milliseconds. */
+    static final long UNKNOWN_KEY_ID_RELOAD_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
     private final SigningManager signingManager;
 
     private final URL jwkUrl;
 
-    private final Map<String, Key> keyMap = new HashMap<>();
-
     private final JWKSetParser jwkParser;
 
+    private final TimeService timeService;
+
+    private final AtomicReference<JWKKeys> keys = new AtomicReference<>();
+
+    private final AtomicReference<FutureTask<JWKKeys>> reload = new AtomicReference<>();
+
+    private volatile long nextUnknownKeyIdReload;
+
     /**
      * Constructor using provided timeout values to generate the
      * {@link SimpleHTTPClient} used for communicating over HTTP.
@@ -65,18 +88,7 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
      */
     public JWKOpenIdResolverImpl(final String issuer, final URL jwkUrl, final int readTimeout,
                                  final int connTimeout) throws FailedToLoadJWKException {
-        super(issuer);
-
-        this.signingManager = new SigningManager();
-        jwkParser = new JWKSetParser(readTimeout, connTimeout);
-        this.jwkUrl = jwkUrl;
-
-        try {
-            reloadKeys();
-        } catch (FailedToLoadJWKException e) {
-            LOG.debug("Unable to load keys from the JWK over HTTP");
-            throw new FailedToLoadJWKException("Unable to load keys from the JWK over HTTP", e);
-        }
+        this(issuer, jwkUrl, new JWKSetParser(readTimeout, connTimeout), TimeService.SYSTEM);
     }
 
     /**
@@ -89,18 +101,7 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
      */
     public JWKOpenIdResolverImpl(final String issuer, final URL jwkUrl, final SimpleHTTPClient httpClient)
             throws FailedToLoadJWKException {
-        super(issuer);
-
-        this.signingManager = new SigningManager();
-        jwkParser = new JWKSetParser(httpClient);
-        this.jwkUrl = jwkUrl;
-
-        try {
-            reloadKeys();
-        } catch (FailedToLoadJWKException e) {
-            LOG.debug("Unable to load keys from the JWK over HTTP");
-            throw new FailedToLoadJWKException("Unable to load keys from the JWK over HTTP", e);
-        }
+        this(issuer, jwkUrl, new JWKSetParser(httpClient), TimeService.SYSTEM);
     }
 
 
@@ -112,14 +113,27 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
      */
     JWKOpenIdResolverImpl(final String issuer, final URL jwkUrl, final JWKSetParser jwkParser)
             throws FailedToLoadJWKException {
+        this(issuer, jwkUrl, jwkParser, TimeService.SYSTEM);
+    }
+
+    /**
+     * Test constructor using an already-created JwkParser and time service.
+     *
+     * @param issuer The issuer (provider) of the Open Id Connect id token
+     * @param jwkUrl The URL from which we will attempt to read and parse our JWKSet
+     * @param timeService The time service used to decide when keys should be reloaded
+     */
+    JWKOpenIdResolverImpl(final String issuer, final URL jwkUrl, final JWKSetParser jwkParser,
+            final TimeService timeService) throws FailedToLoadJWKException {
         super(issuer);
 
         this.signingManager = new SigningManager();
         this.jwkParser = jwkParser;
         this.jwkUrl = jwkUrl;
+        this.timeService = timeService;
 
         try {
-            reloadKeys();
+            reloadKeys(newReload());
         } catch (FailedToLoadJWKException e) {
             LOG.debug("Unable to load keys from the JWK over HTTP");
             throw new FailedToLoadJWKException("Unable to load keys from the JWK over HTTP", e);
@@ -145,31 +159,151 @@ public class JWKOpenIdResolverImpl extends BaseOpenIdResolver {
     public void verifySignature(final SignedJwt idClaim) throws InvalidSignatureException,
             FailedToLoadJWKException {
 
-        final Key key;
+        final String keyId = idClaim.getHeader().getKeyId();
+        final long now = timeService.now();
 
-        synchronized (keyMap) {
-            if (!keyMap.containsKey(idClaim.getHeader().getKeyId())) {
-                reloadKeys();
-            }
+        JWKKeys current = keys.get();
+        SigningHandler signingHandler = current.getSigningHandler(keyId);
+        if (signingHandler == null) {
+            current = reloadKeysForUnknownKeyId(now);
+            signingHandler = current.getSigningHandler(keyId);
+        } else if (now >= current.refreshTime) {
+            refreshKeys(current, now);
         }
 
-        key = keyMap.get(idClaim.getHeader().getKeyId());
-        if (key == null || !idClaim.verify(signingManager.newRsaSigningHandler(key))) {
+        if (signingHandler == null || !idClaim.verify(signingHandler)) {
             LOG.debug("JWS unable to be verified");
             throw new InvalidSignatureException("JWS unable to be verified");
         }
     }
 
     /**
-     * Communicates with the configured server, attempting to download the latest keyset
-     * for use.
+     * Reloads the keys because a token's keyId is not in the current keys, unless they were
+     * reloaded for an unknown keyId too recently, in which case the current keys are returned.
+     * If the keys are already being reloaded, waits for that reload rather than starting another.
      *
+     * @param now The current time in milliseconds
+     * @return The keys to verify the token with
      * @throws FailedToLoadJWKException if there were issues parsing the supplied URL
      */
-    private void reloadKeys() throws FailedToLoadJWKException {
-        synchronized (keyMap) {
-            keyMap.clear();
-            keyMap.putAll(jwkParser.generateMapFromJWK(jwkUrl));
+    private JWKKeys reloadKeysForUnknownKeyId(final long now) throws FailedToLoadJWKException {
+        FutureTask<JWKKeys> task = reload.get();
+        if (task == null) {
+            if (now < nextUnknownKeyIdReload) {
+                LOG.debug("Not reloading keys for unknown key id, as they were reloaded recently");
+                return keys.get();
+            }
+            final FutureTask<JWKKeys> newTask = newReload();
+            if (reload.compareAndSet(null, newTask)) {
+                nextUnknownKeyIdReload = now + UNKNOWN_KEY_ID_RELOAD_INTERVAL;
+                return reloadKeys(newTask);
+            }
+            task = reload.get();
+            if (task == null) {
+                // The reload which beat us has already finished.
+                return keys.get();
+            }
+        }
+        return awaitReload(task);
+    }
+
+    /**
+     * Reloads keys which are due to be refreshed, unless they are already being reloaded. The
+     * current keys remain in use if the reload fails, and are not retried for
+     * {@link #UNKNOWN_KEY_ID_RELOAD_INTERVAL}.
+     *
+     * @param current The keys which are due to be refreshed
+     * @param now The current time in milliseconds
+     */
+    private void refreshKeys(final JWKKeys current, final long now) {
+        final FutureTask<JWKKeys> task = newReload();
+        if (!reload.compareAndSet(null, task)) {
+            return;
+        }
+        try {
+            reloadKeys(task);
+        } catch (FailedToLoadJWKException e) {
+            LOG.debug("Unable to refresh keys from the JWK over HTTP, continuing to use the current keys", e);
+            keys.compareAndSet(current,
+                    new JWKKeys(current.signingHandlers, now + UNKNOWN_KEY_ID_RELOAD_INTERVAL));
+        }
+    }
+
+    /**
+     * Creates a task which communicates with the configured server, attempting to download the
+     * latest keyset for use, and replaces the current keys with it.
+     *
+     * @return The reload task
+     */
+    private FutureTask<JWKKeys> newReload() {
+        return new FutureTask<>(new Callable<JWKKeys>() {
+            @Override
+            public JWKKeys call() throws FailedToLoadJWKException {
+                final Map<String, SigningHandler> signingHandlers = new HashMap<>();
+                for (final Map.Entry<String, Key> entry : jwkParser.generateMapFromJWK(jwkUrl).entrySet()) {
+                    signingHandlers.put(entry.getKey(), signingManager.newRsaSigningHandler(entry.getValue()));
+                }
+                final JWKKeys reloaded = new JWKKeys(Collections.unmodifiableMap(signingHandlers),
+                        timeService.now() + KEY_REFRESH_INTERVAL);
+                keys.set(reloaded);
+                return reloaded;
+            }
+        });
+    }
+
+    /**
+     * Runs a reload which this thread has made the current reload.
+     *
+     * @param task The reload task
+     * @return The reloaded keys
+     * @throws FailedToLoadJWKException if there were issues parsing the supplied URL
+     */
+    private JWKKeys reloadKeys(final FutureTask<JWKKeys> task) throws FailedToLoadJWKException {
+        try {
+            task.run();
+        } finally {
+            reload.compareAndSet(task, null);
+        }
+        return awaitReload(task);
+    }
+
+    /**
+     * Waits for a reload to finish.
+     *
+     * @param task The reload task
+     * @return The reloaded keys
+     * @throws FailedToLoadJWKException if the reload failed, or the thread was interrupted
+     */
+    private JWKKeys awaitReload(final FutureTask<JWKKeys> task) throws FailedToLoadJWKException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedToLoadJWKException("Interrupted while loading keys from the JWK over HTTP", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FailedToLoadJWKException) {
+                throw (FailedToLoadJWKException) e.getCause();
+            }
+            throw new FailedToLoadJWKException("Unable to load keys from the JWK over HTTP", e.getCause());
+        }
+    }
+
+    /**
+     * An immutable set of keys, held as the signing handlers which verify with them.
+     */
+    private static final class JWKKeys {
+
+        private final Map<String, SigningHandler> signingHandlers;
+
+        private final long refreshTime;
+
+        private JWKKeys(final Map<String, SigningHandler> signingHandlers, final long refreshTime) {
+            this.signingHandlers = signingHandlers;
+            this.refreshTime = refreshTime;
+        }
+
+        private SigningHandler getSigningHandler(final String keyId) {
+            return signingHandlers.get(keyId);
         }
     }
 
@@ -23,11 +23,14 @@ import org.forgerock.jaspi.modules.openid.helpers.JWKSetParser;
 import org.forgerock.json.jose.jws.JwsHeader;
 import org.forgerock.json.jose.jws.SignedJwt;
 import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.util.time.TimeService;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.Key;
+import java.util.Collections;
 import java.util.Date;
 
 import static org.mockito.BDDMockito.given;
@@ -35,6 +38,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 public class JWKOpenIdResolverImplTest {
@@ -98,6 +102,70 @@ public class JWKOpenIdResolverImplTest {
 
     }
 
+    @Test
+    public void testResolverDoesNotReloadJWKForUnknownKeyIdsWithinReloadInterval() throws FailedToLoadJWKException {
+        //given
+        mockParser = mock(JWKSetParser.class);
+        TimeService timeService = mock(TimeService.class);
+        given(timeService.now()).willReturn(0L);
+        testResolver = new JWKOpenIdResolverImpl("Test", mockURL, mockParser, timeService);
+
+        //when
+        assertFalse(verifySignature(mockJwt("keyId1")));
+        assertFalse(verifySignature(mockJwt("keyId2")));
+        given(timeService.now()).willReturn(JWKOpenIdResolverImpl.UNKNOWN_KEY_ID_RELOAD_INTERVAL);
+        assertFalse(verifySignature(mockJwt("keyId3")));
+
+        //then
+        verify(mockParser, times(3)).generateMapFromJWK(any(URL.class));
+    }
+
+    @Test
+    public void testResolverReloadsJWKWhenRefreshIntervalHasPassed() throws FailedToLoadJWKException {
+        //given
+        mockParser = mock(JWKSetParser.class);
+        TimeService timeService = mock(TimeService.class);
+        given(timeService.now()).willReturn(0L);
+        given(mockParser.generateMapFromJWK(any(URL.class)))
+                .willReturn(Collections.singletonMap("keyId", mock(Key.class)));
+        testResolver = new JWKOpenIdResolverImpl("Test", mockURL, mockParser, timeService);
+        SignedJwt mockJwt = mockJwt("keyId");
+        given(mockJwt.verify(any(SigningHandler.class))).willReturn(true);
+
+        //when
+        assertTrue(verifySignature(mockJwt));
+        given(timeService.now()).willReturn(JWKOpenIdResolverImpl.KEY_REFRESH_INTERVAL);
+        assertTrue(verifySignature(mockJwt));
+        assertTrue(verifySignature(mockJwt));
+
+        //then
+        verify(mockParser, times(2)).generateMapFromJWK(any(URL.class));
+    }
+
+    @Test
+    public void testResolverKeepsCurrentKeysWhenRefreshFails() throws FailedToLoadJWKException {
+        //given
+        mockParser = mock(JWKSetParser.class);
+        TimeService timeService = mock(TimeService.class);
+        given(timeService.now()).willReturn(0L);
+        given(mockParser.generateMapFromJWK(any(URL.class)))
+                .willReturn(Collections.singletonMap("keyId", mock(Key.class)))
+                .willThrow(new FailedToLoadJWKException());
+        testResolver = new JWKOpenIdResolverImpl("Test", mockURL, mockParser, timeService);
+        SignedJwt mockJwt = mockJwt("keyId");
+        given(mockJwt.verify(any(SigningHandler.class))).willReturn(true);
+        given(timeService.now()).willReturn(JWKOpenIdResolverImpl.KEY_REFRESH_INTERVAL);
+
+        //when
+        boolean first = verifySignature(mockJwt);
+        boolean second = verifySignature(mockJwt);
+
+        //then
+        assertTrue(first);
+        assertTrue(second);
+        verify(mockParser, times(2)).generateMapFromJWK(any(URL.class)); //no retry until the reload interval
+    }
+
     @Test(expectedExceptions = JwtExpiredException.class)
     public void testExpiredTokenThrowsException() throws JwtExpiredException {
         //given
@@ -121,5 +189,20 @@ public class JWKOpenIdResolverImplTest {
         //then checked by exception
     }
 
+    private SignedJwt mockJwt(String keyId) {
+        SignedJwt mockJwt = mock(SignedJwt.class);
+        JwsHeader mockHeader = mock(JwsHeader.class);
+        given(mockJwt.getHeader()).willReturn(mockHeader);
+        given(mockHeader.getKeyId()).willReturn(keyId);
+        return mockJwt;
+    }
 
+    private boolean verifySignature(SignedJwt jwt) throws FailedToLoadJWKException {
+        try {
+            testResolver.verifySignature(jwt);
+            return true;
+        } catch (InvalidSignatureException e) {
+            return false;
+        }
+    }
 }
@@ -11,88 +11,212 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2015 ForgeRock AS.
  */
 
 package org.forgerock.authz.modules.oauth2;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.util.time.TimeService;
 
 /**
  * <p>Cache for caching AccessToken validation results.</p>
  *
- * <p>The cache is created with a maximum size, which when reached the cache will remove the oldest entry.</p>
+ * <p>The cache is created with a maximum size, which when reached the cache will remove the least recently used
+ * entry. Each entry is removed once the access token expires, as given by the validation response, and invalid
+ * access tokens are only cached if an invalid token cache timeout is configured.</p>
+ *
+ * <p>When an access token is not in the cache, only one request validates it, and any other requests for the same
+ * access token wait for that validation rather than validating it themselves. Validation happens outside of the
+ * cache's lock, so requests for other access tokens are not held up.</p>
  *
  * @since 1.4.0
  */
 class AccessTokenValidationCache {
 
-    private final Map<String, AccessTokenValidationResponse> cache;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> cache;
+    private final long invalidTokenCacheTimeout;
+    private final TimeService timeService;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong totalLoadTime = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
 
     /**
-     * Constructs a new instance of the AccessTokenValidationCache.
+     * Constructs a new instance of the AccessTokenValidationCache, which caches invalid access tokens for
+     * {@link OAuth2Module#DEFAULT_INVALID_TOKEN_CACHE_TIMEOUT}.
      *
      * @param maxSize The maximum size of the cache.
      */
     AccessTokenValidationCache(final int maxSize) {
-        cache = new LinkedHashMap<String, AccessTokenValidationResponse>(maxSize) {
+        this(maxSize, OAuth2Module.DEFAULT_INVALID_TOKEN_CACHE_TIMEOUT, TimeService.SYSTEM);
+    }
+
+    /**
+     * Constructs a new instance of the AccessTokenValidationCache.
+     *
+     * @param maxSize The maximum size of the cache.
+     * @param invalidTokenCacheTimeout The time in milliseconds for which invalid access tokens are cached, or
+     *                                 {@code 0} if they should not be cached.
+     * @param timeService The time service used to expire entries.
+     */
+    AccessTokenValidationCache(final int maxSize, final long invalidTokenCacheTimeout,
+            final TimeService timeService) {
+        this.invalidTokenCacheTimeout = invalidTokenCacheTimeout;
+        this.timeService = timeService;
+        cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
             /**
              * Serial Version UID.
              */
             public static final long serialVersionUID = -1L;
 
             @Override
-            protected boolean removeEldestEntry(Map.Entry<String, AccessTokenValidationResponse> eldestEntry) {
-                return size() > maxSize;
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldestEntry) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
             }
         };
     }
 
     /**
-     * Adds an entry to the cache.
+     * Retrieves an entry from the cache, validating the access token and caching the result if it is not in the
+     * cache. If the access token is already being validated by another request, waits for that validation to
+     * finish.
      *
      * @param accessToken The access token.
-     * @param validationResponse The validation response.
+     * @param accessTokenValidator The validator to validate the access token with if it is not in the cache.
+     * @return The access tokens validation response.
+     * @throws OAuth2Exception If the access token could not be validated.
      */
-    void add(String accessToken, AccessTokenValidationResponse validationResponse) {
+    AccessTokenValidationResponse get(String accessToken, OAuth2AccessTokenValidator accessTokenValidator) {
+        final Entry entry;
+        final boolean load;
+        synchronized (cache) {
+            final Entry cached = getEntry(accessToken, timeService.now());
+            load = cached == null;
+            if (load) {
+                entry = new Entry(accessToken, accessTokenValidator);
+                cache.put(accessToken, entry);
+            } else {
+                entry = cached;
+            }
+        }
+        if (load || !entry.task.isDone()) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        if (load) {
+            load(accessToken, entry);
+        }
         try {
-            lock.writeLock().lock();
-            cache.put(accessToken, validationResponse);
-        } finally {
-            lock.writeLock().unlock();
+            return entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OAuth2Exception("Interrupted while waiting for Access Token validation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OAuth2Exception) {
+                throw (OAuth2Exception) e.getCause();
+            }
+            throw new OAuth2Exception(e.getCause().getMessage(), e.getCause());
         }
     }
 
     /**
-     * Retrieves an entry from the cache.
+     * Returns the current size of the cache.
      *
-     * @param accessToken The access token.
-     * @return The access tokens validation response.
+     * @return The cache size.
      */
-    AccessTokenValidationResponse get(String accessToken) {
-        try {
-            lock.readLock().lock();
-            return cache.get(accessToken);
-        } finally {
-            lock.readLock().unlock();
+    int size() {
+        synchronized (cache) {
+            return cache.size();
         }
     }
 
     /**
-     * Returns the current size of the cache.
+     * Returns a snapshot of the statistics of the cache.
      *
-     * @return The cache size.
+     * @return The cache statistics.
      */
-    int size() {
+    AccessTokenValidationCacheStatistics getStatistics() {
+        return new AccessTokenValidationCacheStatistics(size(), hitCount.get(), missCount.get(), loadCount.get(),
+                loadFailureCount.get(), totalLoadTime.get(), evictionCount.get());
+    }
+
+    /**
+     * Validates an access token which this request has added to the cache, and sets when the entry expires, or
+     * removes it from the cache if it should not be cached.
+     */
+    private void load(String accessToken, Entry entry) {
+        final long start = System.nanoTime();
+        entry.task.run();
+        totalLoadTime.addAndGet(System.nanoTime() - start);
+        loadCount.incrementAndGet();
+        long expiryTime;
         try {
-            lock.readLock().lock();
-            return cache.size();
-        } finally {
-            lock.readLock().unlock();
+            expiryTime = getExpiryTime(entry.task.get());
+        } catch (InterruptedException | ExecutionException e) {
+            loadFailureCount.incrementAndGet();
+            expiryTime = 0L;
+        }
+        entry.expiryTime = expiryTime;
+        if (expiryTime <= timeService.now()) {
+            synchronized (cache) {
+                if (cache.get(accessToken) == entry) {
+                    cache.remove(accessToken);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the entry for an access token, removing it if it has expired. Must be called holding the cache's lock.
+     */
+    private Entry getEntry(String accessToken, long now) {
+        final Entry entry = cache.get(accessToken);
+        if (entry != null && entry.expiryTime <= now) {
+            cache.remove(accessToken);
+            return null;
+        }
+        return entry;
+    }
+
+    private long getExpiryTime(AccessTokenValidationResponse validationResponse) {
+        if (validationResponse.isTokenValid()) {
+            return validationResponse.getExpiryTime();
+        }
+        return timeService.now() + invalidTokenCacheTimeout;
+    }
+
+    /**
+     * A cache entry, which holds the access token's validation response once it has been validated.
+     */
+    private static final class Entry {
+
+        private final FutureTask<AccessTokenValidationResponse> task;
+
+        /** The time at which the entry expires, which is only known once the access token has been validated. */
+        private volatile long expiryTime = Long.MAX_VALUE;
+
+        private Entry(final String accessToken, final OAuth2AccessTokenValidator accessTokenValidator) {
+            task = new FutureTask<>(new Callable<AccessTokenValidationResponse>() {
+                @Override
+                public AccessTokenValidationResponse call() {
+                    return accessTokenValidator.validate(accessToken);
+                }
+            });
         }
     }
 }
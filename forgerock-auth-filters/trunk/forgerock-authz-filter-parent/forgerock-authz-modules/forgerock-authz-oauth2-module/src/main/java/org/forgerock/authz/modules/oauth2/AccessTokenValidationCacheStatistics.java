@@ -0,0 +1,150 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.authz.modules.oauth2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the statistics of an {@link OAuth2Module}'s access token validation cache.
+ *
+ * @since 2.0.0
+ */
+public final class AccessTokenValidationCacheStatistics {
+
+    private final int size;
+    private final long hitCount;
+    private final long missCount;
+    private final long loadCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long evictionCount;
+
+    /**
+     * Constructs a new AccessTokenValidationCacheStatistics.
+     *
+     * @param size The number of entries in the cache.
+     * @param hitCount The number of requests whose access token was found in the cache.
+     * @param missCount The number of requests whose access token was not found in the cache.
+     * @param loadCount The number of times an access token was validated.
+     * @param loadFailureCount The number of times an access token could not be validated.
+     * @param totalLoadTime The total time spent validating access tokens, in nanoseconds.
+     * @param evictionCount The number of entries removed because the cache was full.
+     */
+    AccessTokenValidationCacheStatistics(int size, long hitCount, long missCount, long loadCount,
+            long loadFailureCount, long totalLoadTime, long evictionCount) {
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadCount = loadCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return The cache size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of requests whose access token was found in the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of requests whose access token was not found in the cache, including requests which waited
+     * for another request to validate the same access token.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the proportion of requests whose access token was found in the cache.
+     *
+     * @return The hit rate, between {@code 0} and {@code 1}.
+     */
+    public double getHitRate() {
+        final long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Returns the number of times an access token was validated by the OAuth2 Provider.
+     *
+     * @return The load count.
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Returns the number of times an access token could not be validated by the OAuth2 Provider.
+     *
+     * @return The load failure count.
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Returns the total time spent validating access tokens.
+     *
+     * @param unit The unit to return the time in.
+     * @return The total load time.
+     */
+    public long getTotalLoadTime(TimeUnit unit) {
+        return unit.convert(totalLoadTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the average time spent validating an access token.
+     *
+     * @param unit The unit to return the time in.
+     * @return The average load time, or {@code 0} if no access tokens have been validated.
+     */
+    public long getAverageLoadTime(TimeUnit unit) {
+        return loadCount == 0 ? 0L : unit.convert(totalLoadTime / loadCount, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessTokenValidationCacheStatistics{size=" + size + ", hitCount=" + hitCount + ", missCount="
+                + missCount + ", loadCount=" + loadCount + ", loadFailureCount=" + loadFailureCount
+                + ", totalLoadTime=" + TimeUnit.NANOSECONDS.toMillis(totalLoadTime) + "ms, evictionCount="
+                + evictionCount + "}";
+    }
+}
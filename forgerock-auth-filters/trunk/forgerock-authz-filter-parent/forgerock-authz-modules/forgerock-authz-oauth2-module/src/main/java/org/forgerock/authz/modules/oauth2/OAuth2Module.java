@@ -21,6 +21,7 @@ import org.forgerock.authz.filter.api.AuthorizationResult;
 import org.forgerock.authz.filter.api.AuthorizationContext;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
+import org.forgerock.util.time.TimeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,13 +50,20 @@ public class OAuth2Module {
      */
     public static final String OAUTH2_PROFILE_INFO_CONTEXT_KEY = "org.forgerock.authorization.context.oauth2";
 
+    /**
+     * The default time in milliseconds for which invalid access tokens are cached, so that repeated requests with
+     * the same invalid access token are not each validated.
+     */
+    public static final long DEFAULT_INVALID_TOKEN_CACHE_TIMEOUT = 60_000L;
+
     private volatile OAuth2AccessTokenValidator accessTokenValidator;
     private volatile Set<String> requiredScopes = new HashSet<>();
     private volatile boolean cacheEnabled = true;
     private volatile AccessTokenValidationCache cache;
 
     /**
-     * Creates a new {@code OAuth2Module} instance with the provided configuration.
+     * Creates a new {@code OAuth2Module} instance with the provided configuration, which caches invalid access
+     * tokens for {@link #DEFAULT_INVALID_TOKEN_CACHE_TIMEOUT} if the cache is enabled.
      *
      * @param accessTokenValidator A {@code OAuth2AccessTokenValidator} instance.
      * @param requiredScopes The required OAuth2 scopes for the request to be authorized.
@@ -64,10 +72,25 @@ public class OAuth2Module {
      */
     public OAuth2Module(OAuth2AccessTokenValidator accessTokenValidator,
             Set<String> requiredScopes, boolean cacheEnabled, int cacheSize) {
-        this.accessTokenValidator = accessTokenValidator;
-        this.requiredScopes = requiredScopes;
-        this.cacheEnabled = cacheEnabled;
-        this.cache = new AccessTokenValidationCacheFactory().getCache(cacheSize);
+        this(accessTokenValidator, requiredScopes, cacheEnabled, cacheSize, DEFAULT_INVALID_TOKEN_CACHE_TIMEOUT);
+    }
+
+    /**
+     * Creates a new {@code OAuth2Module} instance with the provided configuration, which caches invalid access
+     * tokens for the given time.
+     *
+     * @param accessTokenValidator A {@code OAuth2AccessTokenValidator} instance.
+     * @param requiredScopes The required OAuth2 scopes for the request to be authorized.
+     * @param cacheEnabled {@code true} if the cache should be used.
+     * @param cacheSize The size of the cache. Only used if {@code cacheEnabled} is set to
+     * @param invalidTokenCacheTimeout The time in milliseconds for which invalid access tokens are cached, or
+     *                                 {@code 0} if they should not be cached. Only used if {@code cacheEnabled} is
+     *                                 set to {@code true}.
+     */
+    public OAuth2Module(OAuth2AccessTokenValidator accessTokenValidator,
+            Set<String> requiredScopes, boolean cacheEnabled, int cacheSize, long invalidTokenCacheTimeout) {
+        this(new AccessTokenValidationCacheFactory(), accessTokenValidator, requiredScopes, cacheEnabled, cacheSize,
+                invalidTokenCacheTimeout);
     }
 
     /**
@@ -78,13 +101,14 @@ public class OAuth2Module {
      * @param requiredScopes The required OAuth2 scopes for the request to be authorized.
      * @param cacheEnabled {@code true} if the cache should be used.
      * @param cacheSize The size of the cache. Only used if {@code cacheEnabled} is set to
+     * @param invalidTokenCacheTimeout The time in milliseconds for which invalid access tokens are cached.
      */
     OAuth2Module(AccessTokenValidationCacheFactory cacheFactory, OAuth2AccessTokenValidator accessTokenValidator,
-            Set<String> requiredScopes, boolean cacheEnabled, int cacheSize) {
+            Set<String> requiredScopes, boolean cacheEnabled, int cacheSize, long invalidTokenCacheTimeout) {
         this.accessTokenValidator = accessTokenValidator;
         this.requiredScopes = requiredScopes;
         this.cacheEnabled = cacheEnabled;
-        this.cache = cacheFactory.getCache(cacheSize);
+        this.cache = cacheFactory.getCache(cacheSize, invalidTokenCacheTimeout);
     }
 
     /**
@@ -105,14 +129,9 @@ public class OAuth2Module {
             final AccessTokenValidationResponse validationResponse;
             try {
                 if (cacheEnabled) {
-                    final AccessTokenValidationResponse entry = cache.get(accessToken);
-                    if (entry != null) {
-                        validationResponse = entry;
-                    } else {
-                        validationResponse = validateAccessToken(accessToken);
-                    }
+                    validationResponse = cache.get(accessToken, accessTokenValidator);
                 } else {
-                    validationResponse = validateAccessToken(accessToken);
+                    validationResponse = accessTokenValidator.validate(accessToken);
                 }
 
                 if (!validationResponse.isTokenValid()) {
@@ -143,19 +162,12 @@ public class OAuth2Module {
     }
 
     /**
-     * Validates the access token and if the cache is enabled will store the result in the cache for subsequent
-     * requests.
+     * Returns a snapshot of the hit, miss and access token validation statistics of the cache.
      *
-     * @param accessToken The access token to validate.
-     * @return An AccessTokenValidationResponse containing the result of the validation.
-     * @throws OAuth2Exception If the access token could not be validated.
+     * @return The cache statistics, or {@code null} if the cache is not enabled.
      */
-    private AccessTokenValidationResponse validateAccessToken(final String accessToken) {
-        final AccessTokenValidationResponse validationResponse = accessTokenValidator.validate(accessToken);
-        if (cacheEnabled) {
-            cache.add(accessToken, validationResponse);
-        }
-        return validationResponse;
+    public AccessTokenValidationCacheStatistics getCacheStatistics() {
+        return cacheEnabled ? cache.getStatistics() : null;
     }
 
     /**
@@ -169,10 +181,11 @@ public class OAuth2Module {
          * Creates a new {@code AccessTokenValidationCache} with the given size.
          *
          * @param size The size of the cache.
+         * @param invalidTokenCacheTimeout The time in milliseconds for which invalid access tokens are cached.
          * @return A new {@code AccessTokenValidationCache} instance.
          */
-        AccessTokenValidationCache getCache(final int size) {
-            return new AccessTokenValidationCache(size);
+        AccessTokenValidationCache getCache(final int size, final long invalidTokenCacheTimeout) {
+            return new AccessTokenValidationCache(size, invalidTokenCacheTimeout, TimeService.SYSTEM);
         }
     }
 }
@@ -19,11 +19,23 @@ package org.forgerock.authz.modules.oauth2;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import org.forgerock.util.time.TimeService;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
 
 public class AccessTokenValidationCacheTest {
 
@@ -39,28 +51,29 @@ public class AccessTokenValidationCacheTest {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        OAuth2AccessTokenValidator validator = validatorFor(accessToken);
 
         //When
-        cache.add(accessToken, validationResponse);
+        cache.get(accessToken, validator);
 
         //Then
         assertEquals(cache.size(), 1);
     }
 
     @Test
-    public void shouldReplaceCacheEntry() {
+    public void shouldNotAddEntryAgainWhenInCache() {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        OAuth2AccessTokenValidator validator = validatorFor(accessToken);
 
         //When
-        cache.add(accessToken, validationResponse);
-        cache.add(accessToken, validationResponse);
+        cache.get(accessToken, validator);
+        cache.get(accessToken, validator);
 
         //Then
         assertEquals(cache.size(), 1);
+        verify(validator, times(1)).validate(accessToken);
     }
 
     @Test
@@ -70,48 +83,64 @@ public class AccessTokenValidationCacheTest {
         String accessToken1 = "ACCESS_TOKEN_1";
         String accessToken2 = "ACCESS_TOKEN_2";
         String accessToken3 = "ACCESS_TOKEN_3";
-        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(0);
-        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(0);
-        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(0);
+        OAuth2AccessTokenValidator validator = validatorFor(accessToken1, accessToken2, accessToken3);
 
         //When
-        cache.add(accessToken1, validationResponse1);
-        cache.add(accessToken2, validationResponse2);
-        cache.add(accessToken3, validationResponse3);
+        cache.get(accessToken1, validator);
+        cache.get(accessToken2, validator);
+        cache.get(accessToken3, validator);
 
         //Then
-        assertNull(cache.get(accessToken1));
-        assertEquals(cache.get(accessToken2), validationResponse2);
-        assertEquals(cache.get(accessToken3), validationResponse3);
+        assertEquals(cache.size(), 2);
+        cache.get(accessToken3, validator);
+        cache.get(accessToken2, validator);
+        cache.get(accessToken1, validator);
+        verify(validator, times(2)).validate(accessToken1);
+        verify(validator, times(1)).validate(accessToken2);
+        verify(validator, times(1)).validate(accessToken3);
     }
 
     @Test
-    public void shouldGetEntryFromCache() {
+    public void shouldRemoveLeastRecentlyUsedEntryWhenCacheFull() {
 
         //Given
-        String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        OAuth2AccessTokenValidator validator = validatorFor("ACCESS_TOKEN_1", "ACCESS_TOKEN_2", "ACCESS_TOKEN_3");
+        cache.get("ACCESS_TOKEN_1", validator);
+        cache.get("ACCESS_TOKEN_2", validator);
 
         //When
-        cache.add(accessToken, validationResponse);
+        cache.get("ACCESS_TOKEN_1", validator);
+        cache.get("ACCESS_TOKEN_3", validator);
 
         //Then
-        assertEquals(cache.get(accessToken), validationResponse);
+        assertEquals(cache.getStatistics().getEvictionCount(), 1);
+        cache.get("ACCESS_TOKEN_1", validator);
+        cache.get("ACCESS_TOKEN_3", validator);
+        cache.get("ACCESS_TOKEN_2", validator);
+        verify(validator, times(1)).validate("ACCESS_TOKEN_1");
+        verify(validator, times(2)).validate("ACCESS_TOKEN_2");
+        verify(validator, times(1)).validate("ACCESS_TOKEN_3");
     }
 
     @Test
-    public void shouldReturnNullWhenAccessTokenNotInCache() {
+    public void shouldValidateEachAccessTokenSeparately() {
 
         //Given
         String accessToken1 = "ACCESS_TOKEN_1";
         String accessToken2 = "ACCESS_TOKEN_2";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        OAuth2AccessTokenValidator validator = mock(OAuth2AccessTokenValidator.class);
+        AccessTokenValidationResponse validationResponse1 = validResponse();
+        AccessTokenValidationResponse validationResponse2 = validResponse();
+        given(validator.validate(accessToken1)).willReturn(validationResponse1);
+        given(validator.validate(accessToken2)).willReturn(validationResponse2);
 
         //When
-        cache.add(accessToken1, validationResponse);
+        cache.get(accessToken1, validator);
+        AccessTokenValidationResponse response = cache.get(accessToken2, validator);
 
         //Then
-        assertNull(cache.get(accessToken2));
+        assertEquals(response, validationResponse2);
+        verify(validator, times(1)).validate(accessToken2);
     }
 
     @Test
@@ -120,17 +149,23 @@ public class AccessTokenValidationCacheTest {
         //Given
         final int runs = 1_000;
         final CountDownLatch latch = new CountDownLatch(runs * 2);
+        final OAuth2AccessTokenValidator validator = new OAuth2AccessTokenValidator() {
+            @Override
+            public AccessTokenValidationResponse validate(String accessToken) {
+                return validResponse();
+            }
+        };
         Runnable reader = new Runnable() {
             @Override
             public void run() {
-                cache.get("");
+                cache.get("", validator);
                 latch.countDown();
             }
         };
         Runnable writer = new Runnable() {
             @Override
             public void run() {
-                cache.add(System.currentTimeMillis() + "", null);
+                cache.get(System.currentTimeMillis() + "", validator);
                 latch.countDown();
             }
         };
@@ -146,4 +181,142 @@ public class AccessTokenValidationCacheTest {
         //Then
         latch.await(10, TimeUnit.MILLISECONDS);
     }
+
+    @Test
+    public void shouldValidateAccessTokenWhenNotInCache() {
+
+        //Given
+        OAuth2AccessTokenValidator validator = mock(OAuth2AccessTokenValidator.class);
+        AccessTokenValidationResponse validationResponse = validResponse();
+        given(validator.validate("ACCESS_TOKEN")).willReturn(validationResponse);
+
+        //When
+        AccessTokenValidationResponse first = cache.get("ACCESS_TOKEN", validator);
+        AccessTokenValidationResponse second = cache.get("ACCESS_TOKEN", validator);
+
+        //Then
+        assertEquals(first, validationResponse);
+        assertEquals(second, validationResponse);
+        verify(validator, times(1)).validate("ACCESS_TOKEN");
+        AccessTokenValidationCacheStatistics statistics = cache.getStatistics();
+        assertEquals(statistics.getHitCount(), 1);
+        assertEquals(statistics.getMissCount(), 1);
+        assertEquals(statistics.getLoadCount(), 1);
+    }
+
+    @Test
+    public void shouldRemoveEntryWhenAccessTokenExpires() {
+
+        //Given
+        TimeService timeService = mock(TimeService.class);
+        cache = new AccessTokenValidationCache(2, 0L, timeService);
+        OAuth2AccessTokenValidator validator = mock(OAuth2AccessTokenValidator.class);
+        AccessTokenValidationResponse validationResponse = validResponse();
+        given(validator.validate("ACCESS_TOKEN")).willReturn(validationResponse);
+        given(timeService.now()).willReturn(0L);
+        cache.get("ACCESS_TOKEN", validator);
+
+        //When
+        given(timeService.now()).willReturn(validationResponse.getExpiryTime());
+        cache.get("ACCESS_TOKEN", validator);
+
+        //Then
+        verify(validator, times(2)).validate("ACCESS_TOKEN");
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void shouldCacheInvalidAccessTokenForInvalidTokenCacheTimeout() {
+
+        //Given
+        TimeService timeService = mock(TimeService.class);
+        cache = new AccessTokenValidationCache(2, 1_000L, timeService);
+        OAuth2AccessTokenValidator validator = mock(OAuth2AccessTokenValidator.class);
+        given(validator.validate("ACCESS_TOKEN")).willReturn(new AccessTokenValidationResponse(0));
+        given(timeService.now()).willReturn(0L);
+
+        //When
+        cache.get("ACCESS_TOKEN", validator);
+        given(timeService.now()).willReturn(999L);
+        cache.get("ACCESS_TOKEN", validator);
+        given(timeService.now()).willReturn(1_000L);
+        cache.get("ACCESS_TOKEN", validator);
+
+        //Then
+        verify(validator, times(2)).validate("ACCESS_TOKEN");
+    }
+
+    @Test
+    public void shouldNotCacheAccessTokenWhenValidationFails() {
+
+        //Given
+        OAuth2AccessTokenValidator validator = mock(OAuth2AccessTokenValidator.class);
+        given(validator.validate("ACCESS_TOKEN")).willThrow(new OAuth2Exception("FAILED"));
+
+        //When
+        try {
+            cache.get("ACCESS_TOKEN", validator);
+            fail("Expected OAuth2Exception");
+        } catch (OAuth2Exception e) {
+            assertEquals(e.getMessage(), "FAILED");
+        }
+
+        //Then
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getStatistics().getLoadFailureCount(), 1);
+    }
+
+    @Test
+    public void shouldOnlyValidateAccessTokenOnceForConcurrentRequests() throws Exception {
+
+        //Given
+        final CountDownLatch validating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final OAuth2AccessTokenValidator validator = mock(OAuth2AccessTokenValidator.class);
+        final AccessTokenValidationResponse validationResponse = validResponse();
+        given(validator.validate("ACCESS_TOKEN")).willAnswer(new Answer<AccessTokenValidationResponse>() {
+            @Override
+            public AccessTokenValidationResponse answer(InvocationOnMock invocation) throws Throwable {
+                validating.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return validationResponse;
+            }
+        });
+        Callable<AccessTokenValidationResponse> request = new Callable<AccessTokenValidationResponse>() {
+            @Override
+            public AccessTokenValidationResponse call() {
+                return cache.get("ACCESS_TOKEN", validator);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            //When
+            Future<AccessTokenValidationResponse> first = executor.submit(request);
+            validating.await(10, TimeUnit.SECONDS);
+            Future<AccessTokenValidationResponse> second = executor.submit(request);
+            Future<AccessTokenValidationResponse> third = executor.submit(request);
+            release.countDown();
+
+            //Then
+            assertEquals(first.get(10, TimeUnit.SECONDS), validationResponse);
+            assertEquals(second.get(10, TimeUnit.SECONDS), validationResponse);
+            assertEquals(third.get(10, TimeUnit.SECONDS), validationResponse);
+            verify(validator, times(1)).validate("ACCESS_TOKEN");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static OAuth2AccessTokenValidator validatorFor(String... accessTokens) {
+        OAuth2AccessTokenValidator validator = mock(OAuth2AccessTokenValidator.class);
+        for (String accessToken : accessTokens) {
+            given(validator.validate(accessToken)).willReturn(validResponse());
+        }
+        return validator;
+    }
+
+    private static AccessTokenValidationResponse validResponse() {
+        return new AccessTokenValidationResponse(System.currentTimeMillis() + 60_000);
+    }
 }
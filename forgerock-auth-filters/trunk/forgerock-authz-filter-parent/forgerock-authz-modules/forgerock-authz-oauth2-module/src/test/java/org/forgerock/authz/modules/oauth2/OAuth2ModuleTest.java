@@ -33,12 +33,15 @@ import static org.forgerock.authz.modules.oauth2.OAuth2Module.AccessTokenValidat
 import static org.forgerock.authz.modules.oauth2.OAuth2Module.OAUTH2_PROFILE_INFO_CONTEXT_KEY;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 public class OAuth2ModuleTest {
@@ -56,12 +59,12 @@ public class OAuth2ModuleTest {
         tokenValidator = mock(OAuth2AccessTokenValidator.class);
 
         cache = mock(AccessTokenValidationCache.class);
-        given(cacheFactory.getCache(anyInt())).willReturn(cache);
+        given(cacheFactory.getCache(anyInt(), anyLong())).willReturn(cache);
     }
 
     private void createOAuth2Module(boolean cacheEnabled, String... requiredScopes) {
         oAuth2Module = new OAuth2Module(cacheFactory, tokenValidator,
-                new HashSet<>(Arrays.asList(requiredScopes)), cacheEnabled, 10);
+                new HashSet<>(Arrays.asList(requiredScopes)), cacheEnabled, 10, 0L);
     }
 
     @Test
@@ -73,7 +76,7 @@ public class OAuth2ModuleTest {
         AccessTokenValidationResponse validationResponse = mock(AccessTokenValidationResponse.class);
 
         createOAuth2Module(true);
-        given(cache.get("ACCESS_TOKEN")).willReturn(validationResponse);
+        given(cache.get("ACCESS_TOKEN", tokenValidator)).willReturn(validationResponse);
         given(validationResponse.isTokenValid()).willReturn(true);
         given(validationResponse.getTokenScopes()).willReturn(Collections.singleton("SCOPE_A"));
 
@@ -94,7 +97,7 @@ public class OAuth2ModuleTest {
         AccessTokenValidationResponse validationResponse = mock(AccessTokenValidationResponse.class);
 
         createOAuth2Module(true);
-        given(cache.get("ACCESS_TOKEN")).willReturn(validationResponse);
+        given(cache.get("ACCESS_TOKEN", tokenValidator)).willReturn(validationResponse);
         given(validationResponse.isTokenValid()).willReturn(false);
         given(validationResponse.getTokenScopes()).willReturn(Collections.singleton("SCOPE_A"));
 
@@ -115,7 +118,7 @@ public class OAuth2ModuleTest {
         AccessTokenValidationResponse validationResponse = mock(AccessTokenValidationResponse.class);
 
         createOAuth2Module(true, "SCOPE_A", "SCOPE_B");
-        given(cache.get("ACCESS_TOKEN")).willReturn(validationResponse);
+        given(cache.get("ACCESS_TOKEN", tokenValidator)).willReturn(validationResponse);
         given(validationResponse.isTokenValid()).willReturn(true);
         given(validationResponse.getTokenScopes()).willReturn(Collections.singleton("SCOPE_A"));
 
@@ -133,13 +136,11 @@ public class OAuth2ModuleTest {
         //Given
         String accessToken = "ACCESS_TOKEN";
         AuthorizationContext context = mock(AuthorizationContext.class);
-        AccessTokenValidationResponse validationResponse = mock(AccessTokenValidationResponse.class);
+        AccessTokenValidationResponse validationResponse = validResponse("SCOPE_A");
 
+        given(cacheFactory.getCache(anyInt(), anyLong())).willReturn(new AccessTokenValidationCache(10));
         createOAuth2Module(true);
-        given(cache.get("ACCESS_TOKEN")).willReturn(null);
         given(tokenValidator.validate("ACCESS_TOKEN")).willReturn(validationResponse);
-        given(validationResponse.isTokenValid()).willReturn(true);
-        given(validationResponse.getTokenScopes()).willReturn(Collections.singleton("SCOPE_A"));
 
         //When
         Promise<AuthorizationResult, AuthorizationException> promise = oAuth2Module.authorize(accessToken, context);
@@ -155,15 +156,11 @@ public class OAuth2ModuleTest {
         //Given
         String accessToken = "ACCESS_TOKEN";
         AuthorizationContext context = mock(AuthorizationContext.class);
-        AccessTokenValidationResponse validationResponse = mock(AccessTokenValidationResponse.class);
+        AccessTokenValidationResponse validationResponse = validResponse("SCOPE_A");
 
+        given(cacheFactory.getCache(anyInt(), anyLong())).willReturn(new AccessTokenValidationCache(10));
         createOAuth2Module(true);
-        given(cache.get("ACCESS_TOKEN"))
-                .willReturn(null)
-                .willReturn(validationResponse);
         given(tokenValidator.validate("ACCESS_TOKEN")).willReturn(validationResponse);
-        given(validationResponse.isTokenValid()).willReturn(true);
-        given(validationResponse.getTokenScopes()).willReturn(Collections.singleton("SCOPE_A"));
 
         oAuth2Module.authorize(accessToken, context);
 
@@ -172,7 +169,48 @@ public class OAuth2ModuleTest {
 
         //Then
         verify(tokenValidator, times(1)).validate("ACCESS_TOKEN");
-        verify(cache, times(2)).get("ACCESS_TOKEN");
+        assertEquals(oAuth2Module.getCacheStatistics().getHitCount(), 1);
+        assertEquals(oAuth2Module.getCacheStatistics().getMissCount(), 1);
+    }
+
+    @Test
+    public void shouldCacheInvalidAccessTokenByDefault() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+
+        oAuth2Module = new OAuth2Module(tokenValidator, Collections.<String>emptySet(), true, 10);
+        given(tokenValidator.validate("ACCESS_TOKEN")).willReturn(new AccessTokenValidationResponse(0));
+
+        oAuth2Module.authorize(accessToken, context);
+
+        //When
+        Promise<AuthorizationResult, AuthorizationException> promise = oAuth2Module.authorize(accessToken, context);
+
+        //Then
+        assertFalse(promise.getOrThrowUninterruptibly().isAuthorized());
+        verify(tokenValidator, times(1)).validate("ACCESS_TOKEN");
+    }
+
+    @Test
+    public void shouldNotCacheInvalidAccessTokenWhenInvalidTokenCacheTimeoutIsZero() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+
+        oAuth2Module = new OAuth2Module(tokenValidator, Collections.<String>emptySet(), true, 10, 0L);
+        given(tokenValidator.validate("ACCESS_TOKEN")).willReturn(new AccessTokenValidationResponse(0));
+
+        oAuth2Module.authorize(accessToken, context);
+
+        //When
+        Promise<AuthorizationResult, AuthorizationException> promise = oAuth2Module.authorize(accessToken, context);
+
+        //Then
+        assertFalse(promise.getOrThrowUninterruptibly().isAuthorized());
+        verify(tokenValidator, times(2)).validate("ACCESS_TOKEN");
     }
 
     @Test
@@ -239,6 +277,7 @@ public class OAuth2ModuleTest {
         //Then
         verify(tokenValidator, times(2)).validate("ACCESS_TOKEN");
         verifyZeroInteractions(cache);
+        assertNull(oAuth2Module.getCacheStatistics());
     }
 
     @Test (expectedExceptions = AuthorizationException.class)
@@ -258,4 +297,9 @@ public class OAuth2ModuleTest {
         assertTrue(promise.isDone());
         promise.getOrThrowUninterruptibly();
     }
+
+    private AccessTokenValidationResponse validResponse(String... scopes) {
+        return new AccessTokenValidationResponse(System.currentTimeMillis() + 60_000,
+                new HashSet<>(Arrays.asList(scopes)));
+    }
 }
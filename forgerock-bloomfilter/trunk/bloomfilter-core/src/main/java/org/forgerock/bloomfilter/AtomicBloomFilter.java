@@ -17,25 +17,25 @@
 package org.forgerock.bloomfilter;
 
 import org.forgerock.guava.common.hash.Funnel;
-import org.forgerock.guava.common.hash.Hashing;
-import org.forgerock.guava.common.primitives.Longs;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.nio.LongBuffer;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * A BloomFilter that stores elements in an {@link AtomicLongArray} and uses atomic compare-and-swap operations to
- * ensure thread safety.
+ * ensure thread safety. Changed words are tracked so that the filter can be replicated with {@link BloomFilterDelta}s.
  */
 @ThreadSafe
-final class AtomicBloomFilter<T> implements BloomFilter<T> {
+final class AtomicBloomFilter<T> implements MergeableBloomFilter<T> {
     private static final int BITS_PER_WORD = 64;
 
     private final long capacity;
     private final double falsePositiveProbability;
     private final AtomicLongArray bits;
+    private final DirtyBlockTracker dirtyBlocks;
     private final AtomicLong bitCount = new AtomicLong(0);
     private final Funnel<? super T> funnel;
     private final int numHashFunctions;
@@ -58,15 +58,16 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
         this.bitSize = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
         int arraySize = (int) Math.ceil((double) bitSize / (double) BITS_PER_WORD);
         this.bits = new AtomicLongArray(arraySize);
+        this.dirtyBlocks = new DirtyBlockTracker(arraySize);
         this.numHashFunctions = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
     }
 
     @Override
     public void add(final T element) {
         // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
-        byte[] hashBytes = Hashing.murmur3_128().hashObject(element, funnel).asBytes();
-        long hash1 = lowerEight(hashBytes);
-        long hash2 = upperEight(hashBytes);
+        final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
+        long hash1 = probe.hash1(funnel);
+        long hash2 = probe.hash2(funnel);
 
         long combinedHash = hash1;
 
@@ -76,7 +77,6 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
         }
     }
 
-
     @Override
     public void addAll(final Collection<? extends T> elements) {
         for (T element : elements) {
@@ -86,10 +86,14 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
 
     @Override
     public boolean mightContain(final T element) {
+        return mightContain(new BloomFilterProbe<T>(element));
+    }
+
+    @Override
+    public boolean mightContain(final BloomFilterProbe<T> probe) {
         // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
-        byte[] hashBytes = Hashing.murmur3_128().hashObject(element, funnel).asBytes();
-        long hash1 = lowerEight(hashBytes);
-        long hash2 = upperEight(hashBytes);
+        long hash1 = probe.hash1(funnel);
+        long hash2 = probe.hash2(funnel);
 
         long combinedHash = hash1;
 
@@ -108,6 +112,44 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
 
     }
 
+    @Override
+    public Layout getLayout() {
+        return Layout.STANDARD;
+    }
+
+    @Override
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    @Override
+    public long getNumBits() {
+        return bitSize;
+    }
+
+    @Override
+    public int getNumWords() {
+        return bits.length();
+    }
+
+    @Override
+    public void copyWordsTo(final LongBuffer target) {
+        for (int i = 0; i < bits.length(); ++i) {
+            target.put(bits.get(i));
+        }
+    }
+
+    @Override
+    public BloomFilterDelta.Blocks exportChanges(final long sinceSequence) {
+        return dirtyBlocks.changedSince(bits, sinceSequence);
+    }
+
+    @Override
+    public void mergeChanges(final BloomFilterDelta.Bucket delta) {
+        delta.checkCompatible(this);
+        bitCount.addAndGet(dirtyBlocks.merge(bits, delta.blocks));
+    }
+
     @Override
     public BloomFilterStatistics getStatistics() {
         double expectedFpp = expectedFpp();
@@ -137,6 +179,7 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
 
         if (changed) {
             bitCount.incrementAndGet();
+            dirtyBlocks.markChanged(bucket);
         }
 
         return changed;
@@ -151,12 +194,4 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
         // Based on Guava BloomFilterStrategies.BitArray, but adapted to AtomicLongArray.
         return (bits.get((int) (index >>> 6)) & 1L << (int) index) != 0L;
     }
-
-    private long lowerEight(byte[] bytes) {
-        return Longs.fromBytes(bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]);
-    }
-
-    private long upperEight(byte[] bytes) {
-        return Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8]);
-    }
 }
@@ -0,0 +1,206 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.forgerock.guava.common.hash.Funnel;
+import org.forgerock.util.Reject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counting bloom filter that packs 4-bit or 8-bit counters into an {@link AtomicLongArray} and uses atomic
+ * compare-and-swap operations to update them, in the same way as {@link AtomicBloomFilter} does for individual bits.
+ * Counters saturate at their maximum value and are never decremented thereafter.
+ */
+@ThreadSafe
+final class AtomicCountingBloomFilter<T> implements CountingBloomFilter<T>, ProbeableBloomFilter<T> {
+
+    private final long capacity;
+    private final double falsePositiveProbability;
+    private final AtomicLongArray counters;
+    private final AtomicLong nonZeroCounters = new AtomicLong(0);
+    private final AtomicLong saturatedCounters = new AtomicLong(0);
+    private final Funnel<? super T> funnel;
+    private final int numHashFunctions;
+    private final long numCounters;
+    private final int counterWidth;
+    private final int countersPerWordShift;
+    private final long counterMask;
+
+    /**
+     * Constructs an atomic counting bloom filter with the given parameters.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing.
+     * @param capacity the desired capacity of the bloom filter.
+     * @param falsePositiveProbability the overall false positive probability to maintain.
+     * @param counterWidth the width of each counter in bits: either 4 or 8.
+     */
+    AtomicCountingBloomFilter(final Funnel<? super T> funnel,
+                              final long capacity,
+                              final double falsePositiveProbability,
+                              final int counterWidth) {
+        Reject.ifFalse(counterWidth == 4 || counterWidth == 8, "Counter width must be 4 or 8 bits");
+        this.funnel = funnel;
+        this.capacity = capacity;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.counterWidth = counterWidth;
+        this.counterMask = (1L << counterWidth) - 1L;
+        this.countersPerWordShift = Integer.numberOfTrailingZeros(Long.SIZE / counterWidth);
+
+        // Each counter takes the place of a single bit in a standard bloom filter
+        this.numCounters = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
+        final int countersPerWord = 1 << countersPerWordShift;
+        this.counters = new AtomicLongArray((int) ((numCounters + countersPerWord - 1) / countersPerWord));
+        this.numHashFunctions = BloomFilterStatistics.optimalNumberOfHashFunctions(numCounters, capacity);
+    }
+
+    @Override
+    public void add(final T element) {
+        // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
+        final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
+        final long hash2 = probe.hash2(funnel);
+        long combinedHash = probe.hash1(funnel);
+
+        for (int i = 0; i < numHashFunctions; ++i) {
+            increment((combinedHash & Long.MAX_VALUE) % numCounters);
+            combinedHash += hash2;
+        }
+    }
+
+    @Override
+    public void addAll(final Collection<? extends T> elements) {
+        for (T element : elements) {
+            add(element);
+        }
+    }
+
+    @Override
+    public void remove(final T element) {
+        final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
+        if (!mightContain(probe)) {
+            return;
+        }
+        final long hash2 = probe.hash2(funnel);
+        long combinedHash = probe.hash1(funnel);
+
+        for (int i = 0; i < numHashFunctions; ++i) {
+            decrement((combinedHash & Long.MAX_VALUE) % numCounters);
+            combinedHash += hash2;
+        }
+    }
+
+    @Override
+    public boolean mightContain(final T element) {
+        return mightContain(new BloomFilterProbe<T>(element));
+    }
+
+    @Override
+    public boolean mightContain(final BloomFilterProbe<T> probe) {
+        final long hash2 = probe.hash2(funnel);
+        long combinedHash = probe.hash1(funnel);
+
+        for (int i = 0; i < numHashFunctions; ++i) {
+            if (count((combinedHash & Long.MAX_VALUE) % numCounters) == 0L) {
+                return false;
+            }
+            combinedHash += hash2;
+        }
+
+        return true;
+    }
+
+    @Override
+    public BloomFilterStatistics getStatistics() {
+        final double nonZero = nonZeroCounters.get();
+        final double expectedFpp = Math.pow(nonZero / (double) numCounters, (double) numHashFunctions);
+        // Estimate the current cardinality of the bloom filter
+        final long cardinality = (long) -((numCounters * Math.log(1.0d - nonZero / (double) numCounters))
+                / numHashFunctions);
+
+        return new BloomFilterStatistics(falsePositiveProbability, expectedFpp, capacity, numCounters * counterWidth,
+                Long.MAX_VALUE, capacity - cardinality, numCounters, saturatedCounters.get());
+    }
+
+    /**
+     * Atomically increments the counter at the given index, unless it is already saturated.
+     *
+     * @param index the index of the counter to increment.
+     */
+    private void increment(final long index) {
+        final int word = (int) (index >>> countersPerWordShift);
+        final int shift = counterShift(index);
+        long prev, count;
+        do {
+            prev = counters.get(word);
+            count = (prev >>> shift) & counterMask;
+            if (count == counterMask) {
+                return;
+            }
+        } while (!counters.compareAndSet(word, prev, prev + (1L << shift)));
+
+        if (count == 0L) {
+            nonZeroCounters.incrementAndGet();
+        }
+        if (count + 1L == counterMask) {
+            saturatedCounters.incrementAndGet();
+        }
+    }
+
+    /**
+     * Atomically decrements the counter at the given index, unless it is zero or saturated.
+     *
+     * @param index the index of the counter to decrement.
+     */
+    private void decrement(final long index) {
+        final int word = (int) (index >>> countersPerWordShift);
+        final int shift = counterShift(index);
+        long prev, count;
+        do {
+            prev = counters.get(word);
+            count = (prev >>> shift) & counterMask;
+            if (count == 0L || count == counterMask) {
+                return;
+            }
+        } while (!counters.compareAndSet(word, prev, prev - (1L << shift)));
+
+        if (count == 1L) {
+            nonZeroCounters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Atomically reads the counter at the given index.
+     *
+     * @param index the index of the counter to read.
+     * @return the current value of the counter.
+     */
+    private long count(final long index) {
+        return (counters.get((int) (index >>> countersPerWordShift)) >>> counterShift(index)) & counterMask;
+    }
+
+    private int counterShift(final long index) {
+        return (int) (index & ((1 << countersPerWordShift) - 1)) * counterWidth;
+    }
+
+    @Override
+    public String toString() {
+        return "AtomicCountingBloomFilter{counterWidth=" + counterWidth + ", statistics=" + getStatistics() + '}';
+    }
+}
@@ -119,7 +119,8 @@ final class BatchingBloomFilter<T> implements BloomFilter<T> {
         final BloomFilterStatistics stats = delegate.getStatistics();
         return new BloomFilterStatistics(stats.getConfiguredFalsePositiveProbability(),
                 stats.getExpectedFalsePositiveProbability(), stats.getCapacity(), stats.getBitSize(),
-                stats.getExpiryTime(), stats.getEstimatedRemainingCapacity() - buffer.size());
+                stats.getExpiryTime(), stats.getEstimatedRemainingCapacity() - buffer.size(), stats.getCounterCount(),
+                stats.getSaturatedCounterCount());
     }
 
     @Override
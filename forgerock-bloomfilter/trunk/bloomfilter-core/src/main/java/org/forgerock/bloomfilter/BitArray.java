@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2011 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+// Portions Copyrighted 2015 ForgeRock AS.
+
+package org.forgerock.bloomfilter;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A simple, non-thread-safe bit-vector used as the backing store for the {@link CopyOnWriteBloomFilter} and
+ * {@link SynchronizedBloomFilter} implementations. Thread-safety is the responsibility of the enclosing filter. The
+ * hashing strategy matches Guava's {@code MURMUR128_MITZ_64} strategy so that the filters behave identically to the
+ * Guava BloomFilter they replace, but allows the element hash to be supplied pre-computed.
+ */
+@NotThreadSafe
+final class BitArray {
+    private final long[] data;
+    private long bitCount;
+
+    /**
+     * Constructs a bit array with at least the given number of bits, rounded up to a whole number of words. As with
+     * the Guava implementation this replaces, a size of zero bits is rounded up to one word.
+     *
+     * @param bits the minimum number of bits to store.
+     */
+    BitArray(final long bits) {
+        this(new long[Math.max(1, (int) Math.ceil((double) bits / (double) Long.SIZE))], 0L);
+    }
+
+    private BitArray(final long[] data, final long bitCount) {
+        if (data.length == 0) {
+            throw new IllegalArgumentException("data length is zero!");
+        }
+        this.data = data;
+        this.bitCount = bitCount;
+    }
+
+    /**
+     * Sets all of the bits for an element with the given hash.
+     *
+     * @param hash1 the lower 64 bits of the element hash.
+     * @param hash2 the upper 64 bits of the element hash.
+     * @param numHashFunctions the number of bits to set per element.
+     * @return {@code true} if any bits changed as a result.
+     */
+    boolean put(final long hash1, final long hash2, final int numHashFunctions) {
+        final long bitSize = bitSize();
+        boolean bitsChanged = false;
+        long combinedHash = hash1;
+        for (int i = 0; i < numHashFunctions; ++i) {
+            bitsChanged |= set((combinedHash & Long.MAX_VALUE) % bitSize);
+            combinedHash += hash2;
+        }
+        return bitsChanged;
+    }
+
+    /**
+     * Tests whether all of the bits for an element with the given hash are set.
+     *
+     * @param hash1 the lower 64 bits of the element hash.
+     * @param hash2 the upper 64 bits of the element hash.
+     * @param numHashFunctions the number of bits set per element.
+     * @return {@code true} if the element might be present, or {@code false} if it is definitely not present.
+     */
+    boolean mightContain(final long hash1, final long hash2, final int numHashFunctions) {
+        final long bitSize = bitSize();
+        long combinedHash = hash1;
+        for (int i = 0; i < numHashFunctions; ++i) {
+            if (!get((combinedHash & Long.MAX_VALUE) % bitSize)) {
+                return false;
+            }
+            combinedHash += hash2;
+        }
+        return true;
+    }
+
+    /**
+     * The expected probability of false positives given the number of bits currently set.
+     *
+     * @param numHashFunctions the number of bits set per element.
+     * @return the expected false positive probability.
+     */
+    double expectedFpp(final int numHashFunctions) {
+        return Math.pow((double) bitCount / (double) bitSize(), (double) numHashFunctions);
+    }
+
+    /**
+     * Returns {@code true} if the bit changed value.
+     */
+    boolean set(final long index) {
+        if (!get(index)) {
+            data[(int) (index >>> 6)] |= (1L << index);
+            bitCount++;
+            return true;
+        }
+        return false;
+    }
+
+    boolean get(final long index) {
+        return (data[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Number of bits.
+     */
+    long bitSize() {
+        return (long) data.length * Long.SIZE;
+    }
+
+    /**
+     * Number of set bits (1s).
+     */
+    long bitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Number of 64-bit words.
+     */
+    int numWords() {
+        return data.length;
+    }
+
+    /**
+     * Copies the words of this bit array into the given buffer, starting at its current position.
+     */
+    void copyTo(final LongBuffer target) {
+        target.put(data);
+    }
+
+    /**
+     * Returns an independent copy of this bit array.
+     */
+    BitArray copy() {
+        return new BitArray(data.clone(), bitCount);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof BitArray) {
+            BitArray bitArray = (BitArray) o;
+            return Arrays.equals(data, bitArray.data);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(data);
+    }
+}
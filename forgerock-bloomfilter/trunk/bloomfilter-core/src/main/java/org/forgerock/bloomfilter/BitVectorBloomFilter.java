@@ -0,0 +1,71 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import java.nio.LongBuffer;
+
+/**
+ * A bloom filter that is backed by a bit-vector of 64-bit words, and which exposes that bit-vector so that it can be
+ * persisted (see {@link BloomFilterSnapshots}) and later reconstructed as a {@link MappedBloomFilter}.
+ *
+ * @param <T> the type of elements contained in the bloom filter.
+ */
+interface BitVectorBloomFilter<T> extends ProbeableBloomFilter<T> {
+
+    /**
+     * The layout of bits within the bit-vector, which determines how element hashes are mapped to bit indexes.
+     */
+    enum Layout {
+        /**
+         * Bits for an element are spread across the entire bit-vector, as in {@link AtomicBloomFilter}.
+         */
+        STANDARD,
+        /**
+         * Bits for an element all fall within a single cache-line sized block, as in {@link BlockedBloomFilter}.
+         */
+        BLOCKED
+    }
+
+    /**
+     * The layout of bits within the bit-vector.
+     */
+    Layout getLayout();
+
+    /**
+     * The number of bits set per element.
+     */
+    int getNumHashFunctions();
+
+    /**
+     * The number of addressable bits used when mapping element hashes to bit indexes. This may be less than
+     * {@code 64 * getNumWords()} if the final word is only partially used.
+     */
+    long getNumBits();
+
+    /**
+     * The number of 64-bit words in the bit-vector.
+     */
+    int getNumWords();
+
+    /**
+     * Copies the current contents of the bit-vector into the given buffer, starting at its current position. Elements
+     * that are added concurrently with this method may or may not be included in the copy.
+     *
+     * @param target the buffer to copy into, with at least {@link #getNumWords()} words remaining.
+     */
+    void copyWordsTo(LongBuffer target);
+}
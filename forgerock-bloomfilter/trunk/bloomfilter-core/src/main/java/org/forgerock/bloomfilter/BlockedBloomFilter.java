@@ -0,0 +1,238 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.forgerock.guava.common.hash.Funnel;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A cache-line blocked Bloom Filter. The bit-vector is divided into 512-bit (64-byte) blocks and all of the bits for
+ * a given element are set within a single block, chosen by the element hash. A membership test therefore touches one
+ * 512-bit block, typically one or two cache lines as the backing array is not cache-line aligned, rather than up to
+ * one cache line per hash function as in {@link AtomicBloomFilter}. The
+ * trade-off is a slightly higher false positive probability for the same number of bits, as elements are not spread
+ * evenly across blocks. The filter is sized using
+ * {@link BloomFilterStatistics#optimumBlockedBitSize(long, double, int)} to compensate, so it uses a little more memory
+ * than an unblocked filter with the same configured false positive probability.
+ * <p/>
+ * Like {@link AtomicBloomFilter}, bits are stored in an {@link AtomicLongArray} and updated with atomic
+ * compare-and-swap operations, and changed blocks are tracked so that the filter can be replicated with
+ * {@link BloomFilterDelta}s.
+ *
+ * @see <a href="http://algo2.iti.kit.edu/documents/cacheefficientbloomfilters-jea.pdf">Cache-, Hash- and
+ * Space-Efficient Bloom Filters</a> by Putze et al., <em>Journal of Experimental Algorithmics</em>, 14, 2009.
+ */
+@ThreadSafe
+final class BlockedBloomFilter<T> implements MergeableBloomFilter<T> {
+    /** Number of bits in each block: the size of a typical 64-byte cache line. */
+    static final int BLOCK_BITS = 512;
+    static final int WORDS_PER_BLOCK = BLOCK_BITS / Long.SIZE;
+    /** Golden ratio increment used to derive independent in-block bit positions from a single hash. */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long capacity;
+    private final double falsePositiveProbability;
+    private final AtomicLongArray bits;
+    private final DirtyBlockTracker dirtyBlocks;
+    private final AtomicLong bitCount = new AtomicLong(0);
+    private final Funnel<? super T> funnel;
+    private final int numHashFunctions;
+    private final long bitSize;
+    private final int numBlocks;
+
+    /**
+     * Constructs a blocked bloom filter with the given parameters.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing.
+     * @param capacity the desired capacity of the bloom filter.
+     * @param falsePositiveProbability the overall false positive probability to maintain.
+     */
+    BlockedBloomFilter(final Funnel<? super T> funnel,
+                       final long capacity,
+                       final double falsePositiveProbability) {
+        this.funnel = funnel;
+        this.capacity = capacity;
+        this.falsePositiveProbability = falsePositiveProbability;
+
+        this.bitSize = BloomFilterStatistics.optimumBlockedBitSize(capacity, falsePositiveProbability, BLOCK_BITS);
+        this.numBlocks = (int) (bitSize / BLOCK_BITS);
+        this.bits = new AtomicLongArray(numBlocks * WORDS_PER_BLOCK);
+        this.dirtyBlocks = new DirtyBlockTracker(numBlocks * WORDS_PER_BLOCK);
+        this.numHashFunctions = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
+    }
+
+    @Override
+    public void add(final T element) {
+        final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
+        final int firstWord = firstWordOfBlock(probe.hash1(funnel), numBlocks);
+        final long hash2 = probe.hash2(funnel);
+
+        for (int i = 0; i < numHashFunctions; ++i) {
+            set(firstWord, bitInBlock(hash2, i));
+        }
+    }
+
+    @Override
+    public void addAll(final Collection<? extends T> elements) {
+        for (T element : elements) {
+            add(element);
+        }
+    }
+
+    @Override
+    public boolean mightContain(final T element) {
+        return mightContain(new BloomFilterProbe<T>(element));
+    }
+
+    @Override
+    public boolean mightContain(final BloomFilterProbe<T> probe) {
+        final int firstWord = firstWordOfBlock(probe.hash1(funnel), numBlocks);
+        final long hash2 = probe.hash2(funnel);
+
+        for (int i = 0; i < numHashFunctions; ++i) {
+            if (!get(firstWord, bitInBlock(hash2, i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.BLOCKED;
+    }
+
+    @Override
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    @Override
+    public long getNumBits() {
+        return bitSize;
+    }
+
+    @Override
+    public int getNumWords() {
+        return bits.length();
+    }
+
+    @Override
+    public void copyWordsTo(final LongBuffer target) {
+        for (int i = 0; i < bits.length(); ++i) {
+            target.put(bits.get(i));
+        }
+    }
+
+    @Override
+    public BloomFilterDelta.Blocks exportChanges(final long sinceSequence) {
+        return dirtyBlocks.changedSince(bits, sinceSequence);
+    }
+
+    @Override
+    public void mergeChanges(final BloomFilterDelta.Bucket delta) {
+        delta.checkCompatible(this);
+        bitCount.addAndGet(dirtyBlocks.merge(bits, delta.blocks));
+    }
+
+    @Override
+    public BloomFilterStatistics getStatistics() {
+        // Estimate the current cardinality of the bloom filter
+        final long cardinality =
+                (long) -((bitSize * Math.log(1.0d - bitCount.get() / (double) bitSize)) / numHashFunctions);
+        final double expectedFpp = BloomFilterStatistics.blockedFalsePositiveProbability(bitSize, cardinality,
+                numHashFunctions, BLOCK_BITS);
+
+        return new BloomFilterStatistics(falsePositiveProbability, expectedFpp, capacity, bitSize, Long.MAX_VALUE,
+                capacity - cardinality);
+    }
+
+    /**
+     * Selects the block for an element and returns the index of the first word of that block.
+     *
+     * @param hash1 the hash used to select the block.
+     * @param numBlocks the total number of blocks in the bit array.
+     * @return the index of the first word of the block in the bit array.
+     */
+    static int firstWordOfBlock(final long hash1, final int numBlocks) {
+        return (int) ((hash1 & Long.MAX_VALUE) % numBlocks) * WORDS_PER_BLOCK;
+    }
+
+    /**
+     * Derives the i'th bit position within a block from the second half of the element hash. Each position is taken
+     * from the top bits of a mixed value so that positions are independent of the block selection and of each other.
+     *
+     * @param hash2 the hash used to select bits within the block.
+     * @param i the index of the hash function.
+     * @return a bit index in the range [0, {@link #BLOCK_BITS}).
+     */
+    static int bitInBlock(final long hash2, final int i) {
+        // MurmurHash3 64-bit finaliser
+        long h = hash2 + (i + 1) * GOLDEN_GAMMA;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) (h >>> (Long.SIZE - 9));
+    }
+
+    /**
+     * Atomically sets a bit within a block.
+     *
+     * @param firstWord the index of the first word of the block.
+     * @param bitIndex the index of the bit within the block.
+     * @return true if the bits changed as a result of setting this index.
+     */
+    private boolean set(final int firstWord, final int bitIndex) {
+        boolean changed;
+        long prev, next;
+        final int word = firstWord + (bitIndex >>> 6);
+        do {
+            prev = this.bits.get(word);
+            next = prev | 1L << bitIndex;
+            changed = (prev != next);
+        } while (changed && !bits.compareAndSet(word, prev, next));
+
+        if (changed) {
+            bitCount.incrementAndGet();
+            dirtyBlocks.markChanged(word);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Atomically tests a bit within a block.
+     *
+     * @param firstWord the index of the first word of the block.
+     * @param bitIndex the index of the bit within the block.
+     * @return whether the bit is set or not.
+     */
+    private boolean get(final int firstWord, final int bitIndex) {
+        return (bits.get(firstWord + (bitIndex >>> 6)) & 1L << bitIndex) != 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockedBloomFilter" + getStatistics();
+    }
+}
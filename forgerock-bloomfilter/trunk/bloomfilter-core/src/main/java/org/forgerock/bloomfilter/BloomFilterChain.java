@@ -27,10 +27,12 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -54,6 +56,12 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
     private static final double FILL_FACTOR = 0.9d;
     private static final int MAX_ADD_SIZE = 1000;
     private final List<BloomFilter<T>> chain = new CopyOnWriteArrayList<BloomFilter<T>>();
+    /**
+     * Buckets that were restored from a snapshot and so are read-only. These are treated as saturated regardless of
+     * their statistics.
+     */
+    private final Set<BloomFilter<T>> sealedBuckets =
+            Collections.newSetFromMap(new ConcurrentHashMap<BloomFilter<T>, Boolean>());
     private final BloomFilterPool<T> pool;
     private final TimeService clock;
 
@@ -110,15 +118,17 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
     }
 
     /**
-     * Checks each bloom filter in the chain to see if any of them might contain the given element.
+     * Checks each bloom filter in the chain to see if any of them might contain the given element. The element is
+     * hashed at most once, regardless of the number of buckets in the chain.
      *
      * @param element the element to check for membership in this set.
      * @return {@code true} if any of the filters in the chain might contain the given element.
      */
     @Override
     public boolean mightContain(final T element) {
+        final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
         for (BloomFilter<T> bucket : chain) {
-            if (bucket.mightContain(element)) {
+            if (probe.test(bucket)) {
                 return true;
             }
         }
@@ -138,6 +148,8 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
         long bitSize = 0L;
         long lastExpiryTime = Long.MIN_VALUE;
         long remainingCapacity = 0L;
+        long counterCount = 0L;
+        long saturatedCounterCount = 0L;
         for (BloomFilter<T> bucket : chain) {
             final BloomFilterStatistics bucketStats = bucket.getStatistics();
             expectedFpp += bucketStats.getExpectedFalsePositiveProbability();
@@ -146,10 +158,134 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
             lastExpiryTime = Math.max(lastExpiryTime, bucketStats.getExpiryTime());
             // Only the last bucket is relevant to remaining capacity as we never insert into previous ones
             remainingCapacity = bucketStats.getEstimatedRemainingCapacity();
+            counterCount += bucketStats.getCounterCount();
+            saturatedCounterCount += bucketStats.getSaturatedCounterCount();
         }
 
         return new BloomFilterStatistics(configuredFpp, expectedFpp, capacity, bitSize, lastExpiryTime,
-                remainingCapacity);
+                remainingCapacity, counterCount, saturatedCounterCount);
+    }
+
+    /**
+     * Returns a point-in-time copy of the buckets currently in the chain, from oldest to newest.
+     */
+    List<BloomFilter<T>> getBuckets() {
+        return new ArrayList<BloomFilter<T>>(chain);
+    }
+
+    /**
+     * Restores previously persisted buckets to the front of the chain. Restored buckets are sealed: they are still
+     * checked by {@link #mightContain(Object)} and released once expired, but no new elements will be added to them.
+     *
+     * @param buckets the restored buckets, from oldest to newest.
+     */
+    void restore(final List<? extends BloomFilter<T>> buckets) {
+        synchronized (chain) {
+            LOGGER.debug("Restoring buckets: {}", buckets);
+            sealedBuckets.addAll(buckets);
+            chain.addAll(0, buckets);
+        }
+    }
+
+    /**
+     * Exports the bits that have changed in each bucket since the given sequence number. Buckets restored from a
+     * snapshot never change, so are only included in a full export (from sequence 0).
+     *
+     * @param sinceSequence the sequence number of a previous delta, or 0 to export the entire chain.
+     * @return the delta.
+     * @throws IllegalStateException if any bucket in the chain does not support deltas.
+     */
+    BloomFilterDelta exportDelta(final long sinceSequence) {
+        final long sequence = DirtyBlockTracker.nextSequence();
+        final List<BloomFilterDelta.Bucket> deltas = new ArrayList<BloomFilterDelta.Bucket>();
+        for (BloomFilter<T> bucket : chain) {
+            final int bucketNumber = pool.bucketNumber(bucket);
+            if (bucketNumber < 0) {
+                LOGGER.debug("Not exporting untracked bucket: {}", bucket);
+                continue;
+            }
+            final BloomFilter<T> filter = unwrap(bucket);
+            final BloomFilterDelta.Blocks blocks;
+            if (filter instanceof MergeableBloomFilter) {
+                blocks = ((MergeableBloomFilter<T>) filter).exportChanges(sinceSequence);
+            } else if (sealedBuckets.contains(bucket) && filter instanceof BitVectorBloomFilter) {
+                if (sinceSequence != 0L) {
+                    continue;
+                }
+                blocks = DirtyBlockTracker.allBlocks((BitVectorBloomFilter<T>) filter);
+            } else {
+                throw new IllegalStateException("Bloom filter does not support deltas: " + filter);
+            }
+            if (blocks.size() == 0) {
+                continue;
+            }
+            // Read the expiry time after the bits, so that it covers every element whose bits were exported
+            final BitVectorBloomFilter<T> bitVector = (BitVectorBloomFilter<T>) filter;
+            deltas.add(new BloomFilterDelta.Bucket(bucketNumber, bitVector.getLayout(),
+                    bitVector.getNumHashFunctions(), bitVector.getNumBits(), bucket.getStatistics().getExpiryTime(),
+                    blocks));
+        }
+        return new BloomFilterDelta(sequence, deltas);
+    }
+
+    /**
+     * Merges a delta exported from another chain with the same configuration into this chain. The bits for each
+     * bucket in the delta are OR-ed into the bucket at the same position in the pool's geometric series, creating it
+     * if necessary. Deltas for buckets that have already expired are ignored, as are deltas for buckets that were
+     * restored from a snapshot and so are read-only.
+     *
+     * @param delta the delta to merge.
+     * @throws IllegalArgumentException if the delta is incompatible with the buckets in this chain.
+     */
+    void merge(final BloomFilterDelta delta) {
+        final long now = clock.now();
+        for (BloomFilterDelta.Bucket bucketDelta : delta.getBuckets()) {
+            if (bucketDelta.expiryTime < now) {
+                LOGGER.debug("Ignoring delta for expired bucket: {}", bucketDelta);
+                continue;
+            }
+            final BloomFilter<T> bucket = bucketFor(bucketDelta.bucketNumber);
+            if (bucket == null || sealedBuckets.contains(bucket)) {
+                LOGGER.warn("Unable to merge delta into bucket number {}, which is in use by a restored bucket",
+                        bucketDelta.bucketNumber);
+                continue;
+            }
+            final BloomFilter<T> filter = unwrap(bucket);
+            if (!(filter instanceof MergeableBloomFilter)) {
+                throw new IllegalStateException("Bloom filter does not support deltas: " + filter);
+            }
+            // Extend the expiry time before merging the bits, so that the merged elements are never considered expired
+            if (bucket instanceof ExpiringBloomFilter) {
+                ((ExpiringBloomFilter<T>) bucket).extendExpiryTime(bucketDelta.expiryTime);
+            }
+            ((MergeableBloomFilter<T>) filter).mergeChanges(bucketDelta);
+        }
+    }
+
+    /**
+     * Finds the bucket at the given position in the pool's geometric series, acquiring it from the pool and adding
+     * it to the front of the chain if it is not already present.
+     *
+     * @return the bucket, or {@code null} if that position is in use by a bucket that is not in this chain.
+     */
+    private BloomFilter<T> bucketFor(final int bucketNumber) {
+        synchronized (chain) {
+            for (BloomFilter<T> bucket : chain) {
+                if (pool.bucketNumber(bucket) == bucketNumber) {
+                    return bucket;
+                }
+            }
+            final BloomFilter<T> bucket = pool.acquire(bucketNumber);
+            if (bucket != null) {
+                LOGGER.debug("Adding bucket number {} to receive delta", bucketNumber);
+                chain.add(0, bucket);
+            }
+            return bucket;
+        }
+    }
+
+    private static <T> BloomFilter<T> unwrap(final BloomFilter<T> bucket) {
+        return bucket instanceof ExpiringBloomFilter ? ((ExpiringBloomFilter<T>) bucket).getDelegate() : bucket;
     }
 
     /**
@@ -162,16 +298,18 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
         if (it.hasPrevious()) {
             lastBucket = it.previous();
         }
-        if (lastBucket == null || lastBucket.getStatistics().isSaturated()) {
+        if (lastBucket == null || isSaturated(lastBucket, lastBucket.getStatistics())) {
             // Synchronize to ensure atomicity (double-checked locking). Chain.listIterator().previous() is volatile
             // read.
             synchronized (chain) {
-                // Perform some initial cleanup to remove any expired buckets
+                // Perform some initial cleanup to remove any expired buckets. Buckets other than the last are no
+                // longer written to (unless they received a delta), so can be removed even if not saturated.
                 Set<BloomFilter<T>> toRemove = new HashSet<BloomFilter<T>>();
+                final BloomFilter<T> currentLast = chain.isEmpty() ? null : chain.get(chain.size() - 1);
                 for (BloomFilter<T> bucket : chain) {
                     final long now = clock.now();
                     final BloomFilterStatistics stats = bucket.getStatistics();
-                    if (stats.isSaturated() && stats.getExpiryTime() < now) {
+                    if ((bucket != currentLast || isSaturated(bucket, stats)) && stats.getExpiryTime() < now) {
                         toRemove.add(bucket);
                         pool.release(bucket);
                     }
@@ -180,6 +318,7 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
                 if (!toRemove.isEmpty()) {
                     LOGGER.debug("Removing expired buckets: {}", toRemove);
                     chain.removeAll(toRemove);
+                    sealedBuckets.removeAll(toRemove);
                 }
 
                 lastBucket = null;
@@ -187,7 +326,7 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
                 if (it.hasPrevious()) {
                     lastBucket = it.previous();
                 }
-                if (lastBucket == null || lastBucket.getStatistics().isSaturated()) {
+                if (lastBucket == null || isSaturated(lastBucket, lastBucket.getStatistics())) {
                     LOGGER.debug("Adding new bucket: {}", lastBucket);
                     lastBucket = pool.nextAvailable();
                     chain.add(lastBucket);
@@ -198,6 +337,10 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
         return lastBucket;
     }
 
+    private boolean isSaturated(final BloomFilter<T> bucket, final BloomFilterStatistics stats) {
+        return stats.isSaturated() || sealedBuckets.contains(bucket);
+    }
+
     @Override
     public String toString() {
         return "BloomFilterChain{size=" + chain.size() + '}';
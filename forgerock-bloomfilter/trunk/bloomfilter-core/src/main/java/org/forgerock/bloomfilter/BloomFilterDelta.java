@@ -0,0 +1,224 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.forgerock.util.Reject;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The bits that have changed in a rolling bloom filter since some earlier point, as exported by
+ * {@link ConcurrentRollingBloomFilter#exportDelta(long)}. Deltas can be merged into another rolling bloom filter with
+ * the same configuration using {@link ConcurrentRollingBloomFilter#mergeDelta(BloomFilterDelta)}, which ORs the
+ * changed bits into the corresponding buckets without rehashing any elements. This allows a cluster of nodes to
+ * replicate a shared rolling bloom filter (such as a token blacklist) by exchanging a few kilobytes of changed bits
+ * rather than every element.
+ * <p/>
+ * Deltas are bucket-aware: the bits for each bucket are tagged with the position of that bucket in the geometric
+ * series of buckets, so nodes need not create buckets in the same order. Merging is idempotent and commutative, so
+ * deltas may be applied more than once or out of order.
+ */
+@Immutable
+public final class BloomFilterDelta {
+    private static final int MAGIC = 0x46524244;
+    private static final int VERSION = 1;
+
+    private final long sequence;
+    private final List<Bucket> buckets;
+
+    BloomFilterDelta(final long sequence, final List<Bucket> buckets) {
+        this.sequence = sequence;
+        this.buckets = Collections.unmodifiableList(new ArrayList<Bucket>(buckets));
+    }
+
+    /**
+     * The sequence number to pass to {@link ConcurrentRollingBloomFilter#exportDelta(long)} to export the next delta
+     * from the same bloom filter. Sequence numbers are only meaningful within the process that exported the delta.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Indicates whether this delta contains no changed bits.
+     */
+    public boolean isEmpty() {
+        for (Bucket bucket : buckets) {
+            if (bucket.blocks.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Writes this delta in a compact binary form suitable for sending to other nodes.
+     *
+     * @param out the output to write to.
+     * @throws IOException if an error occurs writing the delta.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sequence);
+        out.writeInt(buckets.size());
+        for (Bucket bucket : buckets) {
+            out.writeInt(bucket.bucketNumber);
+            out.writeInt(bucket.layout.ordinal());
+            out.writeInt(bucket.numHashFunctions);
+            out.writeLong(bucket.numBits);
+            out.writeLong(bucket.expiryTime);
+            out.writeInt(bucket.blocks.size());
+            for (int i = 0; i < bucket.blocks.size(); ++i) {
+                out.writeInt(bucket.blocks.blockIndex(i));
+                for (int j = 0; j < DirtyBlockTracker.WORDS_PER_BLOCK; ++j) {
+                    out.writeLong(bucket.blocks.word(i, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a delta previously written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from.
+     * @return the delta.
+     * @throws IOException if an error occurs reading the delta, or the input is not a valid delta.
+     */
+    public static BloomFilterDelta readFrom(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a bloom filter delta");
+        }
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported bloom filter delta version: " + version);
+        }
+        final long sequence = in.readLong();
+        final int bucketCount = in.readInt();
+        final BitVectorBloomFilter.Layout[] layouts = BitVectorBloomFilter.Layout.values();
+        final List<Bucket> buckets = new ArrayList<Bucket>();
+        for (int b = 0; b < bucketCount; ++b) {
+            final int bucketNumber = in.readInt();
+            final int layout = in.readInt();
+            final int numHashFunctions = in.readInt();
+            final long numBits = in.readLong();
+            final long expiryTime = in.readLong();
+            final int blockCount = in.readInt();
+            if (layout < 0 || layout >= layouts.length || blockCount < 0) {
+                throw new IOException("Corrupt bloom filter delta");
+            }
+            final int[] blockIndexes = new int[blockCount];
+            final long[] words = new long[blockCount * DirtyBlockTracker.WORDS_PER_BLOCK];
+            for (int i = 0; i < blockCount; ++i) {
+                blockIndexes[i] = in.readInt();
+                for (int j = 0; j < DirtyBlockTracker.WORDS_PER_BLOCK; ++j) {
+                    words[i * DirtyBlockTracker.WORDS_PER_BLOCK + j] = in.readLong();
+                }
+            }
+            buckets.add(new Bucket(bucketNumber, layouts[layout], numHashFunctions, numBits, expiryTime,
+                    new Blocks(blockIndexes, words)));
+        }
+        return new BloomFilterDelta(sequence, buckets);
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilterDelta{sequence=" + sequence + ", buckets=" + buckets + '}';
+    }
+
+    /**
+     * The changed bits of a single bucket, together with the parameters needed to check that the bucket being merged
+     * into has the same geometry.
+     */
+    @Immutable
+    static final class Bucket {
+        final int bucketNumber;
+        final BitVectorBloomFilter.Layout layout;
+        final int numHashFunctions;
+        final long numBits;
+        final long expiryTime;
+        final Blocks blocks;
+
+        Bucket(final int bucketNumber, final BitVectorBloomFilter.Layout layout, final int numHashFunctions,
+               final long numBits, final long expiryTime, final Blocks blocks) {
+            Reject.ifNull(layout, blocks);
+            this.bucketNumber = bucketNumber;
+            this.layout = layout;
+            this.numHashFunctions = numHashFunctions;
+            this.numBits = numBits;
+            this.expiryTime = expiryTime;
+            this.blocks = blocks;
+        }
+
+        /**
+         * Checks that a bloom filter has the same geometry as the bucket this delta was exported from.
+         *
+         * @param filter the bloom filter to merge into.
+         * @throws IllegalArgumentException if the geometry does not match.
+         */
+        void checkCompatible(final BitVectorBloomFilter<?> filter) {
+            if (filter.getLayout() != layout || filter.getNumHashFunctions() != numHashFunctions
+                    || filter.getNumBits() != numBits) {
+                throw new IllegalArgumentException("Delta for bucket " + bucketNumber
+                        + " is incompatible with bloom filter: " + filter);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Bucket{bucketNumber=" + bucketNumber + ", changedBlocks=" + blocks.size() + '}';
+        }
+    }
+
+    /**
+     * A set of changed blocks of {@link DirtyBlockTracker#WORDS_PER_BLOCK} words each.
+     */
+    @Immutable
+    static final class Blocks {
+        private final int[] blockIndexes;
+        private final long[] words;
+
+        Blocks(final int[] blockIndexes, final long[] words) {
+            Reject.ifFalse(words.length == blockIndexes.length * DirtyBlockTracker.WORDS_PER_BLOCK,
+                    "Words must be a whole number of blocks");
+            this.blockIndexes = blockIndexes;
+            this.words = words;
+        }
+
+        int size() {
+            return blockIndexes.length;
+        }
+
+        int blockIndex(final int i) {
+            return blockIndexes[i];
+        }
+
+        long word(final int i, final int j) {
+            return words[i * DirtyBlockTracker.WORDS_PER_BLOCK + j];
+        }
+    }
+}
@@ -38,6 +38,36 @@ interface BloomFilterPool<T> {
      */
     void release(BloomFilter<T> released);
 
+    /**
+     * Creates the bloom filter at the given position in the series of filters handed out by this pool, if that
+     * position is not already in use. This allows buckets to be created to receive a {@link BloomFilterDelta} from
+     * another bloom filter with the same configuration.
+     *
+     * @param bucketNumber the position in the series of the bloom filter to create.
+     * @return the new bloom filter, or {@code null} if that position is already in use.
+     * @throws java.util.NoSuchElementException if the position exceeds the maximum number of buckets.
+     */
+    BloomFilter<T> acquire(int bucketNumber);
+
+    /**
+     * Returns the position of the given bloom filter in the series of filters handed out by this pool, or -1 if the
+     * filter was not created by this pool.
+     *
+     * @param bucket the bloom filter.
+     */
+    int bucketNumber(BloomFilter<T> bucket);
+
+    /**
+     * Adopts a bloom filter that was not created by this pool (e.g., one restored from a snapshot) as if it had been
+     * handed out at the given position in the series, so that subsequently created filters maintain the overall false
+     * positive probability. If that position is unavailable then the filter is not tracked, and will be ignored when
+     * released.
+     *
+     * @param bucket the bloom filter to adopt.
+     * @param bucketNumber the position in the series that the bucket occupies.
+     */
+    void adopt(BloomFilter<T> bucket, int bucketNumber);
+
     /**
      * The overall false positive probability that this pool is trying to achieve.
      */
@@ -0,0 +1,111 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.forgerock.guava.common.hash.Funnel;
+import org.forgerock.guava.common.hash.Hashing;
+import org.forgerock.guava.common.primitives.Longs;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * An element to be tested for membership against one or more bloom filters, together with its (lazily computed)
+ * 128-bit murmur3 hash. When a {@link BloomFilterChain} is queried, the same probe is passed to every bucket in the
+ * chain so that the element is only hashed once, rather than once per bucket.
+ * <p/>
+ * The hash is cached against the funnel that was used to compute it. All buckets in a chain are created from the same
+ * factory and so share a funnel, but if a different funnel is supplied then the hash is simply recomputed.
+ *
+ * @param <T> the type of element being tested.
+ */
+@NotThreadSafe
+final class BloomFilterProbe<T> {
+    private final T element;
+
+    private Funnel<? super T> funnel;
+    private long hash1;
+    private long hash2;
+
+    /**
+     * Constructs a probe for the given element. No hashing is performed until the hash is first requested.
+     *
+     * @param element the element to test for membership.
+     */
+    BloomFilterProbe(final T element) {
+        this.element = element;
+    }
+
+    /**
+     * The element being tested.
+     */
+    T getElement() {
+        return element;
+    }
+
+    /**
+     * The lower 64 bits of the murmur3 128-bit hash of the element.
+     *
+     * @param funnel the funnel to use to serialise the element for hashing.
+     * @return the first half of the element hash.
+     */
+    long hash1(final Funnel<? super T> funnel) {
+        computeHash(funnel);
+        return hash1;
+    }
+
+    /**
+     * The upper 64 bits of the murmur3 128-bit hash of the element.
+     *
+     * @param funnel the funnel to use to serialise the element for hashing.
+     * @return the second half of the element hash.
+     */
+    long hash2(final Funnel<? super T> funnel) {
+        computeHash(funnel);
+        return hash2;
+    }
+
+    /**
+     * Tests whether the given bloom filter might contain the probed element, reusing the cached hash if the filter
+     * supports it.
+     *
+     * @param filter the bloom filter to test.
+     * @return {@code false} if the element is definitely not in the filter, or {@code true} if it might be.
+     */
+    boolean test(final BloomFilter<T> filter) {
+        if (filter instanceof ProbeableBloomFilter) {
+            return ((ProbeableBloomFilter<T>) filter).mightContain(this);
+        }
+        return filter.mightContain(element);
+    }
+
+    private void computeHash(final Funnel<? super T> funnel) {
+        if (this.funnel != funnel) {
+            // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
+            final byte[] bytes = Hashing.murmur3_128().hashObject(element, funnel).asBytes();
+            this.hash1 = Longs.fromBytes(bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1],
+                    bytes[0]);
+            this.hash2 = Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9],
+                    bytes[8]);
+            this.funnel = funnel;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilterProbe{element=" + element + '}';
+    }
+}
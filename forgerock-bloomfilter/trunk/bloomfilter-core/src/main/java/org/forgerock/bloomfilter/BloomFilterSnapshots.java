@@ -0,0 +1,219 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.forgerock.guava.common.hash.Funnel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes snapshots of the buckets in a {@link BloomFilterChain}, so that a rolling bloom filter can survive
+ * a restart without having to be rebuilt from the original elements. Snapshots are read by memory-mapping the file,
+ * so the restored bit-vectors are paged in by the operating system on demand rather than copied onto the heap, and
+ * multiple processes restoring the same snapshot share the same physical pages.
+ * <p/>
+ * The snapshot format is big-endian with all fields 8-byte aligned:
+ * <pre>
+ *     header:  int magic ("FRBF"), int version, int bucketCount, int reserved
+ *     bucket:  int layout, int numHashFunctions, int bucketNumber, int numWords,
+ *              long numBits, long capacity, double falsePositiveProbability, long expiryTime, long bitCount,
+ *              long[numWords] words
+ * </pre>
+ */
+final class BloomFilterSnapshots {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BloomFilterSnapshots.class);
+
+    static final int MAGIC = 0x46524246;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int BUCKET_HEADER_SIZE = 56;
+
+    private BloomFilterSnapshots() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Writes a snapshot of all buckets in the chain to the given file. The snapshot is first written to a temporary
+     * file in the same directory and then renamed over the target, so a concurrent or subsequent reader never sees a
+     * partially written snapshot. Elements added concurrently with this method may or may not be included.
+     *
+     * @param chain the chain to snapshot.
+     * @param pool the pool from which the buckets in the chain were acquired.
+     * @param file the file to write the snapshot to.
+     * @param <T> the type of elements in the chain.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws IllegalStateException if any bucket in the chain does not support snapshots.
+     */
+    static <T> void write(final BloomFilterChain<T> chain, final BloomFilterPool<T> pool, final File file)
+            throws IOException {
+        final List<BloomFilter<T>> buckets = chain.getBuckets();
+        final File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        final FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(buckets.size());
+            out.writeInt(0);
+            for (BloomFilter<T> bucket : buckets) {
+                writeBucket(out, bucket, pool.bucketNumber(bucket));
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            // Some platforms will not rename over an existing file
+            if (!file.delete() || !tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Unable to replace snapshot file " + file);
+            }
+        }
+        LOGGER.debug("Wrote snapshot of {} buckets to {}", buckets.size(), file);
+    }
+
+    private static <T> void writeBucket(final DataOutputStream out, final BloomFilter<T> bucket,
+                                        final int bucketNumber) throws IOException {
+        BloomFilter<T> filter = bucket;
+        if (filter instanceof ExpiringBloomFilter) {
+            filter = ((ExpiringBloomFilter<T>) filter).getDelegate();
+        }
+        if (!(filter instanceof BitVectorBloomFilter)) {
+            throw new IllegalStateException("Bloom filter does not support snapshots: " + filter);
+        }
+        final BitVectorBloomFilter<T> bitVector = (BitVectorBloomFilter<T>) filter;
+
+        // Copy the bits before reading the expiry time, so that the expiry time covers every element whose bits were
+        // captured
+        final long[] words = new long[bitVector.getNumWords()];
+        bitVector.copyWordsTo(LongBuffer.wrap(words));
+        final BloomFilterStatistics stats = bucket.getStatistics();
+
+        long bitCount = 0L;
+        for (long word : words) {
+            bitCount += Long.bitCount(word);
+        }
+
+        out.writeInt(bitVector.getLayout().ordinal());
+        out.writeInt(bitVector.getNumHashFunctions());
+        out.writeInt(bucketNumber);
+        out.writeInt(words.length);
+        out.writeLong(bitVector.getNumBits());
+        out.writeLong(stats.getCapacity());
+        out.writeDouble(stats.getConfiguredFalsePositiveProbability());
+        out.writeLong(stats.getExpiryTime());
+        out.writeLong(bitCount);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Restores the buckets from a snapshot file. Each restored bucket is a read-only {@link MappedBloomFilter} over a
+     * region of the mapped file, decorated with an {@link ExpiringBloomFilter} unless the expiry strategy is
+     * {@link BloomFilters.NeverExpires}. Restored buckets are adopted by the pool at their original position in the
+     * geometric series.
+     *
+     * @param file the snapshot file to read.
+     * @param funnel the funnel used to hash elements. Must match the funnel used by the filter that was snapshotted.
+     * @param expiryStrategy the expiry strategy of the rolling bloom filter.
+     * @param pool the pool that will supply subsequent buckets.
+     * @param <T> the type of elements in the bloom filter.
+     * @return the restored buckets, from oldest to newest.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    static <T> List<BloomFilter<T>> read(final File file, final Funnel<? super T> funnel,
+                                         final ExpiryStrategy<T> expiryStrategy, final BloomFilterPool<T> pool)
+            throws IOException {
+        final ByteBuffer buffer;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file is too large: " + file);
+            }
+            // The mapping remains valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a bloom filter snapshot: " + file);
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported bloom filter snapshot version: " + version);
+        }
+        final int bucketCount = buffer.getInt();
+        buffer.getInt();
+
+        final BitVectorBloomFilter.Layout[] layouts = BitVectorBloomFilter.Layout.values();
+        final List<BloomFilter<T>> buckets = new ArrayList<BloomFilter<T>>(bucketCount);
+        for (int i = 0; i < bucketCount; ++i) {
+            if (buffer.remaining() < BUCKET_HEADER_SIZE) {
+                throw new IOException("Truncated bloom filter snapshot: " + file);
+            }
+            final int layout = buffer.getInt();
+            final int numHashFunctions = buffer.getInt();
+            final int bucketNumber = buffer.getInt();
+            final int numWords = buffer.getInt();
+            final long numBits = buffer.getLong();
+            final long capacity = buffer.getLong();
+            final double falsePositiveProbability = buffer.getDouble();
+            final long expiryTime = buffer.getLong();
+            final long bitCount = buffer.getLong();
+
+            if (layout < 0 || layout >= layouts.length || numHashFunctions <= 0 || numWords <= 0
+                    || numBits <= 0 || numBits > (long) numWords * Long.SIZE) {
+                throw new IOException("Corrupt bloom filter snapshot: " + file);
+            }
+            if (buffer.remaining() < (long) numWords * 8) {
+                throw new IOException("Truncated bloom filter snapshot: " + file);
+            }
+
+            final ByteBuffer region = buffer.slice();
+            region.limit(numWords * 8);
+            buffer.position(buffer.position() + numWords * 8);
+
+            BloomFilter<T> bucket = new MappedBloomFilter<T>(funnel, layouts[layout], numHashFunctions, numBits,
+                    capacity, falsePositiveProbability, bitCount, region.asLongBuffer());
+            if (expiryStrategy != BloomFilters.NeverExpires.<T>strategy()) {
+                bucket = new ExpiringBloomFilter<T>(bucket, expiryStrategy, expiryTime);
+            }
+            pool.adopt(bucket, bucketNumber);
+            buckets.add(bucket);
+        }
+
+        LOGGER.debug("Restored {} buckets from snapshot {}", bucketCount, file);
+        return buckets;
+    }
+}
@@ -24,12 +24,17 @@ import java.util.Locale;
  */
 @Immutable
 public final class BloomFilterStatistics {
+    /** Largest mean for which the Poisson probabilities in the blocked FPP calculation do not underflow. */
+    private static final double MAX_POISSON_MEAN = 700.0d;
+
     private final double configuredFalsePositiveProbability;
     private final double expectedFalsePositiveProbability;
     private final long capacity;
     private final long bitSize;
     private final long expiryTime;
     private final long estimatedRemainingCapacity;
+    private final long counterCount;
+    private final long saturatedCounterCount;
 
     /**
      * Constructs a statistics object with the given parameters.
@@ -47,12 +52,38 @@ public final class BloomFilterStatistics {
                                  final long bitSize,
                                  final long expiryTime,
                                  final long estimatedRemainingCapacity) {
+        this(configuredFalsePositiveProbability, expectedFalsePositiveProbability, capacity, bitSize, expiryTime,
+                estimatedRemainingCapacity, 0L, 0L);
+    }
+
+    /**
+     * Constructs a statistics object for a counting bloom filter.
+     *
+     * @param configuredFalsePositiveProbability the false positive probability that was configured for this set.
+     * @param expectedFalsePositiveProbability the expected false positive probability given the current state of the
+     *                                         set.
+     * @param capacity the expected total number of insertions into the set before it becomes saturated
+     *                 (exceeds the configured false positive probability).
+     * @param bitSize the total memory size of the set in bits.
+     * @param counterCount the total number of counters in the set, or 0 if the set does not use counters.
+     * @param saturatedCounterCount the number of counters that have reached their maximum value.
+     */
+    public BloomFilterStatistics(final double configuredFalsePositiveProbability,
+                                 final double expectedFalsePositiveProbability,
+                                 final long capacity,
+                                 final long bitSize,
+                                 final long expiryTime,
+                                 final long estimatedRemainingCapacity,
+                                 final long counterCount,
+                                 final long saturatedCounterCount) {
         this.configuredFalsePositiveProbability = configuredFalsePositiveProbability;
         this.expectedFalsePositiveProbability = expectedFalsePositiveProbability;
         this.capacity = capacity;
         this.bitSize = bitSize;
         this.expiryTime = expiryTime;
         this.estimatedRemainingCapacity = estimatedRemainingCapacity;
+        this.counterCount = counterCount;
+        this.saturatedCounterCount = saturatedCounterCount;
     }
 
     /**
@@ -106,6 +137,83 @@ public final class BloomFilterStatistics {
         return (long)((double)(-capacity) * Math.log(falsePositiveProbability) / (Math.log(2.0D) * Math.log(2.0D)));
     }
 
+    /**
+     * Calculates the size of a blocked bloom filter (in bits) needed to achieve the given false positive probability
+     * and expected number of insertions (capacity). Blocking places all of the bits for an element in a single block
+     * (e.g., a cache line), and so has a higher false positive probability than a standard bloom filter of the same
+     * size. The size returned starts from the {@link #optimumBitSize(long, double) standard optimum} and grows until
+     * the {@link #blockedFalsePositiveProbability(long, long, int, int) blocked false positive probability} is
+     * within the target. The result is always a whole (non-zero) number of blocks.
+     *
+     * @param capacity the expected number of insertions into the bloom filter.
+     * @param falsePositiveProbability the desired probability of false positives.
+     * @param blockBitSize the number of bits in each block.
+     * @return the number of bits to use for the blocked bloom filter.
+     */
+    public static long optimumBlockedBitSize(final long capacity, final double falsePositiveProbability,
+                                             final int blockBitSize) {
+        long bitSize = roundUpToBlock(optimumBitSize(capacity, falsePositiveProbability), blockBitSize);
+        // The penalty for blocking is modest for typical false positive probabilities (a few percent to a few tens of
+        // percent more memory), so grow geometrically in small steps.
+        while (blockedFalsePositiveProbability(bitSize, capacity, optimalNumberOfHashFunctions(bitSize, capacity),
+                blockBitSize) > falsePositiveProbability) {
+            bitSize = roundUpToBlock(bitSize + Math.max(bitSize / 50, blockBitSize), blockBitSize);
+        }
+        return bitSize;
+    }
+
+    /**
+     * Calculates the false positive probability of a blocked bloom filter. The number of elements that hash to any
+     * given block is approximately Poisson distributed with mean {@code insertions * blockBitSize / bitSize}, and the
+     * false positive probability is the standard bloom filter probability for a single block holding that many
+     * elements, weighted by the Poisson distribution:
+     * <pre>
+     *     FPP = &Sigma;<sub>i</sub> Poisson(i; &lambda;) &middot; (1 - (1 - 1/B)<sup>k&middot;i</sup>)<sup>k</sup>
+     * </pre>
+     * where {@code B} is the block size in bits and {@code k} the number of hash functions.
+     *
+     * @param bitSize the total size of the bloom filter in bits.
+     * @param insertions the number of elements inserted into the bloom filter.
+     * @param numHashFunctions the number of bits set per element.
+     * @param blockBitSize the number of bits in each block.
+     * @return the expected false positive probability between 0 and 1.
+     * @see <a href="http://algo2.iti.kit.edu/documents/cacheefficientbloomfilters-jea.pdf">Cache-, Hash- and
+     * Space-Efficient Bloom Filters</a> by Putze et al., <em>Journal of Experimental Algorithmics</em>, 14, 2009.
+     */
+    public static double blockedFalsePositiveProbability(final long bitSize, final long insertions,
+                                                         final int numHashFunctions, final int blockBitSize) {
+        if (insertions <= 0L) {
+            return 0.0d;
+        }
+        final double lambda = (double) insertions * blockBitSize / (double) bitSize;
+        // Probability that a single element leaves a given bit of a block unset
+        final double bitUnsetPerHash = Math.pow(1.0d - 1.0d / blockBitSize, numHashFunctions);
+        if (lambda > MAX_POISSON_MEAN) {
+            // Very many elements per block: the relative variation between blocks is negligible (and the Poisson
+            // terms would underflow), so fall back to the standard approximation.
+            return Math.pow(1.0d - Math.pow(bitUnsetPerHash, lambda), numHashFunctions);
+        }
+        final int maxElementsPerBlock = (int) Math.ceil(lambda + 10.0d * Math.sqrt(lambda) + 10.0d);
+
+        double poisson = Math.exp(-lambda);
+        double bitUnset = 1.0d;
+        double fpp = 0.0d;
+        for (int i = 1; i <= maxElementsPerBlock; ++i) {
+            poisson *= lambda / i;
+            bitUnset *= bitUnsetPerHash;
+            double blockFpp = 1.0d;
+            for (int j = 0; j < numHashFunctions; ++j) {
+                blockFpp *= 1.0d - bitUnset;
+            }
+            fpp += poisson * blockFpp;
+        }
+        return Math.min(1.0d, fpp);
+    }
+
+    private static long roundUpToBlock(final long bitSize, final int blockBitSize) {
+        return Math.max(1L, (bitSize + blockBitSize - 1) / blockBitSize) * blockBitSize;
+    }
+
     /**
      * Provides an estimate of the remaining capacity in this bloom filter before it would become saturated.
      */
@@ -164,6 +272,30 @@ public final class BloomFilterStatistics {
         return expiryTime;
     }
 
+    /**
+     * The total number of counters in a counting bloom filter. This statistic is only relevant to counting bloom
+     * filter implementations, and is 0 for all others.
+     *
+     * @return the number of counters.
+     * @see CountingBloomFilter
+     */
+    public long getCounterCount() {
+        return counterCount;
+    }
+
+    /**
+     * The number of counters in a counting bloom filter that have reached their maximum value. Saturated counters are
+     * never decremented, so elements that hash to them can no longer be removed. A significant fraction of saturated
+     * counters indicates that the counter width is too small for the workload. This statistic is only relevant to
+     * counting bloom filter implementations, and is 0 for all others.
+     *
+     * @return the number of saturated counters.
+     * @see CountingBloomFilter
+     */
+    public long getSaturatedCounterCount() {
+        return saturatedCounterCount;
+    }
+
     /**
      * Determines whether the bloom filter expected false positive probability has exceeded the configured false
      * positive probability. This happens roughly when half of the bits in the underlying bit vector have been set to 1.
@@ -189,6 +321,7 @@ public final class BloomFilterStatistics {
 
         return bitSize == that.bitSize && capacity == that.capacity
                 && expiryTime == that.expiryTime && estimatedRemainingCapacity == that.estimatedRemainingCapacity
+                && counterCount == that.counterCount && saturatedCounterCount == that.saturatedCounterCount
                 && Double.compare(that.configuredFalsePositiveProbability, configuredFalsePositiveProbability) == 0
                 && Double.compare(that.expectedFalsePositiveProbability, expectedFalsePositiveProbability) == 0;
 
@@ -206,6 +339,8 @@ public final class BloomFilterStatistics {
         result = 31 * result + (int) (bitSize ^ (bitSize >>> 32));
         result = 31 * result + (int) (expiryTime ^ (expiryTime >>> 32));
         result = 31 * result + (int) (estimatedRemainingCapacity ^ (estimatedRemainingCapacity >>> 32));
+        result = 31 * result + (int) (counterCount ^ (counterCount >>> 32));
+        result = 31 * result + (int) (saturatedCounterCount ^ (saturatedCounterCount >>> 32));
         return result;
     }
 
@@ -217,8 +352,10 @@ public final class BloomFilterStatistics {
                 ", \"capacity\": %d" +
                 ", \"estimatedRemainingCapacity\": %d" +
                 ", \"bitSize\": %d" +
+                ", \"counterCount\": %d" +
+                ", \"saturatedCounterCount\": %d" +
                 ", \"expiryTime\": \"%tFT%<tT.%<tLZ\" }",
                 configuredFalsePositiveProbability, expectedFalsePositiveProbability, capacity,
-                estimatedRemainingCapacity, bitSize, expiryTime);
+                estimatedRemainingCapacity, bitSize, counterCount, saturatedCounterCount, expiryTime);
     }
 }
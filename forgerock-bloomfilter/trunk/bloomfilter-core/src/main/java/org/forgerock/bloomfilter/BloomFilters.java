@@ -22,6 +22,8 @@ import org.forgerock.util.Reject;
 import org.forgerock.util.annotations.VisibleForTesting;
 import org.forgerock.util.time.TimeService;
 
+import java.io.File;
+
 /**
  * Factory methods for creating bloom filters with various requirements.
  */
@@ -68,6 +70,7 @@ public final class BloomFilters {
         double falsePositiveProbability = 0.01d;
         ConcurrencyStrategy concurrencyStrategy = ConcurrencyStrategy.COPY_ON_WRITE;
         int writeBatchSize = 0;
+        int counterWidth = ConcurrencyStrategy.DEFAULT_COUNTER_WIDTH;
 
         final Funnel<? super T> funnel;
 
@@ -85,6 +88,7 @@ public final class BloomFilters {
             this.falsePositiveProbability = toCopy.falsePositiveProbability;
             this.concurrencyStrategy = toCopy.concurrencyStrategy;
             this.writeBatchSize = toCopy.writeBatchSize;
+            this.counterWidth = toCopy.counterWidth;
         }
 
         /**
@@ -169,7 +173,8 @@ public final class BloomFilters {
         }
 
         /**
-         * Sets the strategy to use for managing thread-safety in the bloom filter.
+         * Sets the strategy to use for managing thread-safety in the bloom filter. Use
+         * {@link ConcurrencyStrategy#ATOMIC_BLOCKED} to select a cache-line blocked bit-vector layout.
          *
          * @param strategy the concurrency strategy to use.
          */
@@ -194,6 +199,16 @@ public final class BloomFilters {
             return this;
         }
 
+        /**
+         * Forces the bloom filter to be a fixed-capacity Counting Bloom Filter, which supports removal of elements.
+         * This selects the {@link ConcurrencyStrategy#ATOMIC_COUNTING} concurrency strategy.
+         *
+         * @see CountingBloomFilter
+         */
+        public CountingBloomFilterBuilder<T> counting() {
+            return new CountingBloomFilterBuilder<T>(this);
+        }
+
         /**
          * Forces the bloom filter to be a Scalable Bloom Filter which can expand to arbitrary capacity.
          *
@@ -226,9 +241,59 @@ public final class BloomFilters {
         }
 
         BloomFilter<T> buildBloomFilter() {
-            return concurrencyStrategy.<T>getFactory(funnel).create(initialCapacity, falsePositiveProbability);
+            return concurrencyStrategy.<T>getFactory(funnel, counterWidth).create(initialCapacity,
+                    falsePositiveProbability);
+        }
+
+    }
+
+    /**
+     * Builder pattern for fixed-capacity Counting Bloom Filters, which support removal of elements.
+     *
+     * @param <T> the type of elements contained in this bloom filter.
+     * @see CountingBloomFilter
+     */
+    public static final class CountingBloomFilterBuilder<T> extends BloomFilterBuilder<T> {
+
+        CountingBloomFilterBuilder(final BloomFilterBuilder<T> toCopy) {
+            super(toCopy);
+            this.concurrencyStrategy = ConcurrencyStrategy.ATOMIC_COUNTING;
+        }
+
+        /**
+         * Sets the width of each counter in bits: either 4 (the default) or 8. Wider counters use twice as much
+         * memory, but saturate far less often, so more elements remain removable when many elements share counters.
+         *
+         * @param bits the counter width in bits.
+         */
+        public CountingBloomFilterBuilder<T> withCounterWidth(final int bits) {
+            Reject.ifFalse(bits == 4 || bits == 8, "Counter width must be 4 or 8 bits");
+            this.counterWidth = bits;
+            return this;
         }
 
+        /**
+         * Counting bloom filters always use the {@link ConcurrencyStrategy#ATOMIC_COUNTING} strategy.
+         *
+         * @throws IllegalArgumentException if any other strategy is specified.
+         */
+        @Override
+        public CountingBloomFilterBuilder<T> withConcurrencyStrategy(final ConcurrencyStrategy strategy) {
+            Reject.ifFalse(strategy == ConcurrencyStrategy.ATOMIC_COUNTING,
+                    "Counting bloom filters require the ATOMIC_COUNTING strategy");
+            return this;
+        }
+
+        /**
+         * Builds the counting bloom filter with the configured options. Write batching is not supported by counting
+         * bloom filters, as buffered elements could not be removed, so any configured write batch size is ignored.
+         *
+         * @return a new counting bloom filter configured appropriately.
+         */
+        @Override
+        public CountingBloomFilter<T> build() {
+            return (CountingBloomFilter<T>) buildBloomFilter();
+        }
     }
 
     /**
@@ -242,6 +307,7 @@ public final class BloomFilters {
         double capacityGrowthFactor = 2.0d;
         double falsePositiveProbabilityScaleFactor = 0.8d;
         int maxNumberOfBuckets = Integer.MAX_VALUE;
+        File snapshotFile = null;
 
         ScalableBloomFilterBuilder(final BloomFilterBuilder<T> toCopy) {
             super(toCopy);
@@ -250,6 +316,7 @@ public final class BloomFilters {
                 this.capacityGrowthFactor = sbf.capacityGrowthFactor;
                 this.falsePositiveProbabilityScaleFactor = sbf.falsePositiveProbabilityScaleFactor;
                 this.maxNumberOfBuckets = sbf.maxNumberOfBuckets;
+                this.snapshotFile = sbf.snapshotFile;
             }
         }
 
@@ -275,6 +342,21 @@ public final class BloomFilters {
             return this;
         }
 
+        /**
+         * Restores the bloom filter from a snapshot previously written by
+         * {@link ConcurrentRollingBloomFilter#writeSnapshot(File)}, if the file exists. The snapshot is memory-mapped
+         * read-only rather than loaded onto the heap, and the restored buckets are never modified: new elements are
+         * added to fresh buckets. If the snapshot cannot be read then a warning is logged and the bloom filter starts
+         * empty. The snapshot must have been written by a bloom filter using the same funnel.
+         *
+         * @param file the snapshot file to restore from.
+         */
+        public ScalableBloomFilterBuilder<T> withSnapshot(final File file) {
+            Reject.ifNull(file);
+            this.snapshotFile = file;
+            return this;
+        }
+
         @Override
         BloomFilter<T> buildBloomFilter() {
             return new RollingBloomFilterBuilder<T>(this).withExpiryStrategy(NeverExpires.<T>strategy())
@@ -310,6 +392,12 @@ public final class BloomFilters {
             return this;
         }
 
+        @Override
+        public RollingBloomFilterBuilder<T> withSnapshot(final File file) {
+            super.withSnapshot(file);
+            return this;
+        }
+
         @Override
         BloomFilter<T> buildBloomFilter() {
             Reject.ifNull(expiryStrategy, "No expiry strategy specified");
@@ -76,9 +76,59 @@ public enum ConcurrencyStrategy {
                 }
             };
         }
+    },
+
+    /**
+     * Uses the same atomic compare-and-set (CAS) approach as {@link #ATOMIC}, but with a cache-line blocked layout
+     * where all of the bits for an element fall within a single 64-byte block of the bit-vector. Each read or write
+     * therefore touches one block, typically one or two cache lines, significantly reducing memory stalls on large
+     * bloom filters. The
+     * trade-off is a slightly higher false positive probability per bit, which is compensated for by using somewhat
+     * more memory to achieve the configured false positive probability. This is the recommended strategy for large,
+     * read-heavy bloom filters where lookup latency is critical.
+     */
+    ATOMIC_BLOCKED {
+        @Override
+        <T> BloomFilterFactory<T> getFactory(final Funnel<? super T> funnel) {
+            return new BloomFilterFactory<T>() {
+                @Override
+                public BloomFilter<T> create(final long expectedInsertions, final double falsePositiveProbability) {
+                    return new BlockedBloomFilter<T>(funnel, expectedInsertions, falsePositiveProbability);
+                }
+            };
+        }
+    },
+
+    /**
+     * Uses the same atomic compare-and-set (CAS) approach as {@link #ATOMIC}, but stores a small counter in place of
+     * each bit so that elements can be removed again (see {@link CountingBloomFilter}). Counters are 4 bits wide by
+     * default, so this strategy uses four times as much memory as {@link #ATOMIC}. Fixed-capacity bloom filters built
+     * with this strategy implement {@link CountingBloomFilter}.
+     *
+     * @see BloomFilters.BloomFilterBuilder#counting()
+     */
+    ATOMIC_COUNTING {
+        @Override
+        <T> BloomFilterFactory<T> getFactory(final Funnel<? super T> funnel) {
+            return getFactory(funnel, DEFAULT_COUNTER_WIDTH);
+        }
+
+        @Override
+        <T> BloomFilterFactory<T> getFactory(final Funnel<? super T> funnel, final int counterWidth) {
+            return new BloomFilterFactory<T>() {
+                @Override
+                public BloomFilter<T> create(final long expectedInsertions, final double falsePositiveProbability) {
+                    return new AtomicCountingBloomFilter<T>(funnel, expectedInsertions, falsePositiveProbability,
+                            counterWidth);
+                }
+            };
+        }
     }
     ;
 
+    /** Default width of counters, in bits, for counting strategies. */
+    static final int DEFAULT_COUNTER_WIDTH = 4;
+
     /**
      * Returns a factory object for creating fixed-capacity bloom filters using the given concurrency strategy.
      *
@@ -88,4 +138,17 @@ public enum ConcurrencyStrategy {
      */
     abstract <T> BloomFilterFactory<T> getFactory(Funnel<? super T> funnel);
 
+    /**
+     * Returns a factory object for creating fixed-capacity bloom filters using the given concurrency strategy and
+     * counter width. The counter width is ignored by strategies that do not use counters.
+     *
+     * @param funnel the funnel to use for hashing elements.
+     * @param counterWidth the width of counters in bits, for counting strategies.
+     * @param <T> the type of elements to contain.
+     * @return an appropriate factory object for this concurrency strategy.
+     */
+    <T> BloomFilterFactory<T> getFactory(Funnel<? super T> funnel, int counterWidth) {
+        return getFactory(funnel);
+    }
+
 }
@@ -21,6 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 
 /**
@@ -33,6 +35,12 @@ import java.util.Collection;
  * critical and writes are relatively rare. Write performance may be improved by batching writes via the
  * {@link #addAll(Collection)} method, or by using some external synchronisation mechanism to perform pre-emptive
  * locking (at the cost of reducing read performance).
+ * <p/>
+ * The current contents of the filter can be persisted with {@link #writeSnapshot(File)} and restored on start-up by
+ * configuring the builder with {@link BloomFilters.ScalableBloomFilterBuilder#withSnapshot(File)}. When using the
+ * {@link ConcurrencyStrategy#ATOMIC} or {@link ConcurrencyStrategy#ATOMIC_BLOCKED} strategies, changes can be
+ * replicated between filters with the same configuration using {@link #exportDelta(long)} and
+ * {@link #mergeDelta(BloomFilterDelta)}.
  */
 @ThreadSafe
 public final class ConcurrentRollingBloomFilter<T> implements BloomFilter<T> {
@@ -45,7 +53,7 @@ public final class ConcurrentRollingBloomFilter<T> implements BloomFilter<T> {
     ConcurrentRollingBloomFilter(final BloomFilters.RollingBloomFilterBuilder<T> builder) {
         this.concurrencyStrategy = builder.concurrencyStrategy;
 
-        BloomFilterFactory<T> factory = concurrencyStrategy.<T>getFactory(builder.funnel);
+        BloomFilterFactory<T> factory = concurrencyStrategy.<T>getFactory(builder.funnel, builder.counterWidth);
         if (builder.expiryStrategy != BloomFilters.NeverExpires.strategy()) {
             factory = new ExpiringBloomFilterFactory<T>(factory, builder.expiryStrategy);
         }
@@ -53,6 +61,16 @@ public final class ConcurrentRollingBloomFilter<T> implements BloomFilter<T> {
                 builder.initialCapacity, builder.capacityGrowthFactor,
                 builder.falsePositiveProbability, builder.falsePositiveProbabilityScaleFactor);
         this.bucketChain = new BloomFilterChain<T>(bucketPool, builder.clock);
+
+        if (builder.snapshotFile != null && builder.snapshotFile.exists()) {
+            try {
+                bucketChain.restore(BloomFilterSnapshots.read(builder.snapshotFile, builder.funnel,
+                        builder.expiryStrategy, bucketPool));
+            } catch (IOException e) {
+                LOGGER.warn("Unable to restore bloom filter snapshot from {}, starting empty", builder.snapshotFile,
+                        e);
+            }
+        }
     }
 
     private static final class ExpiringBloomFilterFactory<T> implements BloomFilterFactory<T> {
@@ -96,6 +114,48 @@ public final class ConcurrentRollingBloomFilter<T> implements BloomFilter<T> {
         return bucketChain.getStatistics();
     }
 
+    /**
+     * Exports the bits that have changed since an earlier delta, for merging into other rolling bloom filters with the
+     * same configuration. Pass 0 to export the entire contents of this filter, and thereafter the
+     * {@link BloomFilterDelta#getSequence() sequence number} of the previously exported delta. Elements added
+     * concurrently with this method may or may not be included, but will always be included in the next delta.
+     *
+     * @param sinceSequence the sequence number of the previously exported delta, or 0.
+     * @return the changes since that delta.
+     * @throws IllegalStateException if the concurrency strategy does not support deltas.
+     */
+    public BloomFilterDelta exportDelta(final long sinceSequence) {
+        return bucketChain.exportDelta(sinceSequence);
+    }
+
+    /**
+     * Merges a delta exported from another rolling bloom filter into this one, without rehashing any elements. The
+     * other filter must have been built with the same funnel, concurrency strategy, capacity, false positive
+     * probability and growth settings. Merging is idempotent, so a delta may safely be merged more than once.
+     *
+     * @param delta the delta to merge.
+     * @throws IllegalArgumentException if the delta was exported from a filter with a different configuration.
+     * @throws IllegalStateException if the concurrency strategy does not support deltas.
+     */
+    public void mergeDelta(final BloomFilterDelta delta) {
+        Reject.ifNull(delta);
+        LOGGER.debug("Merging delta: {}", delta);
+        bucketChain.merge(delta);
+    }
+
+    /**
+     * Writes a snapshot of the current contents of this bloom filter to the given file, replacing any existing
+     * snapshot. Elements added concurrently with this method may or may not be included in the snapshot. Buckets
+     * restored from the snapshot are read-only, so subsequent elements are always added to new buckets.
+     *
+     * @param file the file to write the snapshot to.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void writeSnapshot(final File file) throws IOException {
+        Reject.ifNull(file);
+        BloomFilterSnapshots.write(bucketChain, bucketPool, file);
+    }
+
 
     @Override
     public String toString() {
@@ -21,8 +21,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -30,22 +33,25 @@ import java.util.concurrent.atomic.AtomicReference;
  * additions to the set.
  */
 @ThreadSafe
-final class CopyOnWriteBloomFilter<T> implements BloomFilter<T> {
+final class CopyOnWriteBloomFilter<T> implements BitVectorBloomFilter<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(CopyOnWriteBloomFilter.class);
+    private final Funnel<? super T> funnel;
     private final long capacity;
     private final double falsePositiveProbability;
+    private final int numHashFunctions;
 
-    private final AtomicReference<org.forgerock.guava.common.hash.BloomFilter<T>> bloomFilterAtomicReference;
+    private final AtomicReference<BitArray> bitArrayAtomicReference;
 
     CopyOnWriteBloomFilter(final Funnel<? super T> funnel,
                            final long capacity,
                            final double falsePositiveProbability) {
+        this.funnel = funnel;
         this.capacity = capacity;
         this.falsePositiveProbability = falsePositiveProbability;
 
-        final org.forgerock.guava.common.hash.BloomFilter<T> bf =
-                org.forgerock.guava.common.hash.BloomFilter.create(funnel, (int) capacity, falsePositiveProbability);
-        this.bloomFilterAtomicReference = new AtomicReference<org.forgerock.guava.common.hash.BloomFilter<T>>(bf);
+        final long bitSize = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
+        this.numHashFunctions = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
+        this.bitArrayAtomicReference = new AtomicReference<BitArray>(new BitArray(bitSize));
     }
 
     @Override
@@ -56,35 +62,75 @@ final class CopyOnWriteBloomFilter<T> implements BloomFilter<T> {
     @Override
     public void addAll(final Collection<? extends T> elements) {
         LOGGER.debug("Adding elements: {}", elements);
+
+        // Hash all elements up-front so that the hashing is not repeated if the compare-and-set fails.
+        final List<BloomFilterProbe<T>> probes = new ArrayList<BloomFilterProbe<T>>(elements.size());
+        for (T element : elements) {
+            final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
+            probe.hash1(funnel);
+            probes.add(probe);
+        }
+
         boolean changed;
-        org.forgerock.guava.common.hash.BloomFilter<T> prev;
-        org.forgerock.guava.common.hash.BloomFilter<T> next;
+        BitArray prev;
+        BitArray next;
 
         int attempts = 0;
 
         do {
             attempts++;
             changed = false;
-            prev = bloomFilterAtomicReference.get();
+            prev = bitArrayAtomicReference.get();
             next = prev.copy();
 
-            for (T element : elements) {
-                changed |= next.put(element);
+            for (BloomFilterProbe<T> probe : probes) {
+                changed |= next.put(probe.hash1(funnel), probe.hash2(funnel), numHashFunctions);
             }
 
-        } while (changed && !bloomFilterAtomicReference.compareAndSet(prev, next));
+        } while (changed && !bitArrayAtomicReference.compareAndSet(prev, next));
 
         LOGGER.debug("Updated BloomFilter after {} attempts", attempts);
     }
 
     @Override
     public boolean mightContain(final T element) {
-        return bloomFilterAtomicReference.get().mightContain(element);
+        return mightContain(new BloomFilterProbe<T>(element));
+    }
+
+    @Override
+    public boolean mightContain(final BloomFilterProbe<T> probe) {
+        return bitArrayAtomicReference.get().mightContain(probe.hash1(funnel), probe.hash2(funnel), numHashFunctions);
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.STANDARD;
+    }
+
+    @Override
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    @Override
+    public long getNumBits() {
+        return bitArrayAtomicReference.get().bitSize();
+    }
+
+    @Override
+    public int getNumWords() {
+        return bitArrayAtomicReference.get().numWords();
+    }
+
+    @Override
+    public void copyWordsTo(final LongBuffer target) {
+        // The bit array is never modified once published, so no copy is needed to get a consistent view.
+        bitArrayAtomicReference.get().copyTo(target);
     }
 
     @Override
     public BloomFilterStatistics getStatistics() {
-        final double expectedFpp = bloomFilterAtomicReference.get().expectedFpp();
+        final double expectedFpp = bitArrayAtomicReference.get().expectedFpp(numHashFunctions);
         final long bitSize = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
         return new BloomFilterStatistics(falsePositiveProbability, expectedFpp, capacity, bitSize, Long.MAX_VALUE,
                 BloomFilterStatistics.optimumRemainingCapacity(bitSize, expectedFpp, capacity));
@@ -0,0 +1,44 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+/**
+ * A bloom filter that supports removal of elements, by storing a small counter in place of each bit. Adding an
+ * element increments each of its counters and removing it decrements them again, so an element that has been added
+ * and then removed is (in the absence of collisions with other elements) no longer reported as a possible member.
+ * <p/>
+ * Counters have a fixed width (see {@link BloomFilters.CountingBloomFilterBuilder#withCounterWidth(int)}) and once
+ * a counter reaches its maximum value it is never decremented again, as its true count is no longer known. Elements
+ * that hash only to saturated counters therefore cannot be removed. The number of saturated counters is reported by
+ * {@link BloomFilterStatistics#getSaturatedCounterCount()}.
+ * <p/>
+ * Removing an element that was never added may cause false negatives for other elements that share its counters,
+ * so callers should only remove elements that they know to have been added.
+ *
+ * @param <E> the type of elements contained in the bloom filter.
+ * @see <a href="http://en.wikipedia.org/wiki/Bloom_filter#Counting_filters">Counting filters</a>
+ */
+public interface CountingBloomFilter<E> extends BloomFilter<E> {
+
+    /**
+     * Removes a previously added element from this set. If the element might not have been added (i.e.,
+     * {@link #mightContain(Object)} returns {@code false}) then this method has no effect.
+     *
+     * @param element the element to remove from this set.
+     */
+    void remove(E element);
+}
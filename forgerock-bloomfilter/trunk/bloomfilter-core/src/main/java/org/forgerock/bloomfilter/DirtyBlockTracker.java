@@ -0,0 +1,170 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks which blocks of an {@link AtomicLongArray} bit-vector have changed, so that a {@link MergeableBloomFilter}
+ * can export only the words that changed since some earlier point as a {@link BloomFilterDelta}. The bit-vector is
+ * divided into blocks of {@link #WORDS_PER_BLOCK} words (one cache line), and each block is stamped with the current
+ * value of a JVM-wide sequence number whenever any of its bits change. Exporting a delta advances the sequence, so
+ * every change is included in the first export that begins after the change completed. Tracking costs one extra
+ * long per block (1/8th of the bit-vector size) and a few volatile reads whenever a bit changes; membership tests are
+ * unaffected.
+ */
+@ThreadSafe
+final class DirtyBlockTracker {
+    /** Number of words per tracked block: one 64-byte cache line. */
+    static final int WORDS_PER_BLOCK = 8;
+
+    /** Sequence numbers start at 1 so that a version of zero means "never changed". */
+    private static final AtomicLong SEQUENCE = new AtomicLong(1L);
+
+    private final AtomicLongArray versions;
+
+    /**
+     * Constructs a tracker for a bit-vector of the given size.
+     *
+     * @param numWords the number of words in the tracked bit-vector.
+     */
+    DirtyBlockTracker(final int numWords) {
+        this.versions = new AtomicLongArray((numWords + WORDS_PER_BLOCK - 1) / WORDS_PER_BLOCK);
+    }
+
+    /**
+     * Advances the sequence number, marking the start of a delta export.
+     *
+     * @return the new sequence number. Any change that completes after this call will be stamped with at least this
+     * sequence number.
+     */
+    static long nextSequence() {
+        return SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * Records that the given word has changed. Must be called after the change has been made.
+     *
+     * @param word the index of the word that changed.
+     */
+    void markChanged(final int word) {
+        final int block = word / WORDS_PER_BLOCK;
+        long sequence;
+        do {
+            sequence = SEQUENCE.get();
+            long version;
+            do {
+                version = versions.get(block);
+            } while (version < sequence && !versions.compareAndSet(block, version, sequence));
+            // Re-stamp if an export started while we were stamping, otherwise it could miss this change
+        } while (SEQUENCE.get() != sequence);
+    }
+
+    /**
+     * Exports all blocks of the bit-vector that have changed since the given sequence number.
+     *
+     * @param bits the tracked bit-vector.
+     * @param sinceSequence the sequence number of a previous export, or 0 to export all blocks that have ever changed.
+     * @return the indexes of the changed blocks and their words, with the final block zero-padded if necessary.
+     */
+    BloomFilterDelta.Blocks changedSince(final AtomicLongArray bits, final long sinceSequence) {
+        int count = 0;
+        final int[] changed = new int[versions.length()];
+        for (int block = 0; block < versions.length(); ++block) {
+            final long version = versions.get(block);
+            if (version != 0L && version >= sinceSequence) {
+                changed[count++] = block;
+            }
+        }
+
+        final int[] blocks = new int[count];
+        final long[] words = new long[count * WORDS_PER_BLOCK];
+        for (int i = 0; i < count; ++i) {
+            blocks[i] = changed[i];
+            final int firstWord = changed[i] * WORDS_PER_BLOCK;
+            for (int j = 0; j < WORDS_PER_BLOCK && firstWord + j < bits.length(); ++j) {
+                words[i * WORDS_PER_BLOCK + j] = bits.get(firstWord + j);
+            }
+        }
+        return new BloomFilterDelta.Blocks(blocks, words);
+    }
+
+    /**
+     * Exports all non-empty blocks of an untracked bit-vector, such as a bucket restored from a snapshot.
+     *
+     * @param filter the bloom filter to export.
+     * @return the non-empty blocks and their words, with the final block zero-padded if necessary.
+     */
+    static BloomFilterDelta.Blocks allBlocks(final BitVectorBloomFilter<?> filter) {
+        final int numBlocks = (filter.getNumWords() + WORDS_PER_BLOCK - 1) / WORDS_PER_BLOCK;
+        final long[] words = new long[numBlocks * WORDS_PER_BLOCK];
+        filter.copyWordsTo(LongBuffer.wrap(words));
+
+        int count = 0;
+        final int[] blocks = new int[numBlocks];
+        for (int block = 0; block < numBlocks; ++block) {
+            for (int j = 0; j < WORDS_PER_BLOCK; ++j) {
+                if (words[block * WORDS_PER_BLOCK + j] != 0L) {
+                    // Compact the non-empty blocks towards the front of the array
+                    System.arraycopy(words, block * WORDS_PER_BLOCK, words, count * WORDS_PER_BLOCK,
+                            WORDS_PER_BLOCK);
+                    blocks[count++] = block;
+                    break;
+                }
+            }
+        }
+        return new BloomFilterDelta.Blocks(Arrays.copyOf(blocks, count),
+                Arrays.copyOf(words, count * WORDS_PER_BLOCK));
+    }
+
+    /**
+     * Atomically ORs the given blocks into the bit-vector, marking any words that change as dirty so that merged
+     * bits are themselves included in subsequent deltas.
+     *
+     * @param bits the tracked bit-vector.
+     * @param delta the blocks to merge.
+     * @return the number of bits that were newly set.
+     * @throws IllegalArgumentException if any block lies outside the bit-vector.
+     */
+    long merge(final AtomicLongArray bits, final BloomFilterDelta.Blocks delta) {
+        long newBits = 0L;
+        for (int i = 0; i < delta.size(); ++i) {
+            final int firstWord = delta.blockIndex(i) * WORDS_PER_BLOCK;
+            if (delta.blockIndex(i) < 0 || firstWord >= bits.length()) {
+                throw new IllegalArgumentException("Delta block " + delta.blockIndex(i) + " is out of range");
+            }
+            for (int j = 0; j < WORDS_PER_BLOCK && firstWord + j < bits.length(); ++j) {
+                final long mergeBits = delta.word(i, j);
+                long prev, next;
+                do {
+                    prev = bits.get(firstWord + j);
+                    next = prev | mergeBits;
+                } while (prev != next && !bits.compareAndSet(firstWord + j, prev, next));
+
+                if (prev != next) {
+                    newBits += Long.bitCount(next & ~prev);
+                    markChanged(firstWord + j);
+                }
+            }
+        }
+        return newBits;
+    }
+}
@@ -28,7 +28,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * A Bloom Filter decorator that can expire when the youngest element within it expires.
  */
 @ThreadSafe
-final class ExpiringBloomFilter<T> implements BloomFilter<T> {
+final class ExpiringBloomFilter<T> implements ProbeableBloomFilter<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ExpiringBloomFilter.class);
     private final BloomFilter<T> delegate;
     private final ExpiryStrategy<T> expiryStrategy;
@@ -37,9 +37,31 @@ final class ExpiringBloomFilter<T> implements BloomFilter<T> {
 
     ExpiringBloomFilter(final BloomFilter<T> delegate,
                         final ExpiryStrategy<T> expiryStrategy) {
+        this(delegate, expiryStrategy, Long.MIN_VALUE);
+    }
+
+    /**
+     * Constructs an expiring bloom filter around a delegate that already contains elements, such as a bucket restored
+     * from a snapshot.
+     *
+     * @param delegate the bloom filter to delegate to.
+     * @param expiryStrategy the strategy for determining the expiry time of elements.
+     * @param latestExpiryTime the latest expiry time of any element already contained in the delegate.
+     */
+    ExpiringBloomFilter(final BloomFilter<T> delegate,
+                        final ExpiryStrategy<T> expiryStrategy,
+                        final long latestExpiryTime) {
         Reject.ifNull(delegate, expiryStrategy);
         this.delegate = delegate;
         this.expiryStrategy = expiryStrategy;
+        this.latestExpiryTime.set(latestExpiryTime);
+    }
+
+    /**
+     * The underlying bloom filter that this decorator delegates to.
+     */
+    BloomFilter<T> getDelegate() {
+        return delegate;
     }
 
     @Override
@@ -59,6 +81,11 @@ final class ExpiringBloomFilter<T> implements BloomFilter<T> {
         return expiryStrategy.expiryTime(element) <= latestExpiryTime.get() && delegate.mightContain(element);
     }
 
+    @Override
+    public boolean mightContain(final BloomFilterProbe<T> probe) {
+        return expiryStrategy.expiryTime(probe.getElement()) <= latestExpiryTime.get() && probe.test(delegate);
+    }
+
     @Override
     public BloomFilterStatistics getStatistics() {
         final BloomFilterStatistics stats = delegate.getStatistics();
@@ -67,7 +94,19 @@ final class ExpiringBloomFilter<T> implements BloomFilter<T> {
                 stats.getCapacity(),
                 stats.getBitSize(),
                 latestExpiryTime.get(),
-                stats.getEstimatedRemainingCapacity());
+                stats.getEstimatedRemainingCapacity(),
+                stats.getCounterCount(),
+                stats.getSaturatedCounterCount());
+    }
+
+    /**
+     * Extends the latest expiry time to cover elements that were added to the delegate directly, such as bits merged
+     * from a {@link BloomFilterDelta}.
+     *
+     * @param expiryTime the latest expiry time of the elements added.
+     */
+    void extendExpiryTime(final long expiryTime) {
+        updateExpiryTime(expiryTime);
     }
 
     /**
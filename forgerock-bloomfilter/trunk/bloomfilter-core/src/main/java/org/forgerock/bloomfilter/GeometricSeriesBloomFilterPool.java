@@ -131,6 +131,25 @@ final class GeometricSeriesBloomFilterPool<T> implements BloomFilterPool<T> {
             bucketNumbers.set(bucketNumber);
         }
 
+        return create(bucketNumber);
+    }
+
+    @Override
+    public BloomFilter<T> acquire(final int bucketNumber) {
+        synchronized (bucketNumbers) {
+            if (bucketNumber < 0 || bucketNumber >= maxBuckets) {
+                throw new NoSuchElementException("Bucket number out of range: " + bucketNumber);
+            }
+            if (bucketNumbers.get(bucketNumber)) {
+                return null;
+            }
+            bucketNumbers.set(bucketNumber);
+        }
+
+        return create(bucketNumber);
+    }
+
+    private BloomFilter<T> create(final int bucketNumber) {
         final long capacity = (long) (initialCapacity * pow(capacityGrowthFactor, bucketNumber));
         final double fpp =
                 initialFalsePositiveProbability * pow(falsePositiveProbabilityScaleFactor, bucketNumber);
@@ -150,13 +169,36 @@ final class GeometricSeriesBloomFilterPool<T> implements BloomFilterPool<T> {
      */
     @Override
     public void release(BloomFilter<T> released) {
-        final int bucketNumber = takenBucketNumbers.get(released);
+        final Integer bucketNumber = takenBucketNumbers.remove(released);
+        if (bucketNumber == null) {
+            LOGGER.debug("Ignoring release of untracked bucket: {}", released);
+            return;
+        }
         LOGGER.debug("Releasing bucket number {}", bucketNumber);
         synchronized (bucketNumbers) {
             bucketNumbers.clear(bucketNumber);
         }
     }
 
+    @Override
+    public int bucketNumber(final BloomFilter<T> bucket) {
+        final Integer bucketNumber = takenBucketNumbers.get(bucket);
+        return bucketNumber == null ? -1 : bucketNumber;
+    }
+
+    @Override
+    public void adopt(final BloomFilter<T> bucket, final int bucketNumber) {
+        synchronized (bucketNumbers) {
+            if (bucketNumber < 0 || bucketNumber >= maxBuckets || bucketNumbers.get(bucketNumber)) {
+                LOGGER.debug("Bucket number {} is not available, not tracking bucket: {}", bucketNumber, bucket);
+                return;
+            }
+            bucketNumbers.set(bucketNumber);
+        }
+        LOGGER.debug("Adopting bucket number {}", bucketNumber);
+        takenBucketNumbers.put(bucket, bucketNumber);
+    }
+
     @Override
     public double getOverallFalsePositiveProbability() {
         return initialFalsePositiveProbability / (1.0d - falsePositiveProbabilityScaleFactor);
@@ -0,0 +1,175 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.forgerock.guava.common.hash.Funnel;
+import org.forgerock.util.Reject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.LongBuffer;
+import java.util.Collection;
+
+/**
+ * A read-only bloom filter whose bit-vector is a view over a (typically memory-mapped) {@link LongBuffer}, as
+ * restored from a snapshot by {@link BloomFilterSnapshots}. The bits are read directly from the buffer and are never
+ * copied onto the heap, so restoring a large filter is cheap and a single snapshot file can be shared read-only
+ * between processes.
+ * <p/>
+ * Mapped filters are sealed: they reject any attempt to add elements and always report no remaining capacity. A
+ * {@link BloomFilterChain} treats restored buckets as saturated and directs new elements to a fresh bucket.
+ *
+ * @param <T> the type of elements contained in the bloom filter.
+ */
+@ThreadSafe
+final class MappedBloomFilter<T> implements BitVectorBloomFilter<T> {
+    private final Funnel<? super T> funnel;
+    private final Layout layout;
+    private final int numHashFunctions;
+    private final long numBits;
+    private final long capacity;
+    private final double falsePositiveProbability;
+    private final long bitCount;
+    private final LongBuffer words;
+    private final int numBlocks;
+
+    /**
+     * Constructs a mapped bloom filter over the given words.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing. Must match the funnel that was used when
+     *               the bits were originally set.
+     * @param layout the layout of bits within the bit-vector.
+     * @param numHashFunctions the number of bits set per element.
+     * @param numBits the number of addressable bits.
+     * @param capacity the capacity that the original bloom filter was configured with.
+     * @param falsePositiveProbability the false positive probability that the original bloom filter was configured
+     *                                 with.
+     * @param bitCount the number of bits set in the bit-vector.
+     * @param words the bit-vector. The buffer is not copied, and must not be modified after construction.
+     */
+    MappedBloomFilter(final Funnel<? super T> funnel, final Layout layout, final int numHashFunctions,
+                      final long numBits, final long capacity, final double falsePositiveProbability,
+                      final long bitCount, final LongBuffer words) {
+        Reject.ifNull(funnel, layout, words);
+        Reject.ifFalse(numHashFunctions > 0, "Number of hash functions must be > 0");
+        Reject.ifFalse(numBits > 0 && numBits <= (long) words.remaining() * Long.SIZE,
+                "Number of bits must be > 0 and fit within the buffer");
+        this.funnel = funnel;
+        this.layout = layout;
+        this.numHashFunctions = numHashFunctions;
+        this.numBits = numBits;
+        this.capacity = capacity;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.bitCount = bitCount;
+        this.words = words.slice();
+        this.numBlocks = (int) (numBits / BlockedBloomFilter.BLOCK_BITS);
+        Reject.ifTrue(layout == Layout.BLOCKED && numBlocks == 0, "Blocked layout requires at least one block");
+    }
+
+    /**
+     * Always throws {@link UnsupportedOperationException} as mapped bloom filters are read-only.
+     */
+    @Override
+    public void add(final T element) {
+        throw new UnsupportedOperationException("Mapped bloom filters are read-only");
+    }
+
+    /**
+     * Always throws {@link UnsupportedOperationException} as mapped bloom filters are read-only.
+     */
+    @Override
+    public void addAll(final Collection<? extends T> elements) {
+        throw new UnsupportedOperationException("Mapped bloom filters are read-only");
+    }
+
+    @Override
+    public boolean mightContain(final T element) {
+        return mightContain(new BloomFilterProbe<T>(element));
+    }
+
+    @Override
+    public boolean mightContain(final BloomFilterProbe<T> probe) {
+        final long hash1 = probe.hash1(funnel);
+        final long hash2 = probe.hash2(funnel);
+
+        if (layout == Layout.BLOCKED) {
+            final int firstWord = BlockedBloomFilter.firstWordOfBlock(hash1, numBlocks);
+            for (int i = 0; i < numHashFunctions; ++i) {
+                final int bitIndex = BlockedBloomFilter.bitInBlock(hash2, i);
+                if ((words.get(firstWord + (bitIndex >>> 6)) & 1L << bitIndex) == 0L) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
+        long combinedHash = hash1;
+        for (int i = 0; i < numHashFunctions; ++i) {
+            final long index = (combinedHash & Long.MAX_VALUE) % numBits;
+            if ((words.get((int) (index >>> 6)) & 1L << index) == 0L) {
+                return false;
+            }
+            combinedHash += hash2;
+        }
+        return true;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    @Override
+    public long getNumBits() {
+        return numBits;
+    }
+
+    @Override
+    public int getNumWords() {
+        return words.capacity();
+    }
+
+    @Override
+    public void copyWordsTo(final LongBuffer target) {
+        target.put(words.duplicate());
+    }
+
+    @Override
+    public BloomFilterStatistics getStatistics() {
+        final double expectedFpp;
+        if (layout == Layout.BLOCKED) {
+            final long cardinality =
+                    (long) -((numBits * Math.log(1.0d - bitCount / (double) numBits)) / numHashFunctions);
+            expectedFpp = BloomFilterStatistics.blockedFalsePositiveProbability(numBits, cardinality,
+                    numHashFunctions, BlockedBloomFilter.BLOCK_BITS);
+        } else {
+            expectedFpp = Math.pow((double) bitCount / (double) numBits, (double) numHashFunctions);
+        }
+        return new BloomFilterStatistics(falsePositiveProbability, expectedFpp, capacity, numBits, Long.MAX_VALUE,
+                0L);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedBloomFilter{layout=" + layout + ", statistics=" + getStatistics() + '}';
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+/**
+ * A bloom filter that can export the bits that have changed since some earlier point, and merge in changes exported
+ * from another bloom filter with the same geometry, without rehashing any elements.
+ *
+ * @param <T> the type of elements contained in the bloom filter.
+ * @see BloomFilterDelta
+ */
+interface MergeableBloomFilter<T> extends BitVectorBloomFilter<T> {
+
+    /**
+     * Exports the blocks of the bit-vector that have changed since the given sequence number. Changes made
+     * concurrently with this method may or may not be included, but will always be included in a subsequent export
+     * from a later sequence number.
+     *
+     * @param sinceSequence a sequence number from {@link DirtyBlockTracker#nextSequence()}, or 0 to export all changes.
+     * @return the changed blocks.
+     */
+    BloomFilterDelta.Blocks exportChanges(long sinceSequence);
+
+    /**
+     * Merges changes exported from another bloom filter into this one by OR-ing the bits together.
+     *
+     * @param delta the delta to merge.
+     * @throws IllegalArgumentException if the delta was exported from a bloom filter with a different geometry.
+     */
+    void mergeChanges(BloomFilterDelta.Bucket delta);
+}
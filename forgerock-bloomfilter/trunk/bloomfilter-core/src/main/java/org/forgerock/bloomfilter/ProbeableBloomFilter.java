@@ -0,0 +1,36 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+/**
+ * A bloom filter that can test membership using a pre-hashed {@link BloomFilterProbe}, avoiding the need to re-hash
+ * the element when the same element is tested against several filters (e.g., each bucket of a
+ * {@link BloomFilterChain}).
+ *
+ * @param <T> the type of elements contained in the bloom filter.
+ */
+interface ProbeableBloomFilter<T> extends BloomFilter<T> {
+
+    /**
+     * Checks if the probed element <em>might</em> be a member of this set. The result is identical to calling
+     * {@link #mightContain(Object)} with {@link BloomFilterProbe#getElement()}.
+     *
+     * @param probe the pre-hashed element to check for membership in this set.
+     * @return {@code false} if the element is definitely not in the set, or {@code true} if it might be.
+     */
+    boolean mightContain(BloomFilterProbe<T> probe);
+}
@@ -21,49 +21,111 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
  * A fully synchronized bloom filter implementation.
  */
 @ThreadSafe
-final class SynchronizedBloomFilter<T> implements BloomFilter<T> {
+final class SynchronizedBloomFilter<T> implements BitVectorBloomFilter<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SynchronizedBloomFilter.class);
+    private final Funnel<? super T> funnel;
     private final long capacity;
     private final double falsePositiveProbability;
-    private final org.forgerock.guava.common.hash.BloomFilter<T> bloomFilter;
+    private final int numHashFunctions;
+    private final BitArray bitArray;
 
     SynchronizedBloomFilter(final Funnel<? super T> funnel,
                                    final long capacity,
                                    final double falsePositiveProbability) {
+        this.funnel = funnel;
         this.falsePositiveProbability = falsePositiveProbability;
         this.capacity = capacity;
 
-        this.bloomFilter = org.forgerock.guava.common.hash.BloomFilter.create(funnel, (int) capacity, falsePositiveProbability);
+        final long bitSize = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
+        this.numHashFunctions = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
+        this.bitArray = new BitArray(bitSize);
     }
 
     @Override
-    public synchronized void add(final T element) {
+    public void add(final T element) {
         LOGGER.debug("Adding element: {}", element);
-        bloomFilter.put(element);
+        // Hash outside of the lock
+        final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
+        final long hash1 = probe.hash1(funnel);
+        final long hash2 = probe.hash2(funnel);
+        synchronized (this) {
+            bitArray.put(hash1, hash2, numHashFunctions);
+        }
     }
 
     @Override
-    public synchronized void addAll(final Collection<? extends T> elements) {
+    public void addAll(final Collection<? extends T> elements) {
         LOGGER.debug("Adding elements: {}", elements);
+        // Hash outside of the lock
+        long[] hashes = new long[elements.size() * 2];
+        int count = 0;
         for (T element : elements) {
-            bloomFilter.put(element);
+            if (count == hashes.length) {
+                // A concurrent collection may grow while it is being hashed.
+                hashes = Arrays.copyOf(hashes, Math.max(2, count * 2));
+            }
+            final BloomFilterProbe<T> probe = new BloomFilterProbe<T>(element);
+            hashes[count++] = probe.hash1(funnel);
+            hashes[count++] = probe.hash2(funnel);
+        }
+        synchronized (this) {
+            for (int i = 0; i < count; i += 2) {
+                bitArray.put(hashes[i], hashes[i + 1], numHashFunctions);
+            }
         }
     }
 
     @Override
-    public synchronized boolean mightContain(final T element) {
-        return bloomFilter.mightContain(element);
+    public boolean mightContain(final T element) {
+        return mightContain(new BloomFilterProbe<T>(element));
+    }
+
+    @Override
+    public boolean mightContain(final BloomFilterProbe<T> probe) {
+        // Hash outside of the lock
+        final long hash1 = probe.hash1(funnel);
+        final long hash2 = probe.hash2(funnel);
+        synchronized (this) {
+            return bitArray.mightContain(hash1, hash2, numHashFunctions);
+        }
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.STANDARD;
+    }
+
+    @Override
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    @Override
+    public long getNumBits() {
+        return bitArray.bitSize();
+    }
+
+    @Override
+    public int getNumWords() {
+        return bitArray.numWords();
+    }
+
+    @Override
+    public synchronized void copyWordsTo(final LongBuffer target) {
+        bitArray.copyTo(target);
     }
 
     @Override
     public synchronized BloomFilterStatistics getStatistics() {
-        final double expectedFpp = bloomFilter.expectedFpp();
+        final double expectedFpp = bitArray.expectedFpp(numHashFunctions);
         final long bitSize = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
         return new BloomFilterStatistics(falsePositiveProbability, expectedFpp, capacity, bitSize, Long.MAX_VALUE,
                 BloomFilterStatistics.optimumRemainingCapacity(bitSize, expectedFpp, capacity));
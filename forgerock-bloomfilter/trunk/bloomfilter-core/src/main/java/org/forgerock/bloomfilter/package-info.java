@@ -65,9 +65,15 @@
  * org.forgerock.bloomfilter.BloomFilters.BloomFilterBuilder#withExpiryStrategy(org.forgerock.bloomfilter.ExpiryStrategy)}
  * method to configure how elements in your Bloom Filter will expire. By default, elements do not expire.
  *
+ * <h2>Counting Bloom Filters</h2>
+ * Standard Bloom Filters only ever grow. Where individual elements must also be removed, use the {@link
+ * org.forgerock.bloomfilter.BloomFilters.BloomFilterBuilder#counting()} builder method to create a fixed-capacity
+ * {@link org.forgerock.bloomfilter.CountingBloomFilter}, which stores a small (4-bit or 8-bit) counter in place of
+ * each bit at the cost of using four or eight times as much memory.
+ *
  * <h2>Concurrency Strategies</h2>
  * The implementations provided are currently all thread-safe, and adopt a flexible approach to concurrency control.
- * Two concurrency strategies are currently supported:
+ * The following concurrency strategies are currently supported:
  * <ul>
  *     <li><em>SYNCHRONIZED</em> - uses synchronized blocks to ensure mutual exclusion of critical sections. For
  *     fixed-capacity bloom filters all methods are mutually exclusive. For scalable and rolling bloom filters,
@@ -80,6 +86,16 @@
  *     create additional temporary garbage and pressure on the garbage collector. Suitable for situations in which
  *     read performance (mightContain) is paramount and writes are relatively rare (and can tolerate increased
  *     latency).</li>
+ *
+ *     <li><em>ATOMIC</em> - uses atomic compare-and-set operations to update the bit-vector without locking.
+ *     Provides good read and write performance with less garbage than COPY_ON_WRITE.</li>
+ *
+ *     <li><em>ATOMIC_BLOCKED</em> - as ATOMIC, but all of the bits for an element are stored within a single 512-bit
+ *     block, so each operation touches one or two cache lines rather than one per hash function. Uses a little more
+ *     memory for the same false positive probability. Recommended for large, read-heavy bloom filters.</li>
+ *
+ *     <li><em>ATOMIC_COUNTING</em> - as ATOMIC, but stores a small counter in place of each bit so that elements
+ *     can be removed again (see Counting Bloom Filters above). Uses four or eight times as much memory.</li>
  * </ul>
  * Use the {@link org.forgerock.bloomfilter.BloomFilters.BloomFilterBuilder#withConcurrencyStrategy(org.forgerock.bloomfilter.ConcurrencyStrategy)}
  * method to specify the concurrency strategy to use. The default is COPY_ON_WRITE.
@@ -0,0 +1,156 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.guava.common.hash.Funnel;
+import org.forgerock.guava.common.hash.Funnels;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+public class AtomicCountingBloomFilterTest {
+    private static final Funnel<Integer> FUNNEL = Funnels.integerFunnel();
+    private static final long CAPACITY = 1000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01d;
+
+    private final AtomicCountingBloomFilter<Integer> sharedBloomFilter = create(4);
+
+    @DataProvider
+    public Object[][] counterWidths() {
+        return new Object[][] {
+                { 4 },
+                { 8 }
+        };
+    }
+
+    @Test(dataProvider = "counterWidths")
+    public void shouldRemoveElements(int counterWidth) {
+        // Given
+        AtomicCountingBloomFilter<Integer> bloomFilter = create(counterWidth);
+        for (int i = 0; i < CAPACITY; ++i) {
+            bloomFilter.add(i);
+        }
+
+        // When
+        for (int i = 0; i < CAPACITY; i += 2) {
+            bloomFilter.remove(i);
+        }
+
+        // Then
+        int stillPresent = 0;
+        for (int i = 0; i < CAPACITY; ++i) {
+            if (i % 2 == 1) {
+                assertThat(bloomFilter.mightContain(i)).isTrue();
+            } else if (bloomFilter.mightContain(i)) {
+                stillPresent++;
+            }
+        }
+        // Only false positives (and any elements sharing saturated counters) should remain
+        assertThat(stillPresent).isLessThan((int) (CAPACITY / 20));
+    }
+
+    @Test(dataProvider = "counterWidths")
+    public void shouldBeEmptyAfterRemovingAllElements(int counterWidth) {
+        // Given
+        AtomicCountingBloomFilter<Integer> bloomFilter = create(counterWidth);
+        bloomFilter.add(42);
+        bloomFilter.add(42);
+
+        // When
+        bloomFilter.remove(42);
+        boolean afterFirstRemoval = bloomFilter.mightContain(42);
+        bloomFilter.remove(42);
+
+        // Then
+        assertThat(afterFirstRemoval).isTrue();
+        assertThat(bloomFilter.mightContain(42)).isFalse();
+        assertThat(bloomFilter.getStatistics().getExpectedFalsePositiveProbability()).isEqualTo(0.0d);
+    }
+
+    @Test
+    public void shouldIgnoreRemovalOfAbsentElements() {
+        // Given
+        AtomicCountingBloomFilter<Integer> bloomFilter = create(4);
+        bloomFilter.add(1);
+
+        // When
+        bloomFilter.remove(2);
+
+        // Then
+        assertThat(bloomFilter.mightContain(1)).isTrue();
+    }
+
+    @Test(dataProvider = "counterWidths")
+    public void shouldSaturateCountersAndReportThem(int counterWidth) {
+        // Given
+        AtomicCountingBloomFilter<Integer> bloomFilter = create(counterWidth);
+        int maxCount = (1 << counterWidth) - 1;
+
+        // When
+        for (int i = 0; i < maxCount + 1; ++i) {
+            bloomFilter.add(42);
+        }
+        for (int i = 0; i < maxCount + 1; ++i) {
+            bloomFilter.remove(42);
+        }
+
+        // Then
+        assertThat(bloomFilter.mightContain(42)).isTrue();
+        assertThat(bloomFilter.getStatistics().getSaturatedCounterCount()).isGreaterThan(0L);
+    }
+
+    @Test
+    public void shouldReportCounterStatistics() {
+        // Given
+        AtomicCountingBloomFilter<Integer> bloomFilter = create(4);
+
+        // When
+        BloomFilterStatistics stats = bloomFilter.getStatistics();
+
+        // Then
+        assertThat(stats.getCounterCount()).isEqualTo(BloomFilterStatistics.optimumBitSize(CAPACITY,
+                FALSE_POSITIVE_PROBABILITY));
+        assertThat(stats.getBitSize()).isEqualTo(4 * stats.getCounterCount());
+        assertThat(stats.getSaturatedCounterCount()).isEqualTo(0L);
+        assertThat(stats.getCapacity()).isEqualTo(CAPACITY);
+        assertThat(stats.getConfiguredFalsePositiveProbability()).isEqualTo(FALSE_POSITIVE_PROBABILITY);
+    }
+
+    @Test(invocationCount = 16, threadPoolSize = 16)
+    public void shouldNotLoseConcurrentUpdates() {
+        // Given
+        int value = new Random().nextInt();
+
+        // When
+        sharedBloomFilter.add(value);
+
+        // Then
+        assertThat(sharedBloomFilter.mightContain(value)).isTrue();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedCounterWidths() {
+        create(2);
+    }
+
+    private static AtomicCountingBloomFilter<Integer> create(int counterWidth) {
+        return new AtomicCountingBloomFilter<Integer>(FUNNEL, CAPACITY, FALSE_POSITIVE_PROBABILITY, counterWidth);
+    }
+}
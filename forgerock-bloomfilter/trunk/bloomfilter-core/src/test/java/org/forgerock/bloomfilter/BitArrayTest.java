@@ -0,0 +1,43 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+public class BitArrayTest {
+
+    @Test
+    public void shouldRoundZeroBitsUpToOneWord() {
+        // Given
+        BitArray bitArray = new BitArray(0L);
+
+        // When
+        boolean changed = bitArray.put(1L, 2L, 3);
+
+        // Then
+        assertThat(changed).isTrue();
+        assertThat(bitArray.bitSize()).isEqualTo(Long.SIZE);
+        assertThat(bitArray.mightContain(1L, 2L, 3)).isTrue();
+    }
+
+    @Test
+    public void shouldRoundUpToWholeNumberOfWords() {
+        assertThat(new BitArray(65L).bitSize()).isEqualTo(2 * Long.SIZE);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.forgerock.guava.common.hash.Funnels;
+import org.forgerock.util.time.TimeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark measuring the throughput of {@link BloomFilterChain#mightContain(Object)} as the number of buckets in
+ * the chain grows. Absent elements are the worst case as every bucket in the chain must be checked. This is not run
+ * as part of the unit tests; run the {@link #main(String[])} method from the test classpath instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BloomFilterChainBenchmark {
+    private static final int BUCKET_CAPACITY = 10000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01d;
+    private static final int NUM_PROBES = 1024;
+
+    @Param({ "1", "2", "5", "10", "20" })
+    public int chainLength;
+
+    @Param({ "COPY_ON_WRITE", "SYNCHRONIZED", "ATOMIC" })
+    public ConcurrencyStrategy concurrencyStrategy;
+
+    private BloomFilterChain<CharSequence> chain;
+    private String[] present;
+    private String[] absent;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createChain() {
+        final CountingPool pool = new CountingPool(
+                concurrencyStrategy.<CharSequence>getFactory(Funnels.unencodedCharsFunnel()));
+        chain = new BloomFilterChain<CharSequence>(pool, TimeService.SYSTEM);
+
+        int i = 0;
+        while (pool.created < chainLength) {
+            chain.add("present-" + i++);
+        }
+
+        present = new String[NUM_PROBES];
+        absent = new String[NUM_PROBES];
+        for (int j = 0; j < NUM_PROBES; ++j) {
+            present[j] = "present-" + (j % i);
+            absent[j] = "absent-" + j;
+        }
+    }
+
+    @Benchmark
+    public boolean mightContainAbsent() {
+        return chain.mightContain(absent[next++ & (NUM_PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean mightContainPresent() {
+        return chain.mightContain(present[next++ & (NUM_PROBES - 1)]);
+    }
+
+    /**
+     * Pool of fixed-size buckets that counts the number of buckets handed out, so that the chain can be filled to an
+     * exact length.
+     */
+    private static final class CountingPool implements BloomFilterPool<CharSequence> {
+        private final BloomFilterFactory<CharSequence> factory;
+        private int created;
+
+        CountingPool(final BloomFilterFactory<CharSequence> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public BloomFilter<CharSequence> nextAvailable() {
+            created++;
+            return factory.create(BUCKET_CAPACITY, FALSE_POSITIVE_PROBABILITY);
+        }
+
+        @Override
+        public void release(final BloomFilter<CharSequence> released) {
+            created--;
+        }
+
+        @Override
+        public double getOverallFalsePositiveProbability() {
+            return FALSE_POSITIVE_PROBABILITY;
+        }
+
+        @Override
+        public BloomFilter<CharSequence> acquire(final int bucketNumber) {
+            return nextAvailable();
+        }
+
+        @Override
+        public int bucketNumber(final BloomFilter<CharSequence> bucket) {
+            return -1;
+        }
+
+        @Override
+        public void adopt(final BloomFilter<CharSequence> bucket, final int bucketNumber) {
+            created++;
+        }
+    }
+
+    public static void main(String... args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(BloomFilterChainBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
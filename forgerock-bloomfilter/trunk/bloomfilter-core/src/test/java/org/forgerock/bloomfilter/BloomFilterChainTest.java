@@ -17,7 +17,9 @@
 package org.forgerock.bloomfilter;
 
 import static org.mockito.BDDMockito.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import org.forgerock.util.time.TimeService;
@@ -26,8 +28,11 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+
 public class BloomFilterChainTest {
     private static final BloomFilterStatistics SATURATED = new BloomFilterStatistics(0.01d, 0.02d, 1, 1, 1, 0);
+    private static final BloomFilterStatistics UNSATURATED = new BloomFilterStatistics(0.01d, 0.001d, 1, 1, 1, 1);
 
     @Mock
     private BloomFilterPool<Integer> mockPool;
@@ -92,4 +97,42 @@ public class BloomFilterChainTest {
         // Then
         verify(mockPool).release(mockBloomFilter);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldNotAddToRestoredBuckets() {
+        // Given
+        @SuppressWarnings("unchecked")
+        BloomFilter<Integer> restored = mock(BloomFilter.class);
+        given(restored.getStatistics()).willReturn(UNSATURATED);
+        given(mockPool.nextAvailable()).willReturn(mockBloomFilter);
+        testChain.restore(Collections.singletonList(restored));
+        int value = 42;
+
+        // When
+        testChain.add(value);
+
+        // Then
+        verify(restored, never()).add(value);
+        verify(mockBloomFilter).add(value);
+        assertThat(testChain.getBuckets()).containsExactly(restored, mockBloomFilter);
+    }
+
+    @Test
+    public void shouldReleaseExpiredRestoredBuckets() {
+        // Given
+        @SuppressWarnings("unchecked")
+        BloomFilter<Integer> restored = mock(BloomFilter.class);
+        given(restored.getStatistics()).willReturn(UNSATURATED);
+        given(mockPool.nextAvailable()).willReturn(mockBloomFilter);
+        given(mockBloomFilter.getStatistics()).willReturn(UNSATURATED);
+        given(mockClock.now()).willReturn(Long.MAX_VALUE);
+        testChain.restore(Collections.singletonList(restored));
+
+        // When
+        testChain.add(42);
+
+        // Then
+        verify(mockPool).release(restored);
+        assertThat(testChain.getBuckets()).containsExactly(mockBloomFilter);
+    }
+}
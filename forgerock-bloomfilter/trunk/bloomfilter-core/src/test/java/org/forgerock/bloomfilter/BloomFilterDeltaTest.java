@@ -0,0 +1,178 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.guava.common.hash.Funnels;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+public class BloomFilterDeltaTest {
+    private static final int NUM_ELEMENTS = 5000;
+
+    @DataProvider
+    public static Object[][] strategies() {
+        return new Object[][] {
+                {ConcurrencyStrategy.ATOMIC},
+                {ConcurrencyStrategy.ATOMIC_BLOCKED}
+        };
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldReplicateAllElements(final ConcurrencyStrategy strategy) {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> source = build(rolling(strategy));
+        final ConcurrentRollingBloomFilter<Integer> target = build(rolling(strategy));
+        for (int i = 0; i < NUM_ELEMENTS; ++i) {
+            source.add(i);
+        }
+
+        // When
+        target.mergeDelta(source.exportDelta(0L));
+
+        // Then
+        for (int i = 0; i < NUM_ELEMENTS; ++i) {
+            assertThat(target.mightContain(i)).isTrue();
+        }
+        assertThat(target.getStatistics().getExpiryTime()).isEqualTo(source.getStatistics().getExpiryTime());
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldOnlyExportChangesSincePreviousDelta(final ConcurrencyStrategy strategy) {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> source = build(rolling(strategy));
+        for (int i = 0; i < NUM_ELEMENTS; ++i) {
+            source.add(i);
+        }
+        final BloomFilterDelta first = source.exportDelta(0L);
+        source.add(NUM_ELEMENTS);
+
+        // When
+        final BloomFilterDelta second = source.exportDelta(first.getSequence());
+        final BloomFilterDelta third = source.exportDelta(second.getSequence());
+
+        // Then
+        assertThat(second.isEmpty()).isFalse();
+        assertThat(serializedSize(second)).isLessThan(serializedSize(first));
+        assertThat(third.isEmpty()).isTrue();
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldMergeInBothDirections(final ConcurrencyStrategy strategy) {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> a = build(rolling(strategy));
+        final ConcurrentRollingBloomFilter<Integer> b = build(rolling(strategy));
+        a.add(1);
+        b.add(2);
+
+        // When
+        final BloomFilterDelta fromA = a.exportDelta(0L);
+        final BloomFilterDelta fromB = b.exportDelta(0L);
+        a.mergeDelta(fromB);
+        b.mergeDelta(fromA);
+
+        // Then
+        assertThat(a.mightContain(2)).isTrue();
+        assertThat(b.mightContain(1)).isTrue();
+    }
+
+    @Test
+    public void shouldRoundTripThroughBinaryForm() throws Exception {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> source = build(rolling(ConcurrencyStrategy.ATOMIC));
+        final ConcurrentRollingBloomFilter<Integer> target = build(rolling(ConcurrencyStrategy.ATOMIC));
+        source.add(42);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BloomFilterDelta delta = source.exportDelta(0L);
+        delta.writeTo(new DataOutputStream(bytes));
+
+        // When
+        final BloomFilterDelta result =
+                BloomFilterDelta.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        target.mergeDelta(result);
+
+        // Then
+        assertThat(result.getSequence()).isEqualTo(delta.getSequence());
+        assertThat(target.mightContain(42)).isTrue();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectDeltaFromIncompatibleFilter() {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> source = build(rolling(ConcurrencyStrategy.ATOMIC));
+        final ConcurrentRollingBloomFilter<Integer> target = build(rolling(ConcurrencyStrategy.ATOMIC_BLOCKED));
+        source.add(42);
+
+        // When
+        target.mergeDelta(source.exportDelta(0L));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectExportFromUnsupportedStrategy() {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> source = build(rolling(ConcurrencyStrategy.COPY_ON_WRITE));
+        source.add(42);
+
+        // When
+        source.exportDelta(0L);
+    }
+
+    private static int serializedSize(final BloomFilterDelta delta) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            delta.writeTo(new DataOutputStream(bytes));
+            return bytes.size();
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static ConcurrentRollingBloomFilter<Integer> build(
+            final BloomFilters.RollingBloomFilterBuilder<Integer> builder) {
+        return (ConcurrentRollingBloomFilter<Integer>) builder.build();
+    }
+
+    private static BloomFilters.RollingBloomFilterBuilder<Integer> rolling(final ConcurrencyStrategy strategy) {
+        return BloomFilters.create(Funnels.integerFunnel())
+                .withConcurrencyStrategy(strategy)
+                .withInitialCapacity(1000)
+                .withExpiryStrategy(new ExpiryStrategy<Integer>() {
+                    @Override
+                    public long expiryTime(final Integer element) {
+                        return 1000L + element;
+                    }
+                })
+                .withClock(new TimeService() {
+                    @Override
+                    public long now() {
+                        return 0L;
+                    }
+
+                    @Override
+                    public long since(final long past) {
+                        return -past;
+                    }
+                });
+    }
+}
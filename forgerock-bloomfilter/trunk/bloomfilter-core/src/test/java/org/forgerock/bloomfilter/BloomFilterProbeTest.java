@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.forgerock.guava.common.hash.Funnel;
+import org.forgerock.guava.common.hash.Funnels;
+import org.forgerock.guava.common.hash.PrimitiveSink;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class BloomFilterProbeTest {
+    private static final Funnel<Integer> FUNNEL = Funnels.integerFunnel();
+
+    @DataProvider
+    public Object[][] strategies() {
+        return new Object[][] {
+                { ConcurrencyStrategy.COPY_ON_WRITE },
+                { ConcurrencyStrategy.SYNCHRONIZED },
+                { ConcurrencyStrategy.ATOMIC },
+                { ConcurrencyStrategy.ATOMIC_BLOCKED },
+                { ConcurrencyStrategy.ATOMIC_COUNTING }
+        };
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldOnlyHashElementOnce() {
+        // Given
+        Funnel<Integer> funnel = mock(Funnel.class);
+        BloomFilterProbe<Integer> probe = new BloomFilterProbe<Integer>(42);
+
+        // When
+        probe.hash1(funnel);
+        probe.hash2(funnel);
+        probe.hash1(funnel);
+
+        // Then
+        verify(funnel, times(1)).funnel(anyInt(), any(PrimitiveSink.class));
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldAgreeWithElementMembership(ConcurrencyStrategy strategy) {
+        // Given
+        BloomFilter<Integer> bloomFilter = strategy.getFactory(FUNNEL).create(100, 0.01d);
+        bloomFilter.add(42);
+
+        // When
+        boolean result = new BloomFilterProbe<Integer>(42).test(bloomFilter);
+
+        // Then
+        assertThat(result).isTrue();
+        assertThat(bloomFilter).isInstanceOf(ProbeableBloomFilter.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldFallBackToElementForOtherBloomFilters() {
+        // Given
+        BloomFilter<Integer> bloomFilter = mock(BloomFilter.class);
+
+        // When
+        new BloomFilterProbe<Integer>(42).test(bloomFilter);
+
+        // Then
+        verify(bloomFilter).mightContain(42);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.guava.common.hash.Funnels;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+public class BloomFilterSnapshotsTest {
+    private static final int NUM_ELEMENTS = 5000;
+
+    private File snapshot;
+
+    @BeforeMethod
+    public void createSnapshotFile() throws Exception {
+        snapshot = File.createTempFile("bloomfilter", ".snapshot");
+        snapshot.delete();
+    }
+
+    @AfterMethod
+    public void deleteSnapshotFile() {
+        snapshot.delete();
+    }
+
+    @DataProvider
+    public static Object[][] strategies() {
+        return new Object[][] {
+                {ConcurrencyStrategy.COPY_ON_WRITE},
+                {ConcurrencyStrategy.SYNCHRONIZED},
+                {ConcurrencyStrategy.ATOMIC},
+                {ConcurrencyStrategy.ATOMIC_BLOCKED}
+        };
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldRestoreAllElementsFromSnapshot(final ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> original = build(rolling(strategy));
+        for (int i = 0; i < NUM_ELEMENTS; ++i) {
+            original.add(i);
+        }
+        original.writeSnapshot(snapshot);
+
+        // When
+        final ConcurrentRollingBloomFilter<Integer> restored = build(rolling(strategy).withSnapshot(snapshot));
+
+        // Then
+        for (int i = 0; i < NUM_ELEMENTS; ++i) {
+            assertThat(restored.mightContain(i)).isTrue();
+        }
+        assertThat(restored.getStatistics().getExpiryTime()).isEqualTo(original.getStatistics().getExpiryTime());
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldAddNewElementsAfterRestore(final ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> original = build(rolling(strategy));
+        original.add(1);
+        original.writeSnapshot(snapshot);
+        final ConcurrentRollingBloomFilter<Integer> restored = build(rolling(strategy).withSnapshot(snapshot));
+
+        // When
+        restored.add(NUM_ELEMENTS);
+
+        // Then
+        assertThat(restored.mightContain(1)).isTrue();
+        assertThat(restored.mightContain(NUM_ELEMENTS)).isTrue();
+    }
+
+    @Test
+    public void shouldResnapshotRestoredBuckets() throws Exception {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> original = build(rolling(ConcurrencyStrategy.ATOMIC));
+        original.add(1);
+        original.writeSnapshot(snapshot);
+        final ConcurrentRollingBloomFilter<Integer> restored =
+                build(rolling(ConcurrencyStrategy.ATOMIC).withSnapshot(snapshot));
+        restored.add(2);
+
+        // When
+        restored.writeSnapshot(snapshot);
+        final ConcurrentRollingBloomFilter<Integer> result =
+                build(rolling(ConcurrencyStrategy.ATOMIC).withSnapshot(snapshot));
+
+        // Then
+        assertThat(result.mightContain(1)).isTrue();
+        assertThat(result.mightContain(2)).isTrue();
+    }
+
+    @Test
+    public void shouldStartEmptyIfSnapshotIsInvalid() throws Exception {
+        // Given
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(snapshot));
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeLong(0L);
+        } finally {
+            out.close();
+        }
+
+        // When
+        final ConcurrentRollingBloomFilter<Integer> filter =
+                build(rolling(ConcurrencyStrategy.ATOMIC).withSnapshot(snapshot));
+
+        // Then
+        assertThat(filter.mightContain(1)).isFalse();
+    }
+
+    @Test(expectedExceptions = java.io.IOException.class)
+    public void shouldRejectInvalidSnapshot() throws Exception {
+        // Given
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(snapshot));
+        try {
+            out.writeInt(BloomFilterSnapshots.MAGIC);
+            out.writeInt(BloomFilterSnapshots.VERSION + 1);
+            out.writeLong(0L);
+        } finally {
+            out.close();
+        }
+
+        // When
+        BloomFilterSnapshots.read(snapshot, Funnels.integerFunnel(), BloomFilters.NeverExpires.<Integer>strategy(),
+                new GeometricSeriesBloomFilterPool<Integer>(ConcurrencyStrategy.ATOMIC.<Integer>getFactory(
+                        Funnels.integerFunnel()), 10, 100, 2.0d, 0.01d, 0.8d));
+    }
+
+    @Test
+    public void shouldRestoreReadOnlyMappedBuckets() throws Exception {
+        // Given
+        final ConcurrentRollingBloomFilter<Integer> original = build(rolling(ConcurrencyStrategy.ATOMIC_BLOCKED));
+        original.add(1);
+        original.writeSnapshot(snapshot);
+        final BloomFilterPool<Integer> pool = new GeometricSeriesBloomFilterPool<Integer>(
+                ConcurrencyStrategy.ATOMIC_BLOCKED.<Integer>getFactory(Funnels.integerFunnel()), 10, 100, 2.0d,
+                0.01d, 0.8d);
+
+        // When
+        final List<BloomFilter<Integer>> buckets = BloomFilterSnapshots.read(snapshot, Funnels.integerFunnel(),
+                BloomFilters.NeverExpires.<Integer>strategy(), pool);
+
+        // Then
+        assertThat(buckets).hasSize(1);
+        assertThat(buckets.get(0)).isInstanceOf(MappedBloomFilter.class);
+        assertThat(((MappedBloomFilter<Integer>) buckets.get(0)).getLayout())
+                .isEqualTo(BitVectorBloomFilter.Layout.BLOCKED);
+        assertThat(buckets.get(0).mightContain(1)).isTrue();
+        assertThat(pool.bucketNumber(buckets.get(0))).isEqualTo(0);
+    }
+
+    private static ConcurrentRollingBloomFilter<Integer> build(
+            final BloomFilters.RollingBloomFilterBuilder<Integer> builder) {
+        return (ConcurrentRollingBloomFilter<Integer>) builder.build();
+    }
+
+    private static BloomFilters.RollingBloomFilterBuilder<Integer> rolling(final ConcurrencyStrategy strategy) {
+        return BloomFilters.create(Funnels.integerFunnel())
+                .withConcurrencyStrategy(strategy)
+                .withInitialCapacity(1000)
+                .withExpiryStrategy(new ExpiryStrategy<Integer>() {
+                    @Override
+                    public long expiryTime(final Integer element) {
+                        return 1000L + element;
+                    }
+                })
+                .withClock(new TimeService() {
+                    @Override
+                    public long now() {
+                        return 0L;
+                    }
+
+                    @Override
+                    public long since(final long past) {
+                        return -past;
+                    }
+                });
+    }
+}
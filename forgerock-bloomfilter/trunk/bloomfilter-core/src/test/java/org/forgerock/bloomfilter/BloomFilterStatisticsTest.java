@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class BloomFilterStatisticsTest {
+    private static final int BLOCK_BITS = 512;
+
+    @DataProvider
+    public Object[][] falsePositiveProbabilities() {
+        return new Object[][] {
+                { 0.1d },
+                { 0.01d },
+                { 0.001d },
+                { 0.0001d }
+        };
+    }
+
+    @Test(dataProvider = "falsePositiveProbabilities")
+    public void shouldSizeBlockedFiltersToAchieveFalsePositiveProbability(double fpp) {
+        // Given
+        long capacity = 1000000;
+
+        // When
+        long bitSize = BloomFilterStatistics.optimumBlockedBitSize(capacity, fpp, BLOCK_BITS);
+
+        // Then
+        int k = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
+        assertThat(bitSize % BLOCK_BITS).isEqualTo(0);
+        assertThat(bitSize).isGreaterThanOrEqualTo(BloomFilterStatistics.optimumBitSize(capacity, fpp));
+        assertThat(BloomFilterStatistics.blockedFalsePositiveProbability(bitSize, capacity, k, BLOCK_BITS))
+                .isLessThanOrEqualTo(fpp);
+    }
+
+    @Test(dataProvider = "falsePositiveProbabilities")
+    public void shouldPenaliseBlockedFalsePositiveProbability(double fpp) {
+        // Given
+        long capacity = 1000000;
+        long bitSize = BloomFilterStatistics.optimumBitSize(capacity, fpp);
+        int k = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
+
+        // When
+        double blockedFpp = BloomFilterStatistics.blockedFalsePositiveProbability(bitSize, capacity, k, BLOCK_BITS);
+
+        // Then
+        assertThat(blockedFpp).isGreaterThan(fpp);
+    }
+
+    @Test
+    public void shouldApproachStandardFalsePositiveProbabilityForLargeBlocks() {
+        // Given
+        long capacity = 500;
+        long bitSize = BloomFilterStatistics.optimumBitSize(capacity, 0.01d);
+        int k = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
+        double standardFpp = Math.pow(1.0d - Math.exp(-(double) k * capacity / bitSize), k);
+
+        // When
+        double blockedFpp = BloomFilterStatistics.blockedFalsePositiveProbability(bitSize, capacity, k, 4096);
+
+        // Then
+        assertThat(blockedFpp).isEqualTo(standardFpp, offset(0.0005d));
+    }
+
+    @Test
+    public void shouldHaveZeroFalsePositiveProbabilityWhenEmpty() {
+        assertThat(BloomFilterStatistics.blockedFalsePositiveProbability(BLOCK_BITS * 16, 0, 7, BLOCK_BITS))
+                .isEqualTo(0.0d);
+    }
+}
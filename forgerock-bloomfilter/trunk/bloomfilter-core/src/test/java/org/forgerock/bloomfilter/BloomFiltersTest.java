@@ -189,11 +189,40 @@ public class BloomFiltersTest {
             case ATOMIC:
                 assertThat(bf).isInstanceOf(AtomicBloomFilter.class);
                 break;
+            case ATOMIC_BLOCKED:
+                assertThat(bf).isInstanceOf(BlockedBloomFilter.class);
+                break;
+            case ATOMIC_COUNTING:
+                assertThat(bf).isInstanceOf(AtomicCountingBloomFilter.class);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown strategy: " + strategy);
         }
     }
 
+    @Test
+    public void shouldBuildCountingBloomFilters() {
+        // When
+        CountingBloomFilter<Integer> bf = BloomFilters.<Integer>create(integerFunnel())
+                .counting()
+                .withCounterWidth(8)
+                .build();
+
+        // Then
+        assertThat(bf).isInstanceOf(AtomicCountingBloomFilter.class);
+        assertThat(bf.getStatistics().getBitSize()).isEqualTo(8 * bf.getStatistics().getCounterCount());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedCounterWidth() {
+        BloomFilters.create(integerFunnel()).counting().withCounterWidth(16);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectOtherConcurrencyStrategiesForCountingBloomFilters() {
+        BloomFilters.create(integerFunnel()).counting().withConcurrencyStrategy(ConcurrencyStrategy.ATOMIC);
+    }
+
     @Test(expectedExceptions = NullPointerException.class)
     public void shouldRejectNullFunnel() {
         BloomFilters.create(null);
@@ -284,7 +313,9 @@ public class BloomFiltersTest {
         return new Object[][] {
                 { ConcurrencyStrategy.COPY_ON_WRITE },
                 { ConcurrencyStrategy.SYNCHRONIZED },
-                { ConcurrencyStrategy.ATOMIC }
+                { ConcurrencyStrategy.ATOMIC },
+                { ConcurrencyStrategy.ATOMIC_BLOCKED },
+                { ConcurrencyStrategy.ATOMIC_COUNTING }
         };
     }
 
@@ -39,11 +39,17 @@ public class ConcurrencyStrategyTest {
                 .create(capacity, fpp);
         BloomFilter<Integer> atomicBf = ConcurrencyStrategy.ATOMIC.<Integer>getFactory(funnel)
                 .create(capacity, fpp);
+        BloomFilter<Integer> blockedBf = ConcurrencyStrategy.ATOMIC_BLOCKED.<Integer>getFactory(funnel)
+                .create(capacity, fpp);
+        BloomFilter<Integer> countingBf = ConcurrencyStrategy.ATOMIC_COUNTING.<Integer>getFactory(funnel)
+                .create(capacity, fpp);
 
         // Then
         assertThat(cowBf).isInstanceOf(CopyOnWriteBloomFilter.class);
         assertThat(syncBf).isInstanceOf(SynchronizedBloomFilter.class);
         assertThat(atomicBf).isInstanceOf(AtomicBloomFilter.class);
+        assertThat(blockedBf).isInstanceOf(BlockedBloomFilter.class);
+        assertThat(countingBf).isInstanceOf(AtomicCountingBloomFilter.class);
     }
 
     @Test(dataProvider = "strategies")
@@ -68,7 +74,9 @@ public class ConcurrencyStrategyTest {
         return new Object[][] {
                 { ConcurrencyStrategy.COPY_ON_WRITE },
                 { ConcurrencyStrategy.SYNCHRONIZED },
-                { ConcurrencyStrategy.ATOMIC }
+                { ConcurrencyStrategy.ATOMIC },
+                { ConcurrencyStrategy.ATOMIC_BLOCKED },
+                { ConcurrencyStrategy.ATOMIC_COUNTING }
         };
     }
 }
\ No newline at end of file
@@ -49,7 +49,9 @@ public class ConcurrentRollingBloomFilterTest {
         return new Object[][] {
                 {ConcurrencyStrategy.COPY_ON_WRITE},
                 {ConcurrencyStrategy.SYNCHRONIZED},
-                {ConcurrencyStrategy.ATOMIC}
+                {ConcurrencyStrategy.ATOMIC},
+                {ConcurrencyStrategy.ATOMIC_BLOCKED},
+                {ConcurrencyStrategy.ATOMIC_COUNTING}
         };
     }
 
@@ -20,6 +20,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.anyDouble;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -29,6 +30,8 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.NoSuchElementException;
+
 public class GeometricSeriesBloomFilterPoolTest {
     private static final int MAX_BUCKETS = 4;
     private static final long INITIAL_CAPACITY = 100l;
@@ -170,4 +173,104 @@ public class GeometricSeriesBloomFilterPoolTest {
         // Should re-use the initial bucket stats
         verify(mockFactory, times(2)).create(INITIAL_CAPACITY, EXPECTED_INITIAL_FPP);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldSkipAdoptedBucketNumbers() {
+        // Given
+        pool.adopt(mockBloomFilter, 0);
+
+        // When
+        pool.nextAvailable();
+
+        // Then
+        verify(mockFactory).create((long)(INITIAL_CAPACITY * CAPACITY_GROWTH_FACTOR),
+                EXPECTED_INITIAL_FPP * FPP_SCALE_FACTOR);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldReportBucketNumbers() {
+        // Given
+        BloomFilter<Integer> adopted = mock(BloomFilter.class);
+        pool.adopt(adopted, 2);
+
+        // When
+        BloomFilter<Integer> created = pool.nextAvailable();
+
+        // Then
+        assertThat(pool.bucketNumber(adopted)).isEqualTo(2);
+        assertThat(pool.bucketNumber(created)).isEqualTo(0);
+        assertThat(pool.bucketNumber(mock(BloomFilter.class))).isEqualTo(-1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotAdoptUnavailableBucketNumbers() {
+        // Given
+        BloomFilter<Integer> adopted = mock(BloomFilter.class);
+        pool.nextAvailable();
+
+        // When
+        pool.adopt(adopted, 0);
+        pool.adopt(adopted, MAX_BUCKETS);
+
+        // Then
+        assertThat(pool.bucketNumber(adopted)).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldReuseReleasedAdoptedBuckets() {
+        // Given
+        pool.adopt(mockBloomFilter, 0);
+
+        // When
+        pool.release(mockBloomFilter);
+        pool.nextAvailable();
+
+        // Then
+        verify(mockFactory).create(INITIAL_CAPACITY, EXPECTED_INITIAL_FPP);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldIgnoreReleaseOfUnknownBuckets() {
+        // Given
+        pool.nextAvailable();
+
+        // When
+        pool.release(mock(BloomFilter.class));
+        pool.nextAvailable();
+
+        // Then
+        verify(mockFactory).create((long)(INITIAL_CAPACITY * CAPACITY_GROWTH_FACTOR),
+                EXPECTED_INITIAL_FPP * FPP_SCALE_FACTOR);
+    }
+
+    @Test
+    public void shouldAcquireSpecificBucketNumbers() {
+        // When
+        BloomFilter<Integer> bf = pool.acquire(2);
+
+        // Then
+        verify(mockFactory).create((long)(INITIAL_CAPACITY * CAPACITY_GROWTH_FACTOR * CAPACITY_GROWTH_FACTOR),
+                EXPECTED_INITIAL_FPP * FPP_SCALE_FACTOR * FPP_SCALE_FACTOR);
+        assertThat(pool.bucketNumber(bf)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotAcquireBucketNumbersInUse() {
+        // Given
+        pool.nextAvailable();
+
+        // When
+        BloomFilter<Integer> bf = pool.acquire(0);
+
+        // Then
+        assertThat(bf).isNull();
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void shouldRejectAcquiringBucketNumbersBeyondMaximum() {
+        pool.acquire(MAX_BUCKETS);
+    }
+}
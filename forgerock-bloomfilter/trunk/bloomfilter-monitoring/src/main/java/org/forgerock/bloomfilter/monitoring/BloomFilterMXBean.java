@@ -30,4 +30,6 @@ public interface BloomFilterMXBean {
     long getEstimatedRemainingCapacity();
     long getMemorySizeKB();
     Date getExpiryTime();
+    long getCounterCount();
+    long getSaturatedCounterCount();
 }
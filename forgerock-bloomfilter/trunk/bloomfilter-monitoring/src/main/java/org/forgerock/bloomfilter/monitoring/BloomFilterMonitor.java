@@ -170,6 +170,16 @@ public final class BloomFilterMonitor<T> implements BloomFilterMXBean, BloomFilt
         return new Date(getStatistics().getExpiryTime());
     }
 
+    @Override
+    public long getCounterCount() {
+        return getStatistics().getCounterCount();
+    }
+
+    @Override
+    public long getSaturatedCounterCount() {
+        return getStatistics().getSaturatedCounterCount();
+    }
+
     /**
      * Maintains live on-going statistics on method call timing latencies. An HdrHistogram {@link Recorder} is used
      * to keep track of live performance data. A snapshot is taken periodically according to the update interval and
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.forgerock.http.Context;
+import org.forgerock.util.Factory;
 
 /**
  * ClientInfo gives easy access to client-related information that are available into the request.
@@ -34,12 +35,15 @@ import org.forgerock.http.Context;
  *     <li>Client provided X509 certificates</li>
  *     <li>User-Agent information</li>
  * </ul>
+ * The remote host may be provided as a {@link Factory factory}, in which case
+ * it is only resolved when first accessed. This avoids reverse DNS lookups for
+ * requests whose handlers never use the remote host.
  */
 public final class ClientInfoContext extends ServerContext implements ClientInfo {
 
     private final String remoteUser;
     private final String remoteAddress;
-    private final String remoteHost;
+    private final Lazy<String> remoteHost;
     private final int remotePort;
     private final List<X509Certificate> certificates;
     private final String userAgent;
@@ -47,19 +51,62 @@ public final class ClientInfoContext extends ServerContext implements ClientInfo
     private ClientInfoContext(Context parent,
                               String remoteUser,
                               String remoteAddress,
-                              String remoteHost,
+                              Factory<String> remoteHost,
                               int remotePort,
                               List<X509Certificate> certificates,
                               String userAgent) {
         super(parent, "clientInfo");
         this.remoteUser = remoteUser;
         this.remoteAddress = remoteAddress;
-        this.remoteHost = remoteHost;
+        this.remoteHost = new Lazy<>(remoteHost);
         this.remotePort = remotePort;
         this.certificates = Collections.unmodifiableList(certificates);
         this.userAgent = userAgent;
     }
 
+    /**
+     * Resolves a value from a factory when first accessed. The factory may be
+     * invoked more than once if the value is accessed concurrently, so it must
+     * be idempotent.
+     */
+    private static final class Lazy<T> {
+        private volatile Factory<T> factory;
+        private volatile T value;
+
+        private Lazy(Factory<T> factory) {
+            this.factory = factory;
+        }
+
+        private T get() {
+            T result = value;
+            if (result == null) {
+                Factory<T> f = factory;
+                if (f != null) {
+                    result = f.newInstance();
+                    value = result;
+                    // Release the factory once it is no longer needed.
+                    factory = null;
+                } else {
+                    // Resolved concurrently, or the value is null.
+                    result = value;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns a factory which always returns the provided value.
+     */
+    private static <T> Factory<T> valueOf(final T value) {
+        return value != null ? new Factory<T>() {
+            @Override
+            public T newInstance() {
+                return value;
+            }
+        } : null;
+    }
+
     /**
      * Builder for creating {@code ClientInfoContext} instances.
      */
@@ -68,7 +115,7 @@ public final class ClientInfoContext extends ServerContext implements ClientInfo
         private final Context parent;
         private String remoteUser;
         private String remoteAddress;
-        private String remoteHost;
+        private Factory<String> remoteHost;
         private int remotePort;
         private List<X509Certificate> certificates;
         private String userAgent;
@@ -106,6 +153,17 @@ public final class ClientInfoContext extends ServerContext implements ClientInfo
          * @return The builder instance.
          */
         public ClientInfoContextBuilder remoteHost(String remoteHost) {
+            return remoteHost(valueOf(remoteHost));
+        }
+
+        /**
+         * Sets the factory which resolves the client's remote host when it is
+         * first accessed.
+         *
+         * @param remoteHost The factory for the remote host.
+         * @return The builder instance.
+         */
+        public ClientInfoContextBuilder remoteHost(Factory<String> remoteHost) {
             this.remoteHost = remoteHost;
             return this;
         }
@@ -207,7 +265,7 @@ public final class ClientInfoContext extends ServerContext implements ClientInfo
      */
     @Override
     public String getRemoteHost() {
-        return remoteHost;
+        return remoteHost.get();
     }
 
     /**
@@ -0,0 +1,127 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.filter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * An input stream which compresses the data read from another input stream as
+ * it is read, in either the {@code gzip} (RFC 1952) or the {@code deflate}
+ * (RFC 1950 zlib) format. Only as much data as the compressor needs is read
+ * ahead from the source stream, so the content is never fully buffered.
+ * <p>
+ * Closing this stream closes the source stream.
+ */
+final class CompressingInputStream extends InputStream {
+
+    /** The HTTP content coding for the gzip format. */
+    static final String GZIP = "gzip";
+
+    /** The HTTP content coding for the zlib format. */
+    static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8 * 1_024;
+
+    /** The gzip header: magic number, deflate method, no flags, no time, no extra flags, unknown OS. */
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final Deflater deflater;
+    private final InputStream deflated;
+    /** The checksum of the uncompressed data, or {@code null} for the zlib format. */
+    private final CRC32 crc;
+
+    /** The header or trailer bytes being returned, or {@code null} while returning compressed data. */
+    private byte[] frame;
+    private int framePosition;
+    private boolean finished;
+
+    /**
+     * Creates a new compressing stream.
+     *
+     * @param in The source stream.
+     * @param coding Either {@link #GZIP} or {@link #DEFLATE}.
+     * @param level The compression level, from 0 to 9 or -1 for the default level.
+     */
+    CompressingInputStream(InputStream in, String coding, int level) {
+        boolean gzip = GZIP.equals(coding);
+        this.deflater = new Deflater(level, gzip);
+        this.crc = gzip ? new CRC32() : null;
+        this.deflated = new DeflaterInputStream(gzip ? new CheckedInputStream(in, crc) : in, deflater, BUFFER_SIZE);
+        this.frame = gzip ? GZIP_HEADER : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (frame != null) {
+                if (framePosition < frame.length) {
+                    int n = Math.min(len, frame.length - framePosition);
+                    System.arraycopy(frame, framePosition, b, off, n);
+                    framePosition += n;
+                    return n;
+                }
+                frame = null;
+                framePosition = 0;
+            }
+            if (finished) {
+                return -1;
+            }
+            int n = deflated.read(b, off, len);
+            if (n > 0) {
+                return n;
+            }
+            if (n == -1) {
+                finished = true;
+                if (crc != null) {
+                    frame = gzipTrailer();
+                }
+            }
+        }
+    }
+
+    private byte[] gzipTrailer() {
+        long checksum = crc.getValue();
+        long size = deflater.getBytesRead();
+        return new byte[] {
+            (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+            (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            deflated.close();
+        } finally {
+            deflater.end();
+        }
+    }
+}
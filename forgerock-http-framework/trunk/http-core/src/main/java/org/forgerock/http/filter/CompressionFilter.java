@@ -0,0 +1,203 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.filter;
+
+import static org.forgerock.http.filter.CompressingInputStream.DEFLATE;
+import static org.forgerock.http.filter.CompressingInputStream.GZIP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.forgerock.http.Context;
+import org.forgerock.http.Filter;
+import org.forgerock.http.Handler;
+import org.forgerock.http.header.ContentEncodingHeader;
+import org.forgerock.http.header.ContentLengthHeader;
+import org.forgerock.http.header.ContentTypeHeader;
+import org.forgerock.http.header.HeaderUtil;
+import org.forgerock.http.io.IO;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+
+/**
+ * {@link Filter} which compresses response entities using the {@code gzip} or
+ * {@code deflate} content coding, according to the request's
+ * {@code Accept-Encoding} header. Entities are compressed as they are written,
+ * so streamed responses are not buffered.
+ * <p>
+ * A response is only compressed if its {@code Content-Type} matches one of
+ * the configured MIME types, which may use a wildcard sub-type such as
+ * {@code text/*}, and if its {@code Content-Length} is unknown or at least
+ * the configured minimum size. Responses which already have a
+ * {@code Content-Encoding}, partial responses and responses to {@code HEAD}
+ * requests are never compressed.
+ */
+public final class CompressionFilter implements Filter {
+
+    /** The default minimum size of the responses which are compressed, in bytes. */
+    public static final int DEFAULT_MINIMUM_SIZE = 1_024;
+
+    /** The MIME types which are compressed by default. */
+    public static final List<String> DEFAULT_MIME_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "text/*", "application/json", "application/javascript", "application/xml"));
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String VARY = "Vary";
+
+    private final int minimumSize;
+    private final int compressionLevel;
+    private final List<String> mimeTypes = new ArrayList<>();
+
+    CompressionFilter(int minimumSize, int compressionLevel, List<String> mimeTypes) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        this.minimumSize = minimumSize;
+        this.compressionLevel = compressionLevel;
+        for (String mimeType : mimeTypes) {
+            this.mimeTypes.add(mimeType.toLowerCase());
+        }
+    }
+
+    @Override
+    public Promise<Response, NeverThrowsException> filter(Context context, final Request request, Handler next) {
+        final String coding = "HEAD".equalsIgnoreCase(request.getMethod())
+                ? null : selectCoding(request.getHeaders().get(ACCEPT_ENCODING));
+        return next.handle(context, request).then(new Function<Response, Response, NeverThrowsException>() {
+            @Override
+            public Response apply(Response response) {
+                return isCompressible(response) ? compress(response, coding) : response;
+            }
+        });
+    }
+
+    /**
+     * Returns the preferred content coding in the provided
+     * {@code Accept-Encoding} header values, preferring {@code gzip} to
+     * {@code deflate} if both are equally acceptable, or {@code null} if
+     * neither is acceptable.
+     */
+    static String selectCoding(List<String> acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String value : acceptEncoding) {
+            for (String element : HeaderUtil.split(value, ',')) {
+                List<String> parts = HeaderUtil.split(element, ';');
+                if (parts.isEmpty()) {
+                    continue;
+                }
+                String coding = parts.get(0).trim().toLowerCase();
+                float quality = quality(parts);
+                if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                    gzip = quality;
+                } else if (DEFLATE.equals(coding)) {
+                    deflate = quality;
+                } else if ("*".equals(coding)) {
+                    any = quality;
+                }
+            }
+        }
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        } else if (deflate > 0) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    private static float quality(List<String> parts) {
+        String q = HeaderUtil.parseParameters(parts.subList(1, parts.size())).get("q");
+        if (q == null) {
+            return 1;
+        }
+        try {
+            return Float.parseFloat(q);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns whether the response's entity may be compressed, adding a
+     * {@code Vary} header to responses whose MIME type is compressible, since
+     * they depend on the request's {@code Accept-Encoding} header.
+     */
+    private boolean isCompressible(Response response) {
+        if (response == null || response.getStatus() == null || !response.getEntity().mayContainData()) {
+            return false;
+        }
+        int status = response.getStatus().getCode();
+        if (status == 204 || status == 206 || status == 304
+                || response.getHeaders().containsKey(ContentEncodingHeader.NAME)
+                || response.getHeaders().containsKey("Content-Range")
+                || !isCompressibleType(ContentTypeHeader.valueOf(response).getType())) {
+            return false;
+        }
+        response.getHeaders().add(VARY, ACCEPT_ENCODING);
+        long length = ContentLengthHeader.valueOf(response).getLength();
+        return length < 0 || length >= minimumSize;
+    }
+
+    private boolean isCompressibleType(String type) {
+        if (type == null) {
+            return false;
+        }
+        type = type.trim().toLowerCase();
+        for (String mimeType : mimeTypes) {
+            if (mimeType.endsWith("/*")
+                    ? type.startsWith(mimeType.substring(0, mimeType.length() - 1))
+                    : type.equals(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of the response whose entity is compressed. A new
+     * response is needed because replacing the entity of the original
+     * response would close its content. Closing the copy's entity closes the
+     * original response.
+     */
+    private Response compress(final Response response, String coding) {
+        if (coding == null) {
+            return response;
+        }
+        Response compressed = new Response(response.getStatus());
+        compressed.setCause(response.getCause());
+        compressed.setVersion(response.getVersion());
+        compressed.getHeaders().addAll(response.getHeaders());
+        compressed.getHeaders().remove(ContentLengthHeader.NAME);
+        compressed.getHeaders().putSingle(ContentEncodingHeader.NAME, coding);
+        compressed.getEntity().setRawContentInputStream(IO.newBranchingInputStream(
+                new CompressingInputStream(response.getEntity().getRawContentInputStream(), coding,
+                        compressionLevel), IO.newTemporaryStorage()));
+        return compressed;
+    }
+}
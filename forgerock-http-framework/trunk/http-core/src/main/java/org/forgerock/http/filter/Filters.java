@@ -18,6 +18,7 @@ package org.forgerock.http.filter;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.Deflater;
 
 import org.forgerock.http.Context;
 import org.forgerock.http.Filter;
@@ -58,6 +59,39 @@ public final class Filters {
         return new SessionFilter(sessionManager);
     }
 
+    /**
+     * Creates a {@link Filter} which compresses response entities according to
+     * the request's {@code Accept-Encoding} header, using the
+     * {@link CompressionFilter#DEFAULT_MINIMUM_SIZE default minimum size},
+     * the {@link CompressionFilter#DEFAULT_MIME_TYPES default MIME types} and
+     * the default compression level.
+     *
+     * @return A compression {@code Filter}.
+     * @see #newCompressionFilter(int, int, List)
+     */
+    public static Filter newCompressionFilter() {
+        return newCompressionFilter(CompressionFilter.DEFAULT_MINIMUM_SIZE, Deflater.DEFAULT_COMPRESSION,
+                CompressionFilter.DEFAULT_MIME_TYPES);
+    }
+
+    /**
+     * Creates a {@link Filter} which compresses response entities according to
+     * the request's {@code Accept-Encoding} header.
+     *
+     * @param minimumSize The minimum {@code Content-Length} of the responses
+     *                    to compress. Responses of unknown length are always
+     *                    compressed.
+     * @param compressionLevel The compression level, from 0 to 9, or -1 for
+     *                         the default level.
+     * @param mimeTypes The MIME types of the responses to compress, such as
+     *                  {@code application/json} or {@code text/*}.
+     * @return A compression {@code Filter}.
+     * @see CompressionFilter
+     */
+    public static Filter newCompressionFilter(int minimumSize, int compressionLevel, List<String> mimeTypes) {
+        return new CompressionFilter(minimumSize, compressionLevel, mimeTypes);
+    }
+
     /**
      * Creates a {@link Filter} which encapsulates the provided {@literal filters}
      * into a single {@code Filter}.
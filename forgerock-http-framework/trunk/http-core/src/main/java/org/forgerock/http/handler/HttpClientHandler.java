@@ -94,7 +94,10 @@ public final class HttpClientHandler implements Handler, Closeable {
 
     /**
      * Specifies the temporary storage that should be used for storing HTTP
-     * responses. By default {@link IO#newTemporaryStorage()} is used.
+     * responses. By default {@link IO#newTemporaryStorage()} is used. Use
+     * {@link IO#newPooledStorage(java.io.File)} to store responses in pooled
+     * direct memory, or {@link IO#newMappedStorage(java.io.File)} to promote
+     * large responses to memory-mapped files.
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public static final Option<Factory<Buffer>> OPTION_TEMPORARY_STORAGE = (Option) Option.of(
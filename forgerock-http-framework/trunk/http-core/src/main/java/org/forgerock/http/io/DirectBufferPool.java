@@ -0,0 +1,116 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A bounded pool of fixed size chunks of direct memory. Chunks are sliced from
+ * larger slabs, which are allocated on demand until the pool's size is
+ * reached, and are reused once released rather than being returned to the
+ * garbage collector.
+ * <p>
+ * Chunks must be {@link #release(ByteBuffer) released} explicitly. A chunk
+ * which is never released is lost to the pool until it is garbage collected,
+ * and still counts towards the pool's size.
+ * <p>
+ * This class is thread-safe.
+ */
+final class DirectBufferPool {
+
+    /** The default size of the chunks handed out by a pool. */
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1_024;
+
+    /** The number of chunks allocated at a time. */
+    private static final int CHUNKS_PER_SLAB = 32;
+
+    private final Queue<ByteBuffer> freeChunks = new ConcurrentLinkedQueue<>();
+    private final int chunkSize;
+    private final int maxChunks;
+    /** Guarded by this. */
+    private int allocatedChunks;
+
+    DirectBufferPool(int size) {
+        this(size, DEFAULT_CHUNK_SIZE);
+    }
+
+    DirectBufferPool(int size, int chunkSize) {
+        if (chunkSize <= 0 || size < 0) {
+            throw new IllegalArgumentException("Invalid pool size " + size + " or chunk size " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.maxChunks = size / chunkSize;
+    }
+
+    /**
+     * Returns the size of the chunks handed out by this pool.
+     *
+     * @return The size of the chunks, in bytes.
+     */
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Takes a cleared chunk from the pool, allocating more memory if the pool
+     * has not yet reached its size.
+     *
+     * @return A chunk, or {@code null} if the pool is exhausted.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer chunk = freeChunks.poll();
+        if (chunk == null) {
+            chunk = allocate();
+        }
+        if (chunk != null) {
+            chunk.clear();
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns a chunk to the pool. The chunk must not be used afterwards.
+     *
+     * @param chunk A chunk previously acquired from this pool.
+     */
+    void release(ByteBuffer chunk) {
+        freeChunks.offer(chunk);
+    }
+
+    private synchronized ByteBuffer allocate() {
+        // Another thread may have released or allocated chunks while this one waited for the lock.
+        ByteBuffer chunk = freeChunks.poll();
+        if (chunk != null || allocatedChunks == maxChunks) {
+            return chunk;
+        }
+        int count = Math.min(CHUNKS_PER_SLAB, maxChunks - allocatedChunks);
+        ByteBuffer slab = ByteBuffer.allocateDirect(count * chunkSize);
+        for (int i = 0; i < count; i++) {
+            slab.limit((i + 1) * chunkSize);
+            slab.position(i * chunkSize);
+            if (i == 0) {
+                chunk = slab.slice();
+            } else {
+                freeChunks.offer(slab.slice());
+            }
+        }
+        allocatedChunks += count;
+        return chunk;
+    }
+}
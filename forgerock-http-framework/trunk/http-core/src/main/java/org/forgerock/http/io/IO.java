@@ -49,6 +49,11 @@ public final class IO {
      */
     public static final int DEFAULT_TMP_FILE_LIMIT = 1 * 1_024 * 1_024;
 
+    /**
+     * 16 MiB.
+     */
+    public static final int DEFAULT_TMP_POOL_SIZE = 16 * 1_024 * 1_024;
+
     /** Size of buffer to use during streaming. */
     private static final int BUF_SIZE = 8 * 1_024;
 
@@ -119,6 +124,29 @@ public final class IO {
         return new FileBuffer(file, limit);
     }
 
+    /**
+     * Creates a new file buffer that uses a memory-mapped local file for data
+     * storage. Unlike a {@link #newFileBuffer(File, int) file} buffer, reads
+     * and appends do not seek or lock the file, and the file is not closed by
+     * finalization: the buffer must be closed explicitly.
+     * <p>
+     * <strong>Note:</strong> The returned buffer is not synchronized. If
+     * multiple threads access a buffer concurrently, threads that append to the
+     * buffer should synchronize on the instance of this object.
+     *
+     * @param file
+     *            the file to use as storage for the buffer.
+     * @param limit
+     *            the buffer length limit, after which an
+     *            {@link OverflowException} will be thrown.
+     * @return The file buffer.
+     * @throws IOException
+     *             if the file cannot be created or opened for writing.
+     */
+    public static Buffer newMappedFileBuffer(final File file, final int limit) throws IOException {
+        return new MappedFileBuffer(file, limit);
+    }
+
     /**
      * Creates a new buffer that uses a byte array for data storage. The byte
      * array starts at a prescribed initial length, and grows exponentially up
@@ -220,6 +248,119 @@ public final class IO {
         };
     }
 
+    /**
+     * Builds a storage using the given directory (may be {@literal null}) and
+     * default sizes, whose buffers are promoted to
+     * {@link #newMappedFileBuffer(File, int) memory-mapped} file buffers.
+     * Equivalent to call
+     * {@code newMappedStorage(directory, HEIGHT_KB, SIXTY_FOUR_KB, ONE_MB)}.
+     *
+     * @param directory
+     *            The directory where temporary files are created. If
+     *            {@code null}, then the system-dependent default temporary
+     *            directory will be used.
+     * @return The temporary storage.
+     */
+    public static Factory<Buffer> newMappedStorage(final File directory) {
+        return newMappedStorage(directory, DEFAULT_TMP_INIT_LENGTH, DEFAULT_TMP_MEMORY_LIMIT,
+                DEFAULT_TMP_FILE_LIMIT);
+    }
+
+    /**
+     * Builds a storage using the given directory (may be {@literal null}) and
+     * provided sizes, whose buffers are promoted from memory to
+     * {@link #newMappedFileBuffer(File, int) memory-mapped} file buffers.
+     *
+     * @param directory
+     *            The directory where temporary files are created. If
+     *            {@code null}, then the system-dependent default temporary
+     *            directory will be used.
+     * @param initialLength
+     *            The initial length of memory buffer byte array.
+     * @param memoryLimit
+     *            The length limit of the memory buffer. Attempts to exceed this
+     *            limit will result in promoting the buffer from a memory to a
+     *            file buffer.
+     * @param fileLimit
+     *            The length limit of the file buffer. Attempts to exceed this
+     *            limit will result in an {@link OverflowException} being
+     *            thrown.
+     * @return The temporary storage.
+     */
+    public static Factory<Buffer> newMappedStorage(final File directory,
+            final int initialLength, final int memoryLimit, final int fileLimit) {
+        return new Factory<Buffer>() {
+            @Override
+            public Buffer newInstance() {
+                return new TemporaryBuffer(newMemoryBuffer(initialLength, memoryLimit), fileLimit, directory,
+                        true);
+            }
+        };
+    }
+
+    /**
+     * Builds a storage using the given directory (may be {@literal null}) and
+     * default sizes, whose buffers store data in pooled direct memory before
+     * being promoted to memory-mapped file buffers. Equivalent to call
+     * {@code newPooledStorage(directory, SIXTEEN_MB, SIXTY_FOUR_KB, ONE_MB)}.
+     *
+     * @param directory
+     *            The directory where temporary files are created. If
+     *            {@code null}, then the system-dependent default temporary
+     *            directory will be used.
+     * @return The temporary storage.
+     * @see #newPooledStorage(File, int, int, int)
+     */
+    public static Factory<Buffer> newPooledStorage(final File directory) {
+        return newPooledStorage(directory, DEFAULT_TMP_POOL_SIZE, DEFAULT_TMP_MEMORY_LIMIT,
+                DEFAULT_TMP_FILE_LIMIT);
+    }
+
+    /**
+     * Builds a storage using the given directory (may be {@literal null}) and
+     * provided sizes, whose buffers store data off-heap in chunks of direct
+     * memory taken from a pool shared by all of the storage's buffers. A
+     * buffer is promoted to a {@link #newMappedFileBuffer(File, int)
+     * memory-mapped} file buffer when it exceeds the memory limit, or when the
+     * pool is exhausted. Chunks are returned to the pool when a buffer is
+     * closed, so buffers from this storage must always be closed.
+     *
+     * @param directory
+     *            The directory where temporary files are created. If
+     *            {@code null}, then the system-dependent default temporary
+     *            directory will be used.
+     * @param poolSize
+     *            The maximum amount of direct memory used by all of the
+     *            storage's buffers together.
+     * @param memoryLimit
+     *            The length limit of the memory buffer. Attempts to exceed this
+     *            limit will result in promoting the buffer from a memory to a
+     *            file buffer.
+     * @param fileLimit
+     *            The length limit of the file buffer. Attempts to exceed this
+     *            limit will result in an {@link OverflowException} being
+     *            thrown.
+     * @return The temporary storage.
+     */
+    public static Factory<Buffer> newPooledStorage(final File directory, final int poolSize,
+            final int memoryLimit, final int fileLimit) {
+        return newPooledStorage(directory, new DirectBufferPool(poolSize), memoryLimit, fileLimit);
+    }
+
+    /**
+     * Builds a storage whose buffers take their chunks of direct memory from
+     * the given pool. Visible for tests, which need to inspect the pool.
+     */
+    static Factory<Buffer> newPooledStorage(final File directory, final DirectBufferPool pool,
+            final int memoryLimit, final int fileLimit) {
+        return new Factory<Buffer>() {
+            @Override
+            public Buffer newInstance() {
+                return new TemporaryBuffer(new PooledBuffer(pool, memoryLimit), fileLimit, directory, true);
+            }
+        };
+    }
+
     /**
      * Returns an input stream that holds no data.
      *
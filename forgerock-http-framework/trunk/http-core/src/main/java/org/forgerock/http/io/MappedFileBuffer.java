@@ -0,0 +1,137 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.io;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A buffer that uses a memory-mapped local file for data storage. The file is
+ * mapped in fixed size regions as the buffer grows, so that appends and reads
+ * at any position are memory copies into and out of the page cache, without
+ * seeking, locking or querying the file's length.
+ * <p>
+ * Mapped regions are released by the garbage collector once the buffer is
+ * closed and no longer referenced, so the file may remain in use until then.
+ * <p>
+ * <strong>Note:</strong> This implementation is not synchronized. If multiple
+ * threads access a buffer concurrently, they should synchronize on the
+ * instance of this object.
+ */
+final class MappedFileBuffer implements Buffer {
+
+    /** The size of the regions of the file which are mapped at a time. */
+    static final int REGION_SIZE = 256 * 1_024;
+
+    /** Channel to the file storing buffered data, or {@code null} once closed. */
+    private FileChannel channel;
+
+    /** The mapped regions of the file, in order. */
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+
+    /** Maximum file size, after which an {@link OverflowException} will be thrown. */
+    private final int limit;
+
+    /** Current length of the buffer. */
+    private int length;
+
+    MappedFileBuffer(File file, int limit) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), READ, WRITE, CREATE);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read(int pos, byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        notClosed();
+        int n = 0;
+        while (n < len && pos < length) {
+            MappedByteBuffer region = regions.get(pos / REGION_SIZE);
+            int regionPos = pos % REGION_SIZE;
+            int count = Math.min(len - n, Math.min(REGION_SIZE - regionPos, length - pos));
+            region.position(regionPos);
+            region.get(b, off + n, count);
+            n += count;
+            pos += count;
+        }
+        return n;
+    }
+
+    @Override
+    public void append(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        notClosed();
+        if ((long) length + len > limit) {
+            throw new OverflowException();
+        }
+        while (len > 0) {
+            int index = length / REGION_SIZE;
+            if (index == regions.size()) {
+                long start = (long) index * REGION_SIZE;
+                regions.add(channel.map(MapMode.READ_WRITE, start, Math.min(REGION_SIZE, limit - start)));
+            }
+            MappedByteBuffer region = regions.get(index);
+            int regionPos = length % REGION_SIZE;
+            int count = Math.min(len, REGION_SIZE - regionPos);
+            region.position(regionPos);
+            region.put(b, off, count);
+            off += count;
+            len -= count;
+            length += count;
+        }
+    }
+
+    @Override
+    public int length() throws IOException {
+        notClosed();
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+                regions.clear();
+            }
+        }
+    }
+
+    /**
+     * Throws an {@link IOException} if the buffer is closed.
+     */
+    private void notClosed() throws IOException {
+        if (channel == null) {
+            throw new IOException("buffer is closed");
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A buffer that stores data off-heap, in chunks of direct memory taken from a
+ * {@link DirectBufferPool}. Chunks are acquired as the buffer grows and are
+ * returned to the pool when the buffer is closed, so buffers must always be
+ * closed.
+ * <p>
+ * An {@link OverflowException} is thrown if appending data would exceed the
+ * buffer's limit, or if the pool does not have enough free chunks. In either
+ * case no data is appended.
+ * <p>
+ * <strong>Note:</strong> This implementation is not synchronized. If multiple
+ * threads access a buffer concurrently, they should synchronize on the
+ * instance of this object.
+ */
+final class PooledBuffer implements Buffer {
+
+    private final DirectBufferPool pool;
+    private final int chunkSize;
+    private final int limit;
+
+    /** The chunks holding the buffer's data, or {@code null} once closed. */
+    private List<ByteBuffer> chunks = new ArrayList<>();
+
+    /** Current length of the buffer. */
+    private int length;
+
+    PooledBuffer(DirectBufferPool pool, int limit) {
+        this.pool = pool;
+        this.chunkSize = pool.getChunkSize();
+        this.limit = limit;
+    }
+
+    @Override
+    public int read(int pos, byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        notClosed();
+        int n = 0;
+        while (n < len && pos < length) {
+            ByteBuffer chunk = chunks.get(pos / chunkSize);
+            int chunkPos = pos % chunkSize;
+            int count = Math.min(len - n, Math.min(chunkSize - chunkPos, length - pos));
+            chunk.position(chunkPos);
+            chunk.get(b, off + n, count);
+            n += count;
+            pos += count;
+        }
+        return n;
+    }
+
+    @Override
+    public void append(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        notClosed();
+        long end = (long) length + len;
+        if (end > limit) {
+            throw new OverflowException();
+        }
+        acquireChunks((int) ((end + chunkSize - 1) / chunkSize));
+        while (len > 0) {
+            ByteBuffer chunk = chunks.get(length / chunkSize);
+            int chunkPos = length % chunkSize;
+            int count = Math.min(len, chunkSize - chunkPos);
+            chunk.position(chunkPos);
+            chunk.put(b, off, count);
+            off += count;
+            len -= count;
+            length += count;
+        }
+    }
+
+    @Override
+    public int length() throws IOException {
+        notClosed();
+        return length;
+    }
+
+    @Override
+    public void close() {
+        if (chunks != null) {
+            for (ByteBuffer chunk : chunks) {
+                pool.release(chunk);
+            }
+            chunks = null;
+        }
+    }
+
+    /**
+     * Grows the buffer to the given number of chunks, or throws an
+     * {@link OverflowException} leaving the buffer unchanged if the pool
+     * cannot supply them.
+     */
+    private void acquireChunks(int required) throws OverflowException {
+        int initial = chunks.size();
+        while (chunks.size() < required) {
+            ByteBuffer chunk = pool.acquire();
+            if (chunk == null) {
+                while (chunks.size() > initial) {
+                    pool.release(chunks.remove(chunks.size() - 1));
+                }
+                throw new OverflowException();
+            }
+            chunks.add(chunk);
+        }
+    }
+
+    /**
+     * Throws an {@link IOException} if the buffer is closed.
+     */
+    private void notClosed() throws IOException {
+        if (chunks == null) {
+            throw new IOException("buffer is closed");
+        }
+    }
+}
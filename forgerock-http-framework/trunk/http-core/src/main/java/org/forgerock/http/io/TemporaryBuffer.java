@@ -22,8 +22,9 @@ import java.io.IOException;
 
 /**
  * A buffer that first uses memory, then a temporary file for data storage.
- * Initially, a {@link MemoryBuffer} is used; when the memory buffer limit is
- * exceeded it promotes to the use of a {@link FileBuffer}.
+ * Initially, a {@link MemoryBuffer} or {@link PooledBuffer} is used; when the
+ * memory buffer limit is exceeded it promotes to the use of a
+ * {@link FileBuffer} or {@link MappedFileBuffer}.
  */
 final class TemporaryBuffer implements Buffer {
 
@@ -36,13 +37,21 @@ final class TemporaryBuffer implements Buffer {
     /** The length limit of the file buffer. */
     private int fileLimit;
 
+    /** Whether the file buffer is memory-mapped. */
+    private final boolean isMapped;
+
     /** The buffer currently in use. */
     private Buffer buffer;
 
     TemporaryBuffer(int initialLength, int memoryLimit, int fileLimit, File directory) {
-        buffer = IO.newMemoryBuffer(initialLength, memoryLimit);
+        this(IO.newMemoryBuffer(initialLength, memoryLimit), fileLimit, directory, false);
+    }
+
+    TemporaryBuffer(Buffer memoryBuffer, int fileLimit, File directory, boolean isMapped) {
+        this.buffer = memoryBuffer;
         this.fileLimit = fileLimit;
         this.directory = directory;
+        this.isMapped = isMapped;
     }
 
     @Override
@@ -95,12 +104,20 @@ final class TemporaryBuffer implements Buffer {
     }
 
     private void promote() throws IOException {
-        if (buffer instanceof MemoryBuffer) {
-            MemoryBuffer membuf = (MemoryBuffer) buffer;
+        if (file == null) {
+            Buffer membuf = buffer;
             file = File.createTempFile("buf", null, directory);
-            buffer = IO.newFileBuffer(file, fileLimit);
-            // accesses byte array directly
-            buffer.append(membuf.data, 0, membuf.length());
+            buffer = isMapped ? new MappedFileBuffer(file, fileLimit) : IO.newFileBuffer(file, fileLimit);
+            if (membuf instanceof MemoryBuffer) {
+                // accesses byte array directly
+                buffer.append(((MemoryBuffer) membuf).data, 0, membuf.length());
+            } else {
+                byte[] b = new byte[IO.DEFAULT_TMP_INIT_LENGTH];
+                int n;
+                for (int pos = 0; (n = membuf.read(pos, b, 0, b.length)) > 0; pos += n) {
+                    buffer.append(b, 0, n);
+                }
+            }
             membuf.close();
         } else {
             // no further promotion possible
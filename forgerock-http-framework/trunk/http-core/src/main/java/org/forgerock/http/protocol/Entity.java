@@ -94,6 +94,12 @@ public final class Entity implements Closeable {
     /** Cached and lazily created String representation of the entity. */
     private String string;
 
+    /** The {@code Content-Type} header value from which {@link #contentTypeCharset} was parsed. */
+    private String contentType;
+
+    /** Cached character set of the {@code Content-Type} header, which may be {@code null}. */
+    private Charset contentTypeCharset;
+
     Entity(final Message message) {
         this.message = message;
         setEmpty();
@@ -213,8 +219,12 @@ public final class Entity implements Closeable {
      */
     public Object getJson() throws IOException {
         if (json == null) {
-            try (BufferedReader reader = newDecodedContentReader(UTF_8) /* RFC 7159 */) {
-                json = readJson(reader);
+            // Parse the bytes directly: the encoding is detected as per RFC 7159.
+            final BranchingInputStream headBranch = head.branch();
+            try (InputStream in = getDecodedInputStream(headBranch)) {
+                json = readJson(in);
+            } finally {
+                closeSilently(headBranch);
             }
         }
         return json;
@@ -484,7 +494,7 @@ public final class Entity implements Closeable {
             return charset;
         }
         // use Content-Type charset if not explicitly specified
-        final Charset contentType = ContentTypeHeader.valueOf(message).getCharset();
+        final Charset contentType = getContentTypeCharset();
         if (contentType != null) {
             return contentType;
         }
@@ -492,6 +502,22 @@ public final class Entity implements Closeable {
         return ISO_8859_1;
     }
 
+    /**
+     * Returns the character set of the message's {@code Content-Type} header,
+     * which is only parsed again if the header has changed.
+     */
+    private Charset getContentTypeCharset() {
+        final String value = message.getHeaders().getFirst(ContentTypeHeader.NAME);
+        if (value == null) {
+            return null;
+        }
+        if (!value.equals(contentType)) {
+            contentTypeCharset = ContentTypeHeader.valueOf(value).getCharset();
+            contentType = value;
+        }
+        return contentTypeCharset;
+    }
+
     private BufferedReader getBufferedReader(final InputStream is, final Charset charset)
             throws IOException {
         return new BufferedReader(new InputStreamReader(getDecodedInputStream(is), cs(charset)));
@@ -45,6 +45,11 @@ import org.forgerock.util.Pair;
  * router.removeRoute(routeOne, routeTwo);
  * </pre>
  *
+ * <p>A router with many routes should be {@link #setIndexed(boolean)
+ * indexed}, so that the URI templates of its
+ * {@link UriTemplateRouteMatcher}s are matched together in a single pass
+ * over the request path, rather than evaluating each route in turn.</p>
+ *
  * @see Router
  * @see UriRouteMatcher
  * @see RouteMatchers
@@ -57,6 +62,9 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H>, R, H> {
 
     private final Map<RouteMatcher<R>, H> routes = new ConcurrentHashMap<>();
     private volatile H defaultRoute;
+    private volatile boolean isIndexed;
+    /** Rebuilt whenever the routes change, or {@code null} if not indexed. Guarded by routes when written. */
+    private volatile UriRouteIndex<R, H> index;
 
     /**
      * Creates a new router with no routes defined.
@@ -75,6 +83,7 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H>, R, H> {
     protected AbstractRouter(AbstractRouter<T, R, H> router) {
         this.defaultRoute = router.defaultRoute;
         addAllRoutes((T) router);
+        setIndexed(router.isIndexed);
     }
 
     /**
@@ -122,7 +131,10 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H>, R, H> {
      * @return This router instance.
      */
     public final T addRoute(RouteMatcher<R> matcher, H handler) {
-        routes.put(matcher, handler);
+        synchronized (routes) {
+            routes.put(matcher, handler);
+            updateIndex();
+        }
         return getThis();
     }
 
@@ -155,7 +167,10 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H>, R, H> {
      * @return This router instance.
      */
     public final T removeAllRoutes() {
-        routes.clear();
+        synchronized (routes) {
+            routes.clear();
+            updateIndex();
+        }
         return getThis();
     }
 
@@ -169,12 +184,52 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H>, R, H> {
     @SafeVarargs
     public final boolean removeRoute(RouteMatcher<R>... routes) {
         boolean isModified = false;
-        for (RouteMatcher<R> route : routes) {
-            isModified |= this.routes.remove(route) != null;
+        synchronized (this.routes) {
+            for (RouteMatcher<R> route : routes) {
+                isModified |= this.routes.remove(route) != null;
+            }
+            updateIndex();
         }
         return isModified;
     }
 
+    /**
+     * Sets whether this router indexes its routes. An indexed router compiles
+     * the URI templates of its {@link UriTemplateRouteMatcher}s into a trie of
+     * path segments, so that finding the best route costs one walk of the
+     * request path rather than one regular expression match per route. The
+     * route chosen is the same as when the router is not indexed. Other route
+     * matchers, and URI templates which contain variables within a path
+     * segment, such as {@code users/user-{id}}, are still evaluated in turn.
+     *
+     * <p>The index is rebuilt each time a route is added or removed, so
+     * routers whose routes change frequently should not be indexed.</p>
+     *
+     * @param indexed {@code true} if routes should be indexed.
+     * @return This router instance.
+     */
+    public final T setIndexed(boolean indexed) {
+        synchronized (routes) {
+            this.isIndexed = indexed;
+            updateIndex();
+        }
+        return getThis();
+    }
+
+    /**
+     * Returns {@code true} if this router indexes its routes.
+     *
+     * @return {@code true} if this router indexes its routes.
+     * @see #setIndexed(boolean)
+     */
+    public final boolean isIndexed() {
+        return isIndexed;
+    }
+
+    private void updateIndex() {
+        index = isIndexed ? new UriRouteIndex<>(routes) : null;
+    }
+
     /**
      * Finds the best route that matches the given request based on the route
      * matchers of the registered routes. If no registered route matches at
@@ -191,7 +246,17 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H>, R, H> {
     protected Pair<Context, H> getBestRoute(Context context, R request) throws IncomparableRouteMatchException {
         H handler = null;
         RouteMatch bestMatch = null;
-        for (Map.Entry<RouteMatcher<R>, H> route : routes.entrySet()) {
+        Iterable<Map.Entry<RouteMatcher<R>, H>> candidates = routes.entrySet();
+        UriRouteIndex<R, H> index = this.index;
+        if (index != null) {
+            Pair<RouteMatch, H> indexedRoute = index.getBestRoute(context, request);
+            if (indexedRoute != null) {
+                bestMatch = indexedRoute.getFirst();
+                handler = indexedRoute.getSecond();
+            }
+            candidates = index.getUnindexedRoutes();
+        }
+        for (Map.Entry<RouteMatcher<R>, H> route : candidates) {
             RouteMatch result = route.getKey().evaluate(context, request);
             if (result != null) {
                 if (result.isBetterMatchThan(bestMatch)) {
@@ -51,8 +51,7 @@ public final class RouteMatchers {
      * @return A {@code RouteMatcher} instance.
      */
     public static RouteMatcher<Request> requestUriMatcher(RoutingMode mode, String template) {
-        RouteMatcher<ResourcePath> delegate = uriMatcher(mode, template);
-        return new RequestUriRouteMatcher(delegate);
+        return new RequestUriRouteMatcher(mode, template);
     }
 
     /**
@@ -60,39 +59,15 @@ public final class RouteMatchers {
      * from a {@code Request} and passes it as a {@code ResourcePath} to the
      * common {@code ResourcePath} route matcher.
      */
-    private static final class RequestUriRouteMatcher extends RouteMatcher<Request> {
+    private static final class RequestUriRouteMatcher extends UriTemplateRouteMatcher<Request> {
 
-        private final RouteMatcher<ResourcePath> delegate;
-
-        private RequestUriRouteMatcher(RouteMatcher<ResourcePath> delegate) {
-            this.delegate = delegate;
-        }
-
-        @Override
-        public RouteMatch evaluate(Context context, Request request) {
-            return delegate.evaluate(context, getRemainingRequestUri(context, request));
-        }
-
-        @Override
-        public String toString() {
-            return delegate.toString();
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (!(o instanceof RequestUriRouteMatcher)) {
-                return false;
-            }
-            RequestUriRouteMatcher that = (RequestUriRouteMatcher) o;
-            return delegate.equals(that.delegate);
+        private RequestUriRouteMatcher(RoutingMode mode, String template) {
+            super(mode, template);
         }
 
         @Override
-        public int hashCode() {
-            return delegate.hashCode();
+        protected ResourcePath getResourcePath(Context context, Request request) {
+            return getRemainingRequestUri(context, request);
         }
     }
 
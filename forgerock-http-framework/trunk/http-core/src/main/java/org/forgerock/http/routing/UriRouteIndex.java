@@ -0,0 +1,334 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.routing;
+
+import static org.forgerock.http.ResourcePath.urlDecode;
+import static org.forgerock.http.routing.RoutingMode.EQUALS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.http.Context;
+import org.forgerock.http.routing.UriRouteMatcher.UriRouteMatch;
+import org.forgerock.util.Pair;
+
+/**
+ * An immutable index of the routes of an {@link AbstractRouter}. The URI
+ * templates of {@link UriTemplateRouteMatcher}s are compiled into a trie of
+ * path segments, with a literal child per distinct literal segment and a
+ * single child for template variables. Each node records the
+ * {@link RoutingMode#EQUALS EQUALS} and {@link RoutingMode#STARTS_WITH
+ * STARTS_WITH} routes whose templates end there. One trie is built per
+ * matcher class, so that the resource path is extracted from the request
+ * once per trie.
+ *
+ * <p>Matching walks the request's resource path down the trie, keeping the
+ * route which {@link UriRouteMatch#isBetterMatchThan(RouteMatch) best}
+ * matches: the one matching the most path segments, then an equality match,
+ * then the one with the fewest variables. This is the same match which
+ * evaluating each route's matcher would have chosen. Templates which do not
+ * consist of whole literal or variable segments, such as
+ * {@code users/user-{id}}, and routes whose matchers are not
+ * {@code UriTemplateRouteMatcher}s are not indexed, and must be evaluated
+ * in turn.</p>
+ *
+ * @param <R> The type of the request.
+ * @param <H> The type of the handler.
+ */
+final class UriRouteIndex<R, H> {
+
+    private final List<Trie<R, H>> tries = new ArrayList<>();
+    private final List<Map.Entry<RouteMatcher<R>, H>> unindexedRoutes = new ArrayList<>();
+
+    /**
+     * Builds an index of the provided routes.
+     *
+     * @param routes The routes to be indexed.
+     */
+    UriRouteIndex(Map<RouteMatcher<R>, H> routes) {
+        Map<Class<?>, Trie<R, H>> triesByClass = new HashMap<>();
+        for (Map.Entry<RouteMatcher<R>, H> route : routes.entrySet()) {
+            RouteMatcher<R> matcher = route.getKey();
+            if (matcher instanceof UriTemplateRouteMatcher) {
+                UriTemplateRouteMatcher<R> uriMatcher = (UriTemplateRouteMatcher<R>) matcher;
+                String[] segments = parseSegments(uriMatcher.getUriRouteMatcher());
+                if (segments != null) {
+                    Trie<R, H> trie = triesByClass.get(matcher.getClass());
+                    if (trie == null) {
+                        trie = new Trie<>(uriMatcher);
+                        triesByClass.put(matcher.getClass(), trie);
+                        tries.add(trie);
+                    }
+                    trie.add(segments, uriMatcher.getUriRouteMatcher(), route.getValue());
+                    continue;
+                }
+            }
+            unindexedRoutes.add(route);
+        }
+    }
+
+    /**
+     * Returns the routes which could not be indexed, and which must be
+     * evaluated in turn.
+     *
+     * @return The routes which are not indexed.
+     */
+    List<Map.Entry<RouteMatcher<R>, H>> getUnindexedRoutes() {
+        return unindexedRoutes;
+    }
+
+    /**
+     * Finds the indexed route which best matches the given request.
+     *
+     * @param context The request context.
+     * @param request The request to be matched against the indexed routes.
+     * @return A {@code Pair} containing the {@code RouteMatch} and the handler
+     * of the best matching indexed route, or {@code null} if no indexed route
+     * matches.
+     * @throws IncomparableRouteMatchException Never, since all indexed routes
+     * produce comparable matches.
+     */
+    Pair<RouteMatch, H> getBestRoute(Context context, R request) throws IncomparableRouteMatchException {
+        Pair<RouteMatch, H> best = null;
+        for (Trie<R, H> trie : tries) {
+            Pair<RouteMatch, H> result = trie.getBestRoute(context, request);
+            if (result != null && (best == null || result.getFirst().isBetterMatchThan(best.getFirst()))) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Splits a URI template into its segments, each either a literal or a
+     * single variable, returning {@code null} if the template cannot be
+     * indexed. Template variables are represented by {@code null} elements.
+     */
+    private static String[] parseSegments(UriRouteMatcher matcher) {
+        String template = matcher.getUriTemplate();
+        String t = template;
+        if (t.startsWith("/")) {
+            t = t.substring(1);
+        }
+        if (t.endsWith("/")) {
+            t = t.substring(0, t.length() - 1);
+        }
+        if (t.isEmpty()) {
+            // A template of "/" only matches empty paths, even when routing in STARTS_WITH mode.
+            return template.isEmpty() || matcher.getMode() == EQUALS ? new String[0] : null;
+        }
+        String[] segments = t.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            int open = segment.indexOf('{');
+            if (segment.isEmpty()) {
+                return null;
+            } else if (open == 0 && segment.indexOf('}') == segment.length() - 1) {
+                segments[i] = null;
+            } else if (open >= 0) {
+                return null;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * A trie of the routes whose matchers are of the same class.
+     */
+    private static final class Trie<R, H> {
+
+        private final UriTemplateRouteMatcher<R> pathExtractor;
+        private final Node<H> root = new Node<>();
+        private int depth;
+
+        private Trie(UriTemplateRouteMatcher<R> pathExtractor) {
+            this.pathExtractor = pathExtractor;
+        }
+
+        private void add(String[] segments, UriRouteMatcher matcher, H handler) {
+            Node<H> node = root;
+            for (String segment : segments) {
+                Node<H> child = segment == null ? node.variable : node.literals.get(segment);
+                if (child == null) {
+                    child = new Node<>();
+                    if (segment == null) {
+                        node.variable = child;
+                    } else {
+                        node.literals.put(segment, child);
+                    }
+                }
+                node = child;
+            }
+            Terminal<H> terminal = new Terminal<>(matcher.getMode(), new ArrayList<>(matcher.getVariables()), handler);
+            // As when evaluating each route in turn, the first of two equally good routes wins.
+            if (terminal.mode == EQUALS) {
+                if (node.equalsRoute == null) {
+                    node.equalsRoute = terminal;
+                }
+            } else if (node.startsWithRoute == null) {
+                node.startsWithRoute = terminal;
+            }
+            depth = Math.max(depth, segments.length);
+        }
+
+        private Pair<RouteMatch, H> getBestRoute(Context context, R request) {
+            Search<H> search = new Search<>(pathExtractor.getResourcePath(context, request).toString(), depth);
+            search.visit(root, 0, 0);
+            return search.getBestRoute();
+        }
+    }
+
+    private static final class Node<H> {
+        private final Map<String, Node<H>> literals = new HashMap<>();
+        private Node<H> variable;
+        private Terminal<H> equalsRoute;
+        private Terminal<H> startsWithRoute;
+    }
+
+    private static final class Terminal<H> {
+        private final RoutingMode mode;
+        private final List<String> variables;
+        private final H handler;
+
+        private Terminal(RoutingMode mode, List<String> variables, H handler) {
+            this.mode = mode;
+            this.variables = variables;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * The state of a depth-first walk of a trie for a single request path.
+     * Variable values are tracked as offsets into the path, and are only
+     * decoded for the best match.
+     */
+    private static final class Search<H> {
+        private final String path;
+        private final int[] variableOffsets;
+        private int variableCount;
+
+        private Terminal<H> best;
+        private int bestSegments = -1;
+        private int bestEnd;
+        private int[] bestVariableOffsets;
+
+        private Search(String path, int depth) {
+            this.path = path;
+            this.variableOffsets = new int[depth * 2];
+        }
+
+        /**
+         * Visits a node reached by matching {@code segments} path segments,
+         * ending at offset {@code end} in the path.
+         */
+        private void visit(Node<H> node, int segments, int end) {
+            boolean isAtEnd = end == path.length();
+            if (isAtEnd) {
+                consider(node.equalsRoute, segments, end);
+            }
+            consider(node.startsWithRoute, segments, end);
+            if (isAtEnd) {
+                return;
+            }
+
+            int start = segments == 0 ? 0 : end + 1;
+            int next = path.indexOf('/', start);
+            if (next < 0) {
+                next = path.length();
+            }
+            if (!node.literals.isEmpty()) {
+                Node<H> literal = node.literals.get(path.substring(start, next));
+                if (literal != null) {
+                    visit(literal, segments + 1, next);
+                }
+            }
+            if (node.variable != null) {
+                variableOffsets[variableCount * 2] = start;
+                variableOffsets[variableCount * 2 + 1] = next;
+                variableCount++;
+                visit(node.variable, segments + 1, next);
+                variableCount--;
+            }
+        }
+
+        /** Mirrors {@link UriRouteMatch#isBetterMatchThan(RouteMatch)}. */
+        private void consider(Terminal<H> route, int segments, int end) {
+            if (route == null) {
+                return;
+            }
+            boolean isBetter;
+            if (best == null || segments != bestSegments) {
+                isBetter = segments > bestSegments;
+            } else if (route.mode != best.mode) {
+                isBetter = route.mode == EQUALS;
+            } else {
+                isBetter = route.variables.size() < best.variables.size();
+            }
+            if (isBetter) {
+                best = route;
+                bestSegments = segments;
+                bestEnd = end;
+                bestVariableOffsets = variableCount == 0 ? null : copyOfVariableOffsets();
+            }
+        }
+
+        private int[] copyOfVariableOffsets() {
+            int[] copy = new int[variableCount * 2];
+            System.arraycopy(variableOffsets, 0, copy, 0, copy.length);
+            return copy;
+        }
+
+        private Pair<RouteMatch, H> getBestRoute() {
+            if (best == null) {
+                return null;
+            }
+            Map<String, String> variableMap;
+            switch (best.variables.size()) {
+            case 0:
+                variableMap = Collections.emptyMap();
+                break;
+            case 1:
+                variableMap = Collections.singletonMap(best.variables.get(0), variable(0));
+                break;
+            default:
+                variableMap = new LinkedHashMap<>(best.variables.size());
+                for (int i = 0; i < best.variables.size(); i++) {
+                    variableMap.put(best.variables.get(i), variable(i));
+                }
+                break;
+            }
+            String remaining;
+            if (bestSegments == 0) {
+                remaining = path;
+            } else if (bestEnd == path.length()) {
+                remaining = "";
+            } else {
+                remaining = path.substring(bestEnd + 1);
+            }
+            RouteMatch match = new UriRouteMatch(path.substring(0, bestEnd), remaining, variableMap, best.mode);
+            return Pair.of(match, best.handler);
+        }
+
+        private String variable(int index) {
+            return urlDecode(path.substring(bestVariableOffsets[index * 2], bestVariableOffsets[index * 2 + 1]));
+        }
+    }
+}
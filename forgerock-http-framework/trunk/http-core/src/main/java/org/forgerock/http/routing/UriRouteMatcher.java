@@ -117,6 +117,18 @@ class UriRouteMatcher extends RouteMatcher<ResourcePath> {
         return new UriRouteMatch(matcher.group(1), remaining, variableMap, mode);
     }
 
+    RoutingMode getMode() {
+        return mode;
+    }
+
+    String getUriTemplate() {
+        return uriTemplate;
+    }
+
+    List<String> getVariables() {
+        return variables;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -270,14 +282,14 @@ class UriRouteMatcher extends RouteMatcher<ResourcePath> {
     /**
      * Contains the result of routing to a URI based route.
      */
-    private static final class UriRouteMatch implements RouteMatch {
+    static final class UriRouteMatch implements RouteMatch {
 
         private final String matched;
         private final String remaining;
         private final Map<String, String> variableMap;
         private final RoutingMode mode;
 
-        private UriRouteMatch(String matched, String remaining, Map<String, String> variableMap, RoutingMode mode) {
+        UriRouteMatch(String matched, String remaining, Map<String, String> variableMap, RoutingMode mode) {
             this.matched = matched;
             this.remaining = remaining;
             this.variableMap = variableMap;
@@ -0,0 +1,94 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.routing;
+
+import org.forgerock.http.Context;
+import org.forgerock.http.ResourcePath;
+
+/**
+ * A {@link RouteMatcher} which extracts a {@link ResourcePath} from a request
+ * and matches it against a URI template, in the same way as
+ * {@link RouteMatchers#uriMatcher(RoutingMode, String)}.
+ *
+ * <p>When a router is {@link AbstractRouter#setIndexed(boolean) indexed}, the
+ * URI templates of all its routes whose matchers are of the same
+ * {@code UriTemplateRouteMatcher} sub-class are compiled into a single route
+ * index, and the resource path is extracted from the request once rather
+ * than once per route. Sub-classes must therefore extract the resource path
+ * in a way which depends only on the context and the request.</p>
+ *
+ * <p>Two matchers are equal if they are instances of the same class and have
+ * the same routing mode and URI template.</p>
+ *
+ * @param <R> The type of the request.
+ */
+public abstract class UriTemplateRouteMatcher<R> extends RouteMatcher<R> {
+
+    private final UriRouteMatcher delegate;
+
+    /**
+     * Creates a new route matcher which will match the given URI template.
+     *
+     * @param mode Indicates how the URI template should be matched against
+     *            request URIs.
+     * @param uriTemplate The URI template which request URIs must match.
+     */
+    protected UriTemplateRouteMatcher(RoutingMode mode, String uriTemplate) {
+        this.delegate = new UriRouteMatcher(mode, uriTemplate);
+    }
+
+    /**
+     * Returns the resource path which the URI template will be matched
+     * against.
+     *
+     * @param context The request context.
+     * @param request The request.
+     * @return The resource path to be matched.
+     */
+    protected abstract ResourcePath getResourcePath(Context context, R request);
+
+    UriRouteMatcher getUriRouteMatcher() {
+        return delegate;
+    }
+
+    @Override
+    public final RouteMatch evaluate(Context context, R request) {
+        return delegate.evaluate(context, getResourcePath(context, request));
+    }
+
+    @Override
+    public final String toString() {
+        return delegate.toString();
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        UriTemplateRouteMatcher<?> that = (UriTemplateRouteMatcher<?>) o;
+        return delegate.equals(that.delegate);
+    }
+
+    @Override
+    public final int hashCode() {
+        return delegate.hashCode();
+    }
+}
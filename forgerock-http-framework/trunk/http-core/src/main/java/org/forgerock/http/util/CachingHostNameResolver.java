@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+package org.forgerock.http.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.forgerock.util.Reject.checkNotNull;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * A {@link HostNameResolver} which caches the host names resolved by another
+ * resolver for a fixed time to live, so that repeated requests from the same
+ * client do not each perform a lookup.
+ * <p>
+ * The cache holds at most a fixed number of entries. Once full, expired
+ * entries are evicted, and if none have expired the whole cache is cleared.
+ * <p>
+ * This class is thread-safe. Concurrent lookups of an uncached address may
+ * each invoke the underlying resolver.
+ */
+public final class CachingHostNameResolver implements HostNameResolver {
+
+    /** The default maximum number of cached host names. */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final HostNameResolver delegate;
+    private final long timeToLive;
+    private final int maxEntries;
+    private final TimeService time;
+    private final ConcurrentMap<String, CachedHostName> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new caching resolver holding at most
+     * {@link #DEFAULT_MAX_ENTRIES} host names.
+     *
+     * @param delegate
+     *            The resolver used to resolve host names which are not cached.
+     * @param timeToLive
+     *            How long resolved host names are cached for.
+     */
+    public CachingHostNameResolver(HostNameResolver delegate, Duration timeToLive) {
+        this(delegate, timeToLive, DEFAULT_MAX_ENTRIES, TimeService.SYSTEM);
+    }
+
+    /**
+     * Creates a new caching resolver.
+     *
+     * @param delegate
+     *            The resolver used to resolve host names which are not cached.
+     * @param timeToLive
+     *            How long resolved host names are cached for.
+     * @param maxEntries
+     *            The maximum number of cached host names.
+     * @param time
+     *            The time service used to expire cached host names.
+     */
+    public CachingHostNameResolver(HostNameResolver delegate, Duration timeToLive, int maxEntries,
+            TimeService time) {
+        this.delegate = checkNotNull(delegate);
+        this.timeToLive = timeToLive.isUnlimited() ? Long.MAX_VALUE : timeToLive.to(MILLISECONDS);
+        this.maxEntries = maxEntries;
+        this.time = checkNotNull(time);
+    }
+
+    @Override
+    public String getHostName(String address) {
+        long now = time.now();
+        CachedHostName cached = cache.get(address);
+        if (cached != null && !cached.isExpired(now)) {
+            return cached.hostName;
+        }
+        String hostName = delegate.getHostName(address);
+        if (cached == null && cache.size() >= maxEntries) {
+            evict(now);
+        }
+        long expires = now + timeToLive;
+        cache.put(address, new CachedHostName(hostName, expires < now ? Long.MAX_VALUE : expires));
+        return hostName;
+    }
+
+    /**
+     * Evicts expired entries, or all entries if none have expired.
+     */
+    private void evict(long now) {
+        boolean evicted = false;
+        for (Iterator<CachedHostName> i = cache.values().iterator(); i.hasNext();) {
+            if (i.next().isExpired(now)) {
+                i.remove();
+                evicted = true;
+            }
+        }
+        if (!evicted) {
+            cache.clear();
+        }
+    }
+
+    private static final class CachedHostName {
+        private final String hostName;
+        private final long expires;
+
+        private CachedHostName(String hostName, long expires) {
+            this.hostName = hostName;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expires;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+package org.forgerock.http.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves the host name of a remote client from its IP address.
+ *
+ * @see CachingHostNameResolver
+ */
+public interface HostNameResolver {
+
+    /**
+     * Resolves host names using a reverse DNS lookup. The lookup blocks the
+     * calling thread, so this resolver should usually be wrapped in a
+     * {@link CachingHostNameResolver}.
+     */
+    HostNameResolver DNS = new HostNameResolver() {
+        @Override
+        public String getHostName(String address) {
+            try {
+                return InetAddress.getByName(address).getHostName();
+            } catch (UnknownHostException e) {
+                return address;
+            }
+        }
+    };
+
+    /**
+     * Returns the fully qualified host name of the provided IP address.
+     *
+     * @param address
+     *            The IP address.
+     * @return The host name, or the IP address if it could not be resolved.
+     */
+    String getHostName(String address);
+}
@@ -202,6 +202,49 @@ public final class Json {
         return parse(LENIENT_MAPPER, new InputStreamReader(in));
     }
 
+    /**
+     * Parses to json the provided byte stream. Unlike {@link #readJson(Reader)}
+     * the bytes are parsed directly, without decoding them to characters
+     * first, and the encoding (UTF-8, UTF-16 or UTF-32) is detected as
+     * specified by RFC 7159. The parsed structures are suited to random
+     * access, such as through a {@code JsonValue}:
+     *
+     * <pre>
+     * <b>JSON       | Type Java Type</b>
+     * {@code
+     * ------------------------------------
+     * object     | LinkedHashMap<String,?>
+     * array      | ArrayList<?>
+     * string     | String
+     * number     | Integer, Long or BigInteger, whichever is the smallest to hold the value
+     * float      | Double
+     * true|false | Boolean
+     * null       | null
+     * }
+     * </pre>
+     *
+     * @param in
+     *            The stream of data to parse, which will be closed.
+     * @param <T>
+     *            The expected type of the parsed JSON.
+     * @return The parsed JSON into its corresponding java type, or {@code null}
+     *         if the stream is empty.
+     * @throws IOException
+     *             If an exception occurs during parsing the data.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T readJson(final InputStream in) throws IOException {
+        if (in == null) {
+            return null;
+        }
+        try (JsonParser jp = STRICT_MAPPER.getFactory().createParser(in)) {
+            if (jp.nextToken() == null) {
+                return null;
+            }
+            return (T) STRICT_MAPPER.readValue(jp, Object.class);
+        }
+    }
+
     private static <T> T parse(ObjectMapper mapper, Reader reader) throws IOException {
         if (reader == null) {
             return null;
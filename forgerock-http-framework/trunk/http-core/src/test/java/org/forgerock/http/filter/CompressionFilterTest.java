@@ -0,0 +1,189 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.filter;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.filter.CompressionFilter.selectCoding;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.forgerock.http.Context;
+import org.forgerock.http.Filter;
+import org.forgerock.http.Handler;
+import org.forgerock.http.io.IO;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promises;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CompressionFilterTest {
+
+    private static final String CONTENT;
+    static {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            builder.append("{\"_id\":\"").append(i).append("\"},");
+        }
+        CONTENT = builder.toString();
+    }
+
+    @DataProvider
+    private Object[][] acceptEncodings() {
+        return new Object[][] {
+            { null, null },
+            { "identity", null },
+            { "gzip", "gzip" },
+            { "deflate", "deflate" },
+            { "deflate, gzip", "gzip" },
+            { "gzip;q=0.5, deflate", "deflate" },
+            { "gzip;q=0", null },
+            { "*", "gzip" },
+            { "*;q=0.5, gzip;q=0", "deflate" },
+        };
+    }
+
+    @Test(dataProvider = "acceptEncodings")
+    public void shouldSelectPreferredCoding(String acceptEncoding, String expected) {
+        assertThat(selectCoding(acceptEncoding != null ? singletonList(acceptEncoding) : null))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void shouldGzipResponse() throws Exception {
+        //Given
+        Request request = request("gzip, deflate");
+
+        //When
+        Response response = filter().filter(mock(Context.class), request, handler(response("application/json")))
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertThat(response.getHeaders().getFirst("Content-Encoding")).isEqualTo("gzip");
+        assertThat(response.getHeaders().getFirst("Content-Length")).isNull();
+        assertThat(response.getHeaders().getFirst("Vary")).isEqualTo("Accept-Encoding");
+        assertThat(read(new GZIPInputStream(response.getEntity().getRawContentInputStream()))).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void shouldDeflateResponse() throws Exception {
+        //Given
+        Request request = request("deflate");
+
+        //When
+        Response response = filter().filter(mock(Context.class), request, handler(response("text/plain")))
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertThat(response.getHeaders().getFirst("Content-Encoding")).isEqualTo("deflate");
+        assertThat(read(new InflaterInputStream(response.getEntity().getRawContentInputStream())))
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void shouldNotCompressUnlistedMimeTypes() throws Exception {
+        //Given
+        Request request = request("gzip");
+        Response original = response("image/png");
+
+        //When
+        Response response = filter().filter(mock(Context.class), request, handler(original))
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertThat(response).isSameAs(original);
+        assertThat(response.getHeaders().getFirst("Content-Encoding")).isNull();
+        assertThat(response.getHeaders().getFirst("Vary")).isNull();
+    }
+
+    @Test
+    public void shouldNotCompressSmallResponses() throws Exception {
+        //Given
+        Request request = request("gzip");
+        Response original = response("application/json");
+        original.getEntity().setString("{}");
+
+        //When
+        Response response = filter().filter(mock(Context.class), request, handler(original))
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertThat(response).isSameAs(original);
+        assertThat(response.getHeaders().getFirst("Content-Encoding")).isNull();
+        assertThat(response.getHeaders().getFirst("Vary")).isEqualTo("Accept-Encoding");
+    }
+
+    @Test
+    public void shouldNotCompressWhenNoCodingIsAccepted() throws Exception {
+        //Given
+        Request request = request(null);
+        Response original = response("application/json");
+
+        //When
+        Response response = filter().filter(mock(Context.class), request, handler(original))
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertThat(response).isSameAs(original);
+        assertThat(response.getEntity().getString()).isEqualTo(CONTENT);
+    }
+
+    private static Filter filter() {
+        return Filters.newCompressionFilter(100, Deflater.BEST_SPEED, asList("text/*", "application/json"));
+    }
+
+    private static Request request(String acceptEncoding) {
+        Request request = new Request().setMethod("GET");
+        if (acceptEncoding != null) {
+            request.getHeaders().putSingle("Accept-Encoding", acceptEncoding);
+        }
+        return request;
+    }
+
+    private static Response response(String contentType) {
+        Response response = new Response(Status.OK);
+        response.getHeaders().putSingle("Content-Type", contentType);
+        response.getEntity().setRawContentInputStream(IO.newBranchingInputStream(CONTENT.getBytes()));
+        return response;
+    }
+
+    private static Handler handler(Response response) {
+        Handler handler = mock(Handler.class);
+        when(handler.handle(any(Context.class), any(Request.class)))
+                .thenReturn(Promises.<Response, NeverThrowsException>newResultPromise(response));
+        return handler;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.stream(in, out);
+        return out.toString("UTF-8");
+    }
+}
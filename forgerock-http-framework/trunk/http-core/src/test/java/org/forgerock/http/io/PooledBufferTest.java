@@ -0,0 +1,168 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.forgerock.util.Factory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PooledBufferTest {
+
+    private static final int CHUNK_SIZE = 16;
+
+    @Test
+    public void shouldReadDataAppendedAcrossChunks() throws Exception {
+        //Given
+        DirectBufferPool pool = new DirectBufferPool(CHUNK_SIZE * 8, CHUNK_SIZE);
+        Buffer buffer = new PooledBuffer(pool, 1_024);
+        byte[] data = randomBytes(100);
+
+        //When
+        buffer.append(data, 0, 10);
+        buffer.append(data, 10, 90);
+
+        //Then
+        assertThat(buffer.length()).isEqualTo(100);
+        assertThat(readAll(buffer)).isEqualTo(data);
+        byte[] partial = new byte[20];
+        assertThat(buffer.read(90, partial, 5, 15)).isEqualTo(10);
+        assertThat(Arrays.copyOfRange(partial, 5, 15)).isEqualTo(Arrays.copyOfRange(data, 90, 100));
+    }
+
+    @Test
+    public void shouldNotAppendAnythingWhenPoolIsExhausted() throws Exception {
+        //Given
+        DirectBufferPool pool = new DirectBufferPool(CHUNK_SIZE * 2, CHUNK_SIZE);
+        Buffer buffer = new PooledBuffer(pool, 1_024);
+        buffer.append(randomBytes(10), 0, 10);
+
+        //When
+        try {
+            buffer.append(randomBytes(40), 0, 40);
+            failBecauseExceptionWasNotThrown(OverflowException.class);
+        } catch (OverflowException e) {
+            //Then
+            assertThat(buffer.length()).isEqualTo(10);
+            assertThat(pool.acquire()).isNotNull();
+        }
+    }
+
+    @Test
+    public void shouldReturnChunksToPoolWhenClosed() throws Exception {
+        //Given
+        DirectBufferPool pool = new DirectBufferPool(CHUNK_SIZE * 2, CHUNK_SIZE);
+        Buffer buffer = new PooledBuffer(pool, 1_024);
+        buffer.append(randomBytes(32), 0, 32);
+        assertThat(pool.acquire()).isNull();
+
+        //When
+        buffer.close();
+
+        //Then
+        Buffer other = new PooledBuffer(pool, 1_024);
+        other.append(randomBytes(32), 0, 32);
+        assertThat(other.length()).isEqualTo(32);
+    }
+
+    @Test
+    public void pooledStorageShouldPromoteToMappedFileWhenMemoryLimitIsExceeded() throws Exception {
+        //Given
+        DirectBufferPool pool = new DirectBufferPool(DirectBufferPool.DEFAULT_CHUNK_SIZE);
+        Factory<Buffer> storage = IO.newPooledStorage(null, pool, 1_024, MappedFileBuffer.REGION_SIZE * 3);
+        Buffer buffer = storage.newInstance();
+        byte[] data = randomBytes(MappedFileBuffer.REGION_SIZE * 2 + 100);
+        buffer.append(data, 0, 50);
+        assertThat(pool.acquire()).isNull();
+
+        //When
+        buffer.append(data, 50, data.length - 50);
+
+        //Then
+        try {
+            assertThat(buffer.length()).isEqualTo(data.length);
+            assertThat(readAll(buffer)).isEqualTo(data);
+            assertThat(pool.acquire()).isNotNull();
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void pooledStorageShouldReuseChunksOfClosedBuffers() throws Exception {
+        //Given
+        int chunkSize = DirectBufferPool.DEFAULT_CHUNK_SIZE;
+        DirectBufferPool pool = new DirectBufferPool(chunkSize * 2);
+        Factory<Buffer> storage = IO.newPooledStorage(null, pool, chunkSize * 2, MappedFileBuffer.REGION_SIZE);
+        Buffer first = storage.newInstance();
+        first.append(randomBytes(chunkSize * 2), 0, chunkSize * 2);
+        assertThat(pool.acquire()).isNull();
+
+        //When
+        first.close();
+        Buffer second = storage.newInstance();
+        byte[] data = randomBytes(chunkSize * 2);
+        second.append(data, 0, data.length);
+
+        //Then
+        try {
+            assertThat(readAll(second)).isEqualTo(data);
+            assertThat(pool.acquire()).isNull();
+        } finally {
+            second.close();
+        }
+        assertThat(pool.acquire()).isNotNull();
+        assertThat(pool.acquire()).isNotNull();
+        assertThat(pool.acquire()).isNull();
+    }
+
+    @Test(expectedExceptions = OverflowException.class)
+    public void mappedFileBufferShouldThrowWhenLimitIsExceeded() throws Exception {
+        //Given
+        Factory<Buffer> storage = IO.newMappedStorage(null, 8, 16, 100);
+        Buffer buffer = storage.newInstance();
+
+        //When
+        try {
+            buffer.append(randomBytes(101), 0, 101);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readAll(Buffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.length()];
+        int pos = 0;
+        int n;
+        while (pos < bytes.length && (n = buffer.read(pos, bytes, pos, Math.min(37, bytes.length - pos))) > 0) {
+            pos += n;
+        }
+        return bytes;
+    }
+}
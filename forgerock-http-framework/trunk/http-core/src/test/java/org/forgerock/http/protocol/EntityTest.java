@@ -32,6 +32,7 @@ import org.testng.annotations.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -106,6 +107,33 @@ public class EntityTest {
         }
     }
 
+    @Test
+    public void getJsonParsesArraysForRandomAccess() throws Exception {
+        final String json = singleQuotesToDouble("{'a':[1,2,3],'b':12345678901,'c':1.5}");
+        entity.setRawContentInputStream(mockContent(json));
+        final Map<?, ?> jsonEntity = ((Map<?, ?>) entity.getJson());
+
+        assertThat(jsonEntity.get("a")).isInstanceOf(ArrayList.class).isEqualTo(Arrays.asList(1, 2, 3));
+        assertThat(jsonEntity.get("b")).isEqualTo(12345678901L);
+        assertThat(jsonEntity.get("c")).isEqualTo(1.5);
+    }
+
+    @Test
+    public void getJsonDetectsUtf16Encoding() throws Exception {
+        final String json = singleQuotesToDouble("{'a':'\u00e9'}");
+        entity.setRawContentInputStream(IO.newBranchingInputStream(json.getBytes("UTF-16BE")));
+        assertThat((Map<?, ?>) entity.getJson()).contains(entry("a", "\u00e9"));
+    }
+
+    @Test
+    public void getStringUsesUpdatedContentTypeCharset() throws Exception {
+        entity.setRawContentInputStream(IO.newBranchingInputStream("\u00e9".getBytes("UTF-8")));
+        message.getHeaders().putSingle(ContentTypeHeader.NAME, "text/plain; charset=ISO-8859-1");
+        assertThat(entity.newDecodedContentReader(null).readLine()).isEqualTo("\u00c3\u00a9");
+        message.getHeaders().putSingle(ContentTypeHeader.NAME, "text/plain; charset=UTF-8");
+        assertThat(entity.newDecodedContentReader(null).readLine()).isEqualTo("\u00e9");
+    }
+
     @Test
     public void getJsonWhenEntityIsEmpty() throws Exception {
         assertThat(entity.getJson()).isNull();
@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.routing;
+
+import static org.forgerock.http.routing.RouteMatchers.requestUriMatcher;
+import static org.forgerock.http.routing.RoutingMode.EQUALS;
+import static org.forgerock.http.routing.RoutingMode.STARTS_WITH;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Context;
+import org.forgerock.http.context.RootContext;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing the cost of finding the best route in a router which evaluates each route in turn with one
+ * which {@link AbstractRouter#setIndexed(boolean) indexes} its routes, as the number of routes grows. The routes
+ * model realms containing several object types, each with a collection route and an instance route. This is not run
+ * as part of the unit tests; run the {@link #main(String[])} method from the test classpath instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouterBenchmark {
+
+    private static final String[] TYPES = { "users", "groups", "devices", "policies", "applications" };
+
+    @Param({ "10", "100", "1000" })
+    public int routeCount;
+
+    private final Context context = new RootContext();
+    private BenchmarkRouter linearRouter;
+    private BenchmarkRouter indexedRouter;
+    private Request[] requests;
+    private int next;
+
+    @Setup
+    public void setup() {
+        linearRouter = new BenchmarkRouter();
+        for (int i = 0; i < routeCount; i += 2) {
+            String collection = "realms/realm" + (i / 2 / TYPES.length) + "/" + TYPES[i / 2 % TYPES.length];
+            linearRouter.addRoute(requestUriMatcher(EQUALS, collection), collection);
+            linearRouter.addRoute(requestUriMatcher(STARTS_WITH, collection + "/{id}"), collection + "/{id}");
+        }
+        indexedRouter = new BenchmarkRouter(linearRouter).setIndexed(true);
+
+        requests = new Request[64];
+        for (int i = 0; i < requests.length; i++) {
+            int route = i * 7919 % Math.max(routeCount / 2, 1);
+            String path = "realms/realm" + (route / TYPES.length) + "/" + TYPES[route % TYPES.length];
+            if (i % 2 == 1) {
+                path += "/" + i;
+            }
+            requests[i] = new Request().setUri(URI.create("http://example.com/" + path));
+        }
+    }
+
+    @Benchmark
+    public Pair<Context, String> linear() throws Exception {
+        return linearRouter.getBestRoute(context, nextRequest());
+    }
+
+    @Benchmark
+    public Pair<Context, String> indexed() throws Exception {
+        return indexedRouter.getBestRoute(context, nextRequest());
+    }
+
+    private Request nextRequest() {
+        next = (next + 1) % requests.length;
+        return requests[next];
+    }
+
+    public static void main(String... args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(RouterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static final class BenchmarkRouter extends AbstractRouter<BenchmarkRouter, Request, String> {
+
+        private BenchmarkRouter() {
+        }
+
+        private BenchmarkRouter(BenchmarkRouter router) {
+            super(router);
+        }
+
+        @Override
+        protected BenchmarkRouter getThis() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.routing.RouteMatchers.requestUriMatcher;
+import static org.forgerock.http.routing.RoutingMode.EQUALS;
+import static org.forgerock.http.routing.RoutingMode.STARTS_WITH;
+import static org.mockito.Mockito.mock;
+
+import java.net.URI;
+
+import org.forgerock.http.Context;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.util.Pair;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class UriRouteIndexTest {
+
+    private TestRouter linearRouter;
+    private TestRouter indexedRouter;
+
+    @BeforeClass
+    public void setup() {
+        linearRouter = new TestRouter()
+                .addRoute(requestUriMatcher(STARTS_WITH, ""), "root")
+                .addRoute(requestUriMatcher(EQUALS, "users"), "users")
+                .addRoute(requestUriMatcher(EQUALS, "users/{id}"), "user")
+                .addRoute(requestUriMatcher(EQUALS, "users/admin"), "admin")
+                .addRoute(requestUriMatcher(STARTS_WITH, "users/{id}/devices"), "devices")
+                .addRoute(requestUriMatcher(EQUALS, "{type}/{id}/devices/{deviceId}"), "device")
+                .addRoute(requestUriMatcher(STARTS_WITH, "realms/{realm}"), "realm")
+                .addRoute(requestUriMatcher(EQUALS, "realms/{realm}"), "realmConfig")
+                .addRoute(requestUriMatcher(EQUALS, "groups/group-{id}"), "group")
+                .addRoute(requestUriMatcher(STARTS_WITH, "/config/"), "config");
+        indexedRouter = new TestRouter(linearRouter).setIndexed(true);
+    }
+
+    @DataProvider
+    public Object[][] testData() {
+        return new Object[][] {
+            // @formatter:off
+            /* path, expected route */
+            { "", "root" },
+            { "unknown/path", "root" },
+            { "users", "users" },
+            { "users/", "users" },
+            { "users/bjensen", "user" },
+            { "users/b%20jensen", "user" },
+            { "users/admin", "admin" },
+            { "users/bjensen/devices", "devices" },
+            { "users/bjensen/devices/0", "device" },
+            { "users/bjensen/devices/0/more", "devices" },
+            { "things/1/devices/2", "device" },
+            { "realms/test", "realmConfig" },
+            { "realms/test/users", "realm" },
+            { "groups/group-1", "group" },
+            { "groups/1", "root" },
+            { "config", "config" },
+            { "config/a/b", "config" },
+            // @formatter:on
+        };
+    }
+
+    @Test(dataProvider = "testData")
+    public void indexedRouterShouldChooseSameRouteAsLinearRouter(String path, String expectedRoute)
+            throws Exception {
+
+        //Given
+        Context context = mock(Context.class);
+        Request request = new Request().setUri(URI.create("http://example.com/" + path));
+
+        //When
+        Pair<Context, String> linearRoute = linearRouter.getBestRoute(context, request);
+        Pair<Context, String> indexedRoute = indexedRouter.getBestRoute(context, request);
+
+        //Then
+        assertThat(indexedRoute.getSecond()).isEqualTo(expectedRoute).isEqualTo(linearRoute.getSecond());
+        RouterContext linearContext = linearRoute.getFirst().asContext(RouterContext.class);
+        RouterContext indexedContext = indexedRoute.getFirst().asContext(RouterContext.class);
+        assertThat(indexedContext.getMatchedUri()).isEqualTo(linearContext.getMatchedUri());
+        assertThat(indexedContext.getRemainingUri()).isEqualTo(linearContext.getRemainingUri());
+        assertThat(indexedContext.getUriTemplateVariables()).isEqualTo(linearContext.getUriTemplateVariables());
+    }
+
+    @Test
+    public void shouldDecodeTemplateVariables() throws Exception {
+
+        //Given
+        Request request = new Request().setUri(URI.create("http://example.com/things/a%20b/devices/c%2Fd"));
+
+        //When
+        Pair<Context, String> route = indexedRouter.getBestRoute(mock(Context.class), request);
+
+        //Then
+        assertThat(route.getFirst().asContext(RouterContext.class).getUriTemplateVariables())
+                .containsEntry("type", "things")
+                .containsEntry("id", "a b")
+                .containsEntry("deviceId", "c/d");
+    }
+
+    @Test
+    public void shouldUpdateIndexWhenRoutesChange() throws Exception {
+
+        //Given
+        TestRouter router = new TestRouter().setIndexed(true);
+        RouteMatcher<Request> matcher = requestUriMatcher(EQUALS, "users/{id}");
+        Request request = new Request().setUri(URI.create("http://example.com/users/1"));
+        router.addRoute(matcher, "user");
+        Pair<Context, String> routeBeforeRemoval = router.getBestRoute(mock(Context.class), request);
+
+        //When
+        router.removeRoute(matcher);
+
+        //Then
+        assertThat(routeBeforeRemoval.getSecond()).isEqualTo("user");
+        assertThat(router.getBestRoute(mock(Context.class), request)).isNull();
+    }
+
+    private static final class TestRouter extends AbstractRouter<TestRouter, Request, String> {
+
+        private TestRouter() {
+        }
+
+        private TestRouter(TestRouter router) {
+            super(router);
+        }
+
+        @Override
+        protected TestRouter getThis() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.util;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CachingHostNameResolverTest {
+
+    private HostNameResolver delegate;
+    private TimeService time;
+    private CachingHostNameResolver resolver;
+
+    @BeforeMethod
+    public void setUp() {
+        delegate = mock(HostNameResolver.class);
+        when(delegate.getHostName("192.0.2.1")).thenReturn("one.example.com");
+        when(delegate.getHostName("192.0.2.2")).thenReturn("two.example.com");
+        when(delegate.getHostName("192.0.2.3")).thenReturn("three.example.com");
+        time = mock(TimeService.class);
+        when(time.now()).thenReturn(0L);
+        resolver = new CachingHostNameResolver(delegate, new Duration(10L, SECONDS), 2, time);
+    }
+
+    @Test
+    public void shouldCacheResolvedHostNames() {
+        //Given
+        resolver.getHostName("192.0.2.1");
+
+        //When
+        String hostName = resolver.getHostName("192.0.2.1");
+
+        //Then
+        assertThat(hostName).isEqualTo("one.example.com");
+        verify(delegate, times(1)).getHostName("192.0.2.1");
+    }
+
+    @Test
+    public void shouldResolveHostNamesAgainOnceExpired() {
+        //Given
+        resolver.getHostName("192.0.2.1");
+        when(time.now()).thenReturn(10_000L);
+
+        //When
+        String hostName = resolver.getHostName("192.0.2.1");
+
+        //Then
+        assertThat(hostName).isEqualTo("one.example.com");
+        verify(delegate, times(2)).getHostName("192.0.2.1");
+    }
+
+    @Test
+    public void shouldEvictExpiredHostNamesWhenFull() {
+        //Given
+        resolver.getHostName("192.0.2.1");
+        when(time.now()).thenReturn(5_000L);
+        resolver.getHostName("192.0.2.2");
+        when(time.now()).thenReturn(12_000L);
+
+        //When
+        resolver.getHostName("192.0.2.3");
+        resolver.getHostName("192.0.2.2");
+
+        //Then
+        verify(delegate, times(1)).getHostName("192.0.2.2");
+        verify(delegate, times(1)).getHostName("192.0.2.3");
+    }
+}
@@ -18,12 +18,15 @@ package org.forgerock.http.util;
 
 import static java.lang.Long.*;
 import static java.util.Arrays.*;
+import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.http.util.Json.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -67,6 +70,21 @@ public class JsonTest {
         assertThat(readJson(from(json))).isNull();
     }
 
+    @Test(dataProvider = "emptyJson")
+    public void shouldReturnsNullWhenReadingEmptyBytes(final String json) throws Exception {
+        assertThat((Object) readJson(new ByteArrayInputStream(json.getBytes("UTF-8")))).isNull();
+    }
+
+    @Test
+    public void shouldReadJsonFromBytesIntoRandomAccessLists() throws Exception {
+        final List<Object> json = readJson(new ByteArrayInputStream(
+                "[1, 9007199254740993, 2.5, {\"a\": [true, null]}]".getBytes("UTF-8")));
+        assertThat(json).isInstanceOf(ArrayList.class);
+        assertThat(json).containsExactly(1, 9007199254740993L, 2.5,
+                singletonMap("a", asList(true, null)));
+        assertThat(((Map<?, ?>) json.get(3)).get("a")).isInstanceOf(ArrayList.class);
+    }
+
     @Test(expectedExceptions = IOException.class)
     public void shouldFailToReadInvalidJson() throws Exception {
         readJson(from(INVALID_JSON));
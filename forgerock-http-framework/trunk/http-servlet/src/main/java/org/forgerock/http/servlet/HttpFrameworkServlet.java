@@ -18,8 +18,9 @@
 package org.forgerock.http.servlet;
 
 import static org.forgerock.http.io.IO.newBranchingInputStream;
-import static org.forgerock.http.io.IO.newTemporaryStorage;
 import static org.forgerock.util.Utils.closeSilently;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -29,6 +30,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
@@ -45,15 +47,21 @@ import org.forgerock.http.context.ClientInfoContext;
 import org.forgerock.http.context.HttpContext;
 import org.forgerock.http.context.RootContext;
 import org.forgerock.http.io.Buffer;
+import org.forgerock.http.io.OverflowException;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
 import org.forgerock.http.routing.RouterContext;
 import org.forgerock.http.util.CaseInsensitiveSet;
+import org.forgerock.http.util.HostNameResolver;
 import org.forgerock.http.util.Uris;
+import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Factory;
+import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.Duration;
 
 /**
  * <p>
@@ -93,22 +101,63 @@ public final class HttpFrameworkServlet extends HttpServlet {
      */
     public static final String ROUTING_BASE_INIT_PARAM_NAME = "routing-base";
 
+    /**
+     * Servlet init-param for configuring the temporary storage used to buffer
+     * request entities, one of {@code heap} (the default), {@code mapped} or
+     * {@code pooled}. Ignored if the {@link HttpApplication} provides its own
+     * buffer factory.
+     *
+     * @see ServletTemporaryStorage
+     */
+    public static final String TEMPORARY_STORAGE_INIT_PARAM_NAME = "temporary-storage";
+
+    /**
+     * Servlet init-param for enabling non-blocking IO when running in a
+     * Servlet 3.1 container, {@code false} by default. When enabled, request
+     * entities are read completely into temporary storage before the request
+     * is handled, and requests whose entity exceeds the storage limit are
+     * rejected.
+     *
+     * @see Servlet31Adapter
+     */
+    public static final String NON_BLOCKING_IO_INIT_PARAM_NAME = "non-blocking-io";
+
+    /**
+     * Servlet init-param for configuring how the remote host of the client is
+     * resolved, one of {@code container} (the default), {@code dns} or
+     * {@code none}.
+     *
+     * @see ServletHostNameResolver
+     */
+    public static final String REMOTE_HOST_RESOLVER_INIT_PARAM_NAME = "remote-host-resolver";
+
+    /**
+     * Servlet init-param for configuring how long remote host names are
+     * cached for when they are resolved using DNS, for example
+     * {@code 5 minutes} (the default).
+     */
+    public static final String REMOTE_HOST_CACHE_TTL_INIT_PARAM_NAME = "remote-host-cache-ttl";
+
+    private static final String DEFAULT_REMOTE_HOST_CACHE_TTL = "5 minutes";
+
     private ServletVersionAdapter adapter;
     private HttpApplication application;
     private Factory<Buffer> storage;
     private Handler handler;
     private ServletRoutingBase routingBase;
+    private HostNameResolver hostNameResolver;
 
     @Override
     public void init() throws ServletException {
-        adapter = getAdapter(getServletContext());
+        adapter = getAdapter(getServletContext(), getServletConfig());
         routingBase = selectRoutingBase(getServletConfig());
+        hostNameResolver = selectHostNameResolver(getServletConfig());
         HttpApplicationLoader applicationLoader = getApplicationLoader(getServletConfig());
         application = getApplication(applicationLoader, getServletConfig());
         storage = application.getBufferFactory();
         if (storage == null) {
             final File tmpDir = (File) getServletContext().getAttribute(SERVLET_TEMP_DIR);
-            storage = newTemporaryStorage(tmpDir);
+            storage = selectTemporaryStorage(getServletConfig()).newStorage(tmpDir);
         }
         try {
             handler = application.start();
@@ -117,7 +166,8 @@ public final class HttpFrameworkServlet extends HttpServlet {
         }
     }
 
-    private ServletVersionAdapter getAdapter(ServletContext servletContext) throws ServletException {
+    private ServletVersionAdapter getAdapter(ServletContext servletContext, ServletConfig servletConfig)
+            throws ServletException {
         switch (servletContext.getMajorVersion()) {
         case 1:
             // FIXME: i18n.
@@ -125,11 +175,20 @@ public final class HttpFrameworkServlet extends HttpServlet {
                     + servletContext.getMajorVersion());
         case 2:
             return new Servlet2Adapter();
+        case 3:
+            if (servletContext.getMinorVersion() == 0) {
+                return new Servlet3Adapter();
+            }
+            // Fall through for Servlet 3.1 and later.
         default:
-            return new Servlet3Adapter();
+            return isNonBlockingIo(servletConfig) ? new Servlet31Adapter() : new Servlet3Adapter();
         }
     }
 
+    private boolean isNonBlockingIo(ServletConfig servletConfig) {
+        return Boolean.parseBoolean(servletConfig.getInitParameter(NON_BLOCKING_IO_INIT_PARAM_NAME));
+    }
+
     private ServletRoutingBase selectRoutingBase(ServletConfig servletConfig) throws ServletException {
         String routingModeParam = servletConfig.getInitParameter(ROUTING_BASE_INIT_PARAM_NAME);
         if (routingModeParam == null) {
@@ -142,6 +201,36 @@ public final class HttpFrameworkServlet extends HttpServlet {
         }
     }
 
+    private ServletTemporaryStorage selectTemporaryStorage(ServletConfig servletConfig) throws ServletException {
+        String storageParam = servletConfig.getInitParameter(TEMPORARY_STORAGE_INIT_PARAM_NAME);
+        if (storageParam == null) {
+            return ServletTemporaryStorage.HEAP;
+        }
+        try {
+            return ServletTemporaryStorage.valueOf(storageParam.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid temporary storage: " + storageParam);
+        }
+    }
+
+    private HostNameResolver selectHostNameResolver(ServletConfig servletConfig) throws ServletException {
+        String resolverParam = servletConfig.getInitParameter(REMOTE_HOST_RESOLVER_INIT_PARAM_NAME);
+        String ttlParam = servletConfig.getInitParameter(REMOTE_HOST_CACHE_TTL_INIT_PARAM_NAME);
+        ServletHostNameResolver resolver;
+        try {
+            resolver = resolverParam == null
+                    ? ServletHostNameResolver.CONTAINER
+                    : ServletHostNameResolver.valueOf(resolverParam.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid remote host resolver: " + resolverParam);
+        }
+        try {
+            return resolver.newResolver(Duration.duration(ttlParam != null ? ttlParam : DEFAULT_REMOTE_HOST_CACHE_TTL));
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid remote host cache TTL: " + ttlParam);
+        }
+    }
+
     private HttpApplicationLoader getApplicationLoader(ServletConfig config) throws ServletException {
         String applicationLoaderParam = config.getInitParameter("application-loader");
         if (applicationLoaderParam == null) {
@@ -163,6 +252,7 @@ public final class HttpFrameworkServlet extends HttpServlet {
     protected void service(final HttpServletRequest req, final HttpServletResponse resp)
             throws ServletException, IOException {
         final Request request = createRequest(req);
+        final boolean hasEntity = hasEntity(req, request);
         final Session session = new ServletSession(req);
         final HttpContext httpContext = new HttpContext(new RootContext(), session)
                 .setPrincipal(req.getUserPrincipal());
@@ -182,22 +272,47 @@ public final class HttpFrameworkServlet extends HttpServlet {
         httpContext.getAttributes().put(HttpServletRequest.class.getName(), req);
         httpContext.getAttributes().put(HttpServletResponse.class.getName(), resp);
 
-        Context context = createRouterContext(createClientInfoContext(httpContext, req), req);
+        final Context context = createRouterContext(createClientInfoContext(httpContext, req), req);
 
-        // handle request
+        // handle request once its entity is available
         final ServletSynchronizer sync = adapter.createServletSynchronizer(req, resp);
+        final Promise<InputStream, IOException> entity =
+                hasEntity ? adapter.readEntity(req, storage) : newResultPromise((InputStream) null);
         final Promise<Response, NeverThrowsException> promise =
-                handler.handle(context, request).thenOnResult(new ResultHandler<Response>() {
+                entity.thenAsync(new AsyncFunction<InputStream, Response, NeverThrowsException>() {
                     @Override
-                    public void handleResult(Response response) {
-                        try {
-                            writeResponse(httpContext, resp, response);
-                        } catch (IOException e) {
-                            log("Failed to write success response", e);
-                        } finally {
-                            closeSilently(request, response);
-                            sync.signalAndComplete();
+                    public Promise<Response, NeverThrowsException> apply(InputStream in) {
+                        if (in != null) {
+                            request.setEntity(newBranchingInputStream(in, storage));
                         }
+                        return handler.handle(context, request);
+                    }
+                }, new AsyncFunction<IOException, Response, NeverThrowsException>() {
+                    @Override
+                    public Promise<Response, NeverThrowsException> apply(IOException e) {
+                        log("Failed to read request entity", e);
+                        Response response = new Response();
+                        response.setStatus(e instanceof OverflowException
+                                ? Status.PAYLOAD_TOO_LARGE : Status.BAD_REQUEST);
+                        return newResultPromise(response);
+                    }
+                }).thenOnResult(new ResultHandler<Response>() {
+                    @Override
+                    public void handleResult(final Response response) {
+                        writeResponse(httpContext, req, resp, response)
+                                .thenOnException(new ExceptionHandler<IOException>() {
+                                    @Override
+                                    public void handleException(IOException e) {
+                                        log("Failed to write success response", e);
+                                    }
+                                })
+                                .thenOnResultOrException(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        closeSilently(request, response);
+                                        sync.signalAndComplete();
+                                    }
+                                });
                     }
                 });
 
@@ -232,24 +347,37 @@ public final class HttpFrameworkServlet extends HttpServlet {
             request.getHeaders().addAll(name, Collections.list(req.getHeaders(name)));
         }
 
-        // include request entity if appears to be provided with request
-        if ((req.getContentLength() > 0 || req.getHeader("Transfer-Encoding") != null)
-                && !NON_ENTITY_METHODS.contains(request.getMethod())) {
-            request.setEntity(newBranchingInputStream(req.getInputStream(), storage));
-        }
-
         return request;
     }
 
+    /**
+     * Returns whether a request entity appears to be provided with the request.
+     * The entity itself is read by the {@link ServletVersionAdapter}.
+     */
+    private boolean hasEntity(HttpServletRequest req, Request request) {
+        return (req.getContentLength() > 0 || req.getHeader("Transfer-Encoding") != null)
+                && !NON_ENTITY_METHODS.contains(request.getMethod());
+    }
+
     private ClientInfoContext createClientInfoContext(Context parent, HttpServletRequest req) {
-        return ClientInfoContext.builder(parent)
+        final String remoteAddress = req.getRemoteAddr();
+        final HostNameResolver resolver = hostNameResolver;
+        ClientInfoContext.ClientInfoContextBuilder builder = ClientInfoContext.builder(parent)
                 .remoteUser(req.getRemoteUser())
-                .remoteAddress(req.getRemoteAddr())
-                .remoteHost(req.getRemoteHost())
+                .remoteAddress(remoteAddress)
                 .remotePort(req.getRemotePort())
                 .certificates((X509Certificate[]) req.getAttribute(SERVLET_REQUEST_X509_ATTRIBUTE))
-                .userAgent(req.getHeader("User-Agent"))
-                .build();
+                .userAgent(req.getHeader("User-Agent"));
+        if (resolver == null) {
+            return builder.remoteHost(req.getRemoteHost()).build();
+        }
+        // only look up the host name if a handler needs it, without holding on to the request
+        return builder.remoteHost(new Factory<String>() {
+            @Override
+            public String newInstance() {
+                return resolver.getHostName(remoteAddress);
+            }
+        }).build();
     }
 
     private RouterContext createRouterContext(Context parent, HttpServletRequest req) {
@@ -258,8 +386,8 @@ public final class HttpFrameworkServlet extends HttpServlet {
         return new RouterContext(parent, matchedUri, remaining, Collections.<String, String>emptyMap());
     }
 
-    private void writeResponse(HttpContext context, HttpServletResponse resp, Response response)
-            throws IOException {
+    private Promise<Void, IOException> writeResponse(HttpContext context, HttpServletRequest req,
+            HttpServletResponse resp, Response response) {
         /*
          * Support for OPENIG-94/95 - The wrapped servlet may have already
          * committed its response w/o creating a new OpenIG Response instance in
@@ -270,7 +398,11 @@ public final class HttpFrameworkServlet extends HttpServlet {
             resp.setStatus(response.getStatus().getCode());
 
             // ensure that the session has been written back to the response
-            context.getSession().save(response);
+            try {
+                context.getSession().save(response);
+            } catch (IOException e) {
+                return newExceptionPromise(e);
+            }
 
             // response headers
             for (String name : response.getHeaders().keySet()) {
@@ -281,9 +413,9 @@ public final class HttpFrameworkServlet extends HttpServlet {
                 }
             }
             // response entity (if applicable)
-            // TODO does this also set content length?
-            response.getEntity().copyRawContentTo(resp.getOutputStream());
+            return adapter.writeEntity(req, resp, response.getEntity());
         }
+        return newResultPromise(null);
     }
 
     @Override
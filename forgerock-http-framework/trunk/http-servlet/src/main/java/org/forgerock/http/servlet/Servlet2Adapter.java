@@ -16,10 +16,20 @@
 
 package org.forgerock.http.servlet;
 
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.CountDownLatch;
 
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Entity;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
+
 /**
  * An adapter for use in Servlet 2.x containers.
  */
@@ -65,4 +75,41 @@ final class Servlet2Adapter implements ServletVersionAdapter {
             HttpServletResponse httpResponse) {
         return new Servlet2Synchronizer();
     }
+
+    @Override
+    public Promise<InputStream, IOException> readEntity(HttpServletRequest httpRequest, Factory<Buffer> storage) {
+        return readEntityBlocking(httpRequest);
+    }
+
+    @Override
+    public Promise<Void, IOException> writeEntity(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            Entity entity) {
+        return writeEntityBlocking(httpResponse, entity);
+    }
+
+    /**
+     * Returns the servlet input stream. Package private because it is also
+     * used by the Servlet 3 adapters.
+     */
+    static Promise<InputStream, IOException> readEntityBlocking(HttpServletRequest httpRequest) {
+        try {
+            return newResultPromise((InputStream) httpRequest.getInputStream());
+        } catch (IOException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    /**
+     * Copies the entity to the servlet output stream. Package private because
+     * it is also used by the Servlet 3 adapters.
+     */
+    static Promise<Void, IOException> writeEntityBlocking(HttpServletResponse httpResponse, Entity entity) {
+        try {
+            // TODO does this also set content length?
+            entity.copyRawContentTo(httpResponse.getOutputStream());
+            return newResultPromise(null);
+        } catch (IOException e) {
+            return newExceptionPromise(e);
+        }
+    }
 }
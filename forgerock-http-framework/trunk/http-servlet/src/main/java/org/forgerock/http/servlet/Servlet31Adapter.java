@@ -0,0 +1,230 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.servlet;
+
+import static org.forgerock.http.servlet.Servlet2Adapter.readEntityBlocking;
+import static org.forgerock.http.servlet.Servlet2Adapter.writeEntityBlocking;
+import static org.forgerock.util.Utils.closeSilently;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Entity;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+
+/**
+ * An adapter for use in Servlet 3.1 containers, which reads request entities
+ * and writes response entities using non-blocking IO, so that container
+ * threads are not held while waiting for slow clients.
+ * <p>
+ * The request entity is read completely into temporary storage before the
+ * request is dispatched to the handler, and the response entity is written
+ * as the client consumes it. Response content which is not already available
+ * is read on a container worker thread, using {@link AsyncContext#start}, so
+ * that the container's IO callbacks never block. Requests which are not
+ * processed asynchronously fall back to blocking IO.
+ */
+final class Servlet31Adapter implements ServletVersionAdapter {
+
+    /** The size of the chunks in which entities are copied. */
+    private static final int CHUNK_SIZE = 8 * 1_024;
+
+    /** Creates the synchronizers, since asynchronous processing is unchanged since Servlet 3.0. */
+    private final Servlet3Adapter servlet3Adapter = new Servlet3Adapter();
+
+    Servlet31Adapter() {
+        // Nothing to do.
+    }
+
+    @Override
+    public ServletSynchronizer createServletSynchronizer(HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+        return servlet3Adapter.createServletSynchronizer(httpRequest, httpResponse);
+    }
+
+    @Override
+    public Promise<InputStream, IOException> readEntity(HttpServletRequest httpRequest, Factory<Buffer> storage) {
+        if (!httpRequest.isAsyncStarted()) {
+            return readEntityBlocking(httpRequest);
+        }
+        final ServletInputStream in;
+        try {
+            in = httpRequest.getInputStream();
+        } catch (IOException e) {
+            return newExceptionPromise(e);
+        }
+        final Buffer buffer = storage.newInstance();
+        final PromiseImpl<InputStream, IOException> promise = PromiseImpl.create();
+        in.setReadListener(new ReadListener() {
+            private final byte[] chunk = new byte[CHUNK_SIZE];
+
+            @Override
+            public void onDataAvailable() throws IOException {
+                try {
+                    int n;
+                    while (in.isReady() && !in.isFinished() && (n = in.read(chunk)) != -1) {
+                        buffer.append(chunk, 0, n);
+                    }
+                } catch (IOException e) {
+                    // Includes OverflowException when the entity exceeds the storage limit.
+                    onError(e);
+                }
+            }
+
+            @Override
+            public void onAllDataRead() throws IOException {
+                promise.tryHandleResult(new BufferInputStream(buffer));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                closeSilently(buffer);
+                promise.tryHandleException(t instanceof IOException ? (IOException) t : new IOException(t));
+            }
+        });
+        return promise;
+    }
+
+    @Override
+    public Promise<Void, IOException> writeEntity(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            final Entity entity) {
+        if (!httpRequest.isAsyncStarted()) {
+            return writeEntityBlocking(httpResponse, entity);
+        }
+        final ServletOutputStream out;
+        try {
+            out = httpResponse.getOutputStream();
+        } catch (IOException e) {
+            return newExceptionPromise(e);
+        }
+        final AsyncContext asyncContext = httpRequest.getAsyncContext();
+        final PromiseImpl<Void, IOException> promise = PromiseImpl.create();
+        out.setWriteListener(new WriteListener() {
+            private final byte[] chunk = new byte[CHUNK_SIZE];
+            private InputStream content;
+
+            @Override
+            public void onWritePossible() throws IOException {
+                try {
+                    if (content == null) {
+                        content = entity.getRawContentInputStream();
+                    }
+                    while (out.isReady()) {
+                        int available = content.available();
+                        if (available == 0) {
+                            // The entity may be streamed from elsewhere, so the next read may block.
+                            asyncContext.start(new Runnable() {
+                                @Override
+                                public void run() {
+                                    writeBlocking();
+                                }
+                            });
+                            return;
+                        }
+                        if (!copy(Math.min(available, CHUNK_SIZE))) {
+                            return;
+                        }
+                    }
+                } catch (IOException e) {
+                    onError(e);
+                }
+            }
+
+            /** Makes a read which may block, then carries on writing without blocking. */
+            private void writeBlocking() {
+                try {
+                    if (copy(CHUNK_SIZE)) {
+                        onWritePossible();
+                    }
+                } catch (IOException e) {
+                    onError(e);
+                }
+            }
+
+            /** Copies at most {@code length} bytes, returning {@code false} once the entity has been written. */
+            private boolean copy(int length) throws IOException {
+                int n = content.read(chunk, 0, length);
+                if (n == -1) {
+                    promise.tryHandleResult(null);
+                    return false;
+                }
+                out.write(chunk, 0, n);
+                return true;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                promise.tryHandleException(t instanceof IOException ? (IOException) t : new IOException(t));
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * An input stream over the contents of a buffer, which closes the buffer
+     * when it is closed.
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final Buffer buffer;
+        private int position;
+
+        private BufferInputStream(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = buffer.read(position, b, off, len);
+            if (n == 0) {
+                return -1;
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.length() - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            buffer.close();
+        }
+    }
+}
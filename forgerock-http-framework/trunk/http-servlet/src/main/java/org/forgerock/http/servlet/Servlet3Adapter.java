@@ -16,7 +16,11 @@
 
 package org.forgerock.http.servlet;
 
+import static org.forgerock.http.servlet.Servlet2Adapter.readEntityBlocking;
+import static org.forgerock.http.servlet.Servlet2Adapter.writeEntityBlocking;
+
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.AsyncEvent;
@@ -24,7 +28,11 @@ import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Entity;
 import org.forgerock.http.servlet.Servlet2Adapter.Servlet2Synchronizer;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
 
 /**
  * An adapter for use in Servlet 3.x containers.
@@ -100,4 +108,15 @@ final class Servlet3Adapter implements ServletVersionAdapter {
             return new Servlet2Synchronizer();
         }
     }
+
+    @Override
+    public Promise<InputStream, IOException> readEntity(HttpServletRequest httpRequest, Factory<Buffer> storage) {
+        return readEntityBlocking(httpRequest);
+    }
+
+    @Override
+    public Promise<Void, IOException> writeEntity(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            Entity entity) {
+        return writeEntityBlocking(httpResponse, entity);
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.forgerock.http.context.ClientInfoContext;
+import org.forgerock.http.util.CachingHostNameResolver;
+import org.forgerock.http.util.HostNameResolver;
+import org.forgerock.util.time.Duration;
+
+/**
+ * Determines how the remote host of the {@link ClientInfoContext} is
+ * resolved. Except when the container resolves it, the remote host is only
+ * resolved if a handler asks for it.
+ *
+ * <p>Configured by Servlet init-param of
+ * {@link HttpFrameworkServlet#REMOTE_HOST_RESOLVER_INIT_PARAM_NAME}.</p>
+ *
+ * <p>By default, if no servlet init-param is set, {@link #CONTAINER} will be
+ * used.</p>
+ */
+enum ServletHostNameResolver {
+
+    /**
+     * The remote host is provided by the container when the request is
+     * received, which may perform a reverse DNS lookup for each request
+     * depending on its configuration.
+     *
+     * @see HttpServletRequest#getRemoteHost()
+     */
+    CONTAINER {
+        @Override
+        HostNameResolver newResolver(Duration timeToLive) {
+            return null;
+        }
+    },
+
+    /**
+     * The remote host is resolved using a reverse DNS lookup, and cached for
+     * the time to live configured by the Servlet init-param of
+     * {@link HttpFrameworkServlet#REMOTE_HOST_CACHE_TTL_INIT_PARAM_NAME}.
+     *
+     * @see HostNameResolver#DNS
+     */
+    DNS {
+        @Override
+        HostNameResolver newResolver(Duration timeToLive) {
+            return new CachingHostNameResolver(HostNameResolver.DNS, timeToLive);
+        }
+    },
+
+    /**
+     * The remote host is not resolved: the remote IP address is used instead.
+     */
+    NONE {
+        @Override
+        HostNameResolver newResolver(Duration timeToLive) {
+            return new HostNameResolver() {
+                @Override
+                public String getHostName(String address) {
+                    return address;
+                }
+            };
+        }
+    };
+
+    /**
+     * Creates the resolver for remote hosts.
+     *
+     * @param timeToLive How long resolved host names may be cached for.
+     * @return The resolver, or {@code null} if the container should resolve
+     *         remote hosts.
+     */
+    abstract HostNameResolver newResolver(Duration timeToLive);
+}
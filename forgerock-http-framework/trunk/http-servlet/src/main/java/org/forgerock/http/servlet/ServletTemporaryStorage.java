@@ -0,0 +1,85 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.servlet;
+
+import java.io.File;
+
+import org.forgerock.http.HttpApplication;
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.io.IO;
+import org.forgerock.util.Factory;
+
+/**
+ * Determines the kind of temporary storage used to buffer request entities
+ * when the {@link HttpApplication} does not provide its own
+ * {@link HttpApplication#getBufferFactory() buffer factory}.
+ *
+ * <p>Configured by Servlet init-param of
+ * {@link HttpFrameworkServlet#TEMPORARY_STORAGE_INIT_PARAM_NAME}.</p>
+ *
+ * <p>By default, if no servlet init-param is set, {@link #HEAP} will be
+ * used.</p>
+ */
+enum ServletTemporaryStorage {
+
+    /**
+     * Buffers are stored on the heap, then in temporary files.
+     *
+     * @see IO#newTemporaryStorage(File)
+     */
+    HEAP {
+        @Override
+        Factory<Buffer> newStorage(File directory) {
+            return IO.newTemporaryStorage(directory);
+        }
+    },
+
+    /**
+     * Buffers are stored on the heap, then in memory-mapped temporary files.
+     *
+     * @see IO#newMappedStorage(File)
+     */
+    MAPPED {
+        @Override
+        Factory<Buffer> newStorage(File directory) {
+            return IO.newMappedStorage(directory);
+        }
+    },
+
+    /**
+     * Buffers are stored in pooled direct memory, then in memory-mapped
+     * temporary files.
+     *
+     * @see IO#newPooledStorage(File)
+     */
+    POOLED {
+        @Override
+        Factory<Buffer> newStorage(File directory) {
+            return IO.newPooledStorage(directory);
+        }
+    };
+
+    /**
+     * Creates the temporary storage.
+     *
+     * @param directory The directory where temporary files are created, or
+     *                  {@code null} to use the system-dependent default
+     *                  temporary directory.
+     * @return The temporary storage.
+     */
+    abstract Factory<Buffer> newStorage(File directory);
+}
@@ -16,15 +16,23 @@
 
 package org.forgerock.http.servlet;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Entity;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
+
 /**
  * A Servlet API version adapter provides an abstraction which allows Servlet
  * and Filter implementations to interact with the Servlet container
- * independently of the Servlet API version. At the moment the adapter only
- * provides an abstraction for performing asynchronous processing, but other API
- * features could be added in future (such as async IO).
+ * independently of the Servlet API version. The adapter provides an
+ * abstraction for performing asynchronous processing, and for reading request
+ * entities and writing response entities, which may be non-blocking.
  */
 interface ServletVersionAdapter {
 
@@ -38,4 +46,40 @@ interface ServletVersionAdapter {
      * @return Returns a new synchronizer appropriate for the HTTP request.
      */
     ServletSynchronizer createServletSynchronizer(HttpServletRequest httpRequest, HttpServletResponse httpResponse);
+
+    /**
+     * Returns the request entity. Blocking implementations return the
+     * servlet input stream immediately. Non-blocking implementations read the
+     * entire entity into a buffer without blocking, and complete the returned
+     * promise once it has been read. This method must be called after
+     * {@link #createServletSynchronizer(HttpServletRequest, HttpServletResponse)}.
+     *
+     * @param httpRequest
+     *            The HTTP request.
+     * @param storage
+     *            The temporary storage which may be used to buffer the entity.
+     * @return A promise completed with a stream from which the request entity
+     *         can be read, or with an {@link IOException} if it could not be
+     *         read.
+     */
+    Promise<InputStream, IOException> readEntity(HttpServletRequest httpRequest, Factory<Buffer> storage);
+
+    /**
+     * Writes the response entity. Blocking implementations write the entity
+     * before returning. Non-blocking implementations write the entity as the
+     * client consumes it, and complete the returned promise once it has been
+     * written. This method must be called after
+     * {@link #createServletSynchronizer(HttpServletRequest, HttpServletResponse)}.
+     *
+     * @param httpRequest
+     *            The HTTP request.
+     * @param httpResponse
+     *            The HTTP response, whose status and headers have been set.
+     * @param entity
+     *            The response entity.
+     * @return A promise completed once the entity has been written, or with
+     *         an {@link IOException} if it could not be written.
+     */
+    Promise<Void, IOException> writeEntity(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            Entity entity);
 }
@@ -0,0 +1,287 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.http.servlet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.io.IO;
+import org.forgerock.http.protocol.Entity;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class Servlet31AdapterTest {
+
+    private static final byte[] DATA = "Some entity content".getBytes();
+
+    private Servlet31Adapter adapter;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private List<Runnable> workerTasks;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        adapter = new Servlet31Adapter();
+        workerTasks = new ArrayList<>();
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                workerTasks.add((Runnable) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(asyncContext).start(any(Runnable.class));
+        request = mock(HttpServletRequest.class);
+        given(request.isAsyncStarted()).willReturn(true);
+        given(request.getAsyncContext()).willReturn(asyncContext);
+        response = mock(HttpServletResponse.class);
+    }
+
+    @Test
+    public void shouldReadRequestEntityIntoStorage() throws Exception {
+        //Given
+        StubInputStream in = new StubInputStream(DATA);
+        given(request.getInputStream()).willReturn(in);
+        Promise<InputStream, IOException> promise = adapter.readEntity(request, IO.newTemporaryStorage());
+
+        //When
+        in.listener.onDataAvailable();
+        in.listener.onAllDataRead();
+
+        //Then
+        assertThat(readAll(promise.getOrThrow())).isEqualTo(DATA);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldFailAndCloseStorageWhenRequestEntityCannotBeRead() throws Exception {
+        //Given
+        StubInputStream in = new StubInputStream(DATA);
+        given(request.getInputStream()).willReturn(in);
+        Buffer buffer = mock(Buffer.class);
+        Promise<InputStream, IOException> promise = adapter.readEntity(request, storageOf(buffer));
+
+        //When
+        in.listener.onError(new IOException("Connection reset"));
+
+        //Then
+        verify(buffer).close();
+        promise.getOrThrow();
+    }
+
+    @Test
+    public void shouldWriteAvailableResponseContentOnContainerThread() throws Exception {
+        //Given
+        RecordingOutputStream out = new RecordingOutputStream();
+        given(response.getOutputStream()).willReturn(out);
+        Entity entity = new Response().getEntity();
+        entity.setBytes(DATA);
+        Promise<Void, IOException> promise = adapter.writeEntity(request, response, entity);
+
+        //When
+        out.listener.onWritePossible();
+        runWorkerTasks();
+
+        //Then
+        assertThat(promise.isDone()).isTrue();
+        promise.getOrThrow();
+        assertThat(out.bytes.toByteArray()).isEqualTo(DATA);
+    }
+
+    @Test
+    public void shouldHandOffReadsWhichMayBlockToWorkerThread() throws Exception {
+        //Given
+        RecordingOutputStream out = new RecordingOutputStream();
+        given(response.getOutputStream()).willReturn(out);
+        Entity entity = new Response().getEntity();
+        entity.setRawContentInputStream(IO.newBranchingInputStream(new UnavailableInputStream(DATA),
+                IO.newTemporaryStorage()));
+        Promise<Void, IOException> promise = adapter.writeEntity(request, response, entity);
+
+        //When
+        out.listener.onWritePossible();
+
+        //Then
+        assertThat(out.bytes.size()).isEqualTo(0);
+        assertThat(workerTasks).hasSize(1);
+        runWorkerTasks();
+        promise.getOrThrow();
+        assertThat(out.bytes.toByteArray()).isEqualTo(DATA);
+    }
+
+    @Test
+    public void shouldResumeWritingWhenClientIsReadyAgain() throws Exception {
+        //Given
+        RecordingOutputStream out = new RecordingOutputStream();
+        out.ready = false;
+        given(response.getOutputStream()).willReturn(out);
+        Entity entity = new Response().getEntity();
+        entity.setBytes(DATA);
+        Promise<Void, IOException> promise = adapter.writeEntity(request, response, entity);
+        out.listener.onWritePossible();
+        assertThat(promise.isDone()).isFalse();
+
+        //When
+        out.ready = true;
+        out.listener.onWritePossible();
+        runWorkerTasks();
+
+        //Then
+        promise.getOrThrow();
+        assertThat(out.bytes.toByteArray()).isEqualTo(DATA);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldFailWhenResponseEntityCannotBeWritten() throws Exception {
+        //Given
+        RecordingOutputStream out = new RecordingOutputStream();
+        out.ready = false;
+        given(response.getOutputStream()).willReturn(out);
+        Entity entity = new Response().getEntity();
+        entity.setBytes(DATA);
+        Promise<Void, IOException> promise = adapter.writeEntity(request, response, entity);
+        out.listener.onWritePossible();
+
+        //When
+        out.listener.onError(new IOException("Broken pipe"));
+
+        //Then
+        assertThat(out.bytes.size()).isEqualTo(0);
+        promise.getOrThrow();
+    }
+
+    private void runWorkerTasks() {
+        while (!workerTasks.isEmpty()) {
+            workerTasks.remove(0).run();
+        }
+    }
+
+    private static Factory<Buffer> storageOf(final Buffer buffer) {
+        return new Factory<Buffer>() {
+            @Override
+            public Buffer newInstance() {
+                return buffer;
+            }
+        };
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IO.stream(in, bytes);
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    /** A request stream whose data is always ready. */
+    private static final class StubInputStream extends ServletInputStream {
+        private final ByteArrayInputStream data;
+        private ReadListener listener;
+
+        private StubInputStream(byte[] data) {
+            this.data = new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return data.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() {
+            return data.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return data.read(b, off, len);
+        }
+    }
+
+    /** A response stream which records what is written while it is ready. */
+    private static final class RecordingOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private boolean ready = true;
+        private WriteListener listener;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(int b) {
+            assertThat(ready).isTrue();
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            assertThat(ready).isTrue();
+            bytes.write(b, off, len);
+        }
+    }
+
+    /** A stream which never reports data as available, like one fed by a remote peer. */
+    private static final class UnavailableInputStream extends ByteArrayInputStream {
+        private UnavailableInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int available() {
+            return 0;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.forgerock.json.fluent;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -35,7 +36,6 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -209,12 +209,25 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
         return (result >= 0 ? result : -1);
     }
 
+    /** Returned by {@link #navigate} if the pointer does not identify a value. */
+    private static final Object UNDEFINED = new Object();
+
     /** The Java object representing this JSON value. */
     private Object object;
 
-    /** The pointer to the value within a JSON structure. */
+    /**
+     * The pointer to the value within a JSON structure, or {@code null} if it
+     * is derived from {@link #lazyPointer}.
+     */
     private JsonPointer pointer;
 
+    /**
+     * The location of a child value, from which its pointer is derived when
+     * it is needed, typically for an error message, since most are never
+     * asked. {@code null} if {@link #pointer} is set.
+     */
+    private final LazyPointer lazyPointer;
+
     /** Transformers to apply to the value; are inherited by its members. */
     private final ArrayList<JsonTransformer> transformers = new ArrayList<>(0);
 
@@ -226,7 +239,7 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      *            the Java object representing the JSON value.
      */
     public JsonValue(final Object object) {
-        this(object, null, null);
+        this(object, (JsonPointer) null, null);
     }
 
     /**
@@ -241,7 +254,7 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      *             if a transformer failed during value initialization.
      */
     public JsonValue(final Object object, final Collection<? extends JsonTransformer> transformers) {
-        this(object, null, transformers);
+        this(object, (JsonPointer) null, transformers);
     }
 
     /**
@@ -274,11 +287,12 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
             final Collection<? extends JsonTransformer> transformers) {
         this.object = object;
         this.pointer = pointer;
+        this.lazyPointer = null;
         if (object instanceof JsonValue) {
             final JsonValue jv = (JsonValue) object;
             this.object = jv.object;
             if (pointer == null) {
-                this.pointer = jv.pointer;
+                this.pointer = jv.getPointer();
             }
             if (transformers == null) {
                 this.transformers.addAll(jv.transformers);
@@ -295,6 +309,27 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
         }
     }
 
+    /**
+     * Constructs a JSON value object whose pointer is lazily derived from the
+     * pointer of the value containing it.
+     *
+     * @param object
+     *            the Java object representing the JSON value.
+     * @param lazyPointer
+     *            the location of this value within the value containing it.
+     * @param transformers
+     *            a list of transformers to apply the value and its members.
+     */
+    private JsonValue(final Object object, final LazyPointer lazyPointer,
+            final Collection<? extends JsonTransformer> transformers) {
+        this.object = object instanceof JsonValue ? ((JsonValue) object).object : object;
+        this.lazyPointer = lazyPointer;
+        if (transformers.size() > 0) {
+            this.transformers.addAll(transformers);
+            applyTransformers();
+        }
+    }
+
     /**
      * Adds the specified value to the list. Adding a value to a list shifts any
      * existing elements at or above the specified index to the right by one.
@@ -1028,7 +1063,7 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      */
     @Override
     public JsonValue clone() {
-        final JsonValue result = new JsonValue(this.object, this.pointer);
+        final JsonValue result = new JsonValue(this.object, getPointer());
         result.transformers.addAll(this.transformers); // avoid re-applying transformers
         if (isMap()) {
             result.object = new LinkedHashMap<>(this.asMap());
@@ -1073,7 +1108,7 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      */
     public JsonValue copy() {
         // TODO: track original values to resolve cyclic references
-        final JsonValue result = new JsonValue(object, pointer); // start with shallow copy
+        final JsonValue result = new JsonValue(object, getPointer()); // start with shallow copy
         if (this.isMap()) {
             final Map<String, Object> map = new LinkedHashMap<>(size());
             for (final String key : keys()) {
@@ -1105,7 +1140,11 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      * @return this JSON value or a new JSON value containing the default value.
      */
     public JsonValue defaultTo(final Object object) {
-        return (this.object != null ? this : new JsonValue(object, this.pointer, this.transformers));
+        if (this.object != null) {
+            return this;
+        }
+        return pointer != null ? new JsonValue(object, pointer, transformers)
+                : new JsonValue(object, lazyPointer, transformers);
     }
 
     /**
@@ -1149,7 +1188,7 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
                 result = list.get(index);
             }
         }
-        return new JsonValue(result, pointer.child(index), transformers);
+        return new JsonValue(result, childPointer(index), transformers);
     }
 
     /**
@@ -1164,6 +1203,14 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      *             if a transformer failed to transform the resulting value.
      */
     public JsonValue get(final JsonPointer pointer) {
+        if (transformers.isEmpty()) {
+            // Navigate the raw objects, only wrapping the value identified by the pointer
+            if (pointer.isEmpty()) {
+                return this;
+            }
+            final Object result = navigate(pointer);
+            return result != UNDEFINED ? new JsonValue(result, childPointer(pointer), transformers) : null;
+        }
         JsonValue result = this;
         for (final String token : pointer) {
             final JsonValue member = result.get(token);
@@ -1197,7 +1244,192 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
                 result = list.get(index);
             }
         }
-        return new JsonValue(result, pointer.child(key), transformers);
+        return new JsonValue(result, childPointer(key), transformers);
+    }
+
+    /**
+     * Returns the specified item as a {@link String}, without wrapping it in a
+     * {@code JsonValue}. Equivalent to {@code get(key).asString()}.
+     *
+     * @param key
+     *            the {@code Map} key or {@code List} index identifying the item
+     *            to return.
+     * @return the string value, or {@code null} if no such item exists.
+     * @throws JsonValueException
+     *             if the item is not a string.
+     */
+    public String getString(final String key) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(key);
+            if (value == null || value instanceof String) {
+                return (String) value;
+            }
+        }
+        // Fall back to the slow path to apply transformers or report the wrong type
+        return get(key).asString();
+    }
+
+    /**
+     * Returns the specified child value as a {@link String}, without wrapping
+     * it or any of its parents in a {@code JsonValue}. Equivalent to
+     * {@code get(pointer).asString()}, except that {@code null} is returned if
+     * no such value exists.
+     *
+     * @param pointer
+     *            the JSON pointer identifying the child value to return.
+     * @return the string value, or {@code null} if no such value exists.
+     * @throws JsonValueException
+     *             if the child value is not a string.
+     */
+    public String getString(final JsonPointer pointer) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(pointer);
+            if (value == UNDEFINED || value == null) {
+                return null;
+            } else if (value instanceof String) {
+                return (String) value;
+            }
+        }
+        final JsonValue value = get(pointer);
+        return value != null ? value.asString() : null;
+    }
+
+    /**
+     * Returns the specified item as a {@link Boolean}, without wrapping it in
+     * a {@code JsonValue}. Equivalent to {@code get(key).asBoolean()}.
+     *
+     * @param key
+     *            the {@code Map} key or {@code List} index identifying the item
+     *            to return.
+     * @return the boolean value, or {@code null} if no such item exists.
+     * @throws JsonValueException
+     *             if the item is not a boolean.
+     */
+    public Boolean getBoolean(final String key) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(key);
+            if (value == null || value instanceof Boolean) {
+                return (Boolean) value;
+            }
+        }
+        return get(key).asBoolean();
+    }
+
+    /**
+     * Returns the specified child value as a {@link Boolean}, without wrapping
+     * it or any of its parents in a {@code JsonValue}. Equivalent to
+     * {@code get(pointer).asBoolean()}, except that {@code null} is returned if
+     * no such value exists.
+     *
+     * @param pointer
+     *            the JSON pointer identifying the child value to return.
+     * @return the boolean value, or {@code null} if no such value exists.
+     * @throws JsonValueException
+     *             if the child value is not a boolean.
+     */
+    public Boolean getBoolean(final JsonPointer pointer) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(pointer);
+            if (value == UNDEFINED || value == null) {
+                return null;
+            } else if (value instanceof Boolean) {
+                return (Boolean) value;
+            }
+        }
+        final JsonValue value = get(pointer);
+        return value != null ? value.asBoolean() : null;
+    }
+
+    /**
+     * Returns the specified item as an {@link Integer}, without wrapping it in
+     * a {@code JsonValue}. Equivalent to {@code get(key).asInteger()}.
+     *
+     * @param key
+     *            the {@code Map} key or {@code List} index identifying the item
+     *            to return.
+     * @return the integer value, or {@code null} if no such item exists.
+     * @throws JsonValueException
+     *             if the item is not a number.
+     */
+    public Integer getInteger(final String key) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(key);
+            if (value == null || value instanceof Number) {
+                return value != null ? Integer.valueOf(((Number) value).intValue()) : null;
+            }
+        }
+        return get(key).asInteger();
+    }
+
+    /**
+     * Returns the specified child value as an {@link Integer}, without
+     * wrapping it or any of its parents in a {@code JsonValue}. Equivalent to
+     * {@code get(pointer).asInteger()}, except that {@code null} is returned
+     * if no such value exists.
+     *
+     * @param pointer
+     *            the JSON pointer identifying the child value to return.
+     * @return the integer value, or {@code null} if no such value exists.
+     * @throws JsonValueException
+     *             if the child value is not a number.
+     */
+    public Integer getInteger(final JsonPointer pointer) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(pointer);
+            if (value == UNDEFINED || value == null) {
+                return null;
+            } else if (value instanceof Number) {
+                return Integer.valueOf(((Number) value).intValue());
+            }
+        }
+        final JsonValue value = get(pointer);
+        return value != null ? value.asInteger() : null;
+    }
+
+    /**
+     * Returns the specified item as a {@link Long}, without wrapping it in a
+     * {@code JsonValue}. Equivalent to {@code get(key).asLong()}.
+     *
+     * @param key
+     *            the {@code Map} key or {@code List} index identifying the item
+     *            to return.
+     * @return the long integer value, or {@code null} if no such item exists.
+     * @throws JsonValueException
+     *             if the item is not a number.
+     */
+    public Long getLong(final String key) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(key);
+            if (value == null || value instanceof Number) {
+                return value != null ? Long.valueOf(((Number) value).longValue()) : null;
+            }
+        }
+        return get(key).asLong();
+    }
+
+    /**
+     * Returns the specified child value as a {@link Long}, without wrapping it
+     * or any of its parents in a {@code JsonValue}. Equivalent to
+     * {@code get(pointer).asLong()}, except that {@code null} is returned if
+     * no such value exists.
+     *
+     * @param pointer
+     *            the JSON pointer identifying the child value to return.
+     * @return the long integer value, or {@code null} if no such value exists.
+     * @throws JsonValueException
+     *             if the child value is not a number.
+     */
+    public Long getLong(final JsonPointer pointer) {
+        if (transformers.isEmpty()) {
+            final Object value = navigate(pointer);
+            if (value == UNDEFINED || value == null) {
+                return null;
+            } else if (value instanceof Number) {
+                return Long.valueOf(((Number) value).longValue());
+            }
+        }
+        final JsonValue value = get(pointer);
+        return value != null ? value.asLong() : null;
     }
 
     /**
@@ -1215,7 +1447,19 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      * @return the pointer of the JSON value in its JSON structure.
      */
     public JsonPointer getPointer() {
-        return pointer;
+        return pointer != null ? pointer : lazyPointer.get();
+    }
+
+    /**
+     * Returns the location of a child of this value, without building its
+     * pointer.
+     *
+     * @param key
+     *            the key, index or relative pointer of the child.
+     * @return the location of the child.
+     */
+    private LazyPointer childPointer(final Object key) {
+        return new LazyPointer(pointer != null ? pointer : lazyPointer, key);
     }
 
     /**
@@ -1357,7 +1601,7 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
                 @Override
                 public JsonValue next() {
                     final Object element = i.next();
-                    return new JsonValue(element, pointer.child(cursor++), transformers);
+                    return new JsonValue(element, childPointer(cursor++), transformers);
                 }
 
                 @Override
@@ -1377,7 +1621,7 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
                 @Override
                 public JsonValue next() {
                     final Object element = i.next();
-                    return new JsonValue(element, pointer.child(String.valueOf(object)), transformers);
+                    return new JsonValue(element, childPointer(String.valueOf(object)), transformers);
                 }
 
                 @Override
@@ -1666,101 +1910,13 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      *
      * @return a string representation of the JSON value.
      */
-    @SuppressWarnings("unchecked")
     @Override
     public String toString() {
-        final StringBuilder sb = new StringBuilder();
-        if (isNull()) {
-            sb.append("null");
-        } else if (isMap()) {
-            sb.append("{ ");
-            final Map<Object, Object> map = (Map<Object, Object>) object;
-            for (final Iterator<Object> i = map.keySet().iterator(); i.hasNext();) {
-                final Object key = i.next();
-                sb.append('"');
-                appendEscapedString(sb, key.toString());
-                sb.append("\": ");
-                sb.append(new JsonValue(map.get(key)).toString()); // recursion
-                if (i.hasNext()) {
-                    sb.append(", ");
-                }
-            }
-            sb.append(" }");
-        } else if (isCollection()) {
-            sb.append("[ ");
-            for (final Iterator<Object> i = ((Collection<Object>) object).iterator(); i.hasNext();) {
-                sb.append(new JsonValue(i.next()).toString()); // recursion
-                if (i.hasNext()) {
-                    sb.append(", ");
-                }
-            }
-            sb.append(" ]");
-        } else if (isString()) {
-            sb.append('"');
-            appendEscapedString(sb, object.toString());
-            sb.append('"');
-        } else {
-            sb.append(object.toString());
-        }
-        return sb.toString();
-    }
-
-    /**
-     * As per json.org a string is any Unicode character except " or \ or
-     * control characters. Special characters will be escaped using a \ as
-     * follows:
-     * <ul>
-     * <li> {@literal \ "} - double quote
-     * <li> {@literal \ \} - back slash
-     * <li> {@literal \ b} - backspace
-     * <li> {@literal \ f} - form feed
-     * <li> {@literal \ n} - new line
-     * <li> {@literal \ r} - carriage return
-     * <li> {@literal \ t} - tab
-     * <li> {@literal \ u xxxx} - other control characters.
-     * </ul>
-     */
-    private static void appendEscapedString(final StringBuilder sb, final String s) {
-        final int size = s.length();
-        for (int i = 0; i < size; i++) {
-            final char c = s.charAt(i);
-            switch (c) {
-            // Escape characters which must be escaped.
-            case '"':
-                sb.append("\\\"");
-                break;
-            case '\\':
-                sb.append("\\\\");
-                break;
-            // Escape common controls to the C equivalent to make them easier to read.
-            case '\b':
-                sb.append("\\b");
-                break;
-            case '\f':
-                sb.append("\\f");
-                break;
-            case '\n':
-                sb.append("\\n");
-                break;
-            case '\r':
-                sb.append("\\r");
-                break;
-            case '\t':
-                sb.append("\\t");
-                break;
-            default:
-                if (Character.isISOControl(c)) {
-                    final String hex = Integer.toHexString(c).toUpperCase(Locale.ENGLISH);
-                    final int hexPadding = 4 - hex.length();
-                    sb.append("\\u");
-                    for (int j = 0; j < hexPadding; j++) {
-                        sb.append('0');
-                    }
-                    sb.append(hex);
-                } else {
-                    sb.append(c);
-                }
-            }
+        try {
+            return JsonValueWriter.write(object, new StringBuilder()).toString();
+        } catch (final IOException e) {
+            // StringBuilder does not throw IOException
+            throw new IllegalStateException(e);
         }
     }
 
@@ -1790,6 +1946,48 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
         }
     }
 
+    /**
+     * Returns the raw Java object of the specified item, without applying
+     * transformers, or {@code null} if no such item exists.
+     */
+    private Object navigate(final String key) {
+        final Object value = navigate(object, key);
+        return value != UNDEFINED ? value : null;
+    }
+
+    /**
+     * Returns the raw Java object identified by the pointer, without applying
+     * transformers, or {@link #UNDEFINED} if no such value exists.
+     */
+    private Object navigate(final JsonPointer pointer) {
+        Object result = object;
+        for (final String token : pointer) {
+            result = navigate(result, token);
+            if (result == UNDEFINED) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static Object navigate(final Object object, final String token) {
+        Object result = UNDEFINED;
+        if (object instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) object;
+            result = map.get(token);
+            if (result == null && !map.containsKey(token)) {
+                result = UNDEFINED;
+            }
+        } else if (object instanceof List) {
+            final List<?> list = (List<?>) object;
+            final int index = toIndex(token);
+            if (index >= 0 && index < list.size()) {
+                result = list.get(index);
+            }
+        }
+        return result instanceof JsonValue ? ((JsonValue) result).object : result;
+    }
+
     private JsonValue navigateToParentOf(final JsonPointer pointer) {
         JsonValue jv = this;
         final int size = pointer.size();
@@ -1836,4 +2034,44 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
             put(token, object);
         }
     }
+
+    /**
+     * The location of a child value relative to the location of the value
+     * containing it. Only the keys are retained, not the values, so a child
+     * value does not keep the rest of its JSON structure reachable. The
+     * pointer is built on first use and published through a volatile field,
+     * so a location may be shared between threads.
+     */
+    private static final class LazyPointer {
+        /** The parent's {@link JsonPointer} or {@code LazyPointer}. */
+        private final Object parent;
+
+        /** A {@code String} key, an {@code Integer} index, or a {@link JsonPointer}. */
+        private final Object key;
+
+        private volatile JsonPointer pointer;
+
+        private LazyPointer(final Object parent, final Object key) {
+            this.parent = parent;
+            this.key = key;
+        }
+
+        private JsonPointer get() {
+            JsonPointer result = pointer;
+            if (result == null) {
+                result = parent instanceof LazyPointer ? ((LazyPointer) parent).get() : (JsonPointer) parent;
+                if (key instanceof Integer) {
+                    result = result.child((Integer) key);
+                } else if (key instanceof JsonPointer) {
+                    for (final String token : (JsonPointer) key) {
+                        result = result.child(token);
+                    }
+                } else {
+                    result = result.child((String) key);
+                }
+                pointer = result;
+            }
+            return result;
+        }
+    }
 }
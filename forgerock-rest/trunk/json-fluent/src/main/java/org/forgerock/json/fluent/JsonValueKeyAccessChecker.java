@@ -55,6 +55,9 @@ public class JsonValueKeyAccessChecker extends JsonValue {
     }
 
     private JsonValue access(JsonValue val) {
+        if (val == null) {
+            return null;
+        }
         String keyName = val.getPointer().leaf();
         if (keyName != null) {
             accessedKeyNames.add(keyName);
@@ -65,6 +68,8 @@ public class JsonValueKeyAccessChecker extends JsonValue {
     private JsonValue wrap(JsonValue val) {
         if (val == this.delegate) {
             return this;
+        } else if (val == null) {
+            return null;
         } else if (val.isMap() || val.isList()) {
             // wrap the list and map to ensure the key access check is propagated
             JsonValueKeyAccessChecker checker = subCheckers.get(val.getPointer());
@@ -299,6 +304,58 @@ public class JsonValueKeyAccessChecker extends JsonValue {
         return wrap(access(this.delegate.get(key)));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public String getString(final String key) {
+        return get(key).asString();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getString(final JsonPointer pointer) {
+        final JsonValue value = get(pointer);
+        return value != null ? value.asString() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean getBoolean(final String key) {
+        return get(key).asBoolean();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean getBoolean(final JsonPointer pointer) {
+        final JsonValue value = get(pointer);
+        return value != null ? value.asBoolean() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer getInteger(final String key) {
+        return get(key).asInteger();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer getInteger(final JsonPointer pointer) {
+        final JsonValue value = get(pointer);
+        return value != null ? value.asInteger() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long getLong(final String key) {
+        return get(key).asLong();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long getLong(final JsonPointer pointer) {
+        final JsonValue value = get(pointer);
+        return value != null ? value.asLong() : null;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Object getObject() {
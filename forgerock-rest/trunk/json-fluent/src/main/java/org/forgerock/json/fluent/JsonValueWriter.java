@@ -0,0 +1,238 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyrighted [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.fluent;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes JSON values in a single pass over the underlying Java objects, without
+ * wrapping each member in a {@link JsonValue} or building intermediate strings.
+ * The output of the {@code Appendable} and {@code OutputStream} methods is the
+ * same as {@link JsonValue#toString()}. Transformations are not applied to the
+ * value's children.
+ * <p>
+ * The {@link #write(Object, JsonGenerator)} method requires Jackson on the
+ * classpath; the other methods do not.
+ */
+public final class JsonValueWriter {
+
+    private JsonValueWriter() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * Writes the JSON representation of a value to an {@code Appendable}.
+     *
+     * @param <A>
+     *            the type of the {@code Appendable}.
+     * @param object
+     *            the value to write: a {@link JsonValue} or the Java object
+     *            representing one.
+     * @param out
+     *            the {@code Appendable} to write to.
+     * @return the {@code Appendable}.
+     * @throws IOException
+     *             if the {@code Appendable} could not be written to.
+     */
+    public static <A extends Appendable> A write(final Object object, final A out) throws IOException {
+        writeValue(unwrap(object), out);
+        return out;
+    }
+
+    /**
+     * Writes the UTF-8 encoded JSON representation of a value to an
+     * {@code OutputStream}. The stream is flushed but not closed.
+     *
+     * @param object
+     *            the value to write: a {@link JsonValue} or the Java object
+     *            representing one.
+     * @param out
+     *            the stream to write to.
+     * @throws IOException
+     *             if the stream could not be written to.
+     */
+    public static void write(final Object object, final OutputStream out) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeValue(unwrap(object), writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes a value to a Jackson {@code JsonGenerator}, driving the generator
+     * directly rather than going through its object codec. Values which are not
+     * maps, collections, strings, numbers or booleans are written using
+     * {@link JsonGenerator#writeObject(Object)}, and so require the generator
+     * to have a codec.
+     *
+     * @param object
+     *            the value to write: a {@link JsonValue} or the Java object
+     *            representing one.
+     * @param generator
+     *            the generator to write to.
+     * @throws IOException
+     *             if the generator could not be written to.
+     */
+    public static void write(final Object object, final JsonGenerator generator) throws IOException {
+        writeValue(unwrap(object), generator);
+    }
+
+    private static Object unwrap(final Object object) {
+        return object instanceof JsonValue ? ((JsonValue) object).getObject() : object;
+    }
+
+    private static void writeValue(final Object object, final Appendable out) throws IOException {
+        if (object == null) {
+            out.append("null");
+        } else if (object instanceof Map) {
+            out.append("{ ");
+            for (final Iterator<? extends Map.Entry<?, ?>> i = ((Map<?, ?>) object).entrySet().iterator();
+                    i.hasNext();) {
+                final Map.Entry<?, ?> entry = i.next();
+                out.append('"');
+                writeEscapedString(entry.getKey().toString(), out);
+                out.append("\": ");
+                writeValue(unwrap(entry.getValue()), out);
+                if (i.hasNext()) {
+                    out.append(", ");
+                }
+            }
+            out.append(" }");
+        } else if (object instanceof Collection) {
+            out.append("[ ");
+            for (final Iterator<?> i = ((Collection<?>) object).iterator(); i.hasNext();) {
+                writeValue(unwrap(i.next()), out);
+                if (i.hasNext()) {
+                    out.append(", ");
+                }
+            }
+            out.append(" ]");
+        } else if (object instanceof String) {
+            out.append('"');
+            writeEscapedString((String) object, out);
+            out.append('"');
+        } else {
+            out.append(object.toString());
+        }
+    }
+
+    /**
+     * As per json.org a string is any Unicode character except " or \ or
+     * control characters. Special characters will be escaped using a \ as
+     * follows:
+     * <ul>
+     * <li> {@literal \ "} - double quote
+     * <li> {@literal \ \} - back slash
+     * <li> {@literal \ b} - backspace
+     * <li> {@literal \ f} - form feed
+     * <li> {@literal \ n} - new line
+     * <li> {@literal \ r} - carriage return
+     * <li> {@literal \ t} - tab
+     * <li> {@literal \ u xxxx} - other control characters.
+     * </ul>
+     * Runs of characters which do not need escaping are appended in one call.
+     */
+    private static void writeEscapedString(final String s, final Appendable out) throws IOException {
+        final int size = s.length();
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            final char c = s.charAt(i);
+            final String escaped;
+            switch (c) {
+            // Escape characters which must be escaped.
+            case '"':
+                escaped = "\\\"";
+                break;
+            case '\\':
+                escaped = "\\\\";
+                break;
+            // Escape common controls to the C equivalent to make them easier to read.
+            case '\b':
+                escaped = "\\b";
+                break;
+            case '\f':
+                escaped = "\\f";
+                break;
+            case '\n':
+                escaped = "\\n";
+                break;
+            case '\r':
+                escaped = "\\r";
+                break;
+            case '\t':
+                escaped = "\\t";
+                break;
+            default:
+                if (!Character.isISOControl(c)) {
+                    continue;
+                }
+                escaped = String.format("\\u%04X", (int) c);
+            }
+            out.append(s, start, i).append(escaped);
+            start = i + 1;
+        }
+        out.append(s, start, size);
+    }
+
+    private static void writeValue(final Object object, final JsonGenerator generator) throws IOException {
+        if (object == null) {
+            generator.writeNull();
+        } else if (object instanceof Map) {
+            generator.writeStartObject();
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                generator.writeFieldName(entry.getKey().toString());
+                writeValue(unwrap(entry.getValue()), generator);
+            }
+            generator.writeEndObject();
+        } else if (object instanceof Collection) {
+            generator.writeStartArray();
+            for (final Object element : (Collection<?>) object) {
+                writeValue(unwrap(element), generator);
+            }
+            generator.writeEndArray();
+        } else if (object instanceof String) {
+            generator.writeString((String) object);
+        } else if (object instanceof Boolean) {
+            generator.writeBoolean((Boolean) object);
+        } else if (object instanceof Integer || object instanceof Short || object instanceof Byte) {
+            generator.writeNumber(((Number) object).intValue());
+        } else if (object instanceof Long) {
+            generator.writeNumber((Long) object);
+        } else if (object instanceof Double) {
+            generator.writeNumber((Double) object);
+        } else if (object instanceof Float) {
+            generator.writeNumber((Float) object);
+        } else if (object instanceof BigInteger) {
+            generator.writeNumber((BigInteger) object);
+        } else if (object instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) object);
+        } else {
+            generator.writeObject(object);
+        }
+    }
+}
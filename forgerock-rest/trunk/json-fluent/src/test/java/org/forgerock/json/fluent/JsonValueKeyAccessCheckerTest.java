@@ -90,6 +90,18 @@ public class JsonValueKeyAccessCheckerTest {
         value.verifyAllKeysAccessed();
     }
 
+    @Test
+    public void testThatKeysAccessedThroughTypedGettersAreChecked() {
+        final Map<String, Object> map = new HashMap<>();
+        map.put("string", "value");
+        map.put("int", 42);
+
+        value = new JsonValue(map).recordKeyAccesses();
+        assertThat(value.getString("string")).isEqualTo("value");
+        assertThat(value.getInteger(new JsonPointer("/int"))).isEqualTo(42);
+        value.verifyAllKeysAccessed();
+    }
+
     @Test
     public void testThatNotAllKeysWereAccessed() {
         final Map<String, Object> map = buildMap();
@@ -634,6 +634,77 @@ public class JsonValueTest {
         assertThat(iterator.hasNext()).isFalse();
     }
 
+    @Test
+    public void shouldComputePointerOfNestedChildOnDemand() {
+        final JsonValue value = json(object(field("a", object(field("b", array(1, 2))))));
+        assertThat(value.get("a").get("b").get(1).getPointer()).isEqualTo(ptr("/a/b/1"));
+        assertThat(value.get(ptr("/a/b")).get(0).getPointer()).isEqualTo(ptr("/a/b/0"));
+    }
+
+    private final JsonValue sharedChild = json(object(field("a", object(field("b", array(1, 2)))))).get("a").get("b");
+
+    @Test(invocationCount = 64, threadPoolSize = 8)
+    public void shouldComputePointerOfSharedChildConcurrently() {
+        assertThat(sharedChild.get(1).getPointer()).isEqualTo(ptr("/a/b/1"));
+        assertThat(sharedChild.getPointer()).isEqualTo(ptr("/a/b"));
+    }
+
+    @Test
+    public void shouldIncludePointerOfNestedChildInExceptionMessage() {
+        final JsonValue value = json(object(field("a", object(field("b", "not a number")))));
+        try {
+            value.get("a").get("b").asInteger();
+            fail("Expected JsonValueException");
+        } catch (JsonValueException e) {
+            assertThat(e.getMessage()).contains("/a/b");
+        }
+    }
+
+    @Test
+    public void shouldReturnNullForUndefinedPointer() {
+        final JsonValue value = json(object(field("a", array("x"))));
+        assertThat(value.get(ptr("/a/1"))).isNull();
+        assertThat(value.get(ptr("/a/0/b"))).isNull();
+        assertThat(value.get(ptr("/b/c"))).isNull();
+    }
+
+    @Test
+    public void shouldGetTypedValuesWithoutWrapping() {
+        final JsonValue value = json(object(
+                field("string", "value"),
+                field("boolean", true),
+                field("number", 42),
+                field("nested", object(field("long", 1L << 40), field("null", null)))));
+        assertThat(value.getString("string")).isEqualTo("value");
+        assertThat(value.getBoolean("boolean")).isTrue();
+        assertThat(value.getInteger("number")).isEqualTo(42);
+        assertThat(value.getLong("number")).isEqualTo(42L);
+        assertThat(value.getLong(ptr("/nested/long"))).isEqualTo(1L << 40);
+        assertThat(value.getString(ptr("/nested/null"))).isNull();
+        assertThat(value.getString("missing")).isNull();
+        assertThat(value.getInteger(ptr("/nested/missing/number"))).isNull();
+    }
+
+    @Test(expectedExceptions = JsonValueException.class)
+    public void shouldRejectTypedValueOfWrongType() {
+        json(object(field("nested", object(field("number", "42"))))).getInteger(ptr("/nested/number"));
+    }
+
+    @Test
+    public void shouldApplyTransformersInTypedGetters() {
+        final JsonValue value = new JsonValue(object(field("a", "x")), null,
+                Collections.singletonList(new JsonTransformer() {
+                    @Override
+                    public void transform(final JsonValue value) {
+                        if ("x".equals(value.getObject())) {
+                            value.setObject("y");
+                        }
+                    }
+                }));
+        assertThat(value.getString("a")).isEqualTo("y");
+        assertThat(value.getString(ptr("/a"))).isEqualTo("y");
+    }
+
     private JsonPointer ptr(final String pointer) {
         return new JsonPointer(pointer);
     }
@@ -0,0 +1,83 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyrighted [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.fluent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.fluent.JsonValue.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+@SuppressWarnings("javadoc")
+public class JsonValueWriterTest {
+
+    private static final JsonValue VALUE = json(object(
+            field("string", "a \"quoted\"\tvalue\u0001"),
+            field("number", 42),
+            field("boolean", true),
+            field("null", null),
+            field("array", array(1L, 2.5d, array(), object())),
+            field("nested", json(object(field("key", "value"))))));
+
+    @Test
+    public void shouldWriteToAppendable() throws Exception {
+        //Given
+        final StringBuilder builder = new StringBuilder("prefix ");
+
+        //When
+        JsonValueWriter.write(VALUE, builder);
+
+        //Then
+        assertThat(builder.toString()).isEqualTo("prefix { \"string\": \"a \\\"quoted\\\"\\tvalue\\u0001\", "
+                + "\"number\": 42, \"boolean\": true, \"null\": null, \"array\": [ 1, 2.5, [  ], {  } ], "
+                + "\"nested\": { \"key\": \"value\" } }");
+        assertThat(VALUE.toString()).isEqualTo(builder.substring("prefix ".length()));
+    }
+
+    @Test
+    public void shouldWriteUtf8ToOutputStream() throws Exception {
+        //Given
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //When
+        JsonValueWriter.write(json(array("café", "€")), out);
+
+        //Then
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("[ \"café\", \"€\" ]");
+    }
+
+    @Test
+    public void shouldWriteToJsonGenerator() throws Exception {
+        //Given
+        final StringWriter out = new StringWriter();
+        final JsonGenerator generator = new JsonFactory().createGenerator(out);
+
+        //When
+        JsonValueWriter.write(VALUE, generator);
+        generator.flush();
+
+        //Then
+        assertThat(out.toString()).isEqualTo("{\"string\":\"a \\\"quoted\\\"\\tvalue\\u0001\",\"number\":42,"
+                + "\"boolean\":true,\"null\":null,\"array\":[1,2.5,[],{}],\"nested\":{\"key\":\"value\"}}");
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.forgerock.http.io.IO.newBranchingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import org.forgerock.http.io.BranchingInputStream;
+import org.forgerock.http.io.IO;
+
+/**
+ * Represents a bounded pipe for streaming bytes from an {@link OutputStream} written by one thread to a
+ * {@link BranchingInputStream} read by another. Unlike {@link PipeBufferedStream}, reads block until data is
+ * available or the output stream is closed, and once a reader has started reading, writes block while the pipe is
+ * full, so that a slow reader holds back the writer rather than the data being buffered.
+ * <p>
+ * Until the first read, or after {@link #unbounded()} has been called, writes never block and the pipe grows as
+ * needed. This ensures that a writer can never deadlock waiting for a reader which has not been scheduled.
+ *
+ * @since 3.0.0
+ */
+final class BlockingPipeStream {
+
+    /** The default capacity of the pipe, in bytes. */
+    static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    private final Object lock = new Object();
+    private final OutputStream outputStream = new PipeOutputStream();
+    private final BranchingInputStream inputStream;
+
+    /** Circular buffer holding unread bytes. Guarded by lock. */
+    private byte[] ring;
+    /** Index of the first unread byte in the ring. Guarded by lock. */
+    private int head;
+    /** Number of unread bytes in the ring. Guarded by lock. */
+    private int count;
+    private boolean bounded = true;
+    private boolean readerStarted;
+    private boolean readerClosed;
+    private boolean writerClosed;
+
+    BlockingPipeStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    BlockingPipeStream(final int capacity) {
+        ring = new byte[capacity];
+        inputStream = newBranchingInputStream(new PipeInputStream(), IO.newTemporaryStorage());
+    }
+
+    /**
+     * Returns the output stream which writes to the pipe. Closing it signals the end of the stream to the reader.
+     *
+     * @return The output stream.
+     */
+    public OutputStream getIn() {
+        return outputStream;
+    }
+
+    /**
+     * Returns the input stream which reads from the pipe. Closing it causes subsequent writes to fail.
+     *
+     * @return The input stream.
+     */
+    public BranchingInputStream getOut() {
+        return inputStream;
+    }
+
+    /**
+     * Stops writes from blocking, so that all remaining output is buffered. This is used when no other thread will
+     * read from the pipe until the writer has finished.
+     */
+    void unbounded() {
+        synchronized (lock) {
+            bounded = false;
+            lock.notifyAll();
+        }
+    }
+
+    private void await() throws IOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the pipe");
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+        @Override
+        public void write(int i) throws IOException {
+            write(new byte[] { (byte) i }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (lock) {
+                while (len > 0) {
+                    if (writerClosed) {
+                        throw new IOException("Pipe closed");
+                    } else if (readerClosed) {
+                        throw new IOException("Pipe closed by reader");
+                    } else if (count == ring.length) {
+                        if (bounded && readerStarted) {
+                            await();
+                            continue;
+                        }
+                        final byte[] grown = new byte[ring.length * 2];
+                        final int tail = Math.min(count, ring.length - head);
+                        System.arraycopy(ring, head, grown, 0, tail);
+                        System.arraycopy(ring, 0, grown, tail, count - tail);
+                        ring = grown;
+                        head = 0;
+                    }
+                    final int start = (head + count) % ring.length;
+                    final int n = Math.min(len, Math.min(ring.length - count, ring.length - start));
+                    System.arraycopy(b, off, ring, start, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                writerClosed = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private class PipeInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) > 0 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (lock) {
+                readerStarted = true;
+                while (count == 0) {
+                    if (readerClosed) {
+                        throw new IOException("Pipe closed");
+                    } else if (writerClosed) {
+                        return -1;
+                    }
+                    await();
+                }
+                final int n = Math.min(len, Math.min(count, ring.length - head));
+                System.arraycopy(ring, head, b, off, n);
+                head = (head + n) % ring.length;
+                count -= n;
+                lock.notifyAll();
+                return n;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (lock) {
+                return count;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                readerClosed = true;
+                lock.notifyAll();
+            }
+        }
+    }
+}
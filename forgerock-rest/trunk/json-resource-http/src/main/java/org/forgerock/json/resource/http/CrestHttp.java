@@ -18,6 +18,8 @@ package org.forgerock.json.resource.http;
 
 import static org.forgerock.json.resource.http.HttpUtils.*;
 
+import java.util.concurrent.Executor;
+
 import org.forgerock.http.Context;
 import org.forgerock.http.Filter;
 import org.forgerock.http.Handler;
@@ -89,6 +91,35 @@ public class CrestHttp {
         return Handlers.chainOf(new HttpAdapter(connectionFactory, contextFactory), newOptionsFilter());
     }
 
+    /**
+     * Creates a new JSON resource HTTP Handler with the provided connection
+     * factory and context factory, which streams query results to the client
+     * while the query is running. Once the first result is available, the
+     * response is handed off to the provided executor, and the thread running
+     * the query blocks whenever it gets too far ahead of the client. Errors
+     * which occur after the first result are reported in the {@code error}
+     * field of the response body, since the response status has already been
+     * sent.
+     *
+     * @param connectionFactory
+     *            The connection factory.
+     * @param contextFactory
+     *            The context factory which will be used to obtain the parent
+     *            context of each request context.
+     * @param streamingExecutor
+     *            The executor used to send query responses. Its threads may
+     *            block until each query completes.
+     * @return A HTTP Handler.
+     */
+    public static Handler newHttpHandler(ConnectionFactory connectionFactory, HttpContextFactory contextFactory,
+            Executor streamingExecutor) {
+        Reject.ifNull(connectionFactory);
+        Reject.ifNull(contextFactory);
+        Reject.ifNull(streamingExecutor);
+        return Handlers.chainOf(new HttpAdapter(connectionFactory, contextFactory, streamingExecutor),
+                newOptionsFilter());
+    }
+
     /**
      * Creates a new JSON resource HTTP handler with the provided CREST request handler.
      *
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.forgerock.http.Context;
 import org.forgerock.http.Handler;
@@ -99,6 +100,7 @@ final class HttpAdapter implements Handler {
 
     private final ConnectionFactory connectionFactory;
     private final HttpContextFactory contextFactory;
+    private final Executor streamingExecutor;
 
     /**
      * Creates a new HTTP adapter with the provided connection factory and a
@@ -142,9 +144,32 @@ final class HttpAdapter implements Handler {
      *            {@link SecurityContextFactory} should be used.
      */
     public HttpAdapter(ConnectionFactory connectionFactory, HttpContextFactory contextFactory) {
+        this(connectionFactory, contextFactory, null);
+    }
+
+    /**
+     * Creates a new HTTP adapter with the provided connection factory,
+     * context factory and executor for streaming query responses.
+     *
+     * @param connectionFactory
+     *            The connection factory.
+     * @param contextFactory
+     *            The context factory which will be used to obtain the parent
+     *            context of each request context, or {@code null} if the
+     *            {@link SecurityContextFactory} should be used.
+     * @param streamingExecutor
+     *            The executor which will be used to hand off query responses
+     *            once the first result is available, so that results are sent
+     *            to the client while the query is still running, or
+     *            {@code null} if query responses should be buffered until the
+     *            query completes.
+     */
+    public HttpAdapter(ConnectionFactory connectionFactory, HttpContextFactory contextFactory,
+            Executor streamingExecutor) {
         this.contextFactory = contextFactory != null ? contextFactory : SecurityContextFactory
                 .getHttpServletContextFactory();
         this.connectionFactory = checkNotNull(connectionFactory);
+        this.streamingExecutor = streamingExecutor;
     }
 
     /**
@@ -494,7 +519,7 @@ final class HttpAdapter implements Handler {
             Response resp, AcceptAPIVersion acceptVersion, Request request) throws Exception {
 
         Context ctx = newRequestContext(context, req, acceptVersion);
-        final RequestRunner runner = new RequestRunner(ctx, request, req, resp);
+        final RequestRunner runner = new RequestRunner(ctx, request, req, resp, streamingExecutor);
         return connectionFactory.getConnectionAsync()
                 .thenAsync(new AsyncFunction<Connection, Response, NeverThrowsException>() {
                     @Override
@@ -343,9 +343,26 @@ public final class HttpUtils {
 
         PipeBufferedStream pipeStream = new PipeBufferedStream();
         resp.setEntity(pipeStream.getOut());
+        return getJsonGenerator(req, pipeStream.getIn());
+    }
+
+    /**
+     * Creates a JSON generator which writes JSON content for an HTTP response
+     * to the provided output stream. The output stream is not closed when the
+     * generator is closed.
+     *
+     * @param req
+     *            The HTTP request.
+     * @param out
+     *            The output stream from which the response entity is read.
+     * @return A JSON generator which can be used to write out a JSON response.
+     * @throws IOException
+     *             If an error occurred while creating the generator.
+     */
+    static JsonGenerator getJsonGenerator(org.forgerock.http.protocol.Request req,
+            OutputStream out) throws IOException {
 
-        final JsonGenerator writer =
-                JSON_MAPPER.getFactory().createGenerator(pipeStream.getIn());
+        final JsonGenerator writer = JSON_MAPPER.getFactory().createGenerator(out);
         writer.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 
         // Enable pretty printer if requested.
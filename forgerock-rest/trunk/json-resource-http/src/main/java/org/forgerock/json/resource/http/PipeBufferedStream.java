@@ -67,20 +67,37 @@ final class PipeBufferedStream {
     private class PipeOutputStream extends OutputStream {
         @Override
         public void write(int i) throws IOException {
-            buffer.append(new byte[]{(byte) i}, 0, 1);
+            write(new byte[] { (byte) i }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            buffer.append(b, off, len);
         }
     }
 
     private class PipeInputStream extends InputStream {
         @Override
         public int read() throws IOException {
-            if (position >= buffer.length()) {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) > 0 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (position >= buffer.length()) {
                 return -1;
-            } else {
-                byte[] b = new byte[1];
-                buffer.read(position++, b, 0, 1);
-                return b[0];
             }
+            final int n = buffer.read(position, b, off, len);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.length() - position;
         }
     }
 }
@@ -26,6 +26,8 @@ import javax.mail.internet.ParseException;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -37,6 +39,7 @@ import org.forgerock.http.header.ContentTypeHeader;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
 import org.forgerock.json.fluent.JsonValue;
+import org.forgerock.json.fluent.JsonValueWriter;
 import org.forgerock.json.resource.ActionRequest;
 import org.forgerock.json.resource.AdviceContext;
 import org.forgerock.json.resource.Connection;
@@ -57,6 +60,7 @@ import org.forgerock.util.encode.Base64url;
 import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.promise.ResultHandler;
 
 /**
@@ -71,14 +75,34 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
     private final Response httpResponse;
     private final Request request;
     private final JsonGenerator writer;
+    // Executor used to hand off streamed query responses, or null if responses are buffered.
+    private final Executor streamingExecutor;
+    // Pipe for the streamed query response entity, or null if the response is buffered.
+    private final BlockingPipeStream streamingPipe;
+    // Completed with the HTTP response once query results start being streamed.
+    private final PromiseImpl<Response, NeverThrowsException> streamedResponse = PromiseImpl.create();
+    private volatile boolean isStreaming = false;
 
     RequestRunner(Context context, Request request, org.forgerock.http.protocol.Request httpRequest, Response httpResponse)
             throws Exception {
+        this(context, request, httpRequest, httpResponse, null);
+    }
+
+    RequestRunner(Context context, Request request, org.forgerock.http.protocol.Request httpRequest,
+            Response httpResponse, Executor streamingExecutor) throws Exception {
         this.context = context;
         this.request = request;
         this.httpRequest = httpRequest;
         this.httpResponse = httpResponse;
-        this.writer = getJsonGenerator(httpRequest, httpResponse);
+        this.streamingExecutor = streamingExecutor;
+        if (streamingExecutor != null && request instanceof QueryRequest) {
+            this.streamingPipe = new BlockingPipeStream();
+            httpResponse.setEntity(streamingPipe.getOut());
+            this.writer = getJsonGenerator(httpRequest, streamingPipe.getIn());
+        } else {
+            this.streamingPipe = null;
+            this.writer = getJsonGenerator(httpRequest, httpResponse);
+        }
     }
 
     public final Promise<Response, NeverThrowsException> handleError(final ResourceException error) {
@@ -191,6 +215,16 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
      */
     @Override
     public final Promise<Response, NeverThrowsException> visitQueryRequest(final Void p, final QueryRequest request) {
+        final Promise<Response, NeverThrowsException> queryCompleted = query(request);
+        if (streamingPipe == null) {
+            return queryCompleted;
+        }
+        // The response is returned as soon as streaming starts, or once the query completes if it never does.
+        queryCompleted.thenOnResult(streamedResponse);
+        return streamedResponse;
+    }
+
+    private Promise<Response, NeverThrowsException> query(final QueryRequest request) {
         final AtomicBoolean isFirstResult = new AtomicBoolean(true);
         final AtomicInteger resultCount = new AtomicInteger(0);
         return connection.queryAsync(context, request, new QueryResourceHandler() {
@@ -251,7 +285,8 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
         }, new AsyncFunction<ResourceException, Response, NeverThrowsException>() {
             @Override
             public Promise<Response, NeverThrowsException> apply(ResourceException e) {
-                return handleError(e);
+                // Once streaming has started it is too late to send an error response.
+                return isStreaming ? newResultPromise(httpResponse) : handleError(e);
             }
         });
     }
@@ -261,6 +296,42 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
             writeAdvice();
             writer.writeStartObject();
             writer.writeArrayFieldStart(FIELD_RESULT);
+            if (streamingPipe != null) {
+                writer.flush();
+                startStreaming();
+            }
+        }
+    }
+
+    /**
+     * Hands the HTTP response off to the streaming executor, so that its entity can be sent while the remaining query
+     * results are written to it by this thread. If the executor rejects the hand off, or runs it in this thread, then
+     * the response is buffered and returned once the query completes, as if streaming was not enabled.
+     */
+    private void startStreaming() {
+        final Thread writerThread = Thread.currentThread();
+        final AtomicBoolean isHandingOff = new AtomicBoolean(true);
+        final AtomicBoolean isRejected = new AtomicBoolean(false);
+        try {
+            streamingExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (isHandingOff.get() && Thread.currentThread() == writerThread) {
+                        // Reading the response in this thread would block the writer.
+                        isRejected.set(true);
+                    } else {
+                        streamedResponse.handleResult(httpResponse);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            isRejected.set(true);
+        }
+        isHandingOff.set(false);
+        if (isRejected.get()) {
+            streamingPipe.unbounded();
+        } else {
+            isStreaming = true;
         }
     }
 
@@ -296,12 +367,19 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
 
     private void onSuccess() {
         closeSilently(connection, writer);
+        if (streamingPipe != null) {
+            // Signal the end of the response entity.
+            closeSilently(streamingPipe.getIn());
+        }
     }
 
     private void onError(final Exception e) {
         // Don't close the JSON writer because the request will become
         // "completed" which then prevents us from sending an error.
         closeSilently(connection);
+        if (streamingPipe != null) {
+            closeSilently(streamingPipe.getIn());
+        }
     }
 
     private String getResourceURL(final CreateRequest request, final Resource resource) {
@@ -355,7 +433,7 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
     }
 
     private void writeJsonValue(final JsonValue json) throws IOException {
-        writer.writeObject(json.getObject());
+        JsonValueWriter.write(json, writer);
     }
 
     private void writeTextValue(final JsonValue json) throws IOException {
@@ -0,0 +1,341 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.forgerock.json.resource.http.HttpUtils.ETAG_ANY;
+import static org.forgerock.json.resource.http.HttpUtils.HEADER_IF_NONE_MATCH;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.http.context.ServerContext;
+import org.forgerock.json.fluent.JsonValue;
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.Filter;
+import org.forgerock.json.resource.PatchRequest;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResult;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.RequestHandler;
+import org.forgerock.json.resource.Resource;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.ResultHandler;
+
+/**
+ * A {@link Filter} which answers conditional HTTP reads without calling the
+ * next request handler. It keeps a bounded index of the latest known revision
+ * of each resource, keyed by resource path, which is populated by reads,
+ * queries, updates and patches passing through the filter, and invalidated by
+ * writes passing through the filter. A read whose {@code If-None-Match}
+ * header matches the indexed revision is answered with an empty resource
+ * having that revision, which the {@link CrestHttp HTTP handler} turns into a
+ * {@code 304 Not Modified} response.
+ * <p>
+ * The full content of some resources, such as frequently read configuration
+ * singletons, may also be cached, so that unconditional reads of them are
+ * answered from the cache too.
+ * <p>
+ * The index is only correct if <em>all</em> writes to the resources are
+ * routed through the same filter instance, so the filter should be placed in
+ * front of the router handling the resources. Since cached responses bypass
+ * the filters and handlers following this one, it should be placed after any
+ * authorization filters.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @since 3.0.0
+ */
+public final class RevisionCacheFilter implements Filter {
+
+    /** The default maximum number of resource revisions which are indexed. */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * The maximum number of stripes of the index. Each stripe has its own
+     * lock, so that reads of resources in different stripes do not contend.
+     */
+    private static final int MAX_STRIPES = 64;
+
+    /** The minimum number of revisions indexed by each stripe. */
+    private static final int MIN_ENTRIES_PER_STRIPE = 16;
+
+    private final Set<String> contentPaths;
+    private final Stripe[] stripes;
+
+    /**
+     * Creates a new filter indexing up to {@link #DEFAULT_MAX_ENTRIES}
+     * revisions, and caching no content.
+     */
+    public RevisionCacheFilter() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a new filter.
+     *
+     * @param maxEntries
+     *            The maximum number of resource revisions which are indexed.
+     *            Roughly the least recently used are evicted first.
+     * @param contentPaths
+     *            The paths of the resources whose full content is cached,
+     *            relative to this filter.
+     */
+    public RevisionCacheFilter(final int maxEntries, final String... contentPaths) {
+        this(maxEntries, Arrays.asList(contentPaths));
+    }
+
+    /**
+     * Creates a new filter.
+     *
+     * @param maxEntries
+     *            The maximum number of resource revisions which are indexed.
+     *            Roughly the least recently used are evicted first.
+     * @param contentPaths
+     *            The paths of the resources whose full content is cached,
+     *            relative to this filter.
+     */
+    public RevisionCacheFilter(final int maxEntries, final Collection<String> contentPaths) {
+        this.contentPaths = Collections.unmodifiableSet(new HashSet<>(contentPaths));
+        // Eviction is least recently used within each stripe, so small indexes use a single stripe.
+        final int stripeCount = Math.max(1, Math.min(MAX_STRIPES, maxEntries / MIN_ENTRIES_PER_STRIPE));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxEntries / stripeCount + (i < maxEntries % stripeCount ? 1 : 0));
+        }
+    }
+
+    @Override
+    public Promise<JsonValue, ResourceException> filterAction(final ServerContext context,
+            final ActionRequest request, final RequestHandler next) {
+        // An action may modify the resource or any of its children.
+        invalidateTree(request.getResourcePath());
+        return next.handleAction(context, request);
+    }
+
+    @Override
+    public Promise<Resource, ResourceException> filterCreate(final ServerContext context,
+            final CreateRequest request, final RequestHandler next) {
+        // A create with a client provided ID may replace a deleted resource.
+        if (request.getNewResourceId() != null) {
+            invalidate(request.getResourcePathObject().child(request.getNewResourceId()).toString());
+        }
+        return next.handleCreate(context, request);
+    }
+
+    @Override
+    public Promise<Resource, ResourceException> filterDelete(final ServerContext context,
+            final DeleteRequest request, final RequestHandler next) {
+        invalidate(request.getResourcePath());
+        return next.handleDelete(context, request);
+    }
+
+    @Override
+    public Promise<Resource, ResourceException> filterPatch(final ServerContext context,
+            final PatchRequest request, final RequestHandler next) {
+        final String path = request.getResourcePath();
+        final long stamp = invalidate(path);
+        return next.handlePatch(context, request).thenOnResult(new ResultHandler<Resource>() {
+            @Override
+            public void handleResult(Resource result) {
+                record(path, stamp, result, request.getFields().isEmpty());
+            }
+        });
+    }
+
+    @Override
+    public Promise<QueryResult, ResourceException> filterQuery(final ServerContext context,
+            final QueryRequest request, final QueryResourceHandler handler, final RequestHandler next) {
+        final long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].writeCounter;
+        }
+        return next.handleQuery(context, request, new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(Resource resource) {
+                if (resource.getId() != null) {
+                    String resourcePath = request.getResourcePathObject().child(resource.getId()).toString();
+                    // Query results may be partial, so only their revisions are indexed.
+                    record(resourcePath, stamps[stripeIndex(resourcePath)], resource, false);
+                }
+                return handler.handleResource(resource);
+            }
+        });
+    }
+
+    @Override
+    public Promise<Resource, ResourceException> filterRead(final ServerContext context, final ReadRequest request,
+            final RequestHandler next) {
+        final String path = request.getResourcePath();
+        final boolean allFields = request.getFields().isEmpty();
+        final Stripe stripe = stripes[stripeIndex(path)];
+        final CachedResource cached;
+        final long stamp;
+        synchronized (stripe) {
+            cached = stripe.entries.get(path);
+            stamp = stripe.writeCounter;
+        }
+        if (cached != null) {
+            if (cached.revision.equals(getIfNoneMatch(context))) {
+                return newResultPromise(new Resource(cached.id, cached.revision, new JsonValue(null)));
+            } else if (cached.content != null && allFields) {
+                return newResultPromise(new Resource(cached.id, cached.revision, cached.content.copy()));
+            }
+        }
+        return next.handleRead(context, request).thenOnResult(new ResultHandler<Resource>() {
+            @Override
+            public void handleResult(Resource result) {
+                record(path, stamp, result, allFields);
+            }
+        });
+    }
+
+    @Override
+    public Promise<Resource, ResourceException> filterUpdate(final ServerContext context,
+            final UpdateRequest request, final RequestHandler next) {
+        final String path = request.getResourcePath();
+        final long stamp = invalidate(path);
+        return next.handleUpdate(context, request).thenOnResult(new ResultHandler<Resource>() {
+            @Override
+            public void handleResult(Resource result) {
+                record(path, stamp, result, request.getFields().isEmpty());
+            }
+        });
+    }
+
+    /**
+     * Indexes the revision of a resource, and caches its content if required,
+     * unless the resource has been written since the request started.
+     */
+    private void record(String path, long stamp, Resource resource, boolean allFields) {
+        if (resource.getRevision() == null) {
+            return;
+        }
+        JsonValue content = allFields && contentPaths.contains(path) ? resource.getContent().copy() : null;
+        final Stripe stripe = stripes[stripeIndex(path)];
+        synchronized (stripe) {
+            if (stripe.writeCounter == stamp) {
+                stripe.entries.put(path, new CachedResource(resource.getId(), resource.getRevision(), content));
+            }
+        }
+    }
+
+    /**
+     * Removes a resource from the index, returning the new write counter of
+     * its stripe.
+     */
+    private long invalidate(String path) {
+        final Stripe stripe = stripes[stripeIndex(path)];
+        synchronized (stripe) {
+            stripe.entries.remove(path);
+            return ++stripe.writeCounter;
+        }
+    }
+
+    /**
+     * Removes a resource and all of its children from the index.
+     */
+    private void invalidateTree(String path) {
+        String prefix = path.isEmpty() ? "" : path + "/";
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.writeCounter++;
+                for (Iterator<String> i = stripe.entries.keySet().iterator(); i.hasNext();) {
+                    String key = i.next();
+                    if (key.equals(path) || key.startsWith(prefix)) {
+                        i.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private int stripeIndex(String path) {
+        return (path.hashCode() & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    /**
+     * Returns the unquoted revision in the HTTP request's
+     * {@code If-None-Match} header, or {@code null} if the request is not an
+     * HTTP request, has no such header, or the header is {@code *}.
+     */
+    private static String getIfNoneMatch(ServerContext context) {
+        if (!context.containsContext(HttpContext.class)) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> header : context.asContext(HttpContext.class).getHeaders().entrySet()) {
+            if (HEADER_IF_NONE_MATCH.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                String etag = header.getValue().get(0);
+                if (etag.length() >= 2 && etag.charAt(0) == '"') {
+                    return etag.substring(1, etag.length() - 1);
+                }
+                return ETAG_ANY.equals(etag) ? null : etag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A stripe of the index, whose entries are evicted least recently used
+     * first. Guarded by itself.
+     */
+    private static final class Stripe {
+        private final Map<String, CachedResource> entries;
+        /**
+         * Incremented by each write to a resource of the stripe, so that reads
+         * which started before the write do not index a stale revision. Only
+         * written while holding the stripe's lock.
+         */
+        private volatile long writeCounter;
+
+        private Stripe(final int maxEntries) {
+            this.entries = new LinkedHashMap<String, CachedResource>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResource> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+
+    private static final class CachedResource {
+        private final String id;
+        private final String revision;
+        /** The full content of the resource, or {@code null} if it is not cached. */
+        private final JsonValue content;
+
+        private CachedResource(String id, String revision, JsonValue content) {
+            this.id = id;
+            this.revision = revision;
+            this.content = content;
+        }
+    }
+}
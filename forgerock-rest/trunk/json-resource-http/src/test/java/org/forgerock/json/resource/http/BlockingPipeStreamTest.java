@@ -0,0 +1,170 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.forgerock.http.io.IO;
+import org.testng.annotations.Test;
+
+public class BlockingPipeStreamTest {
+
+    @Test
+    public void shouldBufferWritesUntilReaderStarts() throws IOException {
+
+        //Given
+        BlockingPipeStream pipe = new BlockingPipeStream(4);
+        OutputStream outputStream = pipe.getIn();
+
+        //When
+        outputStream.write(bytes(10));
+        outputStream.close();
+
+        //Then
+        assertEquals(readAll(pipe.getOut()), bytes(10));
+    }
+
+    @Test
+    public void shouldBlockWriterWhilePipeIsFull() throws Exception {
+
+        //Given
+        final BlockingPipeStream pipe = new BlockingPipeStream(4);
+        final InputStream inputStream = pipe.getOut();
+        final AtomicInteger written = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        pipe.getIn().write(0);
+        assertEquals(inputStream.read(), 0);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    for (int i = 0; i < 8; i++) {
+                        pipe.getIn().write(i);
+                        written.incrementAndGet();
+                    }
+                    pipe.getIn().close();
+                } catch (IOException e) {
+                    // Test will fail.
+                }
+            }
+        });
+
+        //When
+        writer.start();
+        started.await();
+        Thread.sleep(100);
+
+        //Then
+        assertEquals(written.get(), 4);
+        assertEquals(readAll(inputStream), new byte[] { 0, 1, 2, 3, 4, 5, 6, 7 });
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(written.get(), 8);
+    }
+
+    @Test
+    public void shouldBlockReaderUntilDataIsWritten() throws Exception {
+
+        //Given
+        final BlockingPipeStream pipe = new BlockingPipeStream();
+        final AtomicReference<byte[]> read = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    read.set(readAll(pipe.getOut()));
+                } catch (IOException e) {
+                    // Test will fail.
+                }
+            }
+        });
+        reader.start();
+
+        //When
+        Thread.sleep(50);
+        pipe.getIn().write(bytes(100));
+        Thread.sleep(50);
+        pipe.getIn().write(bytes(100));
+        pipe.getIn().close();
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+
+        //Then
+        assertEquals(read.get().length, 200);
+    }
+
+    @Test
+    public void shouldFailWritesOnceReaderCloses() throws Exception {
+
+        //Given
+        final BlockingPipeStream pipe = new BlockingPipeStream(4);
+        pipe.getIn().write(0);
+        pipe.getOut().read();
+
+        //When
+        pipe.getOut().close();
+
+        //Then
+        try {
+            pipe.getIn().write(bytes(10));
+            assertFalse(true, "Expected write to fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    @Test
+    public void shouldNotBlockWriterOnceUnbounded() throws Exception {
+
+        //Given
+        final BlockingPipeStream pipe = new BlockingPipeStream(4);
+        pipe.getIn().write(0);
+        pipe.getOut().read();
+
+        //When
+        pipe.unbounded();
+        pipe.getIn().write(bytes(10));
+        pipe.getIn().close();
+
+        //Then
+        assertEquals(readAll(pipe.getOut()), bytes(10));
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.stream(in, out);
+        return out.toByteArray();
+    }
+}
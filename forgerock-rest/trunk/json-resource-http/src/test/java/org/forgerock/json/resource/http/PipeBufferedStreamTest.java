@@ -100,4 +100,22 @@ public class PipeBufferedStreamTest {
                 + "{\"intField\":42,\"stringField\":\"stringValue\"}" + "]," + "\"resultCount\":1,"
                 + "\"error\":{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}}");
     }
+
+    @Test
+    public void shouldReadBytesOutsideSignedRange() throws IOException {
+
+        //Given
+        PipeBufferedStream pipe = new PipeBufferedStream();
+        OutputStream outputStream = pipe.getIn();
+        BranchingInputStream inputStream = pipe.getOut();
+
+        //When
+        outputStream.write(0xff);
+        outputStream.write(0x80);
+
+        //Then
+        assertEquals(inputStream.read(), 0xff);
+        assertEquals(inputStream.read(), 0x80);
+        assertEquals(inputStream.read(), -1);
+    }
 }
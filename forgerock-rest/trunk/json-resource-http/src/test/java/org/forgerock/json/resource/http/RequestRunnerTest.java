@@ -23,9 +23,16 @@ import static org.forgerock.util.promise.Promises.newResultPromise;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.http.Context;
 import org.forgerock.http.protocol.Response;
@@ -38,6 +45,7 @@ import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.Resource;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.annotations.Test;
@@ -96,6 +104,91 @@ public class RequestRunnerTest {
         assertEquals(getResponseContent(response), "{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}");
     }
 
+    @Test
+    public void testStreamQueryResultsBeforeQueryCompletes() throws Exception {
+        // Given
+        final CountDownLatch finishQuery = new CountDownLatch(1);
+        final PromiseImpl<QueryResult, ResourceException> queryPromise = PromiseImpl.create();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Connection connection = mockQueryConnection(new Answer<Promise<QueryResult, ResourceException>>() {
+                @Override
+                public Promise<QueryResult, ResourceException> answer(InvocationOnMock invocationOnMock) {
+                    final QueryResourceHandler handler = (QueryResourceHandler) invocationOnMock.getArguments()[2];
+                    new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            handler.handleResource(new Resource("id", "revision", new JsonValue("first")));
+                            try {
+                                finishQuery.await();
+                            } catch (InterruptedException e) {
+                                // Finish the query anyway.
+                            }
+                            handler.handleResource(new Resource("id", "revision", new JsonValue("second")));
+                            queryPromise.handleResult(new QueryResult());
+                        }
+                    }).start();
+                    return queryPromise;
+                }
+            });
+            RequestRunner requestRunner = new RequestRunner(mock(Context.class), Requests.newQueryRequest(""),
+                    newRequest(), new Response(), executor);
+
+            // When
+            Response response = requestRunner.handleResult(connection).getOrThrow(10, TimeUnit.SECONDS);
+
+            // Then
+            assertFalse(queryPromise.isDone());
+            finishQuery.countDown();
+            assertEquals(getResponseContent(response), "{" + "\"result\":[\"first\",\"second\"],"
+                    + "\"resultCount\":2,\"pagedResultsCookie\":null,\"totalPagedResultsPolicy\":\"NONE\","
+                    + "\"totalPagedResults\":-1}");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBufferQueryResultsIfStreamingExecutorRunsInline() throws Exception {
+        // Given
+        final Resource[] resources = new Resource[2000];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = new Resource("id", "revision", json(object(field("index", i))));
+        }
+        Connection connection = mockQueryConnection(new Answer<Promise<QueryResult, ResourceException>>() {
+            @Override
+            public Promise<QueryResult, ResourceException> answer(InvocationOnMock invocationOnMock) {
+                QueryResourceHandler handler = (QueryResourceHandler) invocationOnMock.getArguments()[2];
+                for (Resource resource : resources) {
+                    handler.handleResource(resource);
+                }
+                return QUERY_RESULT;
+            }
+        });
+        RequestRunner requestRunner = new RequestRunner(mock(Context.class), Requests.newQueryRequest(""),
+                newRequest(), new Response(), new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                });
+
+        // When
+        Response response = requestRunner.handleResult(connection).getOrThrowUninterruptibly();
+
+        // Then
+        assertTrue(getResponseContent(response).endsWith("{\"index\":1999}],\"resultCount\":2000,"
+                + "\"pagedResultsCookie\":null,\"totalPagedResultsPolicy\":\"NONE\",\"totalPagedResults\":-1}"));
+    }
+
+    private Connection mockQueryConnection(Answer<Promise<QueryResult, ResourceException>> answer)
+            throws ResourceException {
+        Connection connection = mock(Connection.class);
+        when(connection.queryAsync(any(Context.class), any(QueryRequest.class), any(QueryResourceHandler.class)))
+                .thenAnswer(answer);
+        return connection;
+    }
+
     private String getResponseContent(Response response) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         response.getEntity().copyDecodedContentTo(outputStream);
@@ -0,0 +1,194 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions Copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource.http;
+
+import static org.forgerock.http.test.HttpTest.newRequest;
+import static org.forgerock.json.fluent.JsonValue.*;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.forgerock.http.context.RootContext;
+import org.forgerock.http.context.ServerContext;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.RequestHandler;
+import org.forgerock.json.resource.Requests;
+import org.forgerock.json.resource.Resource;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.util.promise.PromiseImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class RevisionCacheFilterTest {
+
+    private static final Resource RESOURCE = new Resource("1", "rev1", json(object(field("name", "one"))));
+
+    private RequestHandler next;
+    private RevisionCacheFilter filter;
+
+    @BeforeMethod
+    public void setUp() {
+        next = mock(RequestHandler.class);
+        when(next.handleRead(any(ServerContext.class), any(ReadRequest.class)))
+                .thenReturn(newResultPromise(RESOURCE));
+        when(next.handleUpdate(any(ServerContext.class), any(UpdateRequest.class)))
+                .thenReturn(newResultPromise(new Resource("1", "rev2", json(object()))));
+        filter = new RevisionCacheFilter(10, "config");
+    }
+
+    @Test
+    public void shouldAnswerConditionalReadOfIndexedRevision() throws Exception {
+        //Given
+        filter.filterRead(context(null), Requests.newReadRequest("users/1"), next);
+
+        //When
+        Resource resource = filter.filterRead(context("\"rev1\""), Requests.newReadRequest("users/1"), next)
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertEquals(resource.getRevision(), "rev1");
+        assertNull(resource.getContent().getObject());
+        verify(next, times(1)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldReadResourceWhenRevisionDoesNotMatch() throws Exception {
+        //Given
+        filter.filterRead(context(null), Requests.newReadRequest("users/1"), next);
+
+        //When
+        Resource resource = filter.filterRead(context("\"rev0\""), Requests.newReadRequest("users/1"), next)
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertEquals(resource, RESOURCE);
+        verify(next, times(2)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldIndexRevisionOfUpdatedResource() throws Exception {
+        //Given
+        filter.filterRead(context(null), Requests.newReadRequest("users/1"), next);
+        filter.filterUpdate(context(null), Requests.newUpdateRequest("users/1", json(object())), next);
+
+        //When
+        Resource resource = filter.filterRead(context("\"rev2\""), Requests.newReadRequest("users/1"), next)
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertEquals(resource.getRevision(), "rev2");
+        verify(next, times(1)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldNotIndexRevisionReadBeforeConcurrentUpdate() throws Exception {
+        //Given
+        PromiseImpl<Resource, ResourceException> read = PromiseImpl.create();
+        when(next.handleRead(any(ServerContext.class), any(ReadRequest.class))).thenReturn(read);
+        filter.filterRead(context(null), Requests.newReadRequest("users/1"), next);
+        PromiseImpl<Resource, ResourceException> update = PromiseImpl.create();
+        when(next.handleUpdate(any(ServerContext.class), any(UpdateRequest.class))).thenReturn(update);
+        filter.filterUpdate(context(null), Requests.newUpdateRequest("users/1", json(object())), next);
+
+        //When
+        read.handleResult(RESOURCE);
+        filter.filterRead(context("\"rev1\""), Requests.newReadRequest("users/1"), next);
+
+        //Then
+        verify(next, times(2)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldAnswerConditionalReadsOfResourcesInDifferentStripes() throws Exception {
+        //Given
+        filter = new RevisionCacheFilter(RevisionCacheFilter.DEFAULT_MAX_ENTRIES);
+        for (int i = 0; i < 100; i++) {
+            filter.filterRead(context(null), Requests.newReadRequest("users/" + i), next);
+        }
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            Resource resource = filter.filterRead(context("\"rev1\""), Requests.newReadRequest("users/" + i), next)
+                    .getOrThrowUninterruptibly();
+            assertNull(resource.getContent().getObject());
+        }
+
+        //Then
+        verify(next, times(100)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldInvalidateChildrenInAllStripesOnAction() throws Exception {
+        //Given
+        filter = new RevisionCacheFilter(RevisionCacheFilter.DEFAULT_MAX_ENTRIES);
+        when(next.handleAction(any(ServerContext.class), any(ActionRequest.class)))
+                .thenReturn(newResultPromise(json(object())));
+        for (int i = 0; i < 100; i++) {
+            filter.filterRead(context(null), Requests.newReadRequest("users/" + i), next);
+        }
+        filter.filterAction(context(null), Requests.newActionRequest("users", "clear"), next);
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            filter.filterRead(context("\"rev1\""), Requests.newReadRequest("users/" + i), next);
+        }
+
+        //Then
+        verify(next, times(200)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldServeCachedContent() throws Exception {
+        //Given
+        filter.filterRead(context(null), Requests.newReadRequest("config"), next);
+
+        //When
+        Resource resource = filter.filterRead(context(null), Requests.newReadRequest("config"), next)
+                .getOrThrowUninterruptibly();
+
+        //Then
+        assertEquals(resource.getContent().getObject(), RESOURCE.getContent().getObject());
+        verify(next, times(1)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    @Test
+    public void shouldInvalidateCachedContentOnDelete() throws Exception {
+        //Given
+        filter.filterRead(context(null), Requests.newReadRequest("config"), next);
+        filter.filterDelete(context(null), Requests.newDeleteRequest("config"), next);
+
+        //When
+        filter.filterRead(context(null), Requests.newReadRequest("config"), next);
+
+        //Then
+        verify(next, times(2)).handleRead(any(ServerContext.class), any(ReadRequest.class));
+    }
+
+    private static ServerContext context(String ifNoneMatch) {
+        Request request = newRequest();
+        if (ifNoneMatch != null) {
+            request.getHeaders().putSingle("If-None-Match", ifNoneMatch);
+        }
+        return new ServerContext(new HttpContext(new RootContext(), request));
+    }
+}
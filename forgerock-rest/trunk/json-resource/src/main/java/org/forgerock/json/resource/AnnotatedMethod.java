@@ -20,8 +20,11 @@ import static org.forgerock.json.resource.ResourceException.newNotSupportedExcep
 import static org.forgerock.util.promise.Promises.newExceptionPromise;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
 import org.forgerock.http.context.ServerContext;
@@ -40,27 +43,28 @@ import org.forgerock.util.promise.Promise;
  * <p>
  * If no appropriately annotated method is found, an attempt to invoke that method will result in
  * it being handled with a {@link NotSupportedException}.
+ * <p>
+ * Found methods are bound to their request handler once, as a {@link MethodHandle} taking the
+ * context, request, query handler and resource ID in that order, so that invoking them does not
+ * need to allocate an argument array or go through reflective access checks.
  */
 final class AnnotatedMethod {
-    private final Object requestHandler;
-    private final Method method;
-    private final int idParameter;
-    private final int contextParameter;
-    private final int requestParameter;
-    private final int queryHandlerParameter;
-    private final int numberOfParameters;
+    /** The type of the bound invokers: the annotated method's parameters are permuted to match it. */
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Promise.class, ServerContext.class,
+            Request.class, QueryResourceHandler.class, String.class);
+    private static final int CONTEXT_ARGUMENT = 0;
+    private static final int REQUEST_ARGUMENT = 1;
+    private static final int QUERY_HANDLER_ARGUMENT = 2;
+    private static final int ID_ARGUMENT = 3;
+
+    private final MethodHandle invoker;
     private final String operation;
 
     AnnotatedMethod(String operation, Object requestHandler, Method method, int idParameter, int contextParameter,
             int requestParameter, int queryHandlerParameter, int numberOfParameters) {
         this.operation = operation;
-        this.requestHandler = requestHandler;
-        this.method = method;
-        this.idParameter = idParameter;
-        this.contextParameter = contextParameter;
-        this.requestParameter = requestParameter;
-        this.queryHandlerParameter = queryHandlerParameter;
-        this.numberOfParameters = numberOfParameters;
+        this.invoker = method == null ? null : bind(requestHandler, method, idParameter, contextParameter,
+                requestParameter, queryHandlerParameter, numberOfParameters);
     }
 
     <T> Promise<T, ResourceException> invoke(ServerContext context, Request request, String id) {
@@ -69,29 +73,57 @@ final class AnnotatedMethod {
 
     <T> Promise<T, ResourceException> invoke(ServerContext context, Request request,
             QueryResourceHandler queryHandler, String id) {
-        if (method == null) {
+        if (invoker == null) {
             return newExceptionPromise(newNotSupportedException(operation + " not supported"));
         }
-        Object[] args = new Object[numberOfParameters];
-        if (idParameter > -1) {
-            args[idParameter] = id;
-        }
-        if (requestParameter > -1) {
-            args[requestParameter] = request;
-        }
-        if (contextParameter > -1) {
-            args[contextParameter] = context;
-        }
-        if (queryHandlerParameter > -1) {
-            args[queryHandlerParameter] = queryHandler;
+        try {
+            return (Promise<T, ResourceException>) invoker.invokeExact(context, request, queryHandler, id);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Exception from invocation expected to be handled by promise", t);
         }
+    }
+
+    /**
+     * Creates a method handle of type {@link #INVOKER_TYPE} that invokes the method on the request handler. Any
+     * parameter which is not recognised is passed {@code null}.
+     */
+    private static MethodHandle bind(Object requestHandler, Method method, int idParameter, int contextParameter,
+            int requestParameter, int queryHandlerParameter, int numberOfParameters) {
+        MethodHandle handle;
         try {
-            return (Promise<T, ResourceException>) method.invoke(requestHandler, args);
+            handle = MethodHandles.lookup().unreflect(method);
         } catch (IllegalAccessException e) {
             throw new IllegalStateException("Cannot access the annotated method: " + method.getName(), e);
-        } catch (InvocationTargetException e) {
-            throw new IllegalStateException("Exception from invocation expected to be handled by promise", e);
         }
+        if (!Modifier.isStatic(method.getModifiers())) {
+            handle = handle.bindTo(requestHandler);
+        }
+        int[] arguments = new int[numberOfParameters];
+        for (int i = numberOfParameters - 1; i >= 0; i--) {
+            if (i == idParameter) {
+                arguments[i] = ID_ARGUMENT;
+            } else if (i == contextParameter) {
+                arguments[i] = CONTEXT_ARGUMENT;
+            } else if (i == requestParameter) {
+                arguments[i] = REQUEST_ARGUMENT;
+            } else if (i == queryHandlerParameter) {
+                arguments[i] = QUERY_HANDLER_ARGUMENT;
+            } else {
+                arguments[i] = -1;
+                handle = MethodHandles.insertArguments(handle, i, new Object[] { null });
+            }
+        }
+        int[] reorder = new int[handle.type().parameterCount()];
+        Class<?>[] parameterTypes = new Class<?>[reorder.length];
+        int parameter = 0;
+        for (int argument : arguments) {
+            if (argument != -1) {
+                reorder[parameter] = argument;
+                parameterTypes[parameter++] = INVOKER_TYPE.parameterType(argument);
+            }
+        }
+        handle = handle.asType(MethodType.methodType(Promise.class, parameterTypes));
+        return MethodHandles.permuteArguments(handle, INVOKER_TYPE, reorder);
     }
 
     static AnnotatedMethod findMethod(Object requestHandler, Class<? extends Annotation> annotation, boolean needsId) {
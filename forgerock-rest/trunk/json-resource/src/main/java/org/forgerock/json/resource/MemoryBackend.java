@@ -22,14 +22,23 @@ import static org.forgerock.util.promise.Promises.newExceptionPromise;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.http.context.ServerContext;
@@ -43,6 +52,12 @@ import org.forgerock.util.query.QueryFilterVisitor;
  * A simple in-memory collection resource provider which uses a {@code Map} to
  * store resources. This resource provider is intended for testing purposes only
  * and there are no performance guarantees.
+ * <p>
+ * Queries scan every resource unless indexes are declared for the fields used
+ * in query filters: hash indexes are used for equality filters, and sorted
+ * indexes for equality, ordering and starts with filters. Resources found
+ * through an index are still matched against the entire filter, so indexes
+ * never change the results of a query, only the number of resources examined.
  */
 public final class MemoryBackend implements CollectionResourceProvider {
     private enum FilterResult {
@@ -72,7 +87,8 @@ public final class MemoryBackend implements CollectionResourceProvider {
                     return result;
                 }
             }
-            return 0;
+            // Break ties using the resource ID so that pages do not overlap.
+            return r1.getId().compareTo(r2.getId());
         }
 
         private int compare(final Resource r1, final Resource r2, final SortKey sortKey) {
@@ -330,15 +346,306 @@ public final class MemoryBackend implements CollectionResourceProvider {
                 || (v1 instanceof Boolean && v2 instanceof Boolean);
     }
 
+    /** The number of locks which writes are spread across, so that writes to different resources rarely contend. */
+    private static final int WRITE_LOCK_STRIPES = 32;
+
+    private static boolean isIndexable(final Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+    /**
+     * An index of the resources having each value of a field. Values are
+     * matched using the same rules as query filters: strings ignoring case,
+     * numbers by value regardless of their type. Multi-valued fields are
+     * indexed once for each of their values, and values which are neither
+     * strings, numbers nor booleans are not indexed.
+     * <p>
+     * Lookups do not block. Updates are serialized per index so that empty
+     * entries can be removed safely.
+     */
+    private static final class Index {
+        private final JsonPointer field;
+        /** The entries of a hash index, keyed by normalized value, or {@code null} for a sorted index. */
+        private final ConcurrentMap<Object, Set<String>> hashed;
+        /** The entries of a sorted index, with one map per type of value since types are not comparable. */
+        private final Map<Class<?>, NavigableMap<Object, Set<String>>> sorted;
+
+        private Index(final JsonPointer field, final boolean isSorted) {
+            this.field = field;
+            if (isSorted) {
+                this.hashed = null;
+                this.sorted = new HashMap<>(3);
+                for (final Class<?> type : Arrays.asList(String.class, Number.class, Boolean.class)) {
+                    sorted.put(type, new ConcurrentSkipListMap<Object, Set<String>>(VALUE_COMPARATOR));
+                }
+            } else {
+                this.hashed = new ConcurrentHashMap<>();
+                this.sorted = null;
+            }
+        }
+
+        synchronized void add(final Resource resource) {
+            for (final Object value : getValues(resource)) {
+                final Map<Object, Set<String>> entries = entries(value);
+                final Object key = key(value);
+                Set<String> ids = entries.get(key);
+                if (ids == null) {
+                    ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    entries.put(key, ids);
+                }
+                ids.add(resource.getId());
+            }
+        }
+
+        synchronized void remove(final Resource resource) {
+            for (final Object value : getValues(resource)) {
+                final Map<Object, Set<String>> entries = entries(value);
+                final Object key = key(value);
+                final Set<String> ids = entries.get(key);
+                if (ids != null) {
+                    ids.remove(resource.getId());
+                    if (ids.isEmpty()) {
+                        entries.remove(key);
+                    }
+                }
+            }
+        }
+
+        Set<String> equalTo(final Object value) {
+            if (!isIndexable(value)) {
+                return Collections.emptySet();
+            }
+            final Set<String> ids = entries(value).get(key(value));
+            return ids != null ? ids : Collections.<String> emptySet();
+        }
+
+        Set<String> greaterThan(final Object value, final boolean inclusive) {
+            return isIndexable(value) ? union(sorted(value).tailMap(value, inclusive).values())
+                    : Collections.<String> emptySet();
+        }
+
+        Set<String> lessThan(final Object value, final boolean inclusive) {
+            return isIndexable(value) ? union(sorted(value).headMap(value, inclusive).values())
+                    : Collections.<String> emptySet();
+        }
+
+        Set<String> startsWith(final String prefix) {
+            final Set<String> ids = new HashSet<>();
+            for (final Map.Entry<Object, Set<String>> entry : sorted(prefix).tailMap(prefix, true).entrySet()) {
+                if (!((String) entry.getKey()).regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    break;
+                }
+                ids.addAll(entry.getValue());
+            }
+            return ids;
+        }
+
+        private List<Object> getValues(final Resource resource) {
+            final JsonValue value = resource.getContent().get(field);
+            if (value == null) {
+                return Collections.emptyList();
+            }
+            final List<Object> values = new ArrayList<>();
+            for (final Object object : value.isList() ? value.asList() : Collections.singletonList(value.getObject())) {
+                if (isIndexable(object)) {
+                    values.add(object);
+                }
+            }
+            return values;
+        }
+
+        private Map<Object, Set<String>> entries(final Object value) {
+            return hashed != null ? hashed : sorted(value);
+        }
+
+        private NavigableMap<Object, Set<String>> sorted(final Object value) {
+            if (value instanceof String) {
+                return sorted.get(String.class);
+            } else if (value instanceof Number) {
+                return sorted.get(Number.class);
+            } else {
+                return sorted.get(Boolean.class);
+            }
+        }
+
+        /** Returns the key of a value in a hash index, consistent with {@link #compareValues}. */
+        private Object key(final Object value) {
+            if (sorted != null) {
+                return value;
+            } else if (value instanceof String) {
+                // Equivalent to String.compareToIgnoreCase().
+                final char[] chars = ((String) value).toCharArray();
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+                }
+                return new String(chars);
+            } else if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            } else {
+                return value;
+            }
+        }
+
+        private static Set<String> union(final Collection<Set<String>> sets) {
+            final Set<String> ids = new HashSet<>();
+            for (final Set<String> set : sets) {
+                ids.addAll(set);
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Determines the IDs of the resources which may match a filter using the
+     * indexes, or {@code null} if every resource must be examined.
+     */
+    private final QueryFilterVisitor<Set<String>, Void, JsonPointer> indexPlanner =
+            new QueryFilterVisitor<Set<String>, Void, JsonPointer>() {
+
+                @Override
+                public Set<String> visitAndFilter(final Void p,
+                        final List<org.forgerock.util.query.QueryFilter<JsonPointer>> subFilters) {
+                    // Use the most selective index: remaining sub-filters are checked per resource.
+                    Set<String> result = null;
+                    for (final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter : subFilters) {
+                        final Set<String> ids = subFilter.accept(this, p);
+                        if (ids != null && (result == null || ids.size() < result.size())) {
+                            result = ids;
+                        }
+                    }
+                    return result;
+                }
+
+                @Override
+                public Set<String> visitBooleanLiteralFilter(final Void p, final boolean value) {
+                    return value ? null : Collections.<String> emptySet();
+                }
+
+                @Override
+                public Set<String> visitContainsFilter(final Void p, final JsonPointer field,
+                        final Object valueAssertion) {
+                    return null;
+                }
+
+                @Override
+                public Set<String> visitEqualsFilter(final Void p, final JsonPointer field,
+                        final Object valueAssertion) {
+                    Index index = hashIndexes.get(field);
+                    if (index == null) {
+                        index = sortedIndexes.get(field);
+                    }
+                    return index != null ? index.equalTo(valueAssertion) : null;
+                }
+
+                @Override
+                public Set<String> visitExtendedMatchFilter(final Void p, final JsonPointer field,
+                        final String matchingRuleId, final Object valueAssertion) {
+                    return null;
+                }
+
+                @Override
+                public Set<String> visitGreaterThanFilter(final Void p, final JsonPointer field,
+                        final Object valueAssertion) {
+                    final Index index = sortedIndexes.get(field);
+                    return index != null ? index.greaterThan(valueAssertion, false) : null;
+                }
+
+                @Override
+                public Set<String> visitGreaterThanOrEqualToFilter(final Void p, final JsonPointer field,
+                        final Object valueAssertion) {
+                    final Index index = sortedIndexes.get(field);
+                    return index != null ? index.greaterThan(valueAssertion, true) : null;
+                }
+
+                @Override
+                public Set<String> visitLessThanFilter(final Void p, final JsonPointer field,
+                        final Object valueAssertion) {
+                    final Index index = sortedIndexes.get(field);
+                    return index != null ? index.lessThan(valueAssertion, false) : null;
+                }
+
+                @Override
+                public Set<String> visitLessThanOrEqualToFilter(final Void p, final JsonPointer field,
+                        final Object valueAssertion) {
+                    final Index index = sortedIndexes.get(field);
+                    return index != null ? index.lessThan(valueAssertion, true) : null;
+                }
+
+                @Override
+                public Set<String> visitNotFilter(final Void p,
+                        final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter) {
+                    return null;
+                }
+
+                @Override
+                public Set<String> visitOrFilter(final Void p,
+                        final List<org.forgerock.util.query.QueryFilter<JsonPointer>> subFilters) {
+                    final Set<String> result = new HashSet<>();
+                    for (final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter : subFilters) {
+                        final Set<String> ids = subFilter.accept(this, p);
+                        if (ids == null) {
+                            return null;
+                        }
+                        result.addAll(ids);
+                    }
+                    return result;
+                }
+
+                @Override
+                public Set<String> visitPresentFilter(final Void p, final JsonPointer field) {
+                    return null;
+                }
+
+                @Override
+                public Set<String> visitStartsWithFilter(final Void p, final JsonPointer field,
+                        final Object valueAssertion) {
+                    if (!(valueAssertion instanceof String)) {
+                        // Equality matching is used for numbers and booleans.
+                        return visitEqualsFilter(p, field, valueAssertion);
+                    }
+                    final Index index = sortedIndexes.get(field);
+                    return index != null ? index.startsWith((String) valueAssertion) : null;
+                }
+            };
+
     private final AtomicLong nextResourceId = new AtomicLong();
     private final Map<String, Resource> resources = new ConcurrentHashMap<>();
-    private final Object writeLock = new Object();
+    private final Object[] writeLocks = new Object[WRITE_LOCK_STRIPES];
+    private final Map<JsonPointer, Index> hashIndexes = new HashMap<>();
+    private final Map<JsonPointer, Index> sortedIndexes = new HashMap<>();
+    private final List<Index> indexes = new ArrayList<>();
 
     /**
      * Creates a new in-memory collection containing no resources.
      */
     public MemoryBackend() {
-        // No implementation required.
+        this(Collections.<JsonPointer> emptySet(), Collections.<JsonPointer> emptySet());
+    }
+
+    /**
+     * Creates a new in-memory collection containing no resources, which
+     * maintains indexes on the provided fields for use by query filters.
+     *
+     * @param hashIndexedFields
+     *            The fields to maintain hash indexes on, which are used by
+     *            equality filters.
+     * @param sortedIndexedFields
+     *            The fields to maintain sorted indexes on, which are used by
+     *            equality, ordering and starts with filters.
+     */
+    public MemoryBackend(final Collection<JsonPointer> hashIndexedFields,
+            final Collection<JsonPointer> sortedIndexedFields) {
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new Object();
+        }
+        for (final JsonPointer field : hashIndexedFields) {
+            hashIndexes.put(field, new Index(field, false));
+        }
+        for (final JsonPointer field : sortedIndexedFields) {
+            sortedIndexes.put(field, new Index(field, true));
+        }
+        indexes.addAll(hashIndexes.values());
+        indexes.addAll(sortedIndexes.values());
     }
 
     /**
@@ -349,10 +656,15 @@ public final class MemoryBackend implements CollectionResourceProvider {
             final ActionRequest request) {
         try {
             if (request.getAction().equals("clear")) {
-                final int size;
-                synchronized (writeLock) {
-                    size = resources.size();
-                    resources.clear();
+                int size = 0;
+                for (final String id : resources.keySet()) {
+                    synchronized (writeLock(id)) {
+                        final Resource resource = resources.remove(id);
+                        if (resource != null) {
+                            removeFromIndexes(resource);
+                            size++;
+                        }
+                    }
                 }
                 final JsonValue result = new JsonValue(new LinkedHashMap<>(1));
                 result.put("cleared", size);
@@ -392,7 +704,7 @@ public final class MemoryBackend implements CollectionResourceProvider {
                 final String eid =
                         id != null ? id : String.valueOf(nextResourceId.getAndIncrement());
                 final Resource tmp = new Resource(eid, rev, value);
-                synchronized (writeLock) {
+                synchronized (writeLock(eid)) {
                     final Resource existingResource = resources.put(eid, tmp);
                     if (existingResource != null) {
                         if (id != null) {
@@ -407,6 +719,7 @@ public final class MemoryBackend implements CollectionResourceProvider {
                     } else {
                         // Add succeeded.
                         addIdAndRevision(tmp);
+                        addToIndexes(tmp);
                         resource = tmp;
                         break;
                     }
@@ -427,9 +740,10 @@ public final class MemoryBackend implements CollectionResourceProvider {
         final String rev = request.getRevision();
         try {
             final Resource resource;
-            synchronized (writeLock) {
+            synchronized (writeLock(id)) {
                 resource = getResourceForUpdate(id, rev);
                 resources.remove(id);
+                removeFromIndexes(resource);
             }
             return newResultPromise(resource);
         } catch (final ResourceException e) {
@@ -446,7 +760,7 @@ public final class MemoryBackend implements CollectionResourceProvider {
         final String rev = request.getRevision();
         try {
             final Resource resource;
-            synchronized (writeLock) {
+            synchronized (writeLock(id)) {
                 final Resource existingResource = getResourceForUpdate(id, rev);
                 final String newRev = getNextRevision(existingResource.getRevision());
                 final JsonValue newContent = existingResource.getContent().copy();
@@ -512,6 +826,8 @@ public final class MemoryBackend implements CollectionResourceProvider {
                 resource = new Resource(id, newRev, newContent);
                 addIdAndRevision(resource);
                 resources.put(id, resource);
+                removeFromIndexes(existingResource);
+                addToIndexes(resource);
             }
             return newResultPromise(resource);
         } catch (final ResourceException e) {
@@ -548,18 +864,22 @@ public final class MemoryBackend implements CollectionResourceProvider {
                 } catch (final NumberFormatException e) {
                     return newExceptionPromise(newBadRequestException("Invalid paged results cookie"));
                 }
+                if (firstResultIndex < 0 || firstResultIndex > Integer.MAX_VALUE - pageSize) {
+                    return newExceptionPromise(newBadRequestException("Invalid paged results cookie"));
+                }
             }
-            final int lastResultIndex =
-                    pagedResultsRequested ? firstResultIndex + pageSize : Integer.MAX_VALUE;
+            final int lastResultIndex = pagedResultsRequested
+                    ? (int) Math.min((long) firstResultIndex + pageSize, Integer.MAX_VALUE) : Integer.MAX_VALUE;
 
             // Select, filter, and return the results. These can be streamed if server
             // side sorting has not been requested.
+            final Collection<Resource> candidates = getCandidates(filter);
             int resultIndex = 0;
 
             int resultCount;
             if (request.getSortKeys().isEmpty()) {
                 // No sorting so stream the results.
-                for (final Resource resource : resources.values()) {
+                for (final Resource resource : candidates) {
                     if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
                         if (resultIndex >= firstResultIndex && resultIndex < lastResultIndex) {
                             handler.handleResource(resource);
@@ -568,30 +888,44 @@ public final class MemoryBackend implements CollectionResourceProvider {
                     }
                 }
 
-                resultCount = resources.values().size();
+                resultCount = resultIndex;
             } else {
-                // Server side sorting: aggregate the result set then sort. A robust implementation
-                // would need to impose administrative limits in order to control memory utilization.
-                final List<Resource> results = new ArrayList<>();
-                for (final Resource resource : resources.values()) {
-                    if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
-                        results.add(resource);
-                    }
-                }
-                Collections.sort(results, new ResourceComparator(request.getSortKeys()));
-                for (final Resource resource : results) {
-                    if (resultIndex >= firstResultIndex && resultIndex < lastResultIndex) {
-                        handler.handleResource(resource);
+                // Server side sorting: aggregate the result set then sort. When paging, only the
+                // results up to the end of the page are kept, in a heap whose head is the last of them.
+                // A robust implementation would need to impose administrative limits in order to control
+                // memory utilization.
+                final ResourceComparator comparator = new ResourceComparator(request.getSortKeys());
+                final List<Resource> results;
+                resultCount = 0;
+                if (pagedResultsRequested) {
+                    final PriorityQueue<Resource> heap = new PriorityQueue<>(
+                            Math.min(lastResultIndex, 1_024), Collections.reverseOrder(comparator));
+                    for (final Resource resource : candidates) {
+                        if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
+                            resultCount++;
+                            if (heap.size() < lastResultIndex) {
+                                heap.add(resource);
+                            } else if (comparator.compare(resource, heap.peek()) < 0) {
+                                heap.poll();
+                                heap.add(resource);
+                            }
+                        }
                     }
-
-                    if (resultIndex < lastResultIndex) {
-                        resultIndex++;
-                    } else {
-                        break;
+                    results = new ArrayList<>(heap);
+                } else {
+                    results = new ArrayList<>();
+                    for (final Resource resource : candidates) {
+                        if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
+                            results.add(resource);
+                        }
                     }
+                    resultCount = results.size();
                 }
-
-                resultCount = results.size();
+                Collections.sort(results, comparator);
+                for (int i = firstResultIndex; i < results.size(); i++) {
+                    handler.handleResource(results.get(i));
+                }
+                resultIndex = resultCount;
             }
 
             if (pagedResultsRequested) {
@@ -641,12 +975,14 @@ public final class MemoryBackend implements CollectionResourceProvider {
         final String rev = request.getRevision();
         try {
             final Resource resource;
-            synchronized (writeLock) {
+            synchronized (writeLock(id)) {
                 final Resource existingResource = getResourceForUpdate(id, rev);
                 final String newRev = getNextRevision(existingResource.getRevision());
                 resource = new Resource(id, newRev, request.getContent());
                 addIdAndRevision(resource);
                 resources.put(id, resource);
+                removeFromIndexes(existingResource);
+                addToIndexes(resource);
             }
             return newResultPromise(resource);
         } catch (final ResourceException e) {
@@ -654,6 +990,42 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
+    /*
+     * Returns the resources which may match the filter, using the most
+     * selective index available.
+     */
+    private Collection<Resource> getCandidates(final org.forgerock.util.query.QueryFilter<JsonPointer> filter) {
+        final Set<String> ids = filter != null && !indexes.isEmpty() ? filter.accept(indexPlanner, null) : null;
+        if (ids == null) {
+            return resources.values();
+        }
+        final List<Resource> candidates = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            final Resource resource = resources.get(id);
+            if (resource != null) {
+                candidates.add(resource);
+            }
+        }
+        return candidates;
+    }
+
+    private Object writeLock(final String id) {
+        final int hash = id.hashCode();
+        return writeLocks[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % writeLocks.length];
+    }
+
+    private void addToIndexes(final Resource resource) {
+        for (final Index index : indexes) {
+            index.add(resource);
+        }
+    }
+
+    private void removeFromIndexes(final Resource resource) {
+        for (final Index index : indexes) {
+            index.remove(resource);
+        }
+    }
+
     /*
      * Add the ID and revision to the JSON content so that they are included
      * with subsequent responses. We shouldn't really update the passed in
@@ -16,13 +16,11 @@
 
 package org.forgerock.json.resource;
 
-import static org.forgerock.http.routing.RouteMatchers.uriMatcher;
-
 import org.forgerock.http.Context;
 import org.forgerock.http.ResourcePath;
-import org.forgerock.http.routing.RouteMatch;
 import org.forgerock.http.routing.RouteMatcher;
 import org.forgerock.http.routing.RoutingMode;
+import org.forgerock.http.routing.UriTemplateRouteMatcher;
 
 /**
  * A utility class that contains methods for creating route matchers.
@@ -40,7 +38,7 @@ public final class RouteMatchers {
      * @return A {@code RouteMatcher} instance.
      */
     public static RouteMatcher<Request> requestUriMatcher(RoutingMode mode, String template) {
-        return new RequestUriRoutePredicate(uriMatcher(mode, template));
+        return new RequestUriRoutePredicate(mode, template);
     }
 
     /**
@@ -50,35 +48,15 @@ public final class RouteMatchers {
      *
      * @since 3.0.0
      */
-    private static final class RequestUriRoutePredicate extends RouteMatcher<Request> {
-
-        private final RouteMatcher<ResourcePath> delegate;
-
-        private RequestUriRoutePredicate(RouteMatcher<ResourcePath> delegate) {
-            this.delegate = delegate;
-        }
+    private static final class RequestUriRoutePredicate extends UriTemplateRouteMatcher<Request> {
 
-        @Override
-        public RouteMatch evaluate(Context context, Request request) {
-            return delegate.evaluate(context, request.getResourcePathObject());
-        }
-
-        @Override
-        public String toString() {
-            return delegate.toString();
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof RequestUriRoutePredicate)) return false;
-            RequestUriRoutePredicate that = (RequestUriRoutePredicate) o;
-            return delegate.equals(that.delegate);
+        private RequestUriRoutePredicate(RoutingMode mode, String template) {
+            super(mode, template);
         }
 
         @Override
-        public int hashCode() {
-            return delegate.hashCode();
+        protected ResourcePath getResourcePath(Context context, Request request) {
+            return request.getResourcePathObject();
         }
     }
 }
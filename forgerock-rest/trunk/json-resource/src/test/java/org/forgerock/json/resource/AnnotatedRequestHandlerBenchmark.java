@@ -0,0 +1,166 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2012-2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.resource;
+
+import static org.forgerock.json.fluent.JsonValue.*;
+import static org.forgerock.json.resource.ResourceException.newNotSupportedException;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.context.RootContext;
+import org.forgerock.http.context.ServerContext;
+import org.forgerock.json.fluent.JsonValue;
+import org.forgerock.json.resource.annotations.Action;
+import org.forgerock.json.resource.annotations.Read;
+import org.forgerock.util.promise.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing the cost of dispatching requests to an annotated collection provider with the cost of
+ * dispatching them to an equivalent {@link CollectionResourceProvider}. Both providers are routed by
+ * {@link Resources#newCollection(Object)}, so the difference is the cost of invoking the annotated methods. This is
+ * not run as part of the unit tests; run the {@link #main(String[])} method from the test classpath instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnnotatedRequestHandlerBenchmark {
+    private static final Resource RESOURCE = new Resource("1", "1", json(object(field("name", "one"))));
+    private static final JsonValue ACTION_RESULT = json(object(field("result", "done")));
+
+    private ServerContext context;
+    private RequestHandler annotatedHandler;
+    private RequestHandler interfaceHandler;
+    private ReadRequest readRequest;
+    private ActionRequest actionRequest;
+
+    @Setup(Level.Trial)
+    public void createHandlers() {
+        context = new ServerContext(new RootContext());
+        annotatedHandler = Resources.newCollection(new AnnotatedProvider());
+        interfaceHandler = Resources.newCollection(new InterfaceProvider());
+        readRequest = Requests.newReadRequest("1");
+        actionRequest = Requests.newActionRequest("1", "act");
+    }
+
+    @Benchmark
+    public Resource annotatedRead() throws ResourceException {
+        return annotatedHandler.handleRead(context, readRequest).getOrThrowUninterruptibly();
+    }
+
+    @Benchmark
+    public Resource interfaceRead() throws ResourceException {
+        return interfaceHandler.handleRead(context, readRequest).getOrThrowUninterruptibly();
+    }
+
+    @Benchmark
+    public JsonValue annotatedAction() throws ResourceException {
+        return annotatedHandler.handleAction(context, actionRequest).getOrThrowUninterruptibly();
+    }
+
+    @Benchmark
+    public JsonValue interfaceAction() throws ResourceException {
+        return interfaceHandler.handleAction(context, actionRequest).getOrThrowUninterruptibly();
+    }
+
+    @org.forgerock.json.resource.annotations.RequestHandler
+    public static final class AnnotatedProvider {
+        @Read
+        public Promise<Resource, ResourceException> read(ServerContext context, String id, ReadRequest request) {
+            return newResultPromise(RESOURCE);
+        }
+
+        @Action("act")
+        public Promise<JsonValue, ResourceException> act(ServerContext context, String id, ActionRequest request) {
+            return newResultPromise(ACTION_RESULT);
+        }
+    }
+
+    private static final class InterfaceProvider implements CollectionResourceProvider {
+        @Override
+        public Promise<Resource, ResourceException> readInstance(ServerContext context, String resourceId,
+                ReadRequest request) {
+            return newResultPromise(RESOURCE);
+        }
+
+        @Override
+        public Promise<JsonValue, ResourceException> actionInstance(ServerContext context, String resourceId,
+                ActionRequest request) {
+            return newResultPromise(ACTION_RESULT);
+        }
+
+        @Override
+        public Promise<JsonValue, ResourceException> actionCollection(ServerContext context, ActionRequest request) {
+            return newExceptionPromise(newNotSupportedException());
+        }
+
+        @Override
+        public Promise<Resource, ResourceException> createInstance(ServerContext context, CreateRequest request) {
+            return newExceptionPromise(newNotSupportedException());
+        }
+
+        @Override
+        public Promise<Resource, ResourceException> deleteInstance(ServerContext context, String resourceId,
+                DeleteRequest request) {
+            return newExceptionPromise(newNotSupportedException());
+        }
+
+        @Override
+        public Promise<Resource, ResourceException> patchInstance(ServerContext context, String resourceId,
+                PatchRequest request) {
+            return newExceptionPromise(newNotSupportedException());
+        }
+
+        @Override
+        public Promise<QueryResult, ResourceException> queryCollection(ServerContext context, QueryRequest request,
+                QueryResourceHandler handler) {
+            return newExceptionPromise(newNotSupportedException());
+        }
+
+        @Override
+        public Promise<Resource, ResourceException> updateInstance(ServerContext context, String resourceId,
+                UpdateRequest request) {
+            return newExceptionPromise(newNotSupportedException());
+        }
+    }
+
+    public static void main(String... args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(AnnotatedRequestHandlerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -30,7 +30,9 @@ import org.forgerock.json.fluent.JsonValue;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import org.forgerock.json.fluent.JsonPointer;
 import org.forgerock.util.query.QueryFilter;
@@ -293,8 +295,94 @@ public final class MemoryBackendTest {
                 userBobWithIdAndRev(0, 1).getObject());
     }
 
+    @Test
+    public void testQueryCollectionWithIndexedFilters() throws Exception {
+        final Connection connection = getIndexedConnectionWithAliceAndBob();
+        assertThat(queryIds(connection, QueryFilter.equalTo(new JsonPointer("name"), "ALICE"))).containsOnly("0");
+        assertThat(queryIds(connection, QueryFilter.equalTo(new JsonPointer("role"), "it"))).containsOnly("1");
+        assertThat(queryIds(connection, QueryFilter.greaterThan(new JsonPointer("age"), 20))).containsOnly("1");
+        assertThat(queryIds(connection, QueryFilter.lessThanOrEqualTo(new JsonPointer("age"), 30.0)))
+                .containsOnly("0", "1");
+        assertThat(queryIds(connection, QueryFilter.startsWith(new JsonPointer("name"), "Al"))).containsOnly("0");
+        assertThat(queryIds(connection, QueryFilter.and(QueryFilter.equalTo(new JsonPointer("role"), "sales"),
+                QueryFilter.equalTo(new JsonPointer("name"), "bob")))).isEmpty();
+        assertThat(queryIds(connection, QueryFilter.or(QueryFilter.equalTo(new JsonPointer("role"), "sales"),
+                QueryFilter.equalTo(new JsonPointer("name"), "bob")))).containsOnly("0", "1");
+    }
+
+    @Test
+    public void testQueryCollectionWithIndexedFiltersAfterUpdateAndDelete() throws Exception {
+        final Connection connection = getIndexedConnectionWithAliceAndBob();
+        connection.update(ctx(), newUpdateRequest("users/0", userBob()));
+        connection.delete(ctx(), newDeleteRequest("users/1"));
+        assertThat(queryIds(connection, QueryFilter.equalTo(new JsonPointer("name"), "alice"))).isEmpty();
+        assertThat(queryIds(connection, QueryFilter.equalTo(new JsonPointer("name"), "bob"))).containsOnly("0");
+        assertThat(queryIds(connection, QueryFilter.equalTo(new JsonPointer("role"), "it"))).containsOnly("0");
+    }
+
+    @Test
+    public void testQueryCollectionWithSortKeysAndPaging() throws Exception {
+        final Connection connection = getConnectionWithAliceAndBob();
+        connection.create(ctx(), newCreateRequest("users", content(object(field("name", "carol"), field("age", 25)))));
+
+        final List<Resource> results = new ArrayList<>();
+        final QueryRequest request = newQueryRequest("users").addSortKey("-age").setPageSize(2)
+                .setTotalPagedResultsPolicy(CountPolicy.EXACT);
+        final QueryResult result = connection.query(ctx(), request, results);
+        final List<Resource> nextResults = new ArrayList<>();
+        final QueryResult nextResult = connection.query(ctx(),
+                request.setPagedResultsCookie(result.getPagedResultsCookie()), nextResults);
+
+        assertThat(ids(results)).containsExactly("1", "2");
+        assertThat(result.getTotalPagedResults()).isEqualTo(3);
+        assertThat(ids(nextResults)).containsExactly("0");
+        assertThat(nextResult.getPagedResultsCookie()).isNull();
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testQueryCollectionWithSortKeysAndNegativePagedResultsCookie() throws Exception {
+        final Connection connection = getConnectionWithAliceAndBob();
+        connection.query(ctx(), newQueryRequest("users").addSortKey("-age").setPageSize(2)
+                .setPagedResultsCookie("-1"), new ArrayList<Resource>());
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testQueryCollectionWithSortKeysAndOverflowingPagedResultsCookie() throws Exception {
+        final Connection connection = getConnectionWithAliceAndBob();
+        connection.query(ctx(), newQueryRequest("users").addSortKey("-age").setPageSize(2)
+                .setPagedResultsCookie(String.valueOf(Integer.MAX_VALUE - 1)), new ArrayList<Resource>());
+    }
+
     private Connection getConnection() {
-        final MemoryBackend users = new MemoryBackend();
+        return getConnection(new MemoryBackend());
+    }
+
+    private Connection getIndexedConnectionWithAliceAndBob() throws Exception {
+        final Connection connection = getConnection(new MemoryBackend(Arrays.asList(new JsonPointer("role")),
+                Arrays.asList(new JsonPointer("name"), new JsonPointer("age"))));
+
+        connection.create(ctx(), newCreateRequest("users", userAlice()));
+        connection.create(ctx(), newCreateRequest("users", userBob()));
+
+        return connection;
+    }
+
+    private List<String> queryIds(final Connection connection, final QueryFilter<JsonPointer> filter)
+            throws Exception {
+        final List<Resource> results = new ArrayList<>();
+        connection.query(ctx(), newQueryRequest("users").setQueryFilter(filter), results);
+        return ids(results);
+    }
+
+    private List<String> ids(final List<Resource> resources) {
+        final List<String> ids = new ArrayList<>();
+        for (final Resource resource : resources) {
+            ids.add(resource.getId());
+        }
+        return ids;
+    }
+
+    private Connection getConnection(final MemoryBackend users) {
         final Router router = new Router();
         router.addRoute("users", users);
         return newInternalConnection(router);
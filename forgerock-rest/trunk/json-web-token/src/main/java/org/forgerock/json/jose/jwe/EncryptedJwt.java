@@ -57,11 +57,12 @@ public class EncryptedJwt implements Jwt, Payload {
     /**
      * Constructs a fresh, new EncryptedJwt from the given JweHeader and JwtClaimsSet.
      * <p>
-     * The specified public key will be used to perform the encryption of the JWT.
+     * The specified public key will be used to perform the encryption of the JWT. For the symmetric JweAlgorithms,
+     * DIRECT, A128KW and A256KW, the shared symmetric key is given instead.
      *
      * @param header The JweHeader containing the header parameters of the JWE.
      * @param claimsSet The JwtClaimsSet containing the claims of the JWE.
-     * @param publicKey The public key to use to perform the encryption.
+     * @param publicKey The public key, or shared symmetric key, to use to perform the encryption.
      */
     public EncryptedJwt(JweHeader header, JwtClaimsSet claimsSet, Key publicKey) {
         this.header = header;
@@ -125,7 +126,13 @@ public class EncryptedJwt implements Jwt, Payload {
 
         EncryptionHandler encryptionHandler = encryptionManager.getEncryptionHandler(header);
 
-        Key contentEncryptionKey = encryptionHandler.getContentEncryptionKey();
+        Key contentEncryptionKey;
+        if (header.getAlgorithm().getAlgorithmType() == JweAlgorithmType.DIRECT) {
+            // The shared symmetric key is the CEK, see point 2 of Section 5.1 of the JWE Specification.
+            contentEncryptionKey = publicKey;
+        } else {
+            contentEncryptionKey = encryptionHandler.getContentEncryptionKey();
+        }
         byte[] encryptedContentEncryptionKey = encryptionHandler.generateJWEEncryptedKey(publicKey,
                 contentEncryptionKey);
         String encodedEncryptedKey = Base64url.encode(encryptedContentEncryptionKey);
@@ -172,9 +179,10 @@ public class EncryptedJwt implements Jwt, Payload {
     /**
      * Decrypts the JWE ciphertext back into a JwtClaimsSet.
      * <p>
-     * The same private key must be given here that is the pair to the public key that was used to encrypt the JWT.
+     * The same private key must be given here that is the pair to the public key that was used to encrypt the JWT,
+     * or the same shared symmetric key for the symmetric JweAlgorithms.
      *
-     * @param privateKey The private key pair to the public key that encrypted the JWT.
+     * @param privateKey The private key pair to the public key that encrypted the JWT, or the shared symmetric key.
      */
     public void decrypt(Key privateKey) {
 
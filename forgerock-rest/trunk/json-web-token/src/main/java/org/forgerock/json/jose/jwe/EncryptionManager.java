@@ -17,6 +17,8 @@
 package org.forgerock.json.jose.jwe;
 
 import org.forgerock.json.jose.exceptions.JweException;
+import org.forgerock.json.jose.jwe.handlers.encryption.AESKeyWrapAESGCMEncryptionHandler;
+import org.forgerock.json.jose.jwe.handlers.encryption.DirectAESGCMEncryptionHandler;
 import org.forgerock.json.jose.jwe.handlers.encryption.EncryptionHandler;
 import org.forgerock.json.jose.jwe.handlers.encryption.RSA15AES128CBCHS256EncryptionHandler;
 import org.forgerock.json.jose.jws.SigningManager;
@@ -45,6 +47,11 @@ public class EncryptionManager {
         case RSAES_PKCS1_V1_5: {
             return getEncryptionHandler(header.getAlgorithm(), header.getEncryptionMethod());
         }
+        case DIRECT:
+        case A128KW:
+        case A256KW: {
+            return getSymmetricEncryptionHandler(header.getAlgorithm(), header.getEncryptionMethod());
+        }
         default: {
             throw new JweException("No Encryption Handler for unknown encryption algorithm, "
                     + header.getAlgorithm() + ".");
@@ -75,4 +82,30 @@ public class EncryptionManager {
         }
         }
     }
+
+    /**
+     * Gets the appropriate EncryptionHandler that can perform the required encryption algorithm with a shared
+     * symmetric key, as described by the JweAlgorithm and EncryptionMethod.
+     *
+     * @param algorithm The JweAlgorithm, one of DIRECT, A128KW or A256KW.
+     * @param encryptionMethod The EncryptionMethod.
+     * @return The EncryptionHandler.
+     */
+    private EncryptionHandler getSymmetricEncryptionHandler(JweAlgorithm algorithm,
+            EncryptionMethod encryptionMethod) {
+
+        switch (encryptionMethod) {
+        case A128GCM:
+        case A256GCM: {
+            if (algorithm == JweAlgorithm.DIRECT) {
+                return new DirectAESGCMEncryptionHandler(encryptionMethod);
+            }
+            return new AESKeyWrapAESGCMEncryptionHandler(algorithm, encryptionMethod);
+        }
+        default: {
+            throw new JweException("No Encryption Handler for encryption method, "
+                    + encryptionMethod + ", with algorithm,  " + algorithm + ".");
+        }
+        }
+    }
 }
@@ -38,7 +38,17 @@ public enum EncryptionMethod {
      * AES encryption in CBC mode with PKCS5 Padding and a 256 bit length, AES encryption for CEK, HMAC using SHA-256
      * hash algorithm for authentication tag.
      */
-    A256CBC_HS512("AES_256_CBC_HMAC_SHA_512", "AES/CBC/PKCS5Padding", "HMACSHA512", "AES", 32, 512);
+    A256CBC_HS512("AES_256_CBC_HMAC_SHA_512", "AES/CBC/PKCS5Padding", "HMACSHA512", "AES", 32, 512),
+    /**
+     * AES encryption in GCM mode with a 128 bit length, the authentication tag is produced by GCM so there is no MAC
+     * algorithm and the whole CEK is the encryption key.
+     */
+    A128GCM("AES_128_GCM", "AES/GCM/NoPadding", null, "AES", 16, 128),
+    /**
+     * AES encryption in GCM mode with a 256 bit length, the authentication tag is produced by GCM so there is no MAC
+     * algorithm and the whole CEK is the encryption key.
+     */
+    A256GCM("AES_256_GCM", "AES/GCM/NoPadding", null, "AES", 32, 256);
 
     private final String name;
     private final String transformation;
@@ -29,7 +29,13 @@ import org.forgerock.json.jose.jwt.Algorithm;
 public enum JweAlgorithm implements Algorithm {
 
     /** RSA in ECB mode with PKCS1 Padding. */
-    RSAES_PKCS1_V1_5("RSA/ECB/PKCS1Padding", JweAlgorithmType.RSA);
+    RSAES_PKCS1_V1_5("RSA/ECB/PKCS1Padding", JweAlgorithmType.RSA),
+    /** Direct use of a shared symmetric key as the Content Encryption Key, there is no Java Cryptographic algorithm. */
+    DIRECT(null, JweAlgorithmType.DIRECT),
+    /** AES Key Wrap with a 128 bit key. */
+    A128KW("AESWrap", JweAlgorithmType.AES_KEYWRAP),
+    /** AES Key Wrap with a 256 bit key. */
+    A256KW("AESWrap", JweAlgorithmType.AES_KEYWRAP);
 
     private final String transformation;
     private final JweAlgorithmType algorithmType;
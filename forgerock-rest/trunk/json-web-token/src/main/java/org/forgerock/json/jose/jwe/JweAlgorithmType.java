@@ -26,7 +26,11 @@ package org.forgerock.json.jose.jwe;
 public enum JweAlgorithmType {
 
     /** RSA encryption algorithm. */
-    RSA;
+    RSA,
+    /** Direct encryption with a shared symmetric key. */
+    DIRECT,
+    /** AES key wrap of the Content Encryption Key with a shared symmetric key. */
+    AES_KEYWRAP;
 
     /**
      * Turns the JweAlgorithmType constant into a JSON value string.
@@ -0,0 +1,101 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwe.handlers.encryption;
+
+import java.security.Key;
+
+import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.exceptions.JweEncryptionException;
+import org.forgerock.json.jose.jwe.EncryptionMethod;
+import org.forgerock.json.jose.jwe.JweAlgorithm;
+
+/**
+ * An implementation of an EncryptionHandler that provides encryption and decryption methods using the JweAlgorithm
+ * A128KW or A256KW and the EncryptionMethod A128GCM or A256GCM.
+ * <p>
+ * A random Content Encryption Key (CEK) is generated for each JWE and wrapped with the shared symmetric key, which
+ * must have the length required by the JweAlgorithm.
+ *
+ * @since 3.0.0
+ */
+public class AESKeyWrapAESGCMEncryptionHandler extends AbstractAESGCMEncryptionHandler {
+
+    private final JweAlgorithm algorithm;
+    private final int keyEncryptionKeySize;
+
+    /**
+     * Constructs a new AESKeyWrapAESGCMEncryptionHandler instance.
+     *
+     * @param algorithm The JweAlgorithm, either A128KW or A256KW.
+     * @param encryptionMethod The EncryptionMethod, either A128GCM or A256GCM.
+     */
+    public AESKeyWrapAESGCMEncryptionHandler(JweAlgorithm algorithm, EncryptionMethod encryptionMethod) {
+        super(encryptionMethod);
+        switch (algorithm) {
+        case A128KW: {
+            keyEncryptionKeySize = 128;
+            break;
+        }
+        case A256KW: {
+            keyEncryptionKeySize = 256;
+            break;
+        }
+        default: {
+            throw new IllegalArgumentException("Not an AES key wrap algorithm, " + algorithm);
+        }
+        }
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Generates the JWE Encrypted Key by wrapping the Content Encryption Key (CEK) with the shared symmetric key using
+     * AES Key Wrap.
+     * <p>
+     * See point 4 in <a href="http://tools.ietf.org/html/draft-ietf-jose-json-web-encryption-11#section-5.1">
+     *     Section 5.1</a> of the JWE Specification.
+     *
+     * @param key {@inheritDoc}
+     * @param contentEncryptionKey {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public byte[] generateJWEEncryptedKey(Key key, Key contentEncryptionKey) {
+        if (!hasKeySize(key, keyEncryptionKeySize)) {
+            throw new JweEncryptionException("Key must be " + keyEncryptionKeySize + " bits for " + algorithm);
+        }
+        return wrap(algorithm.getAlgorithm(), key, contentEncryptionKey);
+    }
+
+    /**
+     * Unwraps the JWE Encrypted Key with the shared symmetric key to produce the Content Encryption Key (CEK).
+     * <p>
+     * See points 10 in <a href="http://tools.ietf.org/html/draft-ietf-jose-json-web-encryption-11#section-5.2">
+     *     Section 5.2</a> of the JWE Specification.
+     *
+     * @param key {@inheritDoc}
+     * @param encryptedContentEncryptionKey {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Key decryptContentEncryptionKey(Key key, byte[] encryptedContentEncryptionKey) {
+        if (!hasKeySize(key, keyEncryptionKeySize)) {
+            throw new JweDecryptionException();
+        }
+        return unwrap(algorithm.getAlgorithm(), key, encryptedContentEncryptionKey,
+                getEncryptionMethod().getEncryptionAlgorithm());
+    }
+}
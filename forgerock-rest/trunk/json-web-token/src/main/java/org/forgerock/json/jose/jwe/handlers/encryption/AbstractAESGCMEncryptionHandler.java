@@ -0,0 +1,182 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwe.handlers.encryption;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.exceptions.JweEncryptionException;
+import org.forgerock.json.jose.jwe.EncryptionMethod;
+import org.forgerock.json.jose.jwe.JweEncryption;
+
+/**
+ * A base implementation of an EncryptionHandler for the AES GCM EncryptionMethods, A128GCM and A256GCM, leaving the
+ * encryption of the Content Encryption Key (CEK) to the concrete JweAlgorithm implementations.
+ * <p>
+ * GCM authenticates the ciphertext and additional authenticated data itself, so there is no separate MAC key and the
+ * 128 bit authentication tag is the final block of the cipher output. AES GCM requires a JCE provider which supports
+ * it, such as the SunJCE provider of Java 8.
+ *
+ * @since 3.0.0
+ */
+public abstract class AbstractAESGCMEncryptionHandler extends AbstractEncryptionHandler {
+
+    private static final int AUTHENTICATION_TAG_BIT_LENGTH = 128;
+    private static final int INITIALISATION_VECTOR_BIT_LENGTH = 96;
+
+    /** Shared by all handlers, as seeding a new instance for every JWT is expensive. */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final EncryptionMethod encryptionMethod;
+
+    /**
+     * Constructs a new AbstractAESGCMEncryptionHandler for the given EncryptionMethod.
+     *
+     * @param encryptionMethod The EncryptionMethod, either A128GCM or A256GCM.
+     */
+    protected AbstractAESGCMEncryptionHandler(EncryptionMethod encryptionMethod) {
+        if (encryptionMethod != EncryptionMethod.A128GCM && encryptionMethod != EncryptionMethod.A256GCM) {
+            throw new IllegalArgumentException("Not an AES GCM encryption method, " + encryptionMethod);
+        }
+        this.encryptionMethod = encryptionMethod;
+    }
+
+    /**
+     * Gets the EncryptionMethod of this EncryptionHandler.
+     *
+     * @return The EncryptionMethod.
+     */
+    protected EncryptionMethod getEncryptionMethod() {
+        return encryptionMethod;
+    }
+
+    /**
+     * Creates a Content Encryption Key (CEK) by generating a random key value with a length equal to the
+     * EncryptionMethod key size.
+     * <p>
+     * See point 2 in <a href="http://tools.ietf.org/html/draft-ietf-jose-json-web-encryption-11#section-5.1">
+     *     Section 5.1</a> of the JWE Specification.
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Key getContentEncryptionKey() {
+        byte[] key = new byte[encryptionMethod.getKeySize() / 8];
+        RANDOM.nextBytes(key);
+        return new SecretKeySpec(key, encryptionMethod.getEncryptionAlgorithm());
+    }
+
+    /**
+     * Generates a random 96 bit JWE Initialisation Vector, as recommended for GCM.
+     * <p>
+     * See points 9 in <a href="http://tools.ietf.org/html/draft-ietf-jose-json-web-encryption-11#section-5.1">
+     *     Section 5.1</a> of the JWE Specification.
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public byte[] generateInitialisationVector() {
+        byte[] bytes = new byte[INITIALISATION_VECTOR_BIT_LENGTH / 8];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JweEncryption encryptPlaintext(Key contentEncryptionKey, byte[] initialisationVector, byte[] plaintext,
+            byte[] additionalAuthenticatedData) {
+
+        if (!hasKeySize(contentEncryptionKey, encryptionMethod.getKeySize())) {
+            throw new JweEncryptionException("Content Encryption Key must be " + encryptionMethod.getKeySize()
+                    + " bits for " + encryptionMethod);
+        }
+
+        String transformation = encryptionMethod.getTransformation();
+        try {
+            Cipher cipher = getCipher(Cipher.ENCRYPT_MODE, contentEncryptionKey, initialisationVector);
+            cipher.updateAAD(additionalAuthenticatedData);
+            byte[] output = cipher.doFinal(plaintext);
+
+            int ciphertextLength = output.length - AUTHENTICATION_TAG_BIT_LENGTH / 8;
+            return new JweEncryption(Arrays.copyOf(output, ciphertextLength),
+                    Arrays.copyOfRange(output, ciphertextLength, output.length));
+        } catch (NoSuchAlgorithmException e) {
+            throw new JweEncryptionException("Unsupported Encryption Algorithm, " + transformation, e);
+        } catch (GeneralSecurityException e) {
+            throw new JweEncryptionException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] decryptCiphertext(Key contentEncryptionKey, byte[] initialisationVector, byte[] ciphertext,
+            byte[] authenticationTag, byte[] additionalAuthenticatedData) {
+
+        if (!hasKeySize(contentEncryptionKey, encryptionMethod.getKeySize())
+                || authenticationTag.length != AUTHENTICATION_TAG_BIT_LENGTH / 8) {
+            throw new JweDecryptionException();
+        }
+
+        try {
+            Cipher cipher = getCipher(Cipher.DECRYPT_MODE, contentEncryptionKey, initialisationVector);
+            cipher.updateAAD(additionalAuthenticatedData);
+            return cipher.doFinal(ByteBuffer.allocate(ciphertext.length + authenticationTag.length)
+                    .put(ciphertext).put(authenticationTag).array());
+        } catch (GeneralSecurityException e) {
+            // Includes AEADBadTagException, which must be indistinguishable from any other failure.
+            logDecryptionFailure(e);
+            throw new JweDecryptionException();
+        }
+    }
+
+    /**
+     * Determines whether the given key is a symmetric key of the given bit length.
+     *
+     * @param key The key.
+     * @param keySize The expected bit length of the key.
+     * @return {@code true} if the key has the given bit length.
+     */
+    protected static boolean hasKeySize(Key key, int keySize) {
+        if (key == null) {
+            return false;
+        }
+        byte[] encoded = key.getEncoded();
+        return encoded != null && encoded.length * 8 == keySize;
+    }
+
+    private Cipher getCipher(int mode, Key contentEncryptionKey, byte[] initialisationVector)
+            throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(encryptionMethod.getTransformation());
+        SecretKeySpec secretKeySpec = new SecretKeySpec(contentEncryptionKey.getEncoded(),
+                encryptionMethod.getEncryptionAlgorithm());
+        cipher.init(mode, secretKeySpec, new GCMParameterSpec(AUTHENTICATION_TAG_BIT_LENGTH, initialisationVector));
+        return cipher;
+    }
+}
@@ -134,10 +134,53 @@ public abstract class AbstractEncryptionHandler implements EncryptionHandler {
         }
     }
 
+    /**
+     * Wraps the given Content Encryption Key using the specified key with the specified key wrap algorithm.
+     *
+     * @param algorithm The Java Cryptographic key wrap algorithm.
+     * @param key The key encryption key.
+     * @param contentEncryptionKey The Content Encryption Key to wrap.
+     * @return An array of bytes representing the wrapped key.
+     */
+    protected byte[] wrap(String algorithm, Key key, Key contentEncryptionKey) {
+        try {
+            Cipher cipher = Cipher.getInstance(algorithm);
+            cipher.init(Cipher.WRAP_MODE, key);
+            return cipher.wrap(contentEncryptionKey);
+        } catch (NoSuchAlgorithmException e) {
+            throw new JweEncryptionException("Unsupported Encryption Algorithm, " + algorithm, e);
+        } catch (IllegalBlockSizeException | InvalidKeyException | NoSuchPaddingException e) {
+            throw new JweEncryptionException(e);
+        }
+    }
+
+    /**
+     * Unwraps the given wrapped Content Encryption Key using the same key and key wrap algorithm that was used to
+     * wrap it.
+     *
+     * @param algorithm The Java Cryptographic key wrap algorithm.
+     * @param key The key encryption key.
+     * @param wrappedKey The wrapped Content Encryption Key.
+     * @param contentEncryptionAlgorithm The Java Cryptographic algorithm name of the Content Encryption Key.
+     * @return The unwrapped Content Encryption Key.
+     */
+    protected Key unwrap(String algorithm, Key key, byte[] wrappedKey, String contentEncryptionAlgorithm) {
+        try {
+            Cipher cipher = Cipher.getInstance(algorithm);
+            cipher.init(Cipher.UNWRAP_MODE, key);
+            return cipher.unwrap(wrappedKey, contentEncryptionAlgorithm, Cipher.SECRET_KEY);
+        } catch (GeneralSecurityException e) {
+            logDecryptionFailure(e);
+            throw new JweDecryptionException();
+        }
+    }
+
     /**
      * Log the root cause of any decryption error before throwing a generic exception.
+     *
+     * @param cause The cause of the decryption failure.
      */
-    private void logDecryptionFailure(Throwable cause) {
+    protected void logDecryptionFailure(Throwable cause) {
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.log(Level.FINE, "Decryption failed: " + cause, cause);
         }
@@ -0,0 +1,96 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.json.jose.jwe.handlers.encryption;
+
+import java.security.Key;
+
+import org.forgerock.json.jose.exceptions.JweDecryptionException;
+import org.forgerock.json.jose.exceptions.JweEncryptionException;
+import org.forgerock.json.jose.jwe.EncryptionMethod;
+
+/**
+ * An implementation of an EncryptionHandler that provides encryption and decryption methods using the JweAlgorithm
+ * DIRECT and the EncryptionMethod A128GCM or A256GCM.
+ * <p>
+ * With direct encryption the shared symmetric key is the Content Encryption Key (CEK), so the JWE Encrypted Key is
+ * empty and the key must have the same length as the EncryptionMethod key size.
+ *
+ * @since 3.0.0
+ */
+public class DirectAESGCMEncryptionHandler extends AbstractAESGCMEncryptionHandler {
+
+    private static final byte[] EMPTY_ENCRYPTED_KEY = new byte[0];
+
+    /**
+     * Constructs a new DirectAESGCMEncryptionHandler instance.
+     *
+     * @param encryptionMethod The EncryptionMethod, either A128GCM or A256GCM.
+     */
+    public DirectAESGCMEncryptionHandler(EncryptionMethod encryptionMethod) {
+        super(encryptionMethod);
+    }
+
+    /**
+     * Direct encryption does not generate a Content Encryption Key (CEK), the shared symmetric key is used as the CEK
+     * instead.
+     * <p>
+     * See point 2 in <a href="http://tools.ietf.org/html/draft-ietf-jose-json-web-encryption-11#section-5.1">
+     *     Section 5.1</a> of the JWE Specification.
+     *
+     * @return Never returns.
+     * @throws JweEncryptionException Always.
+     */
+    @Override
+    public Key getContentEncryptionKey() {
+        throw new JweEncryptionException("Direct encryption uses the shared symmetric key as the Content Encryption "
+                + "Key");
+    }
+
+    /**
+     * Generates the empty JWE Encrypted Key used by direct encryption.
+     * <p>
+     * See point 5 in <a href="http://tools.ietf.org/html/draft-ietf-jose-json-web-encryption-11#section-5.1">
+     *     Section 5.1</a> of the JWE Specification.
+     *
+     * @param key {@inheritDoc}
+     * @param contentEncryptionKey {@inheritDoc}
+     * @return An empty byte array.
+     */
+    @Override
+    public byte[] generateJWEEncryptedKey(Key key, Key contentEncryptionKey) {
+        return EMPTY_ENCRYPTED_KEY;
+    }
+
+    /**
+     * Returns the shared symmetric key as the Content Encryption Key (CEK), after checking that the JWE Encrypted Key
+     * is empty.
+     * <p>
+     * See point 10 in <a href="http://tools.ietf.org/html/draft-ietf-jose-json-web-encryption-11#section-5.2">
+     *     Section 5.2</a> of the JWE Specification.
+     *
+     * @param key {@inheritDoc}
+     * @param encryptedContentEncryptionKey {@inheritDoc}
+     * @return The shared symmetric key.
+     */
+    @Override
+    public Key decryptContentEncryptionKey(Key key, byte[] encryptedContentEncryptionKey) {
+        if (encryptedContentEncryptionKey.length != 0) {
+            throw new JweDecryptionException();
+        }
+        return key;
+    }
+}
@@ -28,6 +28,8 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 
+import javax.crypto.SecretKey;
+
 /**
  * A class that manages a Java Key Store and has methods for extracting out public/private keys and certificates.
  *
@@ -138,4 +140,26 @@ public class KeystoreManager {
             throw new KeystoreManagerException(e);
         }
     }
+
+    /**
+     * Gets the Secret Key from the KeyStore with the given alias.
+     * <p>
+     * Secret keys can only be stored in KeyStore types which support them, such as JCEKS.
+     *
+     * @param keyAlias The Secret Key Alias.
+     * @param secretKeyPassword The Secret Key password.
+     * @return The Secret Key.
+     */
+    public SecretKey getSecretKey(String keyAlias, String secretKeyPassword) {
+
+        if (keyAlias == null || keyAlias.length() == 0) {
+            return null;
+        }
+
+        try {
+            return (SecretKey) keyStore.getKey(keyAlias, secretKeyPassword.toCharArray());
+        } catch (KeyStoreException | NoSuchAlgorithmException | UnrecoverableKeyException e) {
+            throw new KeystoreManagerException(e);
+        }
+    }
 }
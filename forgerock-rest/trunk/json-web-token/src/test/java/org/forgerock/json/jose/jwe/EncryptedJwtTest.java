@@ -31,9 +31,13 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
 public class EncryptedJwtTest {
     private KeyPair keyPair;
 
@@ -95,6 +99,72 @@ public class EncryptedJwtTest {
         };
     }
 
+    @Test(dataProvider = "symmetricAlgorithms")
+    public void shouldEncryptAndDecryptWithSymmetricKey(JweAlgorithm algorithm, EncryptionMethod encryptionMethod,
+            int keySize) {
+        // Given
+        SecretKey key = newSecretKey(keySize);
+        JwtClaimsSet claims = new JwtBuilderFactory().claims().sub("demo").build();
+        String encryptedJwt = new JwtBuilderFactory().jwe(key).claims(claims)
+                .headers().alg(algorithm).enc(encryptionMethod).done().build();
+
+        // When
+        EncryptedJwt jwt = new JwtReconstruction().reconstructJwt(encryptedJwt, EncryptedJwt.class);
+        jwt.decrypt(key);
+
+        // Then
+        String[] encryptedJwtParts = encryptedJwt.split("\\.", -1);
+        assertThat(encryptedJwtParts[1].isEmpty()).isEqualTo(algorithm == JweAlgorithm.DIRECT);
+        assertThat(Base64url.decode(encryptedJwtParts[2])).hasSize(12);
+        assertThat(Base64url.decode(encryptedJwtParts[4])).hasSize(16);
+        assertThat(jwt.getClaimsSet().getSubject()).isEqualTo("demo");
+    }
+
+    @Test(dataProvider = "symmetricAlgorithms", expectedExceptions = JweDecryptionException.class)
+    public void shouldFailToDecryptTamperedCiphertextWithSymmetricKey(JweAlgorithm algorithm,
+            EncryptionMethod encryptionMethod, int keySize) {
+        // Given
+        SecretKey key = newSecretKey(keySize);
+        JwtClaimsSet claims = new JwtBuilderFactory().claims().sub("demo").build();
+        String[] encryptedJwtParts = new JwtBuilderFactory().jwe(key).claims(claims)
+                .headers().alg(algorithm).enc(encryptionMethod).done().build().split("\\.", -1);
+        byte[] cipherText = Base64url.decode(encryptedJwtParts[3]);
+        cipherText[0] ^= 0x01;
+        encryptedJwtParts[3] = Base64url.encode(cipherText);
+
+        // When
+        new JwtReconstruction().reconstructJwt(join(encryptedJwtParts, '.'), EncryptedJwt.class).decrypt(key);
+    }
+
+    @Test(dataProvider = "symmetricAlgorithms", expectedExceptions = JweDecryptionException.class)
+    public void shouldFailToDecryptWithWrongSymmetricKey(JweAlgorithm algorithm, EncryptionMethod encryptionMethod,
+            int keySize) {
+        // Given
+        JwtClaimsSet claims = new JwtBuilderFactory().claims().sub("demo").build();
+        String encryptedJwt = new JwtBuilderFactory().jwe(newSecretKey(keySize)).claims(claims)
+                .headers().alg(algorithm).enc(encryptionMethod).done().build();
+
+        // When
+        new JwtReconstruction().reconstructJwt(encryptedJwt, EncryptedJwt.class).decrypt(newSecretKey(keySize));
+    }
+
+    @DataProvider
+    public Object[][] symmetricAlgorithms() {
+        return new Object[][] {
+                { JweAlgorithm.DIRECT, EncryptionMethod.A128GCM, 128 },
+                { JweAlgorithm.DIRECT, EncryptionMethod.A256GCM, 256 },
+                { JweAlgorithm.A128KW, EncryptionMethod.A128GCM, 128 },
+                { JweAlgorithm.A256KW, EncryptionMethod.A256GCM, 256 },
+                { JweAlgorithm.A128KW, EncryptionMethod.A256GCM, 128 }
+        };
+    }
+
+    private SecretKey newSecretKey(int keySize) {
+        byte[] key = new byte[keySize / 8];
+        new SecureRandom().nextBytes(key);
+        return new SecretKeySpec(key, "AES");
+    }
+
     private String join(String[] parts, char delim) {
         StringBuilder sb = new StringBuilder();
         for (String part : parts) {
@@ -15,6 +15,7 @@
 package org.forgerock.util.promise;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -467,4 +468,101 @@ public interface Promise<V, E extends Exception> extends Future<V> {
     <VOUT, EOUT extends Exception> Promise<VOUT, EOUT> thenAsync(
             AsyncFunction<? super V, VOUT, EOUT> onResult,
             AsyncFunction<? super E, VOUT, EOUT> onException);
+
+    /**
+     * Submits the provided function for execution using the provided
+     * {@code Executor} once this {@code Promise} has completed with a result,
+     * and returns a new {@code Promise} representing the outcome of the
+     * function. If this {@code Promise} does not complete with a result then
+     * the function will not be invoked and the exception will be forwarded to
+     * the returned {@code Promise}.
+     * <p>
+     * This method is similar to {@link #then(Function)} except that the
+     * function is not invoked in the thread which completed this
+     * {@code Promise}. This can be used to avoid running slow functions in I/O
+     * threads. If the executor rejects the function, then it will be invoked
+     * in the thread which completed this {@code Promise} instead.
+     *
+     * @param <VOUT>
+     *            The type of the function's result, or {@link Void} if the
+     *            function does not return anything (i.e. it only has
+     *            side-effects). Note that the type may be different to the type
+     *            of this {@code Promise}.
+     * @param onResult
+     *            The function which will be executed upon successful completion
+     *            of this {@code Promise}.
+     * @param executor
+     *            The executor which will execute the function.
+     * @return A new {@code Promise} representing the outcome of the
+     *         function.
+     */
+    <VOUT> Promise<VOUT, E> thenOn(Function<? super V, VOUT, E> onResult, Executor executor);
+
+    /**
+     * Submits the provided asynchronous function for execution using the
+     * provided {@code Executor} once this {@code Promise} has completed with a
+     * result, and returns a new {@code Promise} representing the outcome of
+     * the function. If this {@code Promise} completes with an exception then
+     * the function will not be invoked and the error will be forwarded to the
+     * returned {@code Promise}.
+     * <p>
+     * This method is similar to {@link #thenAsync(AsyncFunction)} except that
+     * the function is not invoked in the thread which completed this
+     * {@code Promise}. If the executor rejects the function, then it will be
+     * invoked in the thread which completed this {@code Promise} instead.
+     *
+     * @param <VOUT>
+     *            The type of the function's result, or {@link Void} if the
+     *            function does not return anything (i.e. it only has
+     *            side-effects). Note that the type may be different to the type
+     *            of this {@code Promise}.
+     * @param onResult
+     *            The asynchronous function which will be executed upon
+     *            successful completion of this {@code Promise}.
+     * @param executor
+     *            The executor which will execute the function.
+     * @return A new {@code Promise} representing the outcome of the
+     *         function.
+     */
+    <VOUT> Promise<VOUT, E> thenAsyncOn(AsyncFunction<? super V, VOUT, E> onResult, Executor executor);
+
+    /**
+     * Submits the provided asynchronous functions for execution using the
+     * provided {@code Executor} once this {@code Promise} has completed, and
+     * returns a new {@code Promise} representing the outcome of the invoked
+     * function. If this {@code Promise} completes with a result then
+     * {@code onResult} will be invoked with the result, otherwise
+     * {@code onException} will be invoked with the exception that occurred.
+     * <p>
+     * This method is similar to
+     * {@link #thenAsync(AsyncFunction, AsyncFunction)} except that the
+     * functions are not invoked in the thread which completed this
+     * {@code Promise}. If the executor rejects the function, then it will be
+     * invoked in the thread which completed this {@code Promise} instead.
+     *
+     * @param <VOUT>
+     *            The type of the functions' result, or {@link Void} if the
+     *            functions do not return anything (i.e. they only have
+     *            side-effects). Note that the type may be different to the type
+     *            of this {@code Promise}.
+     * @param <EOUT>
+     *            The type of the exception thrown by the functions if they
+     *            fail, or {@link NeverThrowsException} if they cannot fail.
+     *            Note that the type may be different to the type of this
+     *            {@code Promise}.
+     * @param onResult
+     *            The asynchronous function which will be executed upon
+     *            successful completion of this {@code Promise}.
+     * @param onException
+     *            The asynchronous function which will be executed upon failure
+     *            of this {@code Promise}.
+     * @param executor
+     *            The executor which will execute the invoked function.
+     * @return A new {@code Promise} representing the outcome of the
+     *         invoked function.
+     */
+    <VOUT, EOUT extends Exception> Promise<VOUT, EOUT> thenAsyncOn(
+            AsyncFunction<? super V, VOUT, EOUT> onResult,
+            AsyncFunction<? super E, VOUT, EOUT> onException,
+            Executor executor);
 }
@@ -14,11 +14,16 @@
  */
 package org.forgerock.util.promise;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Function;
@@ -36,6 +41,23 @@ import org.forgerock.util.Function;
  * represented by the promise. Cancellation is only supported if the
  * {@link #tryCancel(boolean)} is overridden and returns an exception.
  * </ul>
+ * <p>
+ * The outcome of the promise and any registered listeners are held in a
+ * single field which is updated using compare-and-set, so neither registering
+ * a listener nor completing the promise requires a lock. Until the promise
+ * completes the field holds a stack of pending listeners, each of which is
+ * its own stack node, and once completed it holds the outcome. Listeners are
+ * notified in the order in which they were registered.
+ * <p>
+ * By default listeners are notified in the thread which completes the
+ * promise, so completing a promise at the head of a long chain of pending
+ * promises recurses once for each promise in the chain. Promises created using
+ * {@link #createTrampolined()} instead defer notifications triggered while
+ * another trampolined promise is already notifying its listeners in the same
+ * thread, and run them once that notification returns. This keeps the stack
+ * depth constant regardless of the length of the chain, at the cost of
+ * listeners no longer having completed by the time a nested call to
+ * {@link #handleResult} returns.
  *
  * @param <V>
  *            The type of the task's result, or {@link Void} if the task does
@@ -48,16 +70,81 @@ import org.forgerock.util.Function;
  */
 public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, ResultHandler<V>,
         ExceptionHandler<E> {
-    // TODO: Is using monitor based sync better than AQS?
 
-    private static interface StateListener<V, E extends Exception> {
-        void handleStateChange(int newState, V result, E exception);
+    /**
+     * A listener which is notified when this promise completes. Pending
+     * listeners form a stack linked through {@link #next}, avoiding the need
+     * to allocate a separate node for each listener.
+     */
+    private abstract static class StateListener<V, E extends Exception> {
+        volatile StateListener<V, E> next;
+
+        abstract void handleStateChange(int newState, V result, E exception);
+
+        /**
+         * Returns {@code true} if this listener no longer needs to be
+         * notified and may be unlinked from the stack.
+         */
+        boolean isAbandoned() {
+            return false;
+        }
+    }
+
+    /**
+     * A listener which wakes up a thread blocked waiting for this promise to
+     * complete.
+     */
+    private static final class Waiter<V, E extends Exception> extends StateListener<V, E> {
+        private volatile Thread thread = Thread.currentThread();
+
+        @Override
+        void handleStateChange(final int newState, final V result, final E exception) {
+            final Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        @Override
+        boolean isAbandoned() {
+            return thread == null;
+        }
+    }
+
+    /**
+     * The immutable outcome of a completed promise.
+     */
+    private static final class Outcome {
+        private final int state;
+        private final Object result;
+        private final Exception exception;
+
+        private Outcome(final int state, final Object result, final Exception exception) {
+            this.state = state;
+            this.result = result;
+            this.exception = exception;
+        }
     }
 
     /**
-     * State value indicating that this promise has not completed.
+     * Notifications deferred by trampolined promises in the current thread.
      */
-    private static final int PENDING = 0;
+    private static final class Trampoline {
+        /** Alternating listener arrays and the outcome to notify them of. */
+        private final Queue<Object> pending = new ArrayDeque<>();
+        private boolean isRunning;
+    }
+
+    private static final ThreadLocal<Trampoline> TRAMPOLINE = new ThreadLocal<Trampoline>() {
+        @Override
+        protected Trampoline initialValue() {
+            return new Trampoline();
+        }
+    };
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<PromiseImpl, Object> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(PromiseImpl.class, Object.class, "state");
 
     /**
      * State value indicating that this promise has completed successfully
@@ -90,19 +177,56 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
         return new PromiseImpl<>();
     }
 
-    private volatile int state = PENDING;
-    private V result = null;
-    private E exception = null;
+    /**
+     * Creates a new pending {@link Promise} implementation whose listeners,
+     * and those of any promises chained from it, are notified using a
+     * trampoline rather than recursively. Use this for promises at the head of
+     * arbitrarily long chains, such as asynchronous loops.
+     * <p>
+     * Listeners of a trampolined promise must not block waiting for another
+     * trampolined promise which they have completed, since its listeners will
+     * not be notified until they return.
+     *
+     * @param <V>
+     *            The type of the task's result, or {@link Void} if the task
+     *            does not return anything (i.e. it only has side-effects).
+     * @param <E>
+     *            The type of the exception thrown by the task if it fails, or
+     *            {@link NeverThrowsException} if the task cannot fail.
+     * @return A new pending trampolined {@link Promise} implementation.
+     */
+    public static <V, E extends Exception> PromiseImpl<V, E> createTrampolined() {
+        return new PromiseImpl<>(true);
+    }
 
-    private final Queue<StateListener<V, E>> listeners =
-            new ConcurrentLinkedQueue<>();
+    /**
+     * Either {@code null} or the most recently registered
+     * {@link StateListener} if this promise is pending, or its
+     * {@link Outcome} once completed.
+     */
+    private volatile Object state = null;
+
+    private final boolean trampolined;
 
     /**
      * Creates a new pending {@link Promise} implementation. This constructor is
      * protected to allow for sub-classing.
      */
     protected PromiseImpl() {
-        // No implementation.
+        this(false);
+    }
+
+    /**
+     * Creates a new pending {@link Promise} implementation, optionally
+     * notifying listeners using a trampoline. This constructor is protected to
+     * allow for sub-classing.
+     *
+     * @param trampolined
+     *            {@code true} if listeners should be notified as described in
+     *            {@link #createTrampolined()}.
+     */
+    protected PromiseImpl(final boolean trampolined) {
+        this.trampolined = trampolined;
     }
 
     @Override
@@ -252,19 +376,20 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
 
     @Override
     public final boolean isCancelled() {
-        return state == CANCELLED;
+        final Object s = state;
+        return s instanceof Outcome && ((Outcome) s).state == CANCELLED;
     }
 
     @Override
     public final boolean isDone() {
-        return state != PENDING;
+        return state instanceof Outcome;
     }
 
     @Override
     public final Promise<V, E> thenOnException(final ExceptionHandler<? super E> onException) {
         addOrFireListener(new StateListener<V, E>() {
             @Override
-            public void handleStateChange(final int newState, final V result, final E exception) {
+            void handleStateChange(final int newState, final V result, final E exception) {
                 if (newState != HAS_RESULT) {
                     onException.handleException(exception);
                 }
@@ -277,7 +402,7 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
     public final Promise<V, E> thenOnResult(final ResultHandler<? super V> onResult) {
         addOrFireListener(new StateListener<V, E>() {
             @Override
-            public void handleStateChange(final int newState, final V result, final E exception) {
+            void handleStateChange(final int newState, final V result, final E exception) {
                 if (newState == HAS_RESULT) {
                     onResult.handleResult(result);
                 }
@@ -291,7 +416,7 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
                                                    final ExceptionHandler<? super E> onException) {
         addOrFireListener(new StateListener<V, E>() {
             @Override
-            public void handleStateChange(final int newState, final V result, final E exception) {
+            void handleStateChange(final int newState, final V result, final E exception) {
                 if (newState == HAS_RESULT) {
                     onResult.handleResult(result);
                 } else {
@@ -306,7 +431,7 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
     public final Promise<V, E> thenOnResultOrException(final Runnable onResultOrException) {
         addOrFireListener(new StateListener<V, E>() {
             @Override
-            public void handleStateChange(final int newState, final V result, final E exception) {
+            void handleStateChange(final int newState, final V result, final E exception) {
                 onResultOrException.run();
             }
         });
@@ -326,11 +451,11 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
     @Override
     public final <VOUT, EOUT extends Exception> Promise<VOUT, EOUT> then(
         final Function<? super V, VOUT, EOUT> onResult, final Function<? super E, VOUT, EOUT> onException) {
-        final PromiseImpl<VOUT, EOUT> chained = new PromiseImpl<>();
+        final PromiseImpl<VOUT, EOUT> chained = new PromiseImpl<>(trampolined);
         addOrFireListener(new StateListener<V, E>() {
             @Override
             @SuppressWarnings("unchecked")
-            public void handleStateChange(final int newState, final V result, final E exception) {
+            void handleStateChange(final int newState, final V result, final E exception) {
                 try {
                     if (newState == HAS_RESULT) {
                         chained.handleResult(onResult.apply(result));
@@ -369,11 +494,11 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
     public final <VOUT, EOUT extends Exception> Promise<VOUT, EOUT> thenAsync(
             final AsyncFunction<? super V, VOUT, EOUT> onResult,
             final AsyncFunction<? super E, VOUT, EOUT> onException) {
-        final PromiseImpl<VOUT, EOUT> chained = new PromiseImpl<>();
+        final PromiseImpl<VOUT, EOUT> chained = new PromiseImpl<>(trampolined);
         addOrFireListener(new StateListener<V, E>() {
             @Override
             @SuppressWarnings("unchecked")
-            public void handleStateChange(final int newState, final V result, final E exception) {
+            void handleStateChange(final int newState, final V result, final E exception) {
                 try {
                     final Promise<VOUT, EOUT> nestedPromise;
                     if (newState == HAS_RESULT) {
@@ -381,19 +506,8 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
                     } else {
                         nestedPromise = onException.apply(exception);
                     }
-                    nestedPromise.thenOnResult(new ResultHandler<VOUT>() {
-                        @Override
-                        public void handleResult(final VOUT value) {
-                            chained.handleResult(value);
-                        }
-                    }).thenOnException(new ExceptionHandler<EOUT>() {
-                        @Override
-                        public void handleException(final EOUT exception) {
-                            chained.handleException(exception);
-                        }
-
-                        ;
-                    });
+                    // The chained promise is its own completion handler.
+                    nestedPromise.thenOnResultOrException(chained, chained);
                 } catch (final Exception e) {
                     chained.handleException((EOUT) e);
                 }
@@ -402,6 +516,71 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
         return chained;
     }
 
+    @Override
+    public final <VOUT> Promise<VOUT, E> thenOn(final Function<? super V, VOUT, E> onResult,
+            final Executor executor) {
+        final PromiseImpl<VOUT, E> chained = new PromiseImpl<>(trampolined);
+        addOrFireListener(new StateListener<V, E>() {
+            @Override
+            void handleStateChange(final int newState, final V result, final E exception) {
+                if (newState != HAS_RESULT) {
+                    // No need to hand off to the executor just to forward the exception.
+                    chained.handleException(exception);
+                    return;
+                }
+                Promises.execute(executor, new Runnable() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void run() {
+                        try {
+                            chained.handleResult(onResult.apply(result));
+                        } catch (final Exception e) {
+                            chained.handleException((E) e);
+                        }
+                    }
+                });
+            }
+        });
+        return chained;
+    }
+
+    @Override
+    public final <VOUT> Promise<VOUT, E> thenAsyncOn(final AsyncFunction<? super V, VOUT, E> onResult,
+            final Executor executor) {
+        return thenAsyncOn(onResult, Promises.<VOUT, E>exceptionIdempotentAsyncFunction(), executor);
+    }
+
+    @Override
+    public final <VOUT, EOUT extends Exception> Promise<VOUT, EOUT> thenAsyncOn(
+            final AsyncFunction<? super V, VOUT, EOUT> onResult,
+            final AsyncFunction<? super E, VOUT, EOUT> onException,
+            final Executor executor) {
+        final PromiseImpl<VOUT, EOUT> chained = new PromiseImpl<>(trampolined);
+        addOrFireListener(new StateListener<V, E>() {
+            @Override
+            void handleStateChange(final int newState, final V result, final E exception) {
+                Promises.execute(executor, new Runnable() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void run() {
+                        try {
+                            final Promise<VOUT, EOUT> nestedPromise;
+                            if (newState == HAS_RESULT) {
+                                nestedPromise = onResult.apply(result);
+                            } else {
+                                nestedPromise = onException.apply(exception);
+                            }
+                            nestedPromise.thenOnResultOrException(chained, chained);
+                        } catch (final Exception e) {
+                            chained.handleException((EOUT) e);
+                        }
+                    }
+                });
+            }
+        });
+        return chained;
+    }
+
     /**
      * Invoked when the client attempts to cancel the asynchronous task
      * represented by this promise. Implementations which support cancellation
@@ -424,93 +603,231 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
     }
 
     private void addOrFireListener(final StateListener<V, E> listener) {
-        final int stateBefore = state;
-        if (stateBefore != PENDING) {
-            listener.handleStateChange(stateBefore, result, exception);
-        } else {
-            listeners.add(listener);
-            final int stateAfter = state;
-            if (stateAfter != PENDING && listeners.remove(listener)) {
-                listener.handleStateChange(stateAfter, result, exception);
+        while (true) {
+            final Object s = state;
+            if (s instanceof Outcome) {
+                fire(listener, (Outcome) s);
+                return;
+            }
+            listener.next = uncheckedCast(s);
+            if (STATE.compareAndSet(this, s, listener)) {
+                return;
             }
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private void fire(final StateListener<V, E> listener, final Outcome outcome) {
+        listener.handleStateChange(outcome.state, (V) outcome.result, (E) outcome.exception);
+    }
+
+    @SuppressWarnings("unchecked")
     private V get0() throws ExecutionException {
-        if (exception != null) {
-            throw new ExecutionException(exception);
+        final Outcome outcome = (Outcome) state;
+        if (outcome.exception != null) {
+            throw new ExecutionException(outcome.exception);
         } else {
-            return result;
+            return (V) outcome.result;
         }
     }
 
+    @SuppressWarnings("unchecked")
     private V getOrThrow0() throws E {
-        if (exception != null) {
-            throw exception;
+        final Outcome outcome = (Outcome) state;
+        if (outcome.exception != null) {
+            throw (E) outcome.exception;
         } else {
-            return result;
+            return (V) outcome.result;
         }
     }
 
     private boolean setState(final int newState, final V result, final E exception) {
-        synchronized (this) {
-            if (state != PENDING) {
-                // Already completed.
+        Object s = state;
+        if (s instanceof Outcome) {
+            // Already completed.
+            return false;
+        }
+        final Outcome outcome = new Outcome(newState, result, exception);
+        while (!STATE.compareAndSet(this, s, outcome)) {
+            s = state;
+            if (s instanceof Outcome) {
+                // Completed concurrently.
                 return false;
             }
-            this.result = result;
-            this.exception = exception;
-            state = newState; // Publishes.
-            notifyAll(); // Wake up any blocked threads.
         }
-        StateListener<V, E> listener;
-        while ((listener = listeners.poll()) != null) {
-            listener.handleStateChange(newState, result, exception);
+
+        /*
+         * Copy the stack rather than reversing it in place, since abandoned
+         * waiters may still be unlinking themselves from it concurrently.
+         */
+        if (s == null) {
+            return true;
+        }
+        final List<StateListener<?, ?>> listeners = new ArrayList<>();
+        for (StateListener<?, ?> l = uncheckedCast(s); l != null; l = l.next) {
+            if (!l.isAbandoned()) {
+                listeners.add(l);
+            }
+        }
+        if (trampolined) {
+            trampoline(listeners, outcome);
+        } else {
+            fireAll(listeners, outcome);
         }
         return true;
     }
 
+    @SuppressWarnings("unchecked")
+    private static void trampoline(final List<StateListener<?, ?>> listeners, final Outcome outcome) {
+        final Trampoline trampoline = TRAMPOLINE.get();
+        if (trampoline.isRunning) {
+            // Let the outermost notification in this thread run these once it returns.
+            trampoline.pending.add(listeners);
+            trampoline.pending.add(outcome);
+            return;
+        }
+        trampoline.isRunning = true;
+        RuntimeException failure = null;
+        try {
+            try {
+                fireAll(listeners, outcome);
+            } catch (final RuntimeException e) {
+                failure = e;
+            }
+            // Keep draining even if a listener fails, otherwise deferred promises would never be notified.
+            Object next;
+            while ((next = trampoline.pending.poll()) != null) {
+                try {
+                    fireAll((List<StateListener<?, ?>>) next, (Outcome) trampoline.pending.poll());
+                } catch (final RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        } finally {
+            trampoline.isRunning = false;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Notifies a stack of listeners, in registration order.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static void fireAll(final List<StateListener<?, ?>> listeners, final Outcome outcome) {
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            final StateListener listener = listeners.get(i);
+            listener.handleStateChange(outcome.state, outcome.result, outcome.exception);
+        }
+    }
+
     private void await() throws InterruptedException {
-        // Use double-check for fast-path.
-        if (state == PENDING) {
-            synchronized (this) {
-                while (state == PENDING) {
-                    wait();
+        // Fast-path.
+        if (!isDone()) {
+            final Waiter<V, E> waiter = new Waiter<>();
+            addOrFireListener(waiter);
+            try {
+                while (!isDone()) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
                 }
+            } finally {
+                abandon(waiter);
             }
         }
     }
 
     private void await(final long timeout, final TimeUnit unit, final boolean isUninterruptibly)
             throws InterruptedException, TimeoutException {
-        // Use double-check for fast-path.
-        if (state == PENDING) {
-            final long timeoutMS = unit.toMillis(timeout);
-            final long endTimeMS = System.currentTimeMillis() + timeoutMS;
+        // Fast-path.
+        if (!isDone()) {
+            final long endTimeNS = System.nanoTime() + unit.toNanos(timeout);
+            final Waiter<V, E> waiter = new Waiter<>();
+            addOrFireListener(waiter);
             boolean wasInterrupted = false;
             try {
-                synchronized (this) {
-                    while (state == PENDING) {
-                        final long remainingTimeMS = endTimeMS - System.currentTimeMillis();
-                        if (remainingTimeMS <= 0) {
-                            throw new TimeoutException();
-                        }
-                        try {
-                            wait(remainingTimeMS);
-                        } catch (final InterruptedException e) {
-                            if (isUninterruptibly) {
-                                wasInterrupted = true;
-                            } else {
-                                throw e;
-                            }
+                while (!isDone()) {
+                    final long remainingTimeNS = endTimeNS - System.nanoTime();
+                    if (remainingTimeNS <= 0) {
+                        throw new TimeoutException();
+                    }
+                    LockSupport.parkNanos(this, remainingTimeNS);
+                    if (Thread.interrupted()) {
+                        if (isUninterruptibly) {
+                            wasInterrupted = true;
+                        } else {
+                            throw new InterruptedException();
                         }
                     }
                 }
             } finally {
+                abandon(waiter);
                 if (wasInterrupted) {
                     Thread.currentThread().interrupt();
                 }
             }
         }
     }
+
+    /**
+     * Marks a waiter as abandoned and unlinks all abandoned waiters from the
+     * stack, so that repeatedly timing out while waiting for a promise which
+     * never completes does not grow the stack. Other listeners are never
+     * unlinked, and a listener is only unlinked by updating the link of a
+     * listener which is still in use, so concurrent unlinking, registration
+     * and completion cannot lose a listener.
+     */
+    private void abandon(final Waiter<V, E> waiter) {
+        waiter.thread = null;
+        retry:
+        while (true) {
+            final Object s = state;
+            if (s instanceof Outcome) {
+                return;
+            }
+            StateListener<V, E> pred = null;
+            StateListener<V, E> l = uncheckedCast(s);
+            while (l != null) {
+                final StateListener<V, E> next = l.next;
+                if (!l.isAbandoned()) {
+                    pred = l;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred.isAbandoned()) {
+                        // The predecessor was abandoned concurrently, so it may have been unlinked.
+                        continue retry;
+                    }
+                } else if (!STATE.compareAndSet(this, l, next)) {
+                    continue retry;
+                }
+                l = next;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Returns the number of listeners which are waiting for this promise to
+     * complete. Used by tests.
+     */
+    int getPendingListenerCount() {
+        final Object s = state;
+        int count = 0;
+        if (!(s instanceof Outcome)) {
+            for (StateListener<V, E> l = uncheckedCast(s); l != null; l = l.next) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V, E extends Exception> StateListener<V, E> uncheckedCast(final Object listener) {
+        return (StateListener<V, E>) listener;
+    }
 }
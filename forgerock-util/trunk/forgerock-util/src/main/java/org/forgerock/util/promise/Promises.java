@@ -18,17 +18,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Factory;
 import org.forgerock.util.Function;
+import org.forgerock.util.Reject;
 
 /**
  * Utility methods for creating and composing {@link Promise}s.
  */
 public final class Promises {
-    // TODO: n-of, etc.
 
     private static abstract class CompletedPromise<V, E extends Exception> implements Promise<V, E> {
         @Override
@@ -177,6 +182,59 @@ public final class Promises {
             }
         }
 
+        @Override
+        @SuppressWarnings("unchecked")
+        public final <VOUT> Promise<VOUT, E> thenOn(final Function<? super V, VOUT, E> onResult,
+                final Executor executor) {
+            if (!hasResult()) {
+                return (Promise<VOUT, E>) this;
+            }
+            final PromiseImpl<VOUT, E> chained = PromiseImpl.create();
+            execute(executor, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        chained.handleResult(onResult.apply(getResult()));
+                    } catch (final Exception e) {
+                        chained.handleException((E) e);
+                    }
+                }
+            });
+            return chained;
+        }
+
+        @Override
+        public final <VOUT> Promise<VOUT, E> thenAsyncOn(final AsyncFunction<? super V, VOUT, E> onResult,
+                final Executor executor) {
+            return thenAsyncOn(onResult, Promises.<VOUT, E>exceptionIdempotentAsyncFunction(), executor);
+        }
+
+        @Override
+        public final <VOUT, EOUT extends Exception> Promise<VOUT, EOUT> thenAsyncOn(
+                final AsyncFunction<? super V, VOUT, EOUT> onResult,
+                final AsyncFunction<? super E, VOUT, EOUT> onException,
+                final Executor executor) {
+            final PromiseImpl<VOUT, EOUT> chained = PromiseImpl.create();
+            execute(executor, new Runnable() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void run() {
+                    try {
+                        final Promise<VOUT, EOUT> nestedPromise;
+                        if (hasResult()) {
+                            nestedPromise = onResult.apply(getResult());
+                        } else {
+                            nestedPromise = onException.apply(getException());
+                        }
+                        nestedPromise.thenOnResultOrException(chained, chained);
+                    } catch (final Exception e) {
+                        chained.handleException((EOUT) e);
+                    }
+                }
+            });
+            return chained;
+        }
+
         abstract E getException();
 
         abstract V getResult();
@@ -231,6 +289,58 @@ public final class Promises {
         }
     }
 
+    /**
+     * The state of a {@link Promises#mapBounded} operation. Each permitted
+     * in-flight slot submits the next value when the previous one it submitted
+     * completes.
+     */
+    private static final class BoundedMap<T, V, E extends Exception> {
+        private final List<? extends T> values;
+        private final AsyncFunction<? super T, V, E> function;
+        private final Object[] results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final PromiseImpl<List<V>, E> composite = PromiseImpl.create();
+
+        private BoundedMap(final List<? extends T> values, final AsyncFunction<? super T, V, E> function) {
+            this.values = values;
+            this.function = function;
+            this.results = new Object[values.size()];
+            this.remaining = new AtomicInteger(values.size());
+        }
+
+        @SuppressWarnings("unchecked")
+        private void submitNext() {
+            // Loop rather than recurse while the function returns promises which have already completed.
+            int index;
+            while (!composite.isDone() && (index = next.getAndIncrement()) < values.size()) {
+                final Promise<V, E> promise;
+                try {
+                    promise = function.apply(values.get(index));
+                } catch (final Exception e) {
+                    composite.handleException((E) e);
+                    return;
+                }
+                final boolean wasDone = promise.isDone();
+                final int slot = index;
+                promise.thenOnResultOrException(new ResultHandler<V>() {
+                    @Override
+                    public void handleResult(final V value) {
+                        results[slot] = value;
+                        if (remaining.decrementAndGet() == 0) {
+                            composite.handleResult(Promises.<V>asList(results));
+                        } else if (!wasDone) {
+                            submitNext();
+                        }
+                    }
+                }, composite);
+                if (!wasDone) {
+                    return;
+                }
+            }
+        }
+    }
+
     private static final AsyncFunction<Exception, Object, Exception> EXCEPTION_IDEM_ASYNC_FUNC =
             new AsyncFunction<Exception, Object, Exception>() {
                 @Override
@@ -308,7 +418,9 @@ public final class Promises {
 
     /**
      * Returns a {@link Promise} which will be completed once all of the
-     * provided promises have succeeded, or as soon as one of them fails.
+     * provided promises have succeeded, or as soon as one of them fails. The
+     * results are listed in the same order as the provided promises,
+     * regardless of the order in which they complete.
      *
      * @param <V>
      *            The type of the tasks' result, or {@link Void} if the tasks do
@@ -326,28 +438,23 @@ public final class Promises {
             final List<Promise<V, E>> promises) {
         final int size = promises.size();
         final AtomicInteger remaining = new AtomicInteger(size);
-        final List<V> results = new ArrayList<>(size);
+        final Object[] results = new Object[size];
         final PromiseImpl<List<V>, E> composite = PromiseImpl.create();
-        for (final Promise<V, E> promise : promises) {
-            promise.thenOnResult(new ResultHandler<V>() {
+        for (int i = 0; i < size; i++) {
+            final int index = i;
+            promises.get(i).thenOnResultOrException(new ResultHandler<V>() {
                 @Override
                 public void handleResult(final V value) {
-                    synchronized (results) {
-                        results.add(value);
-                    }
+                    results[index] = value;
+                    // The decrement publishes the result to whichever thread completes the composite.
                     if (remaining.decrementAndGet() == 0) {
-                        composite.handleResult(results);
+                        composite.handleResult(Promises.<V>asList(results));
                     }
                 }
-            }).thenOnException(new ExceptionHandler<E>() {
-                @Override
-                public void handleException(final E exception) {
-                    composite.handleException(exception);
-                }
-            });
+            }, composite);
         }
-        if (promises.isEmpty()) {
-            composite.handleResult(results);
+        if (size == 0) {
+            composite.handleResult(new ArrayList<V>(0));
         }
         return composite;
     }
@@ -374,6 +481,191 @@ public final class Promises {
         return when(Arrays.asList(promises));
     }
 
+    /**
+     * Returns a {@link Promise} which will be completed with the result of the
+     * first of the provided promises to succeed. The returned promise only
+     * fails if all of the provided promises fail, in which case it fails with
+     * the exception of the last one to fail.
+     * <p>
+     * This method can be used to send the same request to several redundant
+     * services and use whichever responds first.
+     *
+     * @param <V>
+     *            The type of the tasks' result, or {@link Void} if the tasks do
+     *            not return anything (i.e. they only has side-effects).
+     * @param <E>
+     *            The type of the exception thrown by the tasks if they fail, or
+     *            {@link NeverThrowsException} if the tasks cannot fail.
+     * @param promises
+     *            The non-empty list of tasks to be combined.
+     * @return A {@link Promise} which will be completed with the result of the
+     *         first of the provided promises to succeed.
+     */
+    public static final <V, E extends Exception> Promise<V, E> whenAny(final List<Promise<V, E>> promises) {
+        Reject.ifTrue(promises.isEmpty(), "At least one promise is required");
+        final AtomicInteger remaining = new AtomicInteger(promises.size());
+        final PromiseImpl<V, E> composite = PromiseImpl.create();
+        for (final Promise<V, E> promise : promises) {
+            promise.thenOnResultOrException(composite, new ExceptionHandler<E>() {
+                @Override
+                public void handleException(final E exception) {
+                    if (remaining.decrementAndGet() == 0) {
+                        composite.handleException(exception);
+                    }
+                }
+            });
+        }
+        return composite;
+    }
+
+    /**
+     * Returns a {@link Promise} which will be completed with the result of the
+     * first of the provided promises to succeed, or fail if all of them fail.
+     *
+     * @param <V>
+     *            The type of the tasks' result, or {@link Void} if the tasks do
+     *            not return anything (i.e. they only has side-effects).
+     * @param <E>
+     *            The type of the exception thrown by the tasks if they fail, or
+     *            {@link NeverThrowsException} if the tasks cannot fail.
+     * @param promises
+     *            The tasks to be combined.
+     * @return A {@link Promise} which will be completed with the result of the
+     *         first of the provided promises to succeed.
+     * @see #whenAny(List)
+     */
+    @SafeVarargs
+    public static final <V, E extends Exception> Promise<V, E> whenAny(final Promise<V, E>... promises) {
+        return whenAny(Arrays.asList(promises));
+    }
+
+    /**
+     * Returns a {@link Promise} which will be completed with the outcome of
+     * the provided promise, or fail with an exception obtained from the
+     * provided factory if the promise has not completed within the provided
+     * timeout. Unlike {@link Promise#getOrThrow(long, TimeUnit)}, no thread is
+     * blocked while waiting.
+     * <p>
+     * The timeout is scheduled using the provided scheduler, which should be
+     * shared between all callers. Use
+     * {@link org.forgerock.util.thread.ExecutorServiceFactory#createScheduledService(int)}
+     * to create it so that it is shutdown along with the application. The
+     * scheduled timeout is cancelled if the promise completes first. Timing
+     * out does not cancel the provided promise.
+     *
+     * @param <V>
+     *            The type of the task's result, or {@link Void} if the task
+     *            does not return anything (i.e. it only has side-effects).
+     * @param <E>
+     *            The type of the exception thrown by the task if it fails, or
+     *            {@link NeverThrowsException} if the task cannot fail.
+     * @param promise
+     *            The task to wait for.
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The time unit of the timeout argument.
+     * @param scheduler
+     *            The scheduler used to time out the task.
+     * @param timeoutException
+     *            The factory for the exception with which to fail the returned
+     *            promise if the timeout expires. Only invoked if the timeout
+     *            expires.
+     * @return A {@link Promise} which will be completed with the outcome of
+     *         the provided promise, or fail if the timeout expires first.
+     */
+    public static final <V, E extends Exception> Promise<V, E> withTimeout(final Promise<V, E> promise,
+            final long timeout, final TimeUnit unit, final ScheduledExecutorService scheduler,
+            final Factory<? extends E> timeoutException) {
+        Reject.ifNull(promise, unit, scheduler, timeoutException);
+        if (promise.isDone()) {
+            return promise;
+        }
+        final PromiseImpl<V, E> composite = PromiseImpl.create();
+        final ScheduledFuture<?> timer = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!composite.isDone()) {
+                    composite.tryHandleException(timeoutException.newInstance());
+                }
+            }
+        }, timeout, unit);
+        promise.thenOnResultOrException(composite, composite).thenOnResultOrException(new Runnable() {
+            @Override
+            public void run() {
+                timer.cancel(false);
+            }
+        });
+        return composite;
+    }
+
+    /**
+     * Applies the provided asynchronous function to each of the provided
+     * values, with at most {@code maxInFlight} of the resulting promises
+     * pending at any one time, and returns a {@link Promise} which will be
+     * completed once all of them have succeeded, or as soon as one of them
+     * fails. The results are listed in the same order as the provided values.
+     * No further values are submitted once one has failed.
+     * <p>
+     * This method can be used to fan out many requests to a remote service
+     * without overwhelming it.
+     *
+     * @param <T>
+     *            The type of the values.
+     * @param <V>
+     *            The type of the function's result, or {@link Void} if the
+     *            function does not return anything (i.e. it only has
+     *            side-effects).
+     * @param <E>
+     *            The type of the exception thrown by the function if it fails,
+     *            or {@link NeverThrowsException} if the function cannot fail.
+     * @param values
+     *            The values to which the function will be applied.
+     * @param function
+     *            The asynchronous function to apply to each value.
+     * @param maxInFlight
+     *            The maximum number of pending promises returned by the
+     *            function at any one time, which must be positive.
+     * @return A {@link Promise} which will be completed once the function has
+     *         succeeded for every value, or as soon as it fails for one of
+     *         them.
+     */
+    public static final <T, V, E extends Exception> Promise<List<V>, E> mapBounded(final List<? extends T> values,
+            final AsyncFunction<? super T, V, E> function, final int maxInFlight) {
+        Reject.ifNull(values, function);
+        Reject.ifTrue(maxInFlight <= 0, "The maximum number of promises in flight must be positive");
+        final BoundedMap<T, V, E> map = new BoundedMap<>(values, function);
+        if (values.isEmpty()) {
+            map.composite.handleResult(new ArrayList<V>(0));
+        }
+        for (int i = 0; i < Math.min(maxInFlight, values.size()); i++) {
+            map.submitNext();
+        }
+        return map.composite;
+    }
+
+    /**
+     * Executes the provided task using the provided executor, or in the
+     * calling thread if the executor rejects it, for example because it has
+     * been shutdown. This ensures that chained promises are always completed.
+     */
+    static void execute(final Executor executor, final Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Returns the results as a mutable list, since callers may add to or
+     * remove from it.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> List<V> asList(final Object[] results) {
+        return new ArrayList<>((List<V>) Arrays.asList(results));
+    }
+
     @SuppressWarnings("unchecked")
     static <VOUT, E extends Exception> AsyncFunction<E, VOUT, E> exceptionIdempotentAsyncFunction() {
         return (AsyncFunction<E, VOUT, E>) EXCEPTION_IDEM_ASYNC_FUNC;
@@ -0,0 +1,121 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.util.promise;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark measuring the cost of building and completing chains of {@link PromiseImpl#then(Function)} and
+ * {@link PromiseImpl#thenAsync(AsyncFunction)} calls, both when the chain is built before the first promise completes
+ * (so every listener is queued) and after (so every listener fires immediately). Run with the allocation profiler
+ * ({@code -prof gc}) against two builds to compare implementations. This is not run as part of the unit tests; run
+ * the {@link #main(String[])} method from the test classpath instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PromiseChainBenchmark {
+
+    private static final Function<Integer, Integer, Exception> INCREMENT =
+            new Function<Integer, Integer, Exception>() {
+                @Override
+                public Integer apply(final Integer value) {
+                    return value + 1;
+                }
+            };
+
+    private static final AsyncFunction<Integer, Integer, Exception> INCREMENT_ASYNC =
+            new AsyncFunction<Integer, Integer, Exception>() {
+                @Override
+                public Promise<Integer, Exception> apply(final Integer value) {
+                    return Promises.newResultPromise(value + 1);
+                }
+            };
+
+    @Param({ "1", "5", "20" })
+    public int chainLength;
+
+    @Benchmark
+    public Integer thenBeforeCompletion() throws Exception {
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        Promise<Integer, Exception> last = first;
+        for (int i = 0; i < chainLength; i++) {
+            last = last.then(INCREMENT);
+        }
+        first.handleResult(0);
+        return last.getOrThrow();
+    }
+
+    @Benchmark
+    public Integer thenAfterCompletion() throws Exception {
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        first.handleResult(0);
+        Promise<Integer, Exception> last = first;
+        for (int i = 0; i < chainLength; i++) {
+            last = last.then(INCREMENT);
+        }
+        return last.getOrThrow();
+    }
+
+    @Benchmark
+    public Integer thenAsyncBeforeCompletion() throws Exception {
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        Promise<Integer, Exception> last = first;
+        for (int i = 0; i < chainLength; i++) {
+            last = last.thenAsync(INCREMENT_ASYNC);
+        }
+        first.handleResult(0);
+        return last.getOrThrow();
+    }
+
+    @Benchmark
+    public Integer thenAsyncAfterCompletion() throws Exception {
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        first.handleResult(0);
+        Promise<Integer, Exception> last = first;
+        for (int i = 0; i < chainLength; i++) {
+            last = last.thenAsync(INCREMENT_ASYNC);
+        }
+        return last.getOrThrow();
+    }
+
+    public static void main(String... args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(PromiseChainBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
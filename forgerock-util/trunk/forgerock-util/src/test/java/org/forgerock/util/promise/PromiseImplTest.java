@@ -0,0 +1,386 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2015 ForgeRock AS.
+ */
+
+package org.forgerock.util.promise;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Function;
+import org.testng.annotations.Test;
+
+public class PromiseImplTest {
+
+    @Test
+    public void shouldNotifyListenersInRegistrationOrder() {
+
+        //Given
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+        final List<Integer> notified = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final int listener = i;
+            promise.thenOnResult(new ResultHandler<String>() {
+                @Override
+                public void handleResult(final String result) {
+                    notified.add(listener);
+                }
+            });
+        }
+
+        //When
+        promise.handleResult("result");
+
+        //Then
+        assertThat(notified).isEqualTo(Arrays.asList(0, 1, 2, 3, 4));
+    }
+
+    @Test
+    public void shouldNotifyListenerRegisteredAfterCompletion() throws Exception {
+
+        //Given
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+        promise.handleException(new Exception("failed"));
+        final AtomicInteger notified = new AtomicInteger();
+
+        //When
+        promise.thenOnException(new ExceptionHandler<Exception>() {
+            @Override
+            public void handleException(final Exception exception) {
+                notified.incrementAndGet();
+            }
+        });
+
+        //Then
+        assertThat(notified.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldOnlyCompleteOnce() throws Exception {
+
+        //Given
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+        promise.handleResult("first");
+
+        //When
+        final boolean completedWithResult = promise.tryHandleResult("second");
+        final boolean completedWithException = promise.tryHandleException(new Exception());
+
+        //Then
+        assertThat(completedWithResult).isFalse();
+        assertThat(completedWithException).isFalse();
+        assertThat(promise.getOrThrow()).isEqualTo("first");
+    }
+
+    @Test
+    public void shouldNotifyEveryListenerExactlyOnceWhenRacingWithCompletion() throws Exception {
+
+        //Given
+        final int threads = 4;
+        final int listenersPerThread = 1000;
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+        final AtomicInteger notified = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> registrars = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < listenersPerThread; j++) {
+                        promise.thenOnResultOrException(new Runnable() {
+                            @Override
+                            public void run() {
+                                notified.incrementAndGet();
+                            }
+                        });
+                    }
+                }
+            });
+            thread.start();
+            registrars.add(thread);
+        }
+
+        //When
+        start.countDown();
+        promise.handleResult("result");
+        for (final Thread thread : registrars) {
+            thread.join();
+        }
+
+        //Then
+        assertThat(notified.get()).isEqualTo(threads * listenersPerThread);
+    }
+
+    @Test
+    public void shouldWakeBlockedThreadOnCompletion() throws Exception {
+
+        //Given
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // Complete anyway.
+                }
+                promise.handleResult("result");
+            }
+        }).start();
+
+        //When
+        final String result = promise.getOrThrow(10, TimeUnit.SECONDS);
+
+        //Then
+        assertThat(result).isEqualTo("result");
+    }
+
+    @Test(expectedExceptions = TimeoutException.class)
+    public void shouldTimeOutWaitingForResult() throws Exception {
+
+        //Given
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+
+        //When
+        promise.getOrThrowUninterruptibly(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void shouldStillNotifyListenersAfterWaiterTimesOut() throws Exception {
+
+        //Given
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+        final AtomicInteger notified = new AtomicInteger();
+        promise.thenOnResult(new ResultHandler<String>() {
+            @Override
+            public void handleResult(final String result) {
+                notified.incrementAndGet();
+            }
+        });
+        try {
+            promise.get(10, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException expected) {
+            // Expected.
+        }
+
+        //When
+        promise.handleResult("result");
+
+        //Then
+        assertThat(notified.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldUnlinkTimedOutWaitersBeneathOtherListeners() throws Exception {
+
+        //Given
+        final PromiseImpl<String, Exception> promise = PromiseImpl.create();
+        final AtomicInteger notified = new AtomicInteger();
+        final ResultHandler<String> listener = new ResultHandler<String>() {
+            @Override
+            public void handleResult(final String result) {
+                notified.incrementAndGet();
+            }
+        };
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            try {
+                promise.get(0, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException expected) {
+                // Expected.
+            }
+            promise.thenOnResult(listener);
+            try {
+                promise.get(0, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException expected) {
+                // Expected.
+            }
+        }
+
+        //Then
+        assertThat(promise.getPendingListenerCount()).isEqualTo(100);
+        promise.handleResult("result");
+        assertThat(notified.get()).isEqualTo(100);
+    }
+
+    @Test
+    public void shouldCancelWhenSupported() throws Exception {
+
+        //Given
+        final Exception cancelled = new Exception("cancelled");
+        final PromiseImpl<String, Exception> promise = new PromiseImpl<String, Exception>() {
+            @Override
+            protected Exception tryCancel(final boolean mayInterruptIfRunning) {
+                return cancelled;
+            }
+        };
+
+        //When
+        final boolean result = promise.cancel(false);
+
+        //Then
+        assertThat(result).isTrue();
+        assertThat(promise.isCancelled()).isTrue();
+        assertThat(promise.isDone()).isTrue();
+        assertThat(promise.cancel(false)).isFalse();
+    }
+
+    @Test
+    public void shouldChainThenAndThenAsync() throws Exception {
+
+        //Given
+        final PromiseImpl<Integer, Exception> promise = PromiseImpl.create();
+        final Promise<Integer, Exception> chained = promise
+                .then(new Function<Integer, Integer, Exception>() {
+                    @Override
+                    public Integer apply(final Integer value) {
+                        return value + 1;
+                    }
+                })
+                .thenAsync(new AsyncFunction<Integer, Integer, Exception>() {
+                    @Override
+                    public Promise<Integer, Exception> apply(final Integer value) {
+                        return Promises.newResultPromise(value * 2);
+                    }
+                });
+
+        //When
+        promise.handleResult(1);
+
+        //Then
+        assertThat(chained.getOrThrow()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldInvokeFunctionUsingExecutor() throws Exception {
+
+        //Given
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final PromiseImpl<Integer, Exception> promise = PromiseImpl.create();
+        final Thread completingThread = Thread.currentThread();
+        try {
+            final Promise<Thread, Exception> chained = promise.thenOn(new Function<Integer, Thread, Exception>() {
+                @Override
+                public Thread apply(final Integer value) {
+                    return Thread.currentThread();
+                }
+            }, executor);
+
+            //When
+            promise.handleResult(1);
+
+            //Then
+            assertThat(chained.getOrThrow(10, TimeUnit.SECONDS)).isNotSameAs(completingThread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldInvokeAsyncFunctionInCompletingThreadIfExecutorRejectsIt() throws Exception {
+
+        //Given
+        final PromiseImpl<Integer, Exception> promise = PromiseImpl.create();
+        final Promise<Integer, Exception> chained = promise.thenAsyncOn(
+                new AsyncFunction<Integer, Integer, Exception>() {
+                    @Override
+                    public Promise<Integer, Exception> apply(final Integer value) {
+                        return Promises.newResultPromise(value + 1);
+                    }
+                }, new Executor() {
+                    @Override
+                    public void execute(final Runnable command) {
+                        throw new RejectedExecutionException();
+                    }
+                });
+
+        //When
+        promise.handleResult(1);
+
+        //Then
+        assertThat(chained.isDone()).isTrue();
+        assertThat(chained.getOrThrow()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCompleteLongTrampolinedChainWithoutOverflowingStack() throws Exception {
+
+        //Given
+        final int length = 100000;
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.createTrampolined();
+        Promise<Integer, Exception> last = first;
+        for (int i = 0; i < length; i++) {
+            last = last.then(new Function<Integer, Integer, Exception>() {
+                @Override
+                public Integer apply(final Integer value) {
+                    return value + 1;
+                }
+            });
+        }
+
+        //When
+        first.handleResult(0);
+
+        //Then
+        assertThat(last.getOrThrow()).isEqualTo(length);
+    }
+
+    @Test
+    public void shouldCompleteLongTrampolinedAsyncLoopWithoutOverflowingStack() throws Exception {
+
+        //Given
+        final int length = 100000;
+        final List<PromiseImpl<Integer, Exception>> steps = new ArrayList<>();
+        Promise<Integer, Exception> loop = Promises.newResultPromise(length);
+        for (int i = 0; i < length; i++) {
+            // Each step of the loop completes with the outcome of the remainder of the loop.
+            final Promise<Integer, Exception> rest = loop;
+            final PromiseImpl<Integer, Exception> step = PromiseImpl.createTrampolined();
+            steps.add(step);
+            loop = step.thenAsync(new AsyncFunction<Integer, Integer, Exception>() {
+                @Override
+                public Promise<Integer, Exception> apply(final Integer value) {
+                    return rest;
+                }
+            });
+        }
+
+        //When
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            // Complete the outermost step first, so that the innermost completion cascades through every step.
+            steps.get(i).handleResult(i);
+        }
+
+        //Then
+        assertThat(loop.getOrThrow()).isEqualTo(length);
+    }
+}
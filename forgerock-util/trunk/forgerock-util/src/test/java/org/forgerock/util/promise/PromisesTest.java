@@ -19,9 +19,17 @@ package org.forgerock.util.promise;
 import static org.fest.assertions.Assertions.assertThat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Factory;
 import org.testng.annotations.Test;
 
 public class PromisesTest {
@@ -46,4 +54,174 @@ public class PromisesTest {
         //Then
         assertThat(complete.get()).describedAs("Promises.when did not complete").isTrue();
     }
+
+    @Test
+    public void promiseCreatedByWhenShouldListResultsInOrder() throws Exception {
+
+        //Given
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        final PromiseImpl<Integer, Exception> second = PromiseImpl.create();
+        final Promise<List<Integer>, Exception> promise = Promises.when(first, second);
+
+        //When
+        second.handleResult(2);
+        first.handleResult(1);
+
+        //Then
+        assertThat(promise.getOrThrow()).isEqualTo(Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void promiseCreatedByWhenShouldCompleteWithMutableList() throws Exception {
+
+        //Given
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        final Promise<List<Integer>, Exception> promise = Promises.when(first);
+        first.handleResult(1);
+
+        //When
+        final List<Integer> results = promise.getOrThrow();
+        results.add(2);
+
+        //Then
+        assertThat(results).isEqualTo(Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void promiseCreatedByWhenAnyShouldCompleteWithFirstResult() throws Exception {
+
+        //Given
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        final PromiseImpl<Integer, Exception> second = PromiseImpl.create();
+        final Promise<Integer, Exception> promise = Promises.whenAny(first, second);
+
+        //When
+        first.handleException(new Exception("failed"));
+        second.handleResult(2);
+
+        //Then
+        assertThat(promise.getOrThrow()).isEqualTo(2);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void promiseCreatedByWhenAnyShouldFailOnceAllHaveFailed() throws Exception {
+
+        //Given
+        final PromiseImpl<Integer, Exception> first = PromiseImpl.create();
+        final PromiseImpl<Integer, Exception> second = PromiseImpl.create();
+        final Promise<Integer, Exception> promise = Promises.whenAny(first, second);
+
+        //When
+        first.handleException(new Exception("failed"));
+        second.handleException(new IllegalStateException("failed"));
+
+        //Then
+        promise.getOrThrow();
+    }
+
+    @Test
+    public void promiseCreatedByWithTimeoutShouldFailWhenTimeoutExpires() throws Exception {
+
+        //Given
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final PromiseImpl<Integer, Exception> promise = PromiseImpl.create();
+
+            //When
+            final Promise<Integer, Exception> timed = Promises.withTimeout(promise, 10, TimeUnit.MILLISECONDS,
+                    scheduler, new Factory<Exception>() {
+                        @Override
+                        public Exception newInstance() {
+                            return new TimeoutException();
+                        }
+                    });
+
+            //Then
+            try {
+                timed.getOrThrow(10, TimeUnit.SECONDS);
+                throw new AssertionError("Expected timeout");
+            } catch (TimeoutException e) {
+                assertThat(timed.isDone()).isTrue();
+                assertThat(promise.isDone()).isFalse();
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void promiseCreatedByWithTimeoutShouldCompleteWithResultBeforeTimeout() throws Exception {
+
+        //Given
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final PromiseImpl<Integer, Exception> promise = PromiseImpl.create();
+            final Promise<Integer, Exception> timed = Promises.withTimeout(promise, 10, TimeUnit.SECONDS,
+                    scheduler, new Factory<Exception>() {
+                        @Override
+                        public Exception newInstance() {
+                            return new TimeoutException();
+                        }
+                    });
+
+            //When
+            promise.handleResult(1);
+
+            //Then
+            assertThat(timed.getOrThrow()).isEqualTo(1);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void promiseCreatedByMapBoundedShouldLimitPromisesInFlight() throws Exception {
+
+        //Given
+        final List<PromiseImpl<Integer, Exception>> pending = new ArrayList<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Promise<List<Integer>, Exception> promise = Promises.mapBounded(Arrays.asList(1, 2, 3, 4, 5),
+                new AsyncFunction<Integer, Integer, Exception>() {
+                    @Override
+                    public Promise<Integer, Exception> apply(final Integer value) {
+                        maxInFlight.set(Math.max(maxInFlight.get(), inFlight.incrementAndGet()));
+                        final PromiseImpl<Integer, Exception> result = PromiseImpl.create();
+                        pending.add(result);
+                        return result;
+                    }
+                }, 2);
+
+        //When
+        for (int i = 0; i < pending.size(); i++) {
+            inFlight.decrementAndGet();
+            pending.get(i).handleResult((i + 1) * 10);
+        }
+
+        //Then
+        assertThat(maxInFlight.get()).isEqualTo(2);
+        assertThat(promise.getOrThrow()).isEqualTo(Arrays.asList(10, 20, 30, 40, 50));
+    }
+
+    @Test
+    public void promiseCreatedByMapBoundedShouldHandleCompletedPromisesWithoutRecursing() throws Exception {
+
+        //Given
+        final List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            values.add(i);
+        }
+
+        //When
+        final Promise<List<Integer>, Exception> promise = Promises.mapBounded(values,
+                new AsyncFunction<Integer, Integer, Exception>() {
+                    @Override
+                    public Promise<Integer, Exception> apply(final Integer value) {
+                        return Promises.newResultPromise(value);
+                    }
+                }, 1);
+
+        //Then
+        assertThat(promise.getOrThrow()).isEqualTo(values);
+    }
 }